@@ -0,0 +1,86 @@
+package org.mozilla.javascript;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.ErrorCollector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Scanning a 64 KB source into tokens with {@link TokenStream}, and parsing
+ * it in ide-mode, which also keeps the characters of the source. This class
+ * is in the engine package because the token stream is not public.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LexerBenchmark {
+
+	private static final int SIZE = 64 * 1024;
+
+	private String source;
+	private CompilerEnvirons compilerEnv;
+	private CompilerEnvirons ideEnv;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(25);
+		String[] names = { "customer", "order", "amount", "record", "i",
+				"foundset", "application", "result", "elements", "value" };
+		StringBuilder sb = new StringBuilder();
+		for (int f = 0; sb.length() < SIZE; f++) {
+			String a = names[random.nextInt(names.length)];
+			String b = names[random.nextInt(names.length)];
+			sb.append("/**\n * Updates the ").append(a).append(" of the ")
+					.append(b).append(".\n *\n * @param {Number} ").append(a)
+					.append("\n */\n");
+			sb.append("function update").append(f).append("(").append(a)
+					.append(", ").append(b).append(") {\n");
+			sb.append("\tvar total = 0, label = 'Total of ").append(a)
+					.append("';\n");
+			sb.append("\tfor (var i = 0; i < ").append(b)
+					.append(".length; i++) {\n");
+			sb.append("\t\t// add the ").append(a).append(" amounts\n");
+			sb.append("\t\ttotal += ").append(b).append("[i].").append(a)
+					.append(" * ").append(random.nextInt(1000)).append('.')
+					.append(random.nextInt(100)).append(";\n");
+			sb.append("\t}\n");
+			sb.append("\tif (total > ").append(random.nextInt(100000))
+					.append(" && label != \"\") {\n");
+			sb.append("\t\tapplication.output(label + \": \" + total);\n");
+			sb.append("\t}\n");
+			sb.append("\treturn { name: '").append(a)
+					.append("', total: total, items: [").append(f)
+					.append(", ").append(f + 1).append("] };\n");
+			sb.append("}\n\n");
+		}
+		source = sb.toString();
+		compilerEnv = new CompilerEnvirons();
+		ideEnv = CompilerEnvirons.ideEnvirons();
+	}
+
+	@Benchmark
+	public int tokenize() throws IOException {
+		TokenStream ts = new TokenStream(new Parser(compilerEnv), null,
+				source, 1);
+		int count = 0;
+		while (ts.getToken() != Token.EOF) {
+			count++;
+		}
+		return count;
+	}
+
+	@Benchmark
+	public AstRoot parseIde() {
+		return new Parser(ideEnv, new ErrorCollector()).parse(source,
+				"bench", 1);
+	}
+}
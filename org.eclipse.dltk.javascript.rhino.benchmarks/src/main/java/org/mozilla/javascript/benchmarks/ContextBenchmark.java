@@ -0,0 +1,65 @@
+package org.mozilla.javascript.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextAction;
+import org.mozilla.javascript.ContextFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Entering and leaving a Context, directly and through
+ * {@link ContextFactory#call}, on one thread and on four threads at once, and
+ * creating the standard objects of a new top-level scope.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ContextBenchmark {
+
+	private final ContextFactory factory = new ContextFactory();
+
+	private final ContextAction action = new ContextAction() {
+		public Object run(Context cx) {
+			return cx;
+		}
+	};
+
+	@Benchmark
+	public Object enterExit() {
+		Context cx = factory.enterContext();
+		try {
+			return cx;
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Object enterExitContended() {
+		return enterExit();
+	}
+
+	@Benchmark
+	public Object call() {
+		return factory.call(action);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Object initStandardObjects() {
+		Context cx = factory.enterContext();
+		try {
+			return cx.initStandardObjects();
+		} finally {
+			Context.exit();
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package org.mozilla.javascript.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mozilla.javascript.Script;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Script execution in the interpreter and as compiled code: calls and
+ * arithmetic, loops over arrays and closures.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExecutionBenchmark extends ScriptBenchmark {
+
+	private Script fib;
+	private Script arraySum;
+	private Script closures;
+
+	@Override
+	protected void setUp() {
+		fib = compile("fib", "function fib(n) { return n < 2 ? n : fib(n - 1) + fib(n - 2); }\n"
+				+ "fib(20);");
+		arraySum = compile("arraySum", "var a = [];\n"
+				+ "for (var i = 0; i < 1000; i++) a.push(i * 2);\n"
+				+ "var sum = 0;\n"
+				+ "for (var i = 0; i < a.length; i++) sum += a[i];\n"
+				+ "sum;");
+		closures = compile("closures", "function counter() { var c = 0; return function() { return ++c; }; }\n"
+				+ "var f = counter(), r = 0;\n"
+				+ "for (var i = 0; i < 1000; i++) r = f();\n"
+				+ "r;");
+	}
+
+	@Benchmark
+	public Object fib() {
+		return fib.exec(cx, scope);
+	}
+
+	@Benchmark
+	public Object arraySum() {
+		return arraySum.exec(cx, scope);
+	}
+
+	@Benchmark
+	public Object closures() {
+		return closures.exec(cx, scope);
+	}
+}
@@ -0,0 +1,94 @@
+package org.mozilla.javascript.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.NativeJavaMethod;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Calls of Java methods: from scripts through the wrapped Java object, and
+ * directly through {@link NativeJavaMethod#call}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JavaMethodBenchmark extends ScriptBenchmark {
+
+	public static class Target {
+		private int count;
+
+		public int add(int a, int b) {
+			return a + b;
+		}
+
+		public String value(String s) {
+			return s;
+		}
+
+		public double value(double d) {
+			return d;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public void setCount(int count) {
+			this.count = count;
+		}
+	}
+
+	private Script call;
+	private Script overloaded;
+	private Script beanProperty;
+	private Scriptable target;
+	private Function add;
+	private Object[] args;
+
+	@Override
+	protected void setUp() {
+		target = (Scriptable) Context.javaToJS(new Target(), scope);
+		ScriptableObject.putProperty(scope, "target", target);
+		call = compile("call", "var s = 0;\n"
+				+ "for (var i = 0; i < 1000; i++) s = target.add(s, i);\n"
+				+ "s;");
+		overloaded = compile("overloaded", "var r;\n"
+				+ "for (var i = 0; i < 500; i++) { r = target.value(i); r = target.value('v'); }\n"
+				+ "r;");
+		beanProperty = compile("beanProperty", "for (var i = 0; i < 1000; i++) target.count = target.count + 1;\n"
+				+ "target.count;");
+		add = (Function) target.get("add", target);
+		args = new Object[] { Integer.valueOf(1), Integer.valueOf(2) };
+	}
+
+	@Benchmark
+	public Object call() {
+		return call.exec(cx, scope);
+	}
+
+	@Benchmark
+	public Object overloaded() {
+		return overloaded.exec(cx, scope);
+	}
+
+	@Benchmark
+	public Object beanProperty() {
+		return beanProperty.exec(cx, scope);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public Object nativeJavaMethodCall() {
+		return add.call(cx, scope, target, args);
+	}
+}
@@ -0,0 +1,74 @@
+package org.mozilla.javascript.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * JSON.parse and JSON.stringify of an array of 1000 records with strings,
+ * numbers, booleans, nulls and a nested array. The functions are called
+ * directly, which runs NativeJSON without any script around it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonBenchmark {
+
+	private Context cx;
+	private Scriptable scope;
+	private Scriptable json;
+	private Function parse;
+	private Function stringify;
+	private Object[] text;
+	private Object[] value;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		cx = Context.enter();
+		scope = cx.initStandardObjects();
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < 1000; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append("{\"id\":").append(i);
+			sb.append(",\"name\":\"customer \\\"").append(i).append("\\\"\"");
+			sb.append(",\"balance\":").append(i * 12.25);
+			sb.append(",\"active\":").append(i % 2 == 0);
+			sb.append(",\"parent\":null");
+			sb.append(",\"tags\":[\"a\",\"b\",").append(i % 7).append("]}");
+		}
+		text = new Object[] { sb.append(']').toString() };
+		json = (Scriptable) ScriptableObject.getProperty(scope, "JSON");
+		parse = (Function) ScriptableObject.getProperty(json, "parse");
+		stringify = (Function) ScriptableObject.getProperty(json, "stringify");
+		value = new Object[] { parse.call(cx, scope, json, text) };
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Context.exit();
+	}
+
+	@Benchmark
+	public Object parse() {
+		return parse.call(cx, scope, json, text);
+	}
+
+	@Benchmark
+	public Object stringify() {
+		return stringify.call(cx, scope, json, value);
+	}
+}
@@ -0,0 +1,82 @@
+package org.mozilla.javascript.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Property reads and writes from scripts, on objects of one shape and of
+ * several shapes, and through {@link ScriptableObject#getProperty} from Java.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PropertyAccessBenchmark extends ScriptBenchmark {
+
+	private Script get;
+	private Script set;
+	private Script polymorphicGet;
+	private Script create;
+	private Scriptable object;
+
+	@Override
+	protected void setUp() {
+		evaluate("function Point(x, y) { this.x = x; this.y = y; }\n"
+				+ "var points = [];\n"
+				+ "for (var i = 0; i < 100; i++) points.push(new Point(i, -i));\n"
+				+ "var shapes = [];\n"
+				+ "for (var i = 0; i < 100; i++) {\n"
+				+ "  var o = { x: i, y: -i };\n"
+				+ "  o['p' + (i % 4)] = i;\n"
+				+ "  shapes.push(o);\n"
+				+ "}\n");
+		get = compile("get", "var s = 0;\n"
+				+ "for (var j = 0; j < 10; j++)\n"
+				+ "  for (var i = 0; i < points.length; i++) s += points[i].x + points[i].y;\n"
+				+ "s;");
+		set = compile("set", "for (var j = 0; j < 10; j++)\n"
+				+ "  for (var i = 0; i < points.length; i++) points[i].x = points[i].y + j;\n");
+		polymorphicGet = compile("polymorphicGet", "var s = 0;\n"
+				+ "for (var j = 0; j < 10; j++)\n"
+				+ "  for (var i = 0; i < shapes.length; i++) s += shapes[i].x + shapes[i].y;\n"
+				+ "s;");
+		create = compile("create", "var last;\n"
+				+ "for (var i = 0; i < 1000; i++) last = { a: i, b: i + 1, c: 'c' };\n"
+				+ "last;");
+		object = (Scriptable) evaluate("points[0]");
+	}
+
+	@Benchmark
+	public Object get() {
+		return get.exec(cx, scope);
+	}
+
+	@Benchmark
+	public Object set() {
+		return set.exec(cx, scope);
+	}
+
+	@Benchmark
+	public Object polymorphicGet() {
+		return polymorphicGet.exec(cx, scope);
+	}
+
+	@Benchmark
+	public Object create() {
+		return create.exec(cx, scope);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public Object javaGetProperty() {
+		return ScriptableObject.getProperty(object, "y");
+	}
+}
@@ -0,0 +1,72 @@
+package org.mozilla.javascript.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mozilla.javascript.Script;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Matching with NativeRegExp: test, exec with groups, global replace and
+ * split over lines of a log, and compiling a new expression each time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RegExpBenchmark extends ScriptBenchmark {
+
+	private Script test;
+	private Script exec;
+	private Script replace;
+	private Script split;
+	private Script construct;
+
+	@Override
+	protected void setUp() {
+		evaluate("var lines = [];\n"
+				+ "for (var i = 0; i < 100; i++)\n"
+				+ "  lines.push('2024-03-' + (10 + i % 20) + ' 12:' + (10 + i % 50) + ' INFO user' + i"
+				+ " + '@example.com logged in from 10.0.' + (i % 255) + '.' + i);\n"
+				+ "var log = lines.join('\\n');\n");
+		test = compile("test", "var n = 0, re = /^[\\w.]+@[\\w.]+\\.[a-z]{2,}$/;\n"
+				+ "for (var i = 0; i < lines.length; i++) if (re.test('user' + i + '@example.com')) n++;\n"
+				+ "n;");
+		exec = compile("exec", "var re = /(\\d{4})-(\\d\\d)-(\\d\\d) (\\d\\d):(\\d\\d) (\\w+) (\\S+)/, m, n = 0;\n"
+				+ "for (var i = 0; i < lines.length; i++) { m = re.exec(lines[i]); n += m[7].length; }\n"
+				+ "n;");
+		replace = compile("replace", "log.replace(/\\d+\\.\\d+\\.\\d+\\.\\d+/g, 'x.x.x.x').length;");
+		split = compile("split", "log.split(/\\s+/).length;");
+		construct = compile("construct", "var n = 0;\n"
+				+ "for (var i = 0; i < 100; i++) if (new RegExp('user' + i + '@').test(lines[i])) n++;\n"
+				+ "n;");
+	}
+
+	@Benchmark
+	public Object test() {
+		return test.exec(cx, scope);
+	}
+
+	@Benchmark
+	public Object exec() {
+		return exec.exec(cx, scope);
+	}
+
+	@Benchmark
+	public Object replace() {
+		return replace.exec(cx, scope);
+	}
+
+	@Benchmark
+	public Object split() {
+		return split.exec(cx, scope);
+	}
+
+	@Benchmark
+	public Object construct() {
+		return construct.exec(cx, scope);
+	}
+}
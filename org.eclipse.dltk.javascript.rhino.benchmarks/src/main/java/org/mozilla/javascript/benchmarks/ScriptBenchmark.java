@@ -0,0 +1,57 @@
+package org.mozilla.javascript.benchmarks;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Base of the benchmarks that run scripts. Every benchmark thread enters its
+ * own {@link Context} for the whole trial, with the optimization level of the
+ * {@code optimizationLevel} parameter, so each script benchmark is measured
+ * both in the interpreter (-1) and compiled to JVM classes (9).
+ */
+@State(Scope.Thread)
+public abstract class ScriptBenchmark {
+
+	@Param({ "-1", "9" })
+	public int optimizationLevel;
+
+	protected Context cx;
+	protected Scriptable scope;
+
+	@Setup(Level.Trial)
+	public void enterContext() throws Exception {
+		cx = Context.enter();
+		cx.setOptimizationLevel(optimizationLevel);
+		cx.setLanguageVersion(Context.VERSION_1_8);
+		scope = cx.initStandardObjects();
+		setUp();
+	}
+
+	@TearDown(Level.Trial)
+	public void exitContext() {
+		Context.exit();
+		cx = null;
+		scope = null;
+	}
+
+	/**
+	 * Prepares the state of the benchmark, called with the Context entered.
+	 */
+	protected void setUp() throws Exception {
+	}
+
+	protected Script compile(String name, String source) {
+		return cx.compileString(source, name, 1, null);
+	}
+
+	protected Object evaluate(String source) {
+		return cx.evaluateString(scope, source, "setup", 1, null);
+	}
+}
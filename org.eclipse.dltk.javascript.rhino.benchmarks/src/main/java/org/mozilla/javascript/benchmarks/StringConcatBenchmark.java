@@ -0,0 +1,71 @@
+package org.mozilla.javascript.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mozilla.javascript.Script;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Building strings of 10000 parts by appending strings and numbers,
+ * prepending, joining an array, and appending while reading the result.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StringConcatBenchmark extends ScriptBenchmark {
+
+	private Script appendString;
+	private Script appendNumber;
+	private Script prepend;
+	private Script join;
+	private Script appendAndRead;
+
+	@Override
+	protected void setUp() {
+		appendString = compile("appendString", "var s = '';\n"
+				+ "for (var i = 0; i < 10000; i++) s += 'part';\n"
+				+ "s.length;");
+		appendNumber = compile("appendNumber", "var s = '';\n"
+				+ "for (var i = 0; i < 10000; i++) s += i;\n"
+				+ "s.length;");
+		prepend = compile("prepend", "var s = '';\n"
+				+ "for (var i = 0; i < 10000; i++) s = i + ',' + s;\n"
+				+ "s.length;");
+		join = compile("join", "var a = [];\n"
+				+ "for (var i = 0; i < 10000; i++) a.push('part' + i);\n"
+				+ "a.join('').length;");
+		appendAndRead = compile("appendAndRead", "var s = '', n = 0;\n"
+				+ "for (var i = 0; i < 10000; i++) { s += 'part' + i; if (i % 100 == 0) n += s.indexOf('9'); }\n"
+				+ "n;");
+	}
+
+	@Benchmark
+	public Object appendString() {
+		return appendString.exec(cx, scope);
+	}
+
+	@Benchmark
+	public Object appendNumber() {
+		return appendNumber.exec(cx, scope);
+	}
+
+	@Benchmark
+	public Object prepend() {
+		return prepend.exec(cx, scope);
+	}
+
+	@Benchmark
+	public Object join() {
+		return join.exec(cx, scope);
+	}
+
+	@Benchmark
+	public Object appendAndRead() {
+		return appendAndRead.exec(cx, scope);
+	}
+}
@@ -0,0 +1,60 @@
+package org.mozilla.javascript.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.mozilla.javascript.ScriptRuntime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * {@link ScriptRuntime#toNumber(String)} of strings as they come from
+ * database columns and form inputs: integers, plain decimals, and other
+ * forms such as padded, exponent, hexadecimal and invalid strings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ToNumberBenchmark {
+
+	private static final int COUNT = 1024;
+
+	@Param({ "integer", "decimal", "other" })
+	public String kind;
+
+	private String[] values;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(20);
+		values = new String[COUNT];
+		for (int i = 0; i < COUNT; i++) {
+			if ("integer".equals(kind)) {
+				values[i] = Integer.toString(random.nextInt(2000000) - 1000000);
+			} else if ("decimal".equals(kind)) {
+				values[i] = (random.nextInt(200000) - 100000) / 100.0 + "";
+			} else {
+				String[] other = { " 42 ", "1e5", "0x1F", "Infinity", ".5",
+						"12abc", "", "-0", "3.14159265358979" };
+				values[i] = other[random.nextInt(other.length)];
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public double toNumber() {
+		double sum = 0;
+		for (String value : values) {
+			sum += ScriptRuntime.toNumber(value);
+		}
+		return sum;
+	}
+}
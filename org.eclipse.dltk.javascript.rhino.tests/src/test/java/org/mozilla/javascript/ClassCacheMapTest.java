@@ -0,0 +1,157 @@
+package org.mozilla.javascript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+/**
+ * Checks the bound, the collection of entries and the counters of the class
+ * caches. In this package as ClassCacheMap is not public.
+ */
+public class ClassCacheMapTest {
+
+	public static class Loaded {
+	}
+
+	private static class ThrowawayLoader extends ClassLoader {
+		Class<?> load(Class<?> c) throws Exception {
+			String resource = c.getName().replace('.', '/') + ".class";
+			InputStream in = c.getClassLoader().getResourceAsStream(resource);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try {
+				byte[] buffer = new byte[4096];
+				int n;
+				while ((n = in.read(buffer)) > 0) {
+					bytes.write(buffer, 0, n);
+				}
+			} finally {
+				in.close();
+			}
+			byte[] b = bytes.toByteArray();
+			return defineClass(c.getName(), b, 0, b.length);
+		}
+	}
+
+	private static void clearSoftReferences() {
+		try {
+			// the collector clears soft references before it gives up
+			long[] tooLarge = new long[Integer.MAX_VALUE - 8];
+			throw new AssertionError(tooLarge.length);
+		} catch (OutOfMemoryError e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void evictsEntriesPutFirst() {
+		ClassCacheMap<Object> map = new ClassCacheMap<Object>(3);
+		map.put(String.class, "String");
+		map.put(Integer.class, "Integer");
+		map.put(Long.class, "Long");
+		map.put(Double.class, "Double");
+		assertEquals(3, map.size());
+		assertFalse(map.containsKey(String.class));
+
+		// replaced values don't count for the order
+		for (int i = 0; i < 20; i++) {
+			map.put(Integer.class, "Integer" + i);
+		}
+		map.remove(Double.class);
+		map.put(Short.class, "Short");
+		map.put(Byte.class, "Byte");
+		assertEquals(3, map.size());
+		assertEquals(new HashSet<Class<?>>(Arrays.asList(Integer.class,
+				Short.class, Byte.class)), map.keySet());
+		assertEquals("Integer19", map.get(Integer.class));
+	}
+
+	@Test
+	public void unboundedMapKeepsEntries() {
+		ClassCacheMap<Object> map = new ClassCacheMap<Object>(0);
+		Class<?>[] classes = { String.class, Integer.class, Long.class,
+				Double.class, Short.class, Byte.class };
+		for (Class<?> c : classes) {
+			map.put(c, c.getName());
+		}
+		assertEquals(classes.length, map.size());
+	}
+
+	@Test
+	public void countsLookupsOfClasses() {
+		ClassCacheMap<Object> map = new ClassCacheMap<Object>(0);
+		assertNull(map.get("java.lang.String"));
+		assertNull(map.get(null));
+		assertEquals(0, map.getMissCount());
+		assertNull(map.get(String.class));
+		assertEquals(1, map.getMissCount());
+		map.put(String.class, "value");
+		assertEquals("value", map.get(String.class));
+		assertTrue(map.containsKey(String.class));
+		assertEquals(1, map.getHitCount());
+		assertEquals(1, map.getMissCount());
+	}
+
+	@Test
+	public void collectedValuesAreDropped() {
+		ClassCacheMap<Object> map = new ClassCacheMap<Object>(0);
+		map.put(String.class, new Object());
+		clearSoftReferences();
+		assertFalse(map.containsKey(String.class));
+		assertNull(map.get(String.class));
+		assertEquals(0, map.getHitCount());
+		assertEquals(0, map.getMissCount());
+		assertEquals(0, map.size());
+	}
+
+	@Test
+	public void collectedClassesAreDropped() throws Exception {
+		ClassCacheMap<Object> map = new ClassCacheMap<Object>(0);
+		map.put(new ThrowawayLoader().load(Loaded.class), "value");
+		map.put(String.class, "value");
+		for (int i = 0; i < 100 && map.size() != 1; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertEquals(1, map.size());
+		assertTrue(map.containsKey(String.class));
+	}
+
+	@Test
+	public void setMaximumSizeClearsCaches() {
+		Context cx = Context.enter();
+		try {
+			Scriptable scope = cx.initStandardObjects();
+			ClassCache cache = ClassCache.get(scope);
+			String source = "[java.lang.Integer.toString(1),"
+					+ " new java.util.ArrayList().size(),"
+					+ " new java.util.HashMap().size(),"
+					+ " java.lang.Math.abs(-1)].join()";
+			cx.evaluateString(scope, source, "test", 1, null);
+			assertTrue(cache.getClassCacheMap().size() >= 4);
+			assertTrue(cache.getMissCount() >= 4);
+
+			cache.setMaximumSize(2);
+			assertEquals(2, cache.getMaximumSize());
+			assertTrue(cache.getClassCacheMap().isEmpty());
+			assertEquals(0, cache.getHitCount());
+			assertEquals(0, cache.getMissCount());
+			assertEquals("1,0,0,1", cx.evaluateString(scope, source, "test",
+					1, null));
+			assertEquals(2, cache.getClassCacheMap().size());
+
+			// the same limit keeps the entries
+			cache.setMaximumSize(2);
+			assertEquals(2, cache.getClassCacheMap().size());
+		} finally {
+			Context.exit();
+		}
+	}
+}
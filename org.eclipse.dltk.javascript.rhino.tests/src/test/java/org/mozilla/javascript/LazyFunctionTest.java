@@ -0,0 +1,227 @@
+package org.mozilla.javascript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Checks that functions compiled on their first call behave like those
+ * compiled with their script. In this package as the data of interpreted
+ * functions is not public.
+ */
+public class LazyFunctionTest {
+
+	private static class LazyFactory extends ContextFactory {
+		@Override
+		protected boolean hasFeature(Context cx, int featureIndex) {
+			if (featureIndex == Context.FEATURE_LAZY_FUNCTIONS) {
+				return true;
+			}
+			return super.hasFeature(cx, featureIndex);
+		}
+	}
+
+	private static class RecordingReporter implements ErrorReporter {
+		final List<String> reports = new ArrayList<String>();
+
+		public void warning(String message, String sourceName, int line,
+				String lineSource, int lineOffset) {
+			reports.add("warning " + sourceName + ":" + line + " " + message);
+		}
+
+		public void error(String message, String sourceName, int line,
+				String lineSource, int lineOffset) {
+			reports.add("error " + sourceName + ":" + line + " " + message);
+		}
+
+		public EvaluatorException runtimeError(String message,
+				String sourceName, int line, String lineSource, int lineOffset) {
+			return new EvaluatorException(message, sourceName, line,
+					lineSource, lineOffset);
+		}
+	}
+
+	private static final String[] SOURCES = {
+			"function add(a, b) { return a + b; } add(40, 2)",
+			"function counter() { var n = 0;"
+					+ " return function() { return ++n; }; }\n"
+					+ "var c = counter(), d = counter(); c(); c(); d();"
+					+ " [c(), d()].join()",
+			"function fib(n) { return n < 2 ? n : fib(n - 1) + fib(n - 2); }"
+					+ " fib(15)",
+			"function args() { return arguments.length + ':'"
+					+ " + Array.prototype.join.call(arguments); } args(1, 'x', null)",
+			"function outer(x) { function inner(y) { return x * y; }"
+					+ " var f = function(z) { return inner(z) + 1; };"
+					+ " return f(x); } [outer(2), outer(3)].join()",
+			"function words(s) { return s.match(/\\w+/g).length; }"
+					+ " words('a bb ccc') + words('d')",
+			"function never() { return missing(); } typeof never",
+			"function shown(a, b) {\n  // comment\n  return a + b;\n}"
+					+ " shown.toString() + shown(1, 2)",
+			"var o = { get x() { return 1; }, m: function() { return this.x; } };"
+					+ " o.m()",
+			"function thrower() { throw new Error('boom'); }"
+					+ " try { thrower(); } catch (e) { e.message + ' '"
+					+ " + (e.lineNumber || '') }",
+			"function f() { return typeof g; function g() {} } f()",
+			"function lines() { try { undefined.x; } catch (e) {"
+					+ " return e.lineNumber; } }\n\n lines()" };
+
+	// a duplicate parameter is reported as a warning
+	private static final String TWICE = "function outer() {\n"
+			+ "  function twice(a, a) { return a; }\n"
+			+ "  return twice(1, 2);\n" + "}";
+
+	private static Object evaluate(ContextFactory factory, String source) {
+		Context cx = factory.enterContext();
+		try {
+			cx.setOptimizationLevel(-1);
+			Scriptable scope = cx.initStandardObjects();
+			return Context.toString(cx.evaluateString(scope, source, "test",
+					1, null));
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	public void behavesLikeEagerFunctions() {
+		for (String source : SOURCES) {
+			assertEquals(source, evaluate(new ContextFactory(), source),
+					evaluate(new LazyFactory(), source));
+		}
+	}
+
+	@Test
+	public void compiledOnFirstCall() {
+		Context cx = new LazyFactory().enterContext();
+		try {
+			cx.setOptimizationLevel(-1);
+			Scriptable scope = cx.initStandardObjects();
+			cx.evaluateString(scope, "function f() { return 1; }"
+					+ " function g() { return 2; }", "test", 1, null);
+			InterpretedFunction f = (InterpretedFunction) scope.get("f", scope);
+			InterpretedFunction g = (InterpretedFunction) scope.get("g", scope);
+			assertNotNull(f.idata.itsLazySource);
+			assertEquals("1", Context.toString(f.call(cx, scope, scope,
+					Context.emptyArgs)));
+			assertNull(f.idata.itsLazySource);
+			assertNotNull(g.idata.itsLazySource);
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	public void keepsStrictMode() {
+		Context cx = new LazyFactory().enterContext();
+		try {
+			cx.setOptimizationLevel(-1);
+			Scriptable scope = cx.initStandardObjects();
+			cx.evaluateString(scope, "'use strict';\n"
+					+ "function outer() { return function inner() {"
+					+ " return 1; }; }\n"
+					+ "var inner = outer(); inner();", "strict", 1, null);
+			cx.evaluateString(scope, "function loose() { return 1; }"
+					+ " loose();", "loose", 1, null);
+			for (String name : new String[] { "outer", "inner", "loose" }) {
+				InterpreterData data = ((InterpretedFunction) scope.get(name,
+						scope)).idata;
+				assertNull(name, data.itsLazySource);
+				assertEquals(name, !"loose".equals(name), data.isStrict);
+			}
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	public void warningsAreNotRepeated() {
+		Context cx = new LazyFactory().enterContext();
+		try {
+			cx.setOptimizationLevel(-1);
+			Scriptable scope = cx.initStandardObjects();
+			RecordingReporter compileReporter = new RecordingReporter();
+			cx.setErrorReporter(compileReporter);
+			cx.evaluateString(scope, TWICE, "test", 1, null);
+			assertEquals(1, compileReporter.reports.size());
+			String warning = compileReporter.reports.get(0);
+			assertTrue(warning, warning.startsWith("warning test:2 "));
+
+			RecordingReporter callReporter = new RecordingReporter();
+			cx.setErrorReporter(callReporter);
+			assertEquals("2", Context.toString(cx.evaluateString(scope,
+					"outer()", "call", 1, null)));
+			assertEquals(0, callReporter.reports.size());
+			assertEquals(1, compileReporter.reports.size());
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	public void errorsGoToCallingContext() {
+		Context cx = new LazyFactory().enterContext();
+		Script script;
+		try {
+			cx.setOptimizationLevel(-1);
+			script = cx.compileString(TWICE, "test", 1, null);
+		} finally {
+			Context.exit();
+		}
+		cx = new LazyFactory() {
+			@Override
+			protected boolean hasFeature(Context c, int featureIndex) {
+				if (featureIndex == Context.FEATURE_WARNING_AS_ERROR) {
+					return true;
+				}
+				return super.hasFeature(c, featureIndex);
+			}
+		}.enterContext();
+		try {
+			cx.setOptimizationLevel(-1);
+			Scriptable scope = cx.initStandardObjects();
+			script.exec(cx, scope);
+			RecordingReporter callReporter = new RecordingReporter();
+			cx.setErrorReporter(callReporter);
+			try {
+				cx.evaluateString(scope, "outer()", "call", 1, null);
+				fail("compiled with an error");
+			} catch (EvaluatorException e) {
+				// expected
+			}
+			assertEquals(1, callReporter.reports.size());
+			String error = callReporter.reports.get(0);
+			assertTrue(error, error.startsWith("error test:2 "));
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	public void functionsWithoutSourceAreEager() {
+		for (int lazy = 0; lazy < 2; lazy++) {
+			Context cx = (lazy == 0 ? new ContextFactory() : new LazyFactory())
+					.enterContext();
+			try {
+				cx.setOptimizationLevel(-1);
+				Scriptable scope = cx.initStandardObjects();
+				Function f = cx.compileFunction(scope,
+						"function f(a) { return a * 2; }", "test", 1, null);
+				assertNull(((InterpretedFunction) f).idata.itsLazySource);
+				assertEquals("4", Context.toString(f.call(cx, scope, scope,
+						new Object[] { Integer.valueOf(2) })));
+			} finally {
+				Context.exit();
+			}
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package org.mozilla.javascript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * Checks that members called through their bound method handle behave like
+ * the reflective calls before. In this package as MemberBox.invoke is not
+ * public.
+ */
+public class MemberBoxTest {
+
+	// more than the reflective calls before the handle is bound
+	private static final int CALLS = 40;
+
+	public static class Target {
+		private final String prefix;
+
+		public Target(String prefix, int count) {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < count; i++) {
+				sb.append(prefix);
+			}
+			this.prefix = sb.toString();
+		}
+
+		public String concat(String s, long n) {
+			return prefix + s + n;
+		}
+
+		public static double half(double d) {
+			return d / 2;
+		}
+
+		public static Object cast(Object o) {
+			return (String) o;
+		}
+	}
+
+	private static MemberBox method(String name, Class<?>... types)
+			throws Exception {
+		return new MemberBox(Target.class.getMethod(name, types));
+	}
+
+	private static Object handle(MemberBox member) throws Exception {
+		Field field = MemberBox.class.getDeclaredField("handle");
+		field.setAccessible(true);
+		return field.get(member);
+	}
+
+	private static Throwable failure(MemberBox member, Object target,
+			Object... args) {
+		try {
+			if (member.isCtor()) {
+				member.newInstance(args);
+			} else {
+				member.invoke(target, args);
+			}
+		} catch (WrappedException e) {
+			return e.getWrappedException();
+		}
+		throw new AssertionError("call succeeded");
+	}
+
+	private static void assertMismatch(MemberBox member, Object target,
+			Object... args) {
+		assertEquals(IllegalArgumentException.class, failure(member, target,
+				args).getClass());
+	}
+
+	@Test
+	public void bindsAfterThreshold() throws Exception {
+		MemberBox half = method("half", Double.TYPE);
+		for (int i = 0; i < 15; i++) {
+			half.invoke(null, new Object[] { Double.valueOf(i) });
+		}
+		assertNull(handle(half));
+		half.invoke(null, new Object[] { Double.valueOf(1) });
+		assertNotNull(handle(half));
+		assertEquals(Double.valueOf(4), half.invoke(null,
+				new Object[] { Integer.valueOf(8) }));
+	}
+
+	@Test
+	public void methodArguments() throws Exception {
+		MemberBox concat = method("concat", String.class, Long.TYPE);
+		Target target = new Target("a", 2);
+		for (int i = 0; i < CALLS; i++) {
+			assertEquals("aab" + i, concat.invoke(target, new Object[] { "b",
+					Integer.valueOf(i) }));
+			assertEquals("aanull7", concat.invoke(target, new Object[] { null,
+					Character.valueOf('\u0007') }));
+			// receiver of another class
+			assertMismatch(concat, "target", "b", Long.valueOf(i));
+			// arguments of the wrong type
+			assertMismatch(concat, target, Integer.valueOf(i), Long.valueOf(i));
+			assertMismatch(concat, target, "b", Double.valueOf(i));
+			assertMismatch(concat, target, "b", Boolean.TRUE);
+			assertMismatch(concat, target, "b", null);
+			assertMismatch(concat, target, "b");
+			assertMismatch(concat, target, "b", Long.valueOf(i), "c");
+			// a receiver is needed before anything else
+			assertEquals(NullPointerException.class, failure(concat, null,
+					Integer.valueOf(i), Long.valueOf(i)).getClass());
+		}
+		assertNotNull(handle(concat));
+	}
+
+	@Test
+	public void memberExceptionsAreKept() throws Exception {
+		MemberBox cast = method("cast", Object.class);
+		for (int i = 0; i < CALLS; i++) {
+			assertEquals("s", cast.invoke(null, new Object[] { "s" }));
+			// thrown by the member, not a mismatch of the call
+			assertEquals(ClassCastException.class, failure(cast, null,
+					Integer.valueOf(i)).getClass());
+		}
+		assertNotNull(handle(cast));
+	}
+
+	@Test
+	public void constructorArguments() throws Exception {
+		MemberBox ctor = new MemberBox(Target.class.getConstructor(
+				String.class, Integer.TYPE));
+		for (int i = 0; i < CALLS; i++) {
+			Target target = (Target) ctor.newInstance(new Object[] { "x",
+					Short.valueOf((short) 3) });
+			assertEquals("xxx-1", target.concat("-", 1));
+			assertMismatch(ctor, null, "x", Long.valueOf(3));
+			assertMismatch(ctor, null, "x", null);
+			assertMismatch(ctor, null, Integer.valueOf(1), Integer.valueOf(1));
+			assertMismatch(ctor, null, "x");
+		}
+		assertNotNull(handle(ctor));
+	}
+
+	@Test
+	public void concurrentCallsBindOnce() throws Exception {
+		final MemberBox half = method("half", Double.TYPE);
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					// all together exactly reach the threshold
+					for (int i = 0; i < 4; i++) {
+						half.invoke(null, new Object[] { Double.valueOf(i) });
+					}
+				}
+			};
+			threads[t].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Object bound = handle(half);
+		assertNotNull(bound);
+		half.invoke(null, new Object[] { Double.valueOf(1) });
+		assertSame(bound, handle(half));
+	}
+}
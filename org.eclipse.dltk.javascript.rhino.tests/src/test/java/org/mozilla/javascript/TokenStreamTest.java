@@ -0,0 +1,250 @@
+package org.mozilla.javascript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.mozilla.javascript.ast.AstRoot;
+
+/**
+ * Checks that the tokens scanned straight from the characters of a string
+ * source are those of the same source read through a reader, which takes the
+ * character by character paths. In this package as TokenStream is not
+ * public.
+ */
+public class TokenStreamTest {
+
+	// reads one character at a time
+	private static class TrickleReader extends Reader {
+		private final String text;
+		private int position;
+
+		TrickleReader(String text) {
+			this.text = text;
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) {
+			if (position == text.length()) {
+				return -1;
+			}
+			buffer[offset] = text.charAt(position++);
+			return 1;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static final String[] SOURCES = {
+			"var name = 'value', other = \"text\";",
+			"if (a in b) { return this instanceof Foo; } else while (x) x--;",
+			"function f($a, _b, c1) { return $a + _b + c1; }",
+			"var \u00f1ame = '\u00e9t\u00e9', \u03c0 = 3.14;",
+			"\\u0061bc + a\\u0062c + i\\u0066",
+			"'tab\\there' + \"quote\\\"s\" + 'nl\\n' + '\\x41\\u0042\\101'",
+			"'line \\\ncontinued' + 'cr \\\r\ncontinued'",
+			"'zero\u200cwidth' + 'bom\ufeffin' + 'ls\\\u2028x'",
+			"a\r\nb\rc\nd\u2028e\u2029f",
+			"// line comment\nx /* block\ncomment */ y /** doc */ z",
+			"\ufeffstart",
+			"0x1F + 017 + 1e3 + .5 + 5. + 1.5e-2",
+			"a.b.c = a.b.c || {}; x === y !== z >>>= 1",
+			"last",
+			"'last'",
+			"longIdentifierNameThatIsRatherLong = 'a long string literal"
+					+ " without escapes'" };
+
+	// sources with errors, which the token stream reports to its parser
+	private static final String[] ERRONEOUS = { "a = 'unterminated",
+			"b = 'line\nend'", "c = 09 + 08.5", "d = 1e + 2", "f = a # b", "g = 1; /* open comment", "h = 'ok';\ni = 'no",
+			"function j() {\n  return 'x\n}" };
+
+	private static CompilerEnvirons environs() {
+		CompilerEnvirons compilerEnv = new CompilerEnvirons();
+		compilerEnv.setErrorReporter(new ErrorReporter() {
+			public void warning(String message, String sourceName, int line,
+					String lineSource, int lineOffset) {
+			}
+
+			public void error(String message, String sourceName, int line,
+					String lineSource, int lineOffset) {
+			}
+
+			public EvaluatorException runtimeError(String message,
+					String sourceName, int line, String lineSource,
+					int lineOffset) {
+				return new EvaluatorException(message);
+			}
+		});
+		return compilerEnv;
+	}
+
+	private static List<String> scan(TokenStream ts) throws IOException {
+		List<String> tokens = new ArrayList<String>();
+		for (;;) {
+			int token = ts.getToken();
+			String value = "";
+			if (token == Token.NAME || token == Token.STRING) {
+				value = ts.getString();
+			} else if (token == Token.NUMBER) {
+				value = String.valueOf(ts.getNumber());
+			}
+			tokens.add(Token.typeToName(token) + " " + ts.getTokenBeg() + "-"
+					+ ts.getTokenEnd() + " line " + ts.getLineno() + " "
+					+ value);
+			if (token == Token.EOF || token == Token.ERROR) {
+				return tokens;
+			}
+		}
+	}
+
+	private static List<String> scanString(String source) throws IOException {
+		return scan(new TokenStream(new Parser(environs()), null, source, 1));
+	}
+
+	@Test
+	public void stringScansLikeReader() throws IOException {
+		for (String source : SOURCES) {
+			assertEquals(source, scan(new TokenStream(new Parser(environs()),
+					new TrickleReader(source), null, 1)), scanString(source));
+		}
+	}
+
+	private static List<String> parse(CompilerEnvirons compilerEnv,
+			Object source) throws IOException {
+		final List<String> reports = new ArrayList<String>();
+		ErrorReporter reporter = new ErrorReporter() {
+			public void warning(String message, String sourceName, int line,
+					String lineSource, int lineOffset) {
+				reports.add("warning " + line + ":" + lineOffset + " "
+						+ message + " in " + lineSource);
+			}
+
+			public void error(String message, String sourceName, int line,
+					String lineSource, int lineOffset) {
+				reports.add("error " + line + ":" + lineOffset + " " + message
+						+ " in " + lineSource);
+			}
+
+			public EvaluatorException runtimeError(String message,
+					String sourceName, int line, String lineSource,
+					int lineOffset) {
+				return new EvaluatorException(message);
+			}
+		};
+		Parser parser = new Parser(compilerEnv, reporter);
+		try {
+			AstRoot root = source instanceof String ? parser.parse(
+					(String) source, "test", 1) : parser.parse(
+					(Reader) source, "test", 1);
+			reports.add(root.toSource());
+		} catch (EvaluatorException e) {
+			reports.add(e.getMessage());
+		}
+		return reports;
+	}
+
+	@Test
+	public void parserReportsLikeReader() throws IOException {
+		for (String source : ERRONEOUS) {
+			List<String> reports = parse(new CompilerEnvirons(), source);
+			assertEquals(source, parse(new CompilerEnvirons(),
+					new TrickleReader(source)), reports);
+			assertTrue(source, reports.get(0).startsWith("error ")
+					|| reports.get(0).startsWith("warning "));
+		}
+	}
+
+	@Test
+	public void ideParseLikeReader() throws IOException {
+		// ide-mode scans the characters the parser keeps for its tree, it
+		// reports more warnings so only the trees are compared
+		for (String source : SOURCES) {
+			List<String> expected = parse(new CompilerEnvirons(),
+					new TrickleReader(source));
+			if (expected.size() == 1) {
+				List<String> ide = parse(CompilerEnvirons.ideEnvirons(), source);
+				assertEquals(source, expected.get(0), ide.get(ide.size() - 1));
+			}
+		}
+	}
+
+	@Test
+	public void sharedCharactersScanLikeString() throws IOException {
+		for (String source : SOURCES) {
+			assertEquals(source, scanString(source), scan(new TokenStream(
+					new Parser(environs()), source, source.toCharArray(), 1)));
+		}
+	}
+
+	@Test
+	public void regionScansLikeWholeSource() throws IOException {
+		String source = "var a = 1;\nfunction f(x) {\n  return 'f' + x;\n}\n"
+				+ "f(a);";
+		int start = source.indexOf("function");
+		int end = source.indexOf("f(a)");
+		List<String> whole = scanString(source);
+		List<String> region = scan(new TokenStream(new Parser(environs()),
+				source, source.toCharArray(), start, end, 2));
+		// the tokens of the whole source from the function to the end of
+		// the region, which ends with EOF
+		int first = 0;
+		while (!whole.get(first).startsWith("FUNCTION " + start + "-")) {
+			first++;
+		}
+		List<String> expected = new ArrayList<String>(whole.subList(first,
+				first + region.size() - 1));
+		assertEquals(expected, region.subList(0, region.size() - 1));
+		assertEquals("EOF", region.get(region.size() - 1).split(" ")[0]);
+	}
+
+	@Test
+	public void tokenValues() throws IOException {
+		assertEquals(Arrays.asList("NAME 0-3 line 1 abc",
+				"ADD 4-5 line 1 ", "NAME 6-14 line 1 abc",
+				"ADD 15-16 line 1 ", "IF 17-19 line 1 ", "EOL 19-20 line 1 ",
+				"EOF 19-20 line 1 "), scanString("abc + a\\u0062c + if\n"));
+		assertEquals(Arrays.asList("STRING 0-6 line 1 x\ny",
+				"EOL 6-7 line 1 ", "STRING 7-20 line 2 AB\u00e9",
+				"EOF 19-20 line 2 "),
+				scanString("'x\\ny'\n'\\x41\\u0042\u00e9'"));
+		assertEquals(Arrays.asList("IF 0-2 line 1 ", "IN 3-5 line 1 ",
+				"INSTANCEOF 6-16 line 1 ", "NAME 17-21 line 1 iffy",
+				"EOL 21-22 line 1 ", "EOF 21-22 line 1 "),
+				scanString("if in instanceof iffy\n"));
+		List<String> lines = scanString("a\r\nb\rc\nd;");
+		assertEquals("NAME 7-8 line 4 d", lines.get(lines.size() - 3));
+	}
+
+	@Test
+	public void repeatedTextIsShared() throws IOException {
+		String source = "customer.name = 'name' + customer.name + customer;"
+				+ " cust.Aa = 'BB' + Aa + cust";
+		TokenStream ts = new TokenStream(new Parser(environs()), null,
+				source, 1);
+		List<String> names = new ArrayList<String>();
+		for (int token; (token = ts.getToken()) != Token.EOF;) {
+			if (token == Token.NAME || token == Token.STRING) {
+				names.add(ts.getString());
+			}
+		}
+		// "Aa" and "BB" have the same hash code and length
+		assertEquals(Arrays.asList("customer", "name", "name", "customer",
+				"name", "customer", "cust", "Aa", "BB", "Aa", "cust"), names);
+		assertSame(names.get(0), names.get(3));
+		assertSame(names.get(0), names.get(5));
+		assertSame(names.get(1), names.get(4));
+		// a string literal and a name with the same text are one string
+		assertSame(names.get(1), names.get(2));
+		assertSame(names.get(7), names.get(9));
+	}
+}
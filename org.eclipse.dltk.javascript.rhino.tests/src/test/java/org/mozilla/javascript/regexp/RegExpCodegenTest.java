@@ -0,0 +1,175 @@
+package org.mozilla.javascript.regexp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Checks that regular expressions run by the generated matchers give the
+ * results of the interpreter. In this package as RECompiled is not public.
+ */
+public class RegExpCodegenTest {
+
+	private static class CompilingFactory extends ContextFactory {
+		@Override
+		protected boolean hasFeature(Context cx, int featureIndex) {
+			if (featureIndex == Context.FEATURE_COMPILE_REGEXP) {
+				return true;
+			}
+			return super.hasFeature(cx, featureIndex);
+		}
+	}
+
+	// sources of expressions the generated matchers support
+	private static final String[] COMPILED = { "a+b", "^\\d{3}-\\d{4}$",
+			"[a-z]+@[a-z]+\\.(com|org)", "(\\w+)\\s(\\w+)", "(a)|b|", "x*?y",
+			"a{2,3}?", "a{2,}", "\\bfoo\\b", "\\Bo+", "(?=ab)a", "a(?!b)",
+			"(a)\\1", "(\\w)\\w*?\\1", "\\2(a)(b)", "[^abc]+", "\\u00e9+",
+			"abc", "\\W\\S\\D", ".+", "^$", "^", "$", "(?:ab)+", "(?:a|b)c",
+			"[\\s\\S]*?x", "\\x41{2}", "[\\u00c0-\\u00ff]", "[.-]", "\\u0130",
+			"(?:\\d\\w)*?z", "(a(b(c)))" };
+
+	// sources of expressions that are still interpreted
+	private static final String[] INTERPRETED = { "(a)*", "(?:a|bc)+",
+			"(?=(a))a", "a{0}", "(?:a*)+", "(?:(a)b)?" };
+
+	private static final String[] FLAGS = { "", "g", "gi", "m", "gim" };
+
+	private static final String[] INPUTS = { "aab xaaab ab", "",
+			"555-1234\n555-12345\n\n", "joe@ex.com, ANN@WEB.ORG ann@web.org",
+			"hello world foo\r\nbar baz", "abab aa bb bcc aabbcc",
+			"\u00c9\u00e9E e \u00e9\u00e9\u0131i\u0130I",
+			"foo food sofoo FOO", "xyxyy yx z 1a2bz 3cz", "AAaAaa AAA", ".-.",
+			"abcabc\nabc" };
+
+	// every match of exec, and the results of replace and split
+	private static final String DESCRIBE = "function describe(source, flags,"
+			+ " s) {\n"
+			+ "  var re = new RegExp(source, flags), out = [], m;\n"
+			+ "  for (var n = 0; n < 50 && (m = re.exec(s)); n++) {\n"
+			+ "    out.push(m.index + ':' + m.map(String).join('|') + '@'"
+			+ " + re.lastIndex);\n"
+			+ "    if (!re.global) break;\n"
+			+ "    if (m[0].length == 0) re.lastIndex++;\n"
+			+ "  }\n"
+			+ "  return out.join(' ') + ' / ' + re.test(s) + ' ' + re.lastIndex"
+			+ " + ' / ' + s.replace(re, '<$&$1>') + ' / '"
+			+ " + s.split(re).join('|') + ' / ' + s.search(re);\n"
+			+ "}\n"
+			+ "var results = [];\n"
+			+ "for (var i = 0; i < inputs.length; i++) {\n"
+			+ "  results.push(describe(source, flags, inputs[i]));\n"
+			+ "}\n"
+			+ "results.join('\\n')";
+
+	private static String describe(ContextFactory factory, String source,
+			String flags) {
+		Context cx = factory.enterContext();
+		try {
+			Scriptable scope = cx.initStandardObjects();
+			scope.put("source", scope, source);
+			scope.put("flags", scope, flags);
+			Object[] inputs = new Object[INPUTS.length];
+			System.arraycopy(INPUTS, 0, inputs, 0, inputs.length);
+			scope.put("inputs", scope, cx.newArray(scope, inputs));
+			return Context.toString(cx.evaluateString(scope, DESCRIBE, "test",
+					1, null));
+		} finally {
+			Context.exit();
+		}
+	}
+
+	private static RegExpMatcher matcher(String source, String flags) {
+		Context cx = Context.enter();
+		try {
+			return RegExpCodegen.getMatcher((RECompiled) NativeRegExp
+					.compileRE(cx, source, flags, false));
+		} finally {
+			Context.exit();
+		}
+	}
+
+	private static void assertSameAsInterpreter(String[] sources) {
+		ContextFactory interpreting = new ContextFactory();
+		ContextFactory compiling = new CompilingFactory();
+		for (String source : sources) {
+			for (String flags : FLAGS) {
+				assertEquals("/" + source + "/" + flags, describe(interpreting,
+						source, flags), describe(compiling, source, flags));
+			}
+		}
+	}
+
+	@Test
+	public void compilesSupportedExpressions() {
+		for (String source : COMPILED) {
+			for (String flags : FLAGS) {
+				assertNotNull("/" + source + "/" + flags, matcher(source, flags));
+			}
+		}
+		for (String source : INTERPRETED) {
+			assertNull(source, matcher(source, ""));
+		}
+	}
+
+	@Test
+	public void compiledMatchesLikeInterpreter() {
+		assertSameAsInterpreter(COMPILED);
+	}
+
+	@Test
+	public void fallbackMatchesLikeInterpreter() {
+		assertSameAsInterpreter(INTERPRETED);
+	}
+
+	@Test
+	public void matcherIsKeptWithExpression() {
+		Context cx = Context.enter();
+		try {
+			RECompiled re = (RECompiled) NativeRegExp.compileRE(cx, "a+b",
+					"g", false);
+			RegExpMatcher matcher = RegExpCodegen.getMatcher(re);
+			assertNotNull(matcher);
+			assertEquals(matcher, RegExpCodegen.getMatcher(re));
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	public void longInputs() {
+		// the loops of the quantifiers don't recurse per character
+		String[] sources = { "a*b", "^[ab]+?b$", "^(?:[ab])*$", "\\w+\\s*$",
+				"(x)|a*", "^(?:ab|b)" };
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			sb.append(i % 7 == 0 ? "ab" : "a");
+		}
+		String input = sb.toString();
+		for (String source : sources) {
+			assertEquals(source, match(new ContextFactory(), source, input),
+					match(new CompilingFactory(), source, input));
+		}
+	}
+
+	private static String match(ContextFactory factory, String source,
+			String input) {
+		Context cx = factory.enterContext();
+		try {
+			Scriptable scope = cx.initStandardObjects();
+			scope.put("source", scope, source);
+			scope.put("input", scope, input);
+			return Context.toString(cx.evaluateString(scope,
+					"var m = new RegExp(source, 'g').exec(input);"
+							+ " m == null ? 'none' : m.index + ' ' + m[0].length",
+					"test", 1, null));
+		} finally {
+			Context.exit();
+		}
+	}
+}
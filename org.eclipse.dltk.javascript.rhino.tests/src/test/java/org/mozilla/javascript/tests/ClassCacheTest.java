@@ -0,0 +1,87 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.ClassCache;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptableObject;
+
+public class ClassCacheTest {
+
+	private Context cx;
+
+	@Before
+	public void enter() {
+		cx = Context.enter();
+	}
+
+	@After
+	public void exit() {
+		Context.exit();
+	}
+
+	private Object evaluate(ScriptableObject scope, String source) {
+		return cx.evaluateString(scope, source, "test", 1, null);
+	}
+
+	@Test
+	public void cachesMembersPerClass() {
+		ScriptableObject scope = cx.initStandardObjects();
+		ClassCache cache = ClassCache.get(scope);
+		evaluate(scope, "new java.lang.StringBuilder().append('x')");
+		assertTrue(cache.getClassCacheMap().containsKey(StringBuilder.class));
+		int hits = cache.getHitCount();
+		evaluate(scope, "new java.lang.StringBuilder().append('y')");
+		assertTrue(cache.getHitCount() > hits);
+	}
+
+	@Test
+	public void evictsPastMaximumSize() {
+		ScriptableObject scope = cx.initStandardObjects();
+		ClassCache cache = ClassCache.get(scope);
+		cache.setMaximumSize(2);
+		evaluate(scope, "new java.lang.StringBuilder(); new java.util.ArrayList();"
+				+ " new java.util.HashMap(); new java.util.TreeMap();");
+		assertTrue(cache.getClassCacheMap().size() <= 2);
+	}
+
+	@Test
+	public void missDoesNotAddEntry() {
+		ScriptableObject scope = cx.initStandardObjects();
+		ClassCache cache = ClassCache.get(scope);
+		assertNull(cache.getClassCacheMap().get(ClassCacheTest.class));
+		assertEquals(0, cache.getClassCacheMap().size());
+	}
+
+	@Test
+	public void discardedScopeIsCollected() throws InterruptedException {
+		WeakReference<ScriptableObject> scope = useJavaClasses();
+		List<byte[]> garbage = new ArrayList<byte[]>();
+		for (int i = 0; i < 100 && scope.get() != null; i++) {
+			garbage.add(new byte[1 << 16]);
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull("the top scope of the ClassCache is still reachable",
+				scope.get());
+	}
+
+	// the scope is created in its own frame, so no local keeps it alive
+	private WeakReference<ScriptableObject> useJavaClasses() {
+		ScriptableObject scope = cx.initStandardObjects();
+		evaluate(scope, "var b = new java.lang.StringBuilder(); b.append('x');"
+				+ " java.lang.String.valueOf(b.length());");
+		assertTrue(ClassCache.get(scope).getClassCacheMap().containsKey(
+				StringBuilder.class));
+		return new WeakReference<ScriptableObject>(scope);
+	}
+}
@@ -0,0 +1,73 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.ast.AstNode;
+import org.mozilla.javascript.ast.CompactTree;
+import org.mozilla.javascript.ast.Name;
+import org.mozilla.javascript.ast.StringLiteral;
+
+public class CompactTreeTest {
+
+	private static final String SOURCE = "/** @type {Number} */\n"
+			+ "var count = 0;\n" + "// a comment\n"
+			+ "function add(a, b) {\n" + "  for (var i = 0; i < a.length; i++) {\n"
+			+ "    b.push(a[i] + 'x');\n" + "  }\n" + "  return { sum: count };\n"
+			+ "}\n";
+
+	private static CompactTree parse(String source) {
+		CompilerEnvirons environs = CompilerEnvirons.ideEnvirons();
+		environs.setRecordingLocalJsDocComments(true);
+		return CompactTree.parse(environs, source, "test", 1);
+	}
+
+	@Test
+	public void nodesMatchTheParseTree() {
+		CompactTree tree = parse(SOURCE);
+		assertSame(tree.getRoot(), tree.getNode(0));
+		for (int i = 0; i < tree.size(); i++) {
+			AstNode node = tree.getNode(i);
+			assertSame(node.getClass(), tree.getNodeClass(i));
+			assertEquals(node.getType(), tree.getType(i));
+			assertEquals(node.getAbsolutePosition(), tree.getPosition(i));
+			assertEquals(node.getLength(), tree.getLength(i));
+			assertEquals(node.getLineno(), tree.getLineno(i));
+			assertEquals(node.getJsDoc(), tree.getJsDoc(i));
+			if (node instanceof Name) {
+				assertEquals(((Name) node).getIdentifier(), tree.getString(i));
+			} else if (node instanceof StringLiteral) {
+				assertEquals(((StringLiteral) node).getValue(),
+						tree.getString(i));
+			}
+			if (i > 0) {
+				assertSame(node.getParent(), tree.getNode(tree.getParent(i)));
+			}
+			for (int child = tree.getFirstChild(i); child >= 0; child = tree
+					.getNextSibling(child)) {
+				assertEquals(i, tree.getParent(child));
+			}
+		}
+	}
+
+	@Test
+	public void findsInnermostNode() {
+		CompactTree tree = parse(SOURCE);
+		int node = tree.getNodeAt(SOURCE.indexOf("push"));
+		assertSame(Name.class, tree.getNodeClass(node));
+		assertEquals("push", tree.getString(node));
+		assertEquals(-1, tree.getNodeAt(SOURCE.length()));
+	}
+
+	@Test
+	public void sharesStringsBetweenTrees() {
+		CompactTree tree = parse(SOURCE);
+		CompactTree other = parse("count = 'x' + " + "count".length() + ";");
+		assertSame(tree.getString(tree.getNodeAt(SOURCE.indexOf("count"))),
+				other.getString(other.getNodeAt(0)));
+		assertSame(tree.getString(tree.getNodeAt(SOURCE.indexOf("'x'"))),
+				other.getString(other.getNodeAt(8)));
+	}
+}
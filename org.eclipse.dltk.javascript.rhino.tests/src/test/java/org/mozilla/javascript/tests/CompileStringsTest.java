@@ -0,0 +1,230 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ErrorReporter;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.regexp.RegExpImpl;
+
+/**
+ * Checks that sources compiled in parallel give the scripts and the reports
+ * of sources compiled one after the other.
+ */
+public class CompileStringsTest {
+
+	private static final int SOURCES = 24;
+
+	private static class RecordingReporter implements ErrorReporter {
+		final List<String> reports = new ArrayList<String>();
+
+		public void warning(String message, String sourceName, int line,
+				String lineSource, int lineOffset) {
+			reports.add("warning " + sourceName + ":" + line + " " + message);
+		}
+
+		public void error(String message, String sourceName, int line,
+				String lineSource, int lineOffset) {
+			reports.add("error " + sourceName + ":" + line + " " + message);
+		}
+
+		public EvaluatorException runtimeError(String message,
+				String sourceName, int line, String lineSource, int lineOffset) {
+			reports.add("runtime " + sourceName + ":" + line + " " + message);
+			return new EvaluatorException(message, sourceName, line,
+					lineSource, lineOffset);
+		}
+	}
+
+	private static String[] names(int count) {
+		String[] names = new String[count];
+		for (int i = 0; i < count; i++) {
+			names[i] = "source" + i;
+		}
+		return names;
+	}
+
+	private static String[] sources() {
+		String[] sources = new String[SOURCES];
+		for (int i = 0; i < SOURCES; i++) {
+			sources[i] = "var n = " + i + ";\n"
+					+ "function twice(a, a) { return a * 2; }\n"
+					+ "function words(s) { return s.match(/\\w+/g).length; }\n"
+					+ "var re = new RegExp('(a+)' + n, 'i');\n"
+					+ "[twice(0, n), words('x yy ' + n), /b(c*)d/.exec('bccd')[1],"
+					+ " re.exec('xAA" + i + "')[1], (function() {"
+					+ " var s = 0; for (var k = 0; k <= n; k++) s += k;"
+					+ " return s; })()].join()";
+		}
+		return sources;
+	}
+
+	private static List<String> run(Context cx, Script[] scripts) {
+		List<String> results = new ArrayList<String>();
+		for (Script script : scripts) {
+			Scriptable scope = cx.initStandardObjects();
+			results.add(Context.toString(script.exec(cx, scope)));
+		}
+		return results;
+	}
+
+	@Test
+	public void matchesSequentialCompilation() {
+		String[] sources = sources();
+		String[] names = names(SOURCES);
+		for (int level = -1; level <= 9; level += 10) {
+			Context cx = Context.enter();
+			try {
+				cx.setOptimizationLevel(level);
+				RecordingReporter reporter = new RecordingReporter();
+				cx.setErrorReporter(reporter);
+				Script[] sequential = new Script[SOURCES];
+				for (int i = 0; i < SOURCES; i++) {
+					sequential[i] = cx.compileString(sources[i], names[i], 1,
+							null);
+				}
+				List<String> expectedReports = new ArrayList<String>(
+						reporter.reports);
+				assertEquals(SOURCES, expectedReports.size());
+
+				reporter.reports.clear();
+				Script[] parallel = cx.compileStrings(sources, names, 1, null);
+				assertEquals(expectedReports, reporter.reports);
+				assertEquals(run(cx, sequential), run(cx, parallel));
+				assertEquals("4,3,cc,AA,3", run(cx, parallel).get(2));
+			} finally {
+				Context.exit();
+			}
+		}
+	}
+
+	@Test
+	public void reportsInSourceOrder() {
+		String[] sources = new String[SOURCES];
+		for (int i = 0; i < SOURCES; i++) {
+			StringBuilder sb = new StringBuilder();
+			// sources of different lengths, which take different times
+			for (int k = 0; k <= i % 5 * 40; k++) {
+				sb.append("function f" + k + "(a, a) { return a; }\n");
+			}
+			sources[i] = sb.toString();
+		}
+		String[] names = names(SOURCES);
+		Context cx = Context.enter();
+		try {
+			RecordingReporter reporter = new RecordingReporter();
+			cx.setErrorReporter(reporter);
+			for (int i = 0; i < SOURCES; i++) {
+				cx.compileString(sources[i], names[i], 1, null);
+			}
+			List<String> expected = new ArrayList<String>(reporter.reports);
+			for (int n = 0; n < 5; n++) {
+				reporter.reports.clear();
+				cx.compileStrings(sources, names, 1, null);
+				assertEquals(expected, reporter.reports);
+			}
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	public void firstFailingSourceIsThrown() {
+		String[] sources = { "function f(a, a) {}", "var ok = 1;",
+				"function g(b, b) {}\nvar x = ;\nvar y = );",
+				"function h(c, c) {}", "var z = ;" };
+		String[] names = names(sources.length);
+		Context cx = Context.enter();
+		try {
+			RecordingReporter reporter = new RecordingReporter();
+			cx.setErrorReporter(reporter);
+			String expected = null;
+			for (int i = 0; i < sources.length && expected == null; i++) {
+				try {
+					cx.compileString(sources[i], names[i], 1, null);
+				} catch (EvaluatorException e) {
+					expected = e.sourceName() + ":" + e.lineNumber() + " "
+							+ e.details();
+				}
+			}
+			List<String> expectedReports = new ArrayList<String>(
+					reporter.reports);
+			assertEquals("runtime source2:1 ", expectedReports.get(
+					expectedReports.size() - 1).substring(0, 18));
+
+			reporter.reports.clear();
+			try {
+				cx.compileStrings(sources, names, 1, null);
+				throw new AssertionError("compiled");
+			} catch (EvaluatorException e) {
+				assertEquals(expected, e.sourceName() + ":" + e.lineNumber()
+						+ " " + e.details());
+			}
+			assertEquals(expectedReports, reporter.reports);
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	public void defaultReporterThrowsFirstError() {
+		String[] sources = { "function f(a, a) {}", "var x = ;\nvar y = );",
+				"var z = ;" };
+		String[] names = names(sources.length);
+		Context cx = Context.enter();
+		try {
+			String expected = null;
+			try {
+				cx.compileString(sources[1], names[1], 1, null);
+			} catch (EvaluatorException e) {
+				expected = e.getMessage();
+			}
+			try {
+				cx.compileStrings(sources, names, 1, null);
+				throw new AssertionError("compiled");
+			} catch (EvaluatorException e) {
+				assertEquals(expected, e.getMessage());
+			}
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	public void customRegExpProxyStaysOnCallingThread() {
+		final Set<Thread> threads = Collections
+				.synchronizedSet(new HashSet<Thread>());
+		Context cx = Context.enter();
+		try {
+			// the interpreter compiles regular expression literals with the
+			// script
+			cx.setOptimizationLevel(-1);
+			ScriptRuntime.setRegExpProxy(cx, new RegExpImpl() {
+				@Override
+				public Object compileRegExp(Context c, String source,
+						String flags) {
+					threads.add(Thread.currentThread());
+					return super.compileRegExp(c, source, flags);
+				}
+			});
+			Script[] scripts = cx.compileStrings(sources(), names(SOURCES), 1,
+					null);
+			assertEquals(Collections.singleton(Thread.currentThread()),
+					threads);
+			assertEquals("0,3,cc,AA,0", Context.toString(scripts[0].exec(cx,
+					cx.initStandardObjects())));
+		} finally {
+			Context.exit();
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mozilla.javascript.CompiledCodeCache;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+
+public class CompiledCodeCacheTest {
+
+	private static final String SOURCE = "function add(a, b) { return a + b; }\n"
+			+ "add(40, 2) + ' ' + /a(b+)c/.exec('xabbc')[1];";
+
+	private static class LazyFactory extends ContextFactory {
+		@Override
+		protected boolean hasFeature(Context cx, int featureIndex) {
+			if (featureIndex == Context.FEATURE_LAZY_FUNCTIONS) {
+				return true;
+			}
+			return super.hasFeature(cx, featureIndex);
+		}
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Object run(ContextFactory factory, int optimizationLevel,
+			String source) {
+		Context cx = factory.enterContext();
+		try {
+			cx.setOptimizationLevel(optimizationLevel);
+			Scriptable scope = cx.initStandardObjects();
+			Script script = cx.compileString(source, "test", 1, null);
+			return Context.toString(script.exec(cx, scope));
+		} finally {
+			Context.exit();
+		}
+	}
+
+	private static File[] entries(CompiledCodeCache cache) {
+		List<File> files = new ArrayList<File>();
+		File[] all = cache.getDirectory().listFiles();
+		if (all != null) {
+			for (File file : all) {
+				if (file.getName().endsWith(".jsc")) {
+					files.add(file);
+				}
+			}
+		}
+		return files.toArray(new File[files.size()]);
+	}
+
+	private static void write(File file, byte[] content) throws Exception {
+		byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+		try {
+			out.writeByte(hash.length);
+			out.write(hash);
+			out.writeInt(content.length);
+			out.write(content);
+		} finally {
+			out.close();
+		}
+	}
+
+	private CompiledCodeCache install(ContextFactory factory)
+			throws IOException {
+		CompiledCodeCache cache = new CompiledCodeCache(folder.newFolder());
+		factory.setCompiledCodeCache(cache);
+		return cache;
+	}
+
+	@Test
+	public void roundTrip() throws Exception {
+		for (int level = -1; level <= 9; level += 10) {
+			ContextFactory factory = new ContextFactory();
+			CompiledCodeCache cache = install(factory);
+			assertEquals("42 bb", run(factory, level, SOURCE));
+			assertEquals(0, cache.getHitCount());
+			assertEquals(1, entries(cache).length);
+			assertEquals("42 bb", run(factory, level, SOURCE));
+			assertEquals(1, cache.getHitCount());
+			assertEquals(1, cache.getMissCount());
+		}
+	}
+
+	@Test
+	public void flagsSeparateEntries() throws Exception {
+		ContextFactory plain = new ContextFactory();
+		CompiledCodeCache cache = install(plain);
+		ContextFactory lazy = new LazyFactory();
+		lazy.setCompiledCodeCache(cache);
+
+		assertEquals("42 bb", run(plain, -1, SOURCE));
+		assertEquals("42 bb", run(lazy, -1, SOURCE));
+		assertEquals("42 bb", run(plain, 9, SOURCE));
+		assertEquals(0, cache.getHitCount());
+		assertEquals(3, entries(cache).length);
+
+		Context cx = plain.enterContext();
+		try {
+			cx.setOptimizationLevel(-1);
+			cx.setGeneratingDebug(false);
+			cx.compileString(SOURCE, "test", 1, null);
+			cx.setGeneratingDebug(true);
+			cx.compileString(SOURCE, "other", 1, null);
+			cx.compileString(SOURCE, "test", 2, null);
+		} finally {
+			Context.exit();
+		}
+		assertEquals(0, cache.getHitCount());
+		assertEquals(6, entries(cache).length);
+
+		assertEquals("42 bb", run(lazy, -1, SOURCE));
+		assertEquals(1, cache.getHitCount());
+	}
+
+	@Test
+	public void rejectsCorruptedEntry() throws Exception {
+		ContextFactory factory = new ContextFactory();
+		CompiledCodeCache cache = install(factory);
+		run(factory, -1, SOURCE);
+		File entry = entries(cache)[0];
+		RandomAccessFile file = new RandomAccessFile(entry, "rw");
+		try {
+			file.seek(file.length() - 10);
+			int b = file.read();
+			file.seek(file.length() - 10);
+			file.write(b ^ 0xFF);
+		} finally {
+			file.close();
+		}
+		assertEquals("42 bb", run(factory, -1, SOURCE));
+		assertEquals(0, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		// the entry was replaced
+		assertEquals("42 bb", run(factory, -1, SOURCE));
+		assertEquals(1, cache.getHitCount());
+	}
+
+	@Test
+	public void rejectsForeignClasses() throws Exception {
+		ContextFactory factory = new ContextFactory();
+		CompiledCodeCache cache = install(factory);
+		run(factory, -1, SOURCE);
+		File entry = entries(cache)[0];
+
+		// an entry with a valid digest holding something else than code
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte('I');
+		ObjectOutputStream oout = new ObjectOutputStream(out);
+		oout.writeObject(new ArrayList<Object>());
+		oout.close();
+		write(entry, bytes.toByteArray());
+
+		assertEquals("42 bb", run(factory, -1, SOURCE));
+		assertEquals(0, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void clearRemovesEntries() throws Exception {
+		ContextFactory factory = new ContextFactory();
+		CompiledCodeCache cache = install(factory);
+		run(factory, -1, SOURCE);
+		cache.clear();
+		assertEquals(0, cache.getDirectory().listFiles().length);
+	}
+}
@@ -0,0 +1,225 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextAction;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+public class ConcurrentAccessTest {
+
+	private static final int THREADS = 4;
+	private static final int PROPERTIES = 2000;
+
+	private static String name(int thread, int i) {
+		return "t" + thread + "_" + i;
+	}
+
+	/**
+	 * Runs the tasks on threads of their own, all starting at the same time,
+	 * and rethrows the first failure.
+	 */
+	private static void runConcurrently(Runnable... tasks) throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread[] threads = new Thread[tasks.length];
+		for (int i = 0; i < tasks.length; i++) {
+			final Runnable task = tasks[i];
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						task.run();
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		if (failure.get() instanceof Error) {
+			throw (Error) failure.get();
+		}
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+	}
+
+	@Test
+	public void putGetDeleteAndIterate() throws Exception {
+		final ScriptableObject obj = new NativeObject();
+		obj.put("shared", obj, "before");
+		obj.enableConcurrentAccess();
+		assertTrue(obj.hasConcurrentAccess());
+		final CountDownLatch writing = new CountDownLatch(THREADS);
+		Runnable[] tasks = new Runnable[THREADS + 1];
+		for (int t = 0; t < THREADS; t++) {
+			final int thread = t;
+			tasks[t] = new Runnable() {
+				public void run() {
+					try {
+						for (int i = 0; i < PROPERTIES; i++) {
+							String name = name(thread, i);
+							obj.put(name, obj, Integer.valueOf(i));
+							assertEquals(Integer.valueOf(i), obj.get(name, obj));
+							if (i % 2 == 1) {
+								obj.delete(name);
+								assertFalse(obj.has(name, obj));
+							}
+							obj.put("shared", obj, name);
+						}
+					} finally {
+						writing.countDown();
+					}
+				}
+			};
+		}
+		tasks[THREADS] = new Runnable() {
+			public void run() {
+				while (writing.getCount() != 0) {
+					Set<Object> seen = new HashSet<Object>();
+					int[] last = new int[THREADS];
+					Arrays.fill(last, -1);
+					for (Object id : obj.getIds()) {
+						assertTrue("duplicate " + id, seen.add(id));
+						String name = (String) id;
+						if (!name.equals("shared")) {
+							// the properties of a thread come in the order
+							// they were defined
+							int thread = name.charAt(1) - '0';
+							int i = Integer.parseInt(name.substring(3));
+							assertTrue(i > last[thread]);
+							last[thread] = i;
+						}
+					}
+				}
+			}
+		};
+		runConcurrently(tasks);
+
+		List<Object> expected = new ArrayList<Object>();
+		for (int t = 0; t < THREADS; t++) {
+			for (int i = 0; i < PROPERTIES; i += 2) {
+				expected.add(name(t, i));
+			}
+		}
+		List<Object> ids = new ArrayList<Object>(Arrays.asList(obj.getIds()));
+		assertTrue(ids.remove("shared"));
+		assertEquals(expected.size(), ids.size());
+		assertEquals(new HashSet<Object>(expected), new HashSet<Object>(ids));
+		for (int t = 0; t < THREADS; t++) {
+			assertEquals(Integer.valueOf(0), obj.get(name(t, 0), obj));
+			assertSame(Scriptable.NOT_FOUND, obj.get(name(t, 1), obj));
+		}
+	}
+
+	@Test
+	public void deletedPropertiesDontComeBack() throws Exception {
+		ScriptableObject obj = new NativeObject();
+		obj.enableConcurrentAccess();
+		for (int round = 0; round < 100; round++) {
+			for (int i = 0; i < 50; i++) {
+				obj.put("p" + i, obj, Integer.valueOf(round));
+			}
+			for (int i = 0; i < 50; i++) {
+				if (i != round % 50) {
+					obj.delete("p" + i);
+				}
+			}
+			assertEquals(Arrays.asList((Object) ("p" + round % 50)),
+					Arrays.asList(obj.getIds()));
+			obj.delete("p" + round % 50);
+		}
+		assertEquals(0, obj.getIds().length);
+		obj.put("last", obj, "value");
+		assertEquals(Arrays.asList((Object) "last"), Arrays.asList(obj
+				.getIds()));
+	}
+
+	@Test
+	public void serializesAsOrdinaryObject() throws Exception {
+		ScriptableObject obj = new NativeObject();
+		obj.enableConcurrentAccess();
+		obj.put("a", obj, "first");
+		obj.put("b", obj, "second");
+		obj.put("c", obj, "third");
+		obj.delete("b");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(obj);
+		out.close();
+		ScriptableObject copy = (ScriptableObject) new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertFalse(copy.hasConcurrentAccess());
+		assertEquals(Arrays.asList((Object) "a", "c"), Arrays.asList(copy
+				.getIds()));
+		assertEquals("third", copy.get("c", copy));
+	}
+
+	@Test
+	public void snapshotPackagesAreShared() throws Exception {
+		final ContextFactory factory = new ContextFactory();
+		final ScriptableObject snapshot = (ScriptableObject) factory
+				.call(new ContextAction() {
+					public Object run(Context cx) {
+						return cx.createStandardObjectsSnapshot();
+					}
+				});
+		ScriptableObject java = (ScriptableObject) ScriptableObject
+				.getProperty(snapshot, "java");
+		assertTrue(java.hasConcurrentAccess());
+		assertTrue(((ScriptableObject) ScriptableObject.getProperty(java,
+				"lang")).hasConcurrentAccess());
+
+		final Object[] classes = new Object[THREADS];
+		Runnable[] tasks = new Runnable[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			final int thread = t;
+			tasks[t] = new Runnable() {
+				public void run() {
+					classes[thread] = factory.call(new ContextAction() {
+						public Object run(Context cx) {
+							Scriptable scope = cx.newScopeFromSnapshot(snapshot);
+							return cx.evaluateString(scope,
+									"java.util.concurrent.atomic.AtomicLong",
+									"test", 1, null);
+						}
+					});
+				}
+			};
+		}
+		runConcurrently(tasks);
+		for (int t = 1; t < THREADS; t++) {
+			assertSame(classes[0], classes[t]);
+		}
+		ScriptableObject loaded = (ScriptableObject) ScriptableObject
+				.getProperty(java, "util");
+		assertTrue(loaded.hasConcurrentAccess());
+		assertTrue(((ScriptableObject) ScriptableObject.getProperty(loaded,
+				"concurrent")).hasConcurrentAccess());
+	}
+}
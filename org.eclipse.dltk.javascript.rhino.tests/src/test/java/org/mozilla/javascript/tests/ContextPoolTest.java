@@ -0,0 +1,145 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextAction;
+import org.mozilla.javascript.ContextFactory;
+
+public class ContextPoolTest {
+
+	private static class CountingFactory extends ContextFactory {
+		int created;
+
+		@Override
+		protected void onContextCreated(Context cx) {
+			created++;
+			cx.setOptimizationLevel(-1);
+			super.onContextCreated(cx);
+		}
+	}
+
+	private static Context enterAndExit(ContextFactory factory) {
+		Context cx = factory.enterContext();
+		Context.exit();
+		return cx;
+	}
+
+	@Test
+	public void reusesReleasedContext() {
+		CountingFactory factory = new CountingFactory();
+		factory.setContextPoolSize(2);
+		Context first = enterAndExit(factory);
+		assertSame(first, enterAndExit(factory));
+		assertEquals(1, factory.created);
+	}
+
+	@Test
+	public void withoutPoolMakesNewContexts() {
+		CountingFactory factory = new CountingFactory();
+		assertNotSame(enterAndExit(factory), enterAndExit(factory));
+		assertEquals(2, factory.created);
+	}
+
+	@Test
+	public void restoresInitialSettings() {
+		CountingFactory factory = new CountingFactory();
+		factory.setContextPoolSize(1);
+		Context cx = factory.enterContext();
+		try {
+			cx.setOptimizationLevel(9);
+			cx.setLanguageVersion(Context.VERSION_1_8);
+			cx.setLocale(Locale.JAPANESE);
+			cx.setInstructionObserverThreshold(100);
+			cx.putThreadLocal("key", "value");
+		} finally {
+			Context.exit();
+		}
+		cx = factory.enterContext();
+		try {
+			assertEquals(-1, cx.getOptimizationLevel());
+			assertEquals(Context.VERSION_DEFAULT, cx.getLanguageVersion());
+			assertEquals(Locale.getDefault(), cx.getLocale());
+			assertEquals(0, cx.getInstructionObserverThreshold());
+			assertNull(cx.getThreadLocal("key"));
+		} finally {
+			Context.exit();
+		}
+		assertEquals(1, factory.created);
+	}
+
+	@Test
+	public void nestedEnterKeepsContext() {
+		ContextFactory factory = new ContextFactory();
+		factory.setContextPoolSize(1);
+		Context outer = factory.enterContext();
+		try {
+			assertSame(outer, factory.call(new ContextAction() {
+				public Object run(Context cx) {
+					return cx;
+				}
+			}));
+			assertSame(outer, factory.enterContext());
+			Context.exit();
+			assertSame(outer, Context.getCurrentContext());
+		} finally {
+			Context.exit();
+		}
+		assertNull(Context.getCurrentContext());
+	}
+
+	@Test
+	public void explicitContextIsNotPooled() {
+		ContextFactory factory = new ContextFactory();
+		factory.setContextPoolSize(1);
+		Context own = new Context(factory) {
+		};
+		factory.enterContext(own);
+		Context.exit();
+		assertNotSame(own, enterAndExit(factory));
+	}
+
+	@Test
+	public void threadsGetContextsOfTheirOwn() throws Exception {
+		final ContextFactory factory = new ContextFactory();
+		factory.setContextPoolSize(4);
+		final CountDownLatch entered = new CountDownLatch(2);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Context[] contexts = new Context[2];
+		Thread[] threads = new Thread[2];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					contexts[index] = factory.enterContext();
+					try {
+						entered.countDown();
+						release.await();
+					} catch (InterruptedException e) {
+						// exit
+					} finally {
+						Context.exit();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		entered.await();
+		release.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertNotSame(contexts[0], contexts[1]);
+		Context reused = enterAndExit(factory);
+		assertTrue(reused == contexts[0] || reused == contexts[1]);
+	}
+}
@@ -0,0 +1,109 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+
+/**
+ * Checks how Contexts are bound to threads.
+ */
+public class ContextThreadTest {
+
+	/**
+	 * Return the per-thread storage of the current thread, null if it has
+	 * none.
+	 */
+	private static Object getThreadStorage() throws Exception {
+		Class<?> bridgeClass = Class.forName("org.mozilla.javascript.VMBridge");
+		Field instance = bridgeClass.getDeclaredField("instance");
+		instance.setAccessible(true);
+		Object bridge = instance.get(null);
+		Class<?> type = bridge.getClass();
+		while (type != null) {
+			try {
+				Field field = type.getDeclaredField("contextLocal");
+				field.setAccessible(true);
+				return ((ThreadLocal<?>) field.get(bridge)).get();
+			} catch (NoSuchFieldException e) {
+				type = type.getSuperclass();
+			}
+		}
+		throw new AssertionError("no contextLocal in " + bridge.getClass());
+	}
+
+	@Test
+	public void exitLeavesNoThreadStorage() throws Exception {
+		final AtomicReference<Object> during = new AtomicReference<Object>();
+		final AtomicReference<Object> after = new AtomicReference<Object>(
+				"not run");
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					Context.enter();
+					try {
+						during.set(getThreadStorage());
+					} finally {
+						Context.exit();
+					}
+					after.set(getThreadStorage());
+				} catch (Exception e) {
+					after.set(e);
+				}
+			}
+		};
+		thread.start();
+		thread.join();
+		assertNotNull(during.get());
+		assertNull(after.get());
+	}
+
+	@Test
+	public void nestedEnterReusesContext() throws Exception {
+		ContextFactory factory = new ContextFactory();
+		Context outer = factory.enterContext();
+		try {
+			Context inner = factory.enterContext();
+			try {
+				assertSame(outer, inner);
+				assertSame(outer, Context.enter());
+				Context.exit();
+			} finally {
+				Context.exit();
+			}
+			assertSame(outer, Context.getCurrentContext());
+			assertNotNull(getThreadStorage());
+		} finally {
+			Context.exit();
+		}
+		assertNull(Context.getCurrentContext());
+		assertNull(getThreadStorage());
+	}
+
+	@Test
+	public void enterWhileMakingContext() throws Exception {
+		// a factory that uses a Context of its own while one is made
+		ContextFactory factory = new ContextFactory() {
+			@Override
+			protected void onContextCreated(Context cx) {
+				super.onContextCreated(cx);
+				new ContextFactory().enterContext();
+				Context.exit();
+			}
+		};
+		Context cx = factory.enterContext();
+		try {
+			assertSame(cx, Context.getCurrentContext());
+		} finally {
+			Context.exit();
+		}
+		assertNull(Context.getCurrentContext());
+	}
+}
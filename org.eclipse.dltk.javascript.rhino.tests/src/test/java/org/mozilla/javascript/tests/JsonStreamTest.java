@@ -0,0 +1,255 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Callable;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.EcmaError;
+import org.mozilla.javascript.NativeJSON;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.Undefined;
+import org.mozilla.javascript.WrappedException;
+import org.mozilla.javascript.json.JsonParser;
+
+public class JsonStreamTest {
+
+	// reads one character at a time
+	private static class TrickleReader extends Reader {
+		private final String text;
+		private int position;
+
+		TrickleReader(String text) {
+			this.text = text;
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) {
+			if (position == text.length()) {
+				return -1;
+			}
+			buffer[offset] = text.charAt(position++);
+			return 1;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private Context cx;
+	private Scriptable scope;
+
+	@Before
+	public void enter() {
+		cx = Context.enter();
+		scope = cx.initStandardObjects();
+	}
+
+	@After
+	public void exit() {
+		Context.exit();
+	}
+
+	private Object evaluate(String source) {
+		return cx.evaluateString(scope, source, "test", 1, null);
+	}
+
+	private String stringify(Object value) {
+		return (String) NativeJSON.stringify(cx, scope, value,
+				Undefined.instance, Undefined.instance);
+	}
+
+	/**
+	 * A document longer than the buffer of the parser, with strings, escapes
+	 * and numbers across the buffer boundaries.
+	 */
+	private String document() {
+		return (String) evaluate("var items = [];\n"
+				+ "for (var i = 0; i < 600; i++) {\n"
+				+ "  items.push({ id: i, name: 'item \\u00e9\\n\\\"' + i,"
+				+ " value: i * 1.25e-3, tags: ['a', 'b\\\\', '\\u2028'],"
+				+ " ok: i % 2 == 0, none: null, 'k\\u0001': -i });\n"
+				+ "}\n"
+				+ "JSON.stringify({ items: items, empty: {}, list: [],"
+				+ " text: new Array(9000).join('x') }, null, 1)");
+	}
+
+	@Test
+	public void readerParsesLikeString() throws Exception {
+		String json = document();
+		assertTrue(json.length() > 3 * 8192);
+		String expected = stringify(NativeJSON.parse(cx, scope, json, null));
+		assertEquals(expected, stringify(NativeJSON.parse(cx, scope,
+				new StringReader(json), null)));
+		assertEquals(expected, stringify(NativeJSON.parse(cx, scope,
+				new TrickleReader(json), null)));
+	}
+
+	@Test
+	public void primitivesAndWhitespace() throws Exception {
+		// trailing commas are accepted as they always were
+		String[] texts = { "1", " -0.5e2 ", "\"s\\u0041\"", "true", "null",
+				"\t[ 1 , \"two\" , { \"a\" : [ ] } ]\r\n", "[1,]",
+				"{\"a\":1,}" };
+		for (String text : texts) {
+			assertEquals(text, stringify(NativeJSON.parse(cx, scope, text,
+					null)), stringify(NativeJSON.parse(cx, scope,
+					new StringReader(text), null)));
+		}
+	}
+
+	@Test
+	public void syntaxErrors() {
+		String[] texts = { "", "[1,,2]", "{\"a\":1} x", "\"open", "[1 2]",
+				"{'a':1}", "01", "\"\\x\"", "tru", "-", "{\"a\" 1}",
+				"\"\t\"" };
+		for (String text : texts) {
+			String fromString = null;
+			try {
+				NativeJSON.parse(cx, scope, text, null);
+			} catch (EcmaError e) {
+				fromString = e.getName() + ": " + e.getErrorMessage();
+			}
+			String fromReader = null;
+			try {
+				NativeJSON.parse(cx, scope, new TrickleReader(text), null);
+			} catch (EcmaError e) {
+				fromReader = e.getName() + ": " + e.getErrorMessage();
+			}
+			assertTrue(text, fromString.startsWith("SyntaxError"));
+			assertEquals(text, fromString, fromReader);
+		}
+	}
+
+	@Test
+	public void readErrorsArePassedOn() {
+		Reader failing = new Reader() {
+			@Override
+			public int read(char[] buffer, int offset, int length)
+					throws IOException {
+				throw new IOException("disk gone");
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		try {
+			NativeJSON.parse(cx, scope, failing, null);
+			throw new AssertionError("parsed");
+		} catch (WrappedException e) {
+			assertEquals("disk gone", e.getWrappedException().getMessage());
+		}
+	}
+
+	@Test
+	public void reviverOfReader() {
+		Callable reviver = (Callable) evaluate("(function(k, v) {"
+				+ " return typeof v == 'number' ? v * 2 : v; })");
+		assertEquals("{\"a\":[2,4],\"b\":{\"c\":6}}", stringify(NativeJSON
+				.parse(cx, scope, new StringReader(
+						"{\"a\":[1,2],\"b\":{\"c\":3}}"), reviver)));
+	}
+
+	@Test
+	public void writerGetsStringifyText() throws Exception {
+		// the arguments of JSON.stringify
+		String[] cases = { "JSON.parse(json)", "JSON.parse(json), null, 2",
+				"JSON.parse(json), ['items', 'id', 'tags'], '--'",
+				"JSON.parse(json), function(k, v) {"
+						+ " return typeof v == 'boolean' ? undefined : v; }",
+				"{ toJSON: function() { return [new Date(0), 'x']; } }",
+				"'\\u0000\\ud800\"\\\\'", "[undefined, function() {}]" };
+		Object json = document();
+		scope.put("json", scope, json);
+		for (String args : cases) {
+			Scriptable values = (Scriptable) evaluate("[" + args + "]");
+			Object value = values.get(0, values);
+			Object replacer = values.has(1, values) ? values.get(1, values)
+					: Undefined.instance;
+			Object space = values.has(2, values) ? values.get(2, values)
+					: Undefined.instance;
+			StringWriter out = new StringWriter();
+			assertTrue(NativeJSON.stringify(cx, scope, value, replacer, space,
+					out));
+			assertEquals(args, Context.toString(evaluate("JSON.stringify("
+					+ args + ")")), out.toString());
+		}
+	}
+
+	@Test
+	public void writerWithoutText() throws Exception {
+		String[] values = { "undefined", "function() {}",
+				"({ toJSON: function() {} })" };
+		for (String value : values) {
+			StringWriter out = new StringWriter();
+			assertFalse(value, NativeJSON.stringify(cx, scope,
+					evaluate("(" + value + ")"), Undefined.instance,
+					Undefined.instance, out));
+			assertEquals("", out.toString());
+		}
+	}
+
+	@Test
+	public void cyclesAreTypeErrors() throws Exception {
+		Object cyclic = evaluate("var a = [1, {}]; a[1].self = a; a");
+		try {
+			NativeJSON.stringify(cx, scope, cyclic, Undefined.instance,
+					Undefined.instance, new StringWriter());
+			throw new AssertionError("cycle written");
+		} catch (EcmaError e) {
+			assertEquals("TypeError", e.getName());
+		}
+		// the same object twice is no cycle
+		assertEquals("[{},{}]", Context.toString(evaluate(
+				"var o = {}; JSON.stringify([o, o])")));
+	}
+
+	@Test
+	public void sharedParser() throws Exception {
+		final JsonParser parser = new JsonParser(scope);
+		final String json = document();
+		final String expected = stringify(parser.parseValue(json));
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					Context other = Context.enter();
+					try {
+						for (int i = 0; i < 5; i++) {
+							Object value = parser.parseValue(new StringReader(
+									json));
+							assertEquals(expected, NativeJSON.stringify(other,
+									scope, value, Undefined.instance,
+									Undefined.instance));
+						}
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						Context.exit();
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+
+public class NumberToStringTest {
+
+	private static void assertToString(String expected, double d) {
+		assertEquals(expected, ScriptRuntime.numberToString(d, 10));
+	}
+
+	@Test
+	public void integers() {
+		assertToString("0", 0.0);
+		assertToString("0", -0.0);
+		assertToString("1023", 1023);
+		assertToString("-1024", -1024);
+		assertToString("9007199254740991", 9007199254740991.0);
+		assertToString("123456789012345680000", 123456789012345680000.0);
+		assertToString("1e+21", 1e21);
+	}
+
+	@Test
+	public void decimals() {
+		assertToString("0.1", 0.1);
+		assertToString("0.30000000000000004", 0.1 + 0.2);
+		assertToString("12.34", 12.34);
+		assertToString("0.000001", 0.000001);
+		assertToString("1e-7", 0.0000001);
+		assertToString("1.7976931348623157e+308", Double.MAX_VALUE);
+		assertToString("2.2250738585072014e-308", Double.MIN_NORMAL);
+	}
+
+	// DToA printed wrong digits or threw for these
+	@Test
+	public void subnormals() {
+		assertToString("5e-324", Double.MIN_VALUE);
+		assertToString("1e-323", 2 * Double.MIN_VALUE);
+		assertToString("1.5e-323", 3 * Double.MIN_VALUE);
+		assertToString("-1.5e-323", -3 * Double.MIN_VALUE);
+		assertToString("1.23456e-315", 1.23456e-315);
+		assertToString("2.225073858507201e-308",
+				Math.nextDown(Double.MIN_NORMAL));
+	}
+
+	// Grisu3 fails on these, they used to fall back to DToA
+	@Test
+	public void subnormalsWithoutGrisu3Result() {
+		assertToString("1.2011060518893333e-308",
+				Double.longBitsToDouble(2431065713634486L));
+		assertToString("1.766152332870886e-308",
+				Double.longBitsToDouble(3574732118570307L));
+		assertToString("2.0737366139881556e-308",
+				Double.longBitsToDouble(4197289634370753L));
+	}
+
+	@Test
+	public void subnormalsRoundTrip() {
+		Random random = new Random(42);
+		for (int i = 0; i < 10000; i++) {
+			double d = Double.longBitsToDouble(random.nextLong()
+					& 0x000FFFFFFFFFFFFFL);
+			String s = ScriptRuntime.numberToString(d, 10);
+			assertEquals(s, d, Double.parseDouble(s), 0.0);
+		}
+	}
+
+	@Test
+	public void scripts() {
+		Context cx = Context.enter();
+		try {
+			Scriptable scope = cx.initStandardObjects();
+			assertEquals("5e-324|1.5e-323|0.1", cx.evaluateString(scope,
+					"[Number.MIN_VALUE, 3 * Number.MIN_VALUE, 0.1].join('|')",
+					"test", 1, null));
+		} finally {
+			Context.exit();
+		}
+	}
+}
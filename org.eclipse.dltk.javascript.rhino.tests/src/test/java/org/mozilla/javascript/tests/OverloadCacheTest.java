@@ -0,0 +1,133 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Checks that overloaded Java methods called again and again with arguments
+ * of changing types pick the same method as the first call with those types.
+ */
+public class OverloadCacheTest {
+
+	private static final String PREFIX = "var J = Packages."
+			+ OverloadCacheTest.class.getName() + ";\n"
+			+ "function calls(args) {\n"
+			+ "  var result = [];\n"
+			+ "  for (var round = 0; round < 3; round++)\n"
+			+ "    for (var i = 0; i < args.length; i++)\n"
+			+ "      result.push(J.which(args[i]));\n"
+			+ "  return result.join(' ');\n"
+			+ "}\n";
+
+	public static String which(int value) {
+		return "int";
+	}
+
+	public static String which(boolean value) {
+		return "boolean";
+	}
+
+	public static String which(String value) {
+		return "String";
+	}
+
+	public static String which(List<?> value) {
+		return "List";
+	}
+
+	public static String which(Map<?, ?> value) {
+		return "Map";
+	}
+
+	public static String which(Object value) {
+		return "Object";
+	}
+
+	public static String which(int a, String b) {
+		return "int,String";
+	}
+
+	public static String which(String a, int b) {
+		return "String,int";
+	}
+
+	private static void assertResult(String expected, String source) {
+		for (int level = -1; level <= 9; level += 10) {
+			Context cx = Context.enter();
+			try {
+				cx.setOptimizationLevel(level);
+				Scriptable scope = cx.initStandardObjects();
+				assertEquals("optimization level " + level, expected,
+						Context.toString(cx.evaluateString(scope, PREFIX
+								+ source, "test", 1, null)));
+			} finally {
+				Context.exit();
+			}
+		}
+	}
+
+	private static String repeat(String calls) {
+		return calls + " " + calls + " " + calls;
+	}
+
+	@Test
+	public void argumentTypesPickTheirMethod() {
+		// more argument types than the cache remembers
+		String[] args = { "1", "1.5", "'a'", "true",
+				"new java.util.ArrayList()", "new java.util.HashMap()",
+				"new java.lang.StringBuilder('x')", "{}", "'a' + 1",
+				"new java.util.LinkedList()", "java.lang.Integer.valueOf(3)",
+				"[1]" };
+		StringBuilder first = new StringBuilder();
+		StringBuilder list = new StringBuilder();
+		for (String arg : args) {
+			if (first.length() != 0) {
+				first.append(' ');
+				list.append(", ");
+			}
+			// the method picked by the first call in a new scope
+			Context cx = Context.enter();
+			try {
+				Scriptable scope = cx.initStandardObjects();
+				first.append(Context.toString(cx.evaluateString(scope, PREFIX
+						+ "J.which(" + arg + ")", "test", 1, null)));
+			} finally {
+				Context.exit();
+			}
+			list.append(arg);
+		}
+		assertEquals("int int String boolean List Map Object Map String List"
+				+ " Object Object", first.toString());
+		assertResult(repeat(first.toString()), "calls([" + list + "])");
+	}
+
+	@Test
+	public void wrappedObjectsOfOtherClasses() {
+		// the wrappers are of the same class, the wrapped objects are not
+		assertResult(repeat("List Map List Map"), "calls(["
+				+ " new java.util.ArrayList(), new java.util.HashMap(),"
+				+ " new java.util.ArrayList(), new java.util.TreeMap()])");
+	}
+
+	@Test
+	public void argumentCount() {
+		assertResult("int,String String,int int,String String,int String",
+				"[J.which(1, 'a'), J.which('a', 1), J.which(2, 'b'),"
+						+ " J.which('b', 2), J.which('c')].join(' ')");
+	}
+
+	@Test
+	public void failedResolutionIsReportedEachTime() {
+		assertResult("2 int String", "var failures = 0;\n"
+				+ "for (var i = 0; i < 2; i++) {\n"
+				+ "  try { J.which(1, 2, 3); } catch (e) { failures++; }\n"
+				+ "}\n"
+				+ "failures + ' ' + J.which(1) + ' ' + J.which('1')");
+	}
+}
@@ -0,0 +1,127 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Checks that array literals of numbers, which keep their elements in a
+ * primitive array, behave like arrays of the same values in an Object[].
+ */
+public class PackedArrayTest {
+
+	private static final String DESCRIBE = "function describe(a) {\n"
+			+ "  var s = [];\n"
+			+ "  for (var i = 0; i < a.length; i++) {\n"
+			+ "    s.push(!(i in a) ? 'hole' : a[i] === 0 && 1 / a[i] < 0 ?"
+			+ " '-0' : typeof a[i] + ' ' + a[i]);\n"
+			+ "  }\n"
+			+ "  return a.length + ': ' + s.join(', ');\n"
+			+ "}\n"
+			// indexOf returns Integers, which make an int[]
+			+ "var big = new Array(70001).join('a') + 'b';\n"
+			+ "function at(c) { return big.indexOf(c); }\n"
+			// keeps its elements in an Object[] as it had a string first
+			+ "function built(values) {\n"
+			+ "  var a = ['first'];\n"
+			+ "  for (var i = 0; i < values.length; i++) a.push(values[i]);\n"
+			+ "  a.shift();\n"
+			+ "  return a;\n"
+			+ "}\n";
+
+	// changes of the array a, each returning something to compare as well
+	private static final String[] CHANGES = {
+			"a[1] = at('b')", "a[1] = 7", "a[1] = 0.1", "a[1] = -0",
+			"a[1] = NaN", "a[1] = 'x'", "a[1] = null", "a[4] = 9", "a[6] = 9",
+			"a.length = 2", "a.length = 6", "delete a[1]", "a.push(5, 6)",
+			"a.push(5.5)", "a.push({})", "a.pop()", "a.shift()",
+			"a.unshift(0)", "a.unshift('s')", "a.reverse()",
+			"a.sort(function(x, y) { return y - x; })", "a.sort()",
+			"a.splice(1, 2, 8)", "a.splice(1, 0, 'in')",
+			"a.slice(1, 3).join()", "a.concat([9], 10).join()",
+			"a.indexOf(3)", "a.lastIndexOf(2.5)", "a.join('-')",
+			"a.map(function(x) { return x * 2; }).join()",
+			"a.filter(function(x) { return x > 2; }).join()",
+			"a.reduce(function(x, y) { return x + y; })", "a.toString()",
+			"a[0]++", "a[0] += 0.25", "a[2] *= 1e300 * 1e300",
+			"Array.prototype[5] = 'p'; var r = a[5]; a.length = 7;"
+					+ " delete Array.prototype[5]; r" };
+
+	private static String evaluate(int level, String source) {
+		Context cx = Context.enter();
+		try {
+			cx.setOptimizationLevel(level);
+			Scriptable scope = cx.initStandardObjects();
+			return Context.toString(cx.evaluateString(scope, DESCRIBE
+					+ source, "test", 1, null));
+		} finally {
+			Context.exit();
+		}
+	}
+
+	private static String change(int level, String array, String change) {
+		return evaluate(level, "var a = " + array + ";\n"
+				+ "var r = (function() { return "
+				+ change.replace("; r", "; return r") + "; })();\n"
+				+ "describe(a) + ' -> ' + r");
+	}
+
+	private static void assertSameAsBuilt(String literal) {
+		for (int level = -1; level <= 9; level += 10) {
+			for (String change : CHANGES) {
+				assertEquals(literal + ", " + change + ", level " + level,
+						change(level, "built(" + literal + ")", change),
+						change(level, literal, change));
+			}
+		}
+	}
+
+	@Test
+	public void intElements() {
+		assertSameAsBuilt("[at('b'), at('a'), at('x'), at('ab')]");
+	}
+
+	@Test
+	public void numberElements() {
+		assertSameAsBuilt("[3, 1, 2, 400000]");
+	}
+
+	@Test
+	public void doubleElements() {
+		assertSameAsBuilt("[3.1, 1.7, 2.5, -4.25]");
+	}
+
+	@Test
+	public void literalValues() {
+		for (int level = -1; level <= 9; level += 10) {
+			assertEquals("5: number 1, number 2, number 3, number 4, number 5",
+					evaluate(level, "describe([1, 2, 3, 4, 5])"));
+			assertEquals("3: number 0.5, -0, number NaN", evaluate(level,
+					"describe([0.5, -0, NaN])"));
+			assertEquals("4: number 1, hole, number 3, string 4", evaluate(
+					level, "describe([1, , 3, '4'])"));
+			assertEquals("1 2.5 x 7", evaluate(level,
+					"var a = [1, 2]; a[1] = 2.5; var b = a.concat();"
+							+ " b[1] = 'x'; a.push(7);"
+							+ " [a[0], a[1], b[1], a[2]].join(' ')"));
+		}
+	}
+
+	@Test
+	public void loopsOverElements() {
+		for (int level = -1; level <= 9; level += 10) {
+			assertEquals("550 250", evaluate(level,
+					"var a = [1, 2, 3, 4, 5, 6, 7, 8, 9, 10];\n"
+							+ "var d = [0.5, 1.5, 2.5, 3.5, 4.5, 5.5, 6.5,"
+							+ " 7.5, 8.5, 9.5];\n"
+							+ "var s = 0, t = 0;\n"
+							+ "for (var k = 0; k < 10; k++)\n"
+							+ "  for (var i = 0; i < a.length; i++) {\n"
+							+ "    s += a[i] * (k + 1) / 5.5; t += d[i] * 5;\n"
+							+ "  }\n"
+							+ "Math.round(s) + ' ' + t / 10"));
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Runs property accesses often enough in the interpreter to cache them and
+ * checks that the caches see the changes made afterwards, with and without
+ * shared shapes.
+ */
+public class PropertyCacheTest {
+
+	private static class ShapeFactory extends ContextFactory {
+		@Override
+		protected boolean hasFeature(Context cx, int featureIndex) {
+			if (featureIndex == Context.FEATURE_SHARED_SHAPES) {
+				return true;
+			}
+			return super.hasFeature(cx, featureIndex);
+		}
+	}
+
+	private static final String HELPERS = "function get(o) { return o.x; }\n"
+			+ "function set(o, v) { o.x = v; }\n"
+			+ "function call(o) { return o.m(); }\n"
+			+ "function warm(f, o) { for (var i = 0; i < 20; i++) f(o); }\n";
+
+	private static void assertResult(String expected, String source) {
+		assertResult(new ContextFactory(), expected, source);
+		assertResult(new ShapeFactory(), expected, source);
+	}
+
+	private static void assertResult(ContextFactory factory, String expected,
+			String source) {
+		Context cx = factory.enterContext();
+		try {
+			cx.setOptimizationLevel(-1);
+			Scriptable scope = cx.initStandardObjects();
+			assertEquals(expected, Context.toString(cx.evaluateString(scope,
+					HELPERS + source, "test", 1, null)));
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	public void readsManyRecordsAtOneSite() {
+		assertResult("19900 19900", "function Record(i) { this.amount = i; }\n"
+				+ "var literals = [], constructed = [];\n"
+				+ "for (var i = 0; i < 200; i++) {\n"
+				+ "  literals.push({id: i, amount: i});\n"
+				+ "  constructed.push(new Record(i));\n" + "}\n"
+				+ "function sum(records) {\n" + "  var total = 0;\n"
+				+ "  for (var i = 0; i < records.length; i++)\n"
+				+ "    total += records[i].amount;\n" + "  return total;\n"
+				+ "}\n" + "sum(literals) + ' ' + sum(constructed);");
+	}
+
+	@Test
+	public void seesAccessorConversion() {
+		assertResult("1 2 3", "var o = {x: 1}; warm(get, o); var a = get(o);\n"
+				+ "o.__defineGetter__('x', function() { return 2; });\n"
+				+ "var b = get(o);\n"
+				+ "var p = {x: 1}; warm(get, p);\n"
+				+ "Object.defineProperty(p, 'x', {get: function() { return 3; }});\n"
+				+ "a + ' ' + b + ' ' + get(p);");
+	}
+
+	@Test
+	public void seesAccessorConversionOfPrototype() {
+		assertResult("1 2", "function F() {} F.prototype.x = 1;\n"
+				+ "var o = new F(); warm(get, o); var a = get(o);\n"
+				+ "F.prototype.__defineGetter__('x', function() { return 2; });\n"
+				+ "a + ' ' + get(o);");
+	}
+
+	@Test
+	public void seesDelete() {
+		assertResult("1 undefined 2 undefined",
+				"var o = {x: 1}; warm(get, o); var a = get(o); delete o.x;\n"
+						+ "var b = get(o);\n"
+						+ "function F() {} F.prototype.x = 2;\n"
+						+ "var f = new F(); warm(get, f); var c = get(f);\n"
+						+ "delete F.prototype.x;\n"
+						+ "a + ' ' + b + ' ' + c + ' ' + get(f);");
+	}
+
+	@Test
+	public void seesShadowingOfPrototype() {
+		assertResult("proto own proto changed",
+				"function F() {} F.prototype.m = function() { return 'proto'; };\n"
+						+ "var o = new F(); warm(call, o); var a = call(o);\n"
+						+ "o.m = function() { return 'own'; }; var b = call(o);\n"
+						+ "delete o.m; var c = call(o);\n"
+						+ "F.prototype.m = function() { return 'changed'; };\n"
+						+ "[a, b, c, call(o)].join(' ');");
+	}
+
+	@Test
+	public void seesShadowingInPrototypeChain() {
+		assertResult("base sub other",
+				"function Base() {} Base.prototype.m = function() { return 'base'; };\n"
+						+ "function Sub() {} Sub.prototype = new Base();\n"
+						+ "var o = new Sub(); warm(call, o); var a = call(o);\n"
+						+ "Sub.prototype.m = function() { return 'sub'; };\n"
+						+ "var b = call(o);\n"
+						+ "o.__proto__ = {m: function() { return 'other'; }};\n"
+						+ "[a, b, call(o)].join(' ');");
+	}
+
+	@Test
+	public void seesFreezeAndSeal() {
+		assertResult("19 true 5 undefined",
+				"var o = {x: 1}; for (var i = 0; i < 20; i++) set(o, i);\n"
+						+ "Object.freeze(o); set(o, 99);\n"
+						+ "var p = {x: 1}; for (var i = 0; i < 20; i++) set(p, i);\n"
+						+ "Object.seal(p); set(p, 5); p.y = 6;\n"
+						+ "[o.x, Object.isFrozen(o), p.x, typeof p.y].join(' ');");
+	}
+
+	@Test
+	public void seesReplacedTopLevelFunction() {
+		assertResult("1 2", "function g() { return 1; }\n"
+				+ "function f() { return g(); }\n"
+				+ "for (var i = 0; i < 20; i++) f();\n" + "var a = f();\n"
+				+ "g = function() { return 2; };\n" + "a + ' ' + f();");
+	}
+
+	@Test
+	public void keepsWorkingForManyKinds() {
+		assertResult("0,1,2,3,4,5,6,7,8,9,10,11",
+				"var kinds = [];\n"
+						+ "for (var i = 0; i < 12; i++) {\n"
+						+ "  var o = {}; o['p' + i] = i; o.x = i; kinds.push(o);\n"
+						+ "}\n"
+						+ "for (var j = 0; j < 3; j++) kinds.forEach(get);\n"
+						+ "kinds.map(get).join();");
+	}
+}
@@ -0,0 +1,78 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.regexp.RegExpImpl;
+
+public class RegExpCacheTest {
+
+	private static class StrictFactory extends ContextFactory {
+		@Override
+		protected boolean hasFeature(Context cx, int featureIndex) {
+			if (featureIndex == Context.FEATURE_STRICT_MODE
+					|| featureIndex == Context.FEATURE_WARNING_AS_ERROR) {
+				return true;
+			}
+			return super.hasFeature(cx, featureIndex);
+		}
+	}
+
+	@Before
+	public void clearCache() {
+		RegExpImpl.clearCache();
+	}
+
+	private static Object evaluate(ContextFactory factory, String source) {
+		Context cx = factory.enterContext();
+		try {
+			Scriptable scope = cx.initStandardObjects();
+			return cx.evaluateString(scope, source, "test", 1, null);
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	public void sharesCompiledExpressions() {
+		ContextFactory factory = new ContextFactory();
+		evaluate(factory, "new RegExp('a+b', 'g')");
+		int hits = RegExpImpl.getCacheHitCount();
+		assertEquals(Boolean.TRUE,
+				evaluate(factory, "new RegExp('a+b', 'g').test('xaab')"));
+		assertTrue(RegExpImpl.getCacheHitCount() > hits);
+	}
+
+	@Test
+	public void strictContextRejectsCachedBadBackReference() {
+		// compiled and cached by a Context that ignores the warning
+		assertEquals("\\1a", evaluate(new ContextFactory(),
+				"new RegExp('\\\\1a').source"));
+		try {
+			evaluate(new StrictFactory(), "var re = new RegExp('\\\\1a');");
+			fail("bad back reference accepted from the cache");
+		} catch (EvaluatorException e) {
+			assertTrue(e.getMessage().contains("back-reference"));
+		}
+		assertTrue(RegExpImpl.getCacheHitCount() > 0);
+	}
+
+	@Test
+	public void strictContextRejectsBadBackReferenceAgain() {
+		for (int i = 0; i < 2; i++) {
+			try {
+				evaluate(new StrictFactory(), "var re = new RegExp('(a)\\\\2');");
+				fail("bad back reference accepted");
+			} catch (EvaluatorException e) {
+				assertTrue(e.getMessage().contains("back-reference"));
+			}
+		}
+	}
+}
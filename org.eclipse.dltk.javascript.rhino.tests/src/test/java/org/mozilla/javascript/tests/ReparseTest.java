@@ -0,0 +1,154 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Parser;
+import org.mozilla.javascript.ast.AstNode;
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.ErrorCollector;
+import org.mozilla.javascript.ast.NodeVisitor;
+import org.mozilla.javascript.ast.Scope;
+import org.mozilla.javascript.ast.Symbol;
+
+public class ReparseTest {
+
+	private static final String[] STATEMENTS = {
+			"for (var i%1$d = 0; i%1$d < 3; i%1$d++) { x += i%1$d; }",
+			"function f%1$d(a) { for (var j in a) { if (j) { let z = j; } } return a; }",
+			"if (x > %1$d) { let y%1$d = x; y%1$d++; }",
+			"for (let k%1$d in o) x += k%1$d;",
+			"while (x < %1$d) { x++; }",
+			"try { x = %1$d; } catch (e%1$d) { x = 0; }",
+			"switch (x) { case %1$d: let s%1$d = 1; break; }",
+			"var v%1$d = [x, %1$d];" };
+
+	private static final String[] INSERTIONS = { "x", "\n", ";", "}", "{",
+			"var q = 1;", "function z() { return 1 }", "(", ")", "[", "foo()",
+			"for (var i in o) {}", "let y = 2;", "if (a) { let b = 1; }",
+			"(function() {})", "with (o) {}", "try { } catch (e) { }" };
+
+	private static CompilerEnvirons environs(ErrorCollector errors) {
+		CompilerEnvirons environs = CompilerEnvirons.ideEnvirons();
+		environs.setErrorReporter(errors);
+		return environs;
+	}
+
+	private static AstRoot parse(String source) {
+		ErrorCollector errors = new ErrorCollector();
+		return new Parser(environs(errors), errors).parse(source, "test", 1);
+	}
+
+	private static AstRoot reparse(AstRoot previous, String source,
+			int offset, int removedLength, String insertedText) {
+		ErrorCollector errors = new ErrorCollector();
+		return new Parser(environs(errors), errors).reparse(previous, source,
+				offset, removedLength, insertedText);
+	}
+
+	// the child scopes, symbols and nodes of root with their positions
+	private static String dump(final AstRoot root) {
+		final StringBuilder sb = new StringBuilder();
+		if (root.getChildScopes() != null) {
+			for (Scope scope : root.getChildScopes()) {
+				AstNode n = scope;
+				while (n.getParent() != null && n.getParent() != root)
+					n = n.getParent();
+				sb.append("child ").append(scope.getClass().getSimpleName())
+						.append(' ').append(scope.getAbsolutePosition())
+						.append(n.getParent() == root ? "" : " detached")
+						.append('\n');
+			}
+		}
+		for (Symbol symbol : root.getSymbols()) {
+			sb.append("symbol ").append(symbol.getName()).append(' ')
+					.append(symbol.getDeclType()).append('\n');
+		}
+		root.visitAll(new NodeVisitor() {
+			public boolean visit(AstNode node) {
+				sb.append(node.getClass().getSimpleName()).append(' ')
+						.append(node.getAbsolutePosition()).append(' ')
+						.append(node.getLength()).append(' ')
+						.append(node.getLineno());
+				if (node instanceof Scope) {
+					Scope scope = (Scope) node;
+					Scope parent = scope.getParentScope();
+					sb.append(" in ").append(
+							parent == null ? "null" : parent.getClass()
+									.getSimpleName()
+									+ parent.getAbsolutePosition());
+					if (scope.getChildScopes() != null) {
+						sb.append(" scopes ").append(
+								scope.getChildScopes().size());
+					}
+				}
+				sb.append('\n');
+				return true;
+			}
+		});
+		return sb.toString();
+	}
+
+	@Test
+	public void replacesChildScopesOfEditedStatement() {
+		String source = "for (var i = 0; i < 3; i++) {}\n"
+				+ "if (x) { let y = 1; }\n" + "while (x) { x--; }\n";
+		AstRoot tree = parse(source);
+		int offset = source.indexOf("1;");
+		String edited = source.substring(0, offset) + "{ y: [x] }"
+				+ source.substring(offset + 1);
+		AstRoot reparsed = reparse(tree, edited, offset, 1, "{ y: [x] }");
+		assertSame(tree, reparsed);
+		assertEquals(dump(parse(edited)), dump(reparsed));
+	}
+
+	@Test
+	public void reparsedTreesMatchFullParse() {
+		Random random = new Random(4);
+		StringBuilder sb = new StringBuilder("var x = 0, o = {};\n");
+		for (int i = 0; i < 60; i++) {
+			sb.append(String.format(
+					STATEMENTS[random.nextInt(STATEMENTS.length)], i));
+			sb.append('\n');
+		}
+		String source = sb.toString();
+		AstRoot tree = parse(source);
+		assertFalse(tree.hasSyntaxErrors());
+		int incremental = 0;
+		for (int step = 0; step < 400; step++) {
+			int offset = random.nextInt(source.length() + 1);
+			int removedLength = Math.min(random.nextInt(6), source.length()
+					- offset);
+			String text = random.nextInt(3) == 0 ? "" : INSERTIONS[random
+					.nextInt(INSERTIONS.length)];
+			String edited = source.substring(0, offset) + text
+					+ source.substring(offset + removedLength);
+			AstRoot expected;
+			try {
+				expected = parse(edited);
+			} catch (RuntimeException e) {
+				// the parser doesn't recover from some errors in ide-mode
+				continue;
+			}
+			AstRoot reparsed = reparse(tree, edited, offset, removedLength,
+					text);
+			if (reparsed == tree) {
+				incremental++;
+			}
+			assertEquals("edit " + step, dump(expected), dump(reparsed));
+			if (reparsed.hasSyntaxErrors()) {
+				tree = parse(source);
+			} else {
+				tree = reparsed;
+				source = edited;
+			}
+		}
+		assertTrue(incremental > 0);
+	}
+}
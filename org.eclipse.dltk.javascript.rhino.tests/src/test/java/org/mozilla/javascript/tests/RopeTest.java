@@ -0,0 +1,118 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.mozilla.javascript.CharSequenceBuffer;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Checks that strings built by concatenation, which are ropes once they are
+ * long enough, behave like the String with the same characters, in the
+ * interpreter and in compiled code.
+ */
+public class RopeTest {
+
+	// builds the same 200 characters once as a rope and once as a String
+	private static final String PREFIX = "var J = Packages."
+			+ RopeTest.class.getName() + ";\n"
+			+ "var rope = ''; for (var i = 0; i < 100; i++) rope += 'ab';\n"
+			+ "var flat = new Array(101).join('ab');\n";
+
+	public static String describe(Object value) {
+		return value.getClass().getName();
+	}
+
+	public static String overloaded(String value) {
+		return "String " + value.length();
+	}
+
+	public static String overloaded(int value) {
+		return "int";
+	}
+
+	public static int length(CharSequence value) {
+		return value.length();
+	}
+
+	private static void assertResult(String expected, String source) {
+		for (int level = -1; level <= 9; level += 10) {
+			Context cx = Context.enter();
+			try {
+				cx.setOptimizationLevel(level);
+				Scriptable scope = cx.initStandardObjects();
+				assertEquals("optimization level " + level, expected,
+						Context.toString(cx.evaluateString(scope, PREFIX
+								+ source, "test", 1, null)));
+			} finally {
+				Context.exit();
+			}
+		}
+	}
+
+	@Test
+	public void concatenationBuildsRope() {
+		for (int level = -1; level <= 9; level += 10) {
+			Context cx = Context.enter();
+			try {
+				cx.setOptimizationLevel(level);
+				Scriptable scope = cx.initStandardObjects();
+				assertTrue(cx.evaluateString(scope, PREFIX + "rope", "test", 1,
+						null) instanceof CharSequenceBuffer);
+			} finally {
+				Context.exit();
+			}
+		}
+	}
+
+	@Test
+	public void typeofIsString() {
+		assertResult("string string true",
+				"[typeof rope, typeof (rope + 'c'), rope.length == 200].join(' ')");
+	}
+
+	@Test
+	public void strictEquality() {
+		assertResult("true true true false false",
+				"[rope === flat, flat === rope, rope == flat,"
+						+ " rope === flat + 'x', rope !== flat].join(' ')");
+	}
+
+	@Test
+	public void switchOnRope() {
+		assertResult("flat rope",
+				"function which(s) {\n"
+						+ "  switch (s) {\n"
+						+ "  case 'ab': return 'short';\n"
+						+ "  case flat: return 'flat';\n"
+						+ "  default: return 'none';\n" + "  }\n" + "}\n"
+						+ "function same(s) {\n"
+						+ "  switch (flat) {\n"
+						+ "  case s: return 'rope';\n"
+						+ "  default: return 'none';\n" + "  }\n" + "}\n"
+						+ "which(rope) + ' ' + same(rope)");
+	}
+
+	@Test
+	public void ropeAsPropertyName() {
+		assertResult("1 true",
+				"var o = {}; o[flat] = 1; o[rope] + ' ' + (rope in o)");
+	}
+
+	@Test
+	public void javaMethodsGetStrings() {
+		assertResult("java.lang.String String 200 200 200 201",
+				"[J.describe(rope), J.overloaded(rope), J.length(rope),"
+						+ " new java.lang.String(rope).length(),"
+						+ " J.length(rope + 'c')].join(' ')");
+	}
+
+	@Test
+	public void javaArraysGetStrings() {
+		assertResult("java.lang.String 200",
+				"var list = java.util.Arrays.asList([rope]);\n"
+						+ "J.describe(list.get(0)) + ' ' + list.get(0).length()");
+	}
+}
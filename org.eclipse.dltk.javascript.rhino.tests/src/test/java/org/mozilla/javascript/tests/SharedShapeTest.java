@@ -0,0 +1,216 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+public class SharedShapeTest {
+
+	private static class ShapeFactory extends ContextFactory {
+		@Override
+		protected boolean hasFeature(Context cx, int featureIndex) {
+			if (featureIndex == Context.FEATURE_SHARED_SHAPES) {
+				return true;
+			}
+			return super.hasFeature(cx, featureIndex);
+		}
+	}
+
+	private static class ShapedObject extends NativeObject {
+		private static final long serialVersionUID = 1L;
+
+		ShapedObject() {
+			enableSharedShape();
+		}
+	}
+
+	private Context cx;
+	private Scriptable scope;
+
+	@Before
+	public void enter() {
+		cx = new ShapeFactory().enterContext();
+		scope = cx.initStandardObjects();
+	}
+
+	@After
+	public void exit() {
+		Context.exit();
+	}
+
+	private Object evaluate(String source) {
+		return cx.evaluateString(scope, source, "test", 1, null);
+	}
+
+	private ScriptableObject object(String name) {
+		return (ScriptableObject) scope.get(name, scope);
+	}
+
+	@Test
+	public void literalsShareTheirShape() {
+		evaluate("var a = {x: 1, y: 'a'}; var b = {x: 2, y: 'b'}; b.z = true;");
+		assertTrue(object("a").hasSharedShape());
+		assertTrue(object("b").hasSharedShape());
+		assertEquals("1a2btrue", evaluate("'' + a.x + a.y + b.x + b.y + b.z"));
+		assertEquals("x,y,z", evaluate("Object.keys(b).join()"));
+	}
+
+	@Test
+	public void queriesKeepTheShape() {
+		evaluate("var o = {x: 1, y: 2};");
+		assertEquals("1 true true true", evaluate("var d ="
+				+ " Object.getOwnPropertyDescriptor(o, 'x');"
+				+ " [d.value, d.writable, d.enumerable, d.configurable].join(' ')"));
+		assertEquals(Boolean.TRUE, evaluate("o.propertyIsEnumerable('y')"));
+		assertEquals(Boolean.TRUE, evaluate("o.hasOwnProperty('x')"));
+		assertEquals(ScriptableObject.EMPTY, object("o").getAttributes("x"));
+		assertFalse(object("o").isConst("x"));
+		assertEquals(Boolean.FALSE, evaluate("0 in o"));
+		assertTrue(object("o").hasSharedShape());
+	}
+
+	@Test
+	public void accessorConversionLeavesTheShape() {
+		evaluate("var o = {x: 1, y: 2};"
+				+ " o.__defineGetter__('x', function() { return 10; });");
+		assertFalse(object("o").hasSharedShape());
+		assertEquals("10 2", evaluate("o.x + ' ' + o.y"));
+		evaluate("var p = {x: 1}; Object.defineProperty(p, 'x',"
+				+ " {get: function() { return 20; }});");
+		assertFalse(object("p").hasSharedShape());
+		assertEquals(20, ((Number) evaluate("p.x")).intValue());
+	}
+
+	@Test
+	public void attributeChangeLeavesTheShape() {
+		evaluate("var o = {x: 1, y: 2};"
+				+ " Object.defineProperty(o, 'x', {enumerable: false});");
+		assertFalse(object("o").hasSharedShape());
+		assertEquals("y", evaluate("Object.keys(o).join()"));
+		assertEquals(1, ((Number) evaluate("o.x")).intValue());
+	}
+
+	@Test
+	public void deleteLeavesTheShape() {
+		evaluate("var o = {x: 1, y: 2, z: 3}; delete o.y;");
+		assertFalse(object("o").hasSharedShape());
+		assertEquals("x,z", evaluate("Object.keys(o).join()"));
+		assertEquals(Boolean.FALSE, evaluate("'y' in o"));
+		// deleting a missing property keeps the shape
+		evaluate("var p = {x: 1}; delete p.y;");
+		assertTrue(object("p").hasSharedShape());
+	}
+
+	@Test
+	public void ownPropertiesShadowThePrototype() {
+		evaluate("function F() {} F.prototype.x = 'proto';"
+				+ " var o = new F(); var before = o.x; o.x = 'own';"
+				+ " var q = {x: 1}; var r = {}; r.__proto__ = q; r.x = 2;");
+		assertEquals("proto own 1 2",
+				evaluate("before + ' ' + o.x + ' ' + q.x + ' ' + r.x"));
+		assertTrue(object("q").hasSharedShape());
+		assertTrue(object("r").hasSharedShape());
+	}
+
+	@Test
+	public void freezeLeavesTheShape() {
+		evaluate("var o = {x: 1}; Object.freeze(o); o.x = 2; o.y = 3;");
+		assertFalse(object("o").hasSharedShape());
+		assertEquals("1 undefined", evaluate("o.x + ' ' + o.y"));
+		assertEquals(Boolean.TRUE, evaluate("Object.isFrozen(o)"));
+		// an empty object has nothing to convert
+		evaluate("var e = {}; Object.freeze(e); e.y = 3;");
+		assertTrue(object("e").hasSharedShape());
+		assertEquals(Boolean.FALSE, evaluate("'y' in e"));
+	}
+
+	@Test
+	public void sealLeavesTheShape() {
+		evaluate("var o = {x: 1}; Object.seal(o); o.x = 2; o.y = 3;"
+				+ " delete o.x;");
+		assertFalse(object("o").hasSharedShape());
+		assertEquals("2 undefined", evaluate("o.x + ' ' + o.y"));
+	}
+
+	@Test
+	public void indexedPropertyLeavesTheShape() {
+		evaluate("var o = {x: 1}; o[0] = 'zero';");
+		assertFalse(object("o").hasSharedShape());
+		assertEquals("1 zero", evaluate("o.x + ' ' + o[0]"));
+	}
+
+	@Test
+	public void tooManyPropertiesLeaveTheShape() {
+		ShapedObject o = new ShapedObject();
+		for (int i = 0; i < 100; i++) {
+			o.put("manyProperties" + i, o, Integer.valueOf(i));
+		}
+		assertFalse(o.hasSharedShape());
+		Object[] ids = o.getIds();
+		assertEquals(100, ids.length);
+		for (int i = 0; i < 100; i++) {
+			assertEquals("manyProperties" + i, ids[i]);
+			assertEquals(Integer.valueOf(i), o.get("manyProperties" + i, o));
+		}
+	}
+
+	@Test
+	public void tooManyTransitionsLeaveTheShape() {
+		int shaped = 0;
+		ShapedObject[] objects = new ShapedObject[100];
+		for (int i = 0; i < objects.length; i++) {
+			ShapedObject o = new ShapedObject();
+			o.put("transitionsRoot", o, "root");
+			o.put("transition" + i, o, Integer.valueOf(i));
+			objects[i] = o;
+			if (o.hasSharedShape()) {
+				shaped++;
+			}
+		}
+		assertTrue(shaped > 0);
+		assertTrue(shaped < objects.length);
+		for (int i = 0; i < objects.length; i++) {
+			ShapedObject o = objects[i];
+			assertArrayEquals(new Object[] { "transitionsRoot",
+					"transition" + i }, o.getIds());
+			assertEquals(Integer.valueOf(i), o.get("transition" + i, o));
+		}
+	}
+
+	@Test
+	public void serializesWithoutLeavingTheShape() throws Exception {
+		ShapedObject o = new ShapedObject();
+		o.put("a", o, "first");
+		o.put("b", o, Integer.valueOf(2));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(o);
+		out.close();
+		assertTrue(o.hasSharedShape());
+
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+				bytes.toByteArray()));
+		ShapedObject copy = (ShapedObject) in.readObject();
+		assertArrayEquals(new Object[] { "a", "b" }, copy.getIds());
+		assertEquals("first", copy.get("a", copy));
+		assertEquals(Integer.valueOf(2), copy.get("b", copy));
+		copy.put("c", copy, "third");
+		copy.delete("a");
+		assertArrayEquals(new Object[] { "b", "c" }, copy.getIds());
+	}
+}
@@ -0,0 +1,112 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+public class StandardObjectsSnapshotTest {
+
+	private Context cx;
+	private ScriptableObject snapshot;
+
+	@Before
+	public void enter() {
+		cx = Context.enter();
+		snapshot = cx.createStandardObjectsSnapshot();
+	}
+
+	@After
+	public void exit() {
+		Context.exit();
+	}
+
+	private Object evaluate(Scriptable scope, String source) {
+		return cx.evaluateString(scope, source, "test", 1, null);
+	}
+
+	@Test
+	public void scopesSeeTheStandardObjects() {
+		Scriptable scope = cx.newScopeFromSnapshot(snapshot);
+		assertEquals("3,2,1 {\"a\":[1]} 2a true", Context.toString(evaluate(
+				scope, "[[1, 2, 3].reverse().join(), JSON.stringify({a: [1]}),"
+						+ " /(\\d)a/.exec('x2a')[0] + '', isNaN(parseInt('x'))]"
+						+ ".join(' ')")));
+		assertEquals("[object Object]", Context.toString(evaluate(scope,
+				"String(new Object())")));
+	}
+
+	@Test
+	public void scriptVariablesStayInTheirScope() {
+		Scriptable first = cx.newScopeFromSnapshot(snapshot);
+		Scriptable second = cx.newScopeFromSnapshot(snapshot);
+		evaluate(first, "var x = 1; function f() { return 'first'; }"
+				+ " Array = function() { return 'replaced'; };");
+		assertEquals("undefined function", Context.toString(evaluate(second,
+				"typeof x + ' ' + typeof Array.prototype.push")));
+		assertEquals("replaced", Context.toString(evaluate(first, "Array()")));
+		assertFalse(snapshot.has("x", snapshot));
+		assertTrue(((ScriptableObject) first).has("x", first));
+	}
+
+	@Test
+	public void standardObjectsAreFrozen() {
+		Scriptable scope = cx.newScopeFromSnapshot(snapshot);
+		String[] changes = { "Array.prototype.myExtension = 1;",
+				"Math.PI = 3;", "JSON.parse = null;" };
+		for (String change : changes) {
+			try {
+				evaluate(scope, change);
+				throw new AssertionError("sealed object was changed: " + change);
+			} catch (EvaluatorException e) {
+				// expected
+			}
+		}
+		assertEquals("true true", Context.toString(evaluate(scope,
+				"(Math.PI > 3.14) + ' ' + (typeof JSON.parse == 'function')")));
+		Scriptable other = cx.newScopeFromSnapshot(snapshot);
+		assertEquals("undefined", Context.toString(evaluate(other,
+				"typeof [].myExtension")));
+	}
+
+	@Test
+	public void scopesShareTheBuiltins() {
+		Scriptable first = cx.newScopeFromSnapshot(snapshot);
+		Scriptable second = cx.newScopeFromSnapshot(snapshot);
+		assertSame(evaluate(first, "Object.prototype"), evaluate(second,
+				"Object.prototype"));
+		assertSame(evaluate(first, "[].concat"), evaluate(second,
+				"Array.prototype.concat"));
+		assertSame(snapshot, first.getPrototype());
+	}
+
+	@Test
+	public void snapshotIsUsableFromOtherThreads() throws Exception {
+		final Object[] result = new Object[1];
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				Context other = Context.enter();
+				try {
+					Scriptable scope = other.newScopeFromSnapshot(snapshot);
+					result[0] = other.evaluateString(scope,
+							"var a = [3, 1, 2]; a.sort().join()", "test", 1,
+							null);
+				} finally {
+					Context.exit();
+				}
+			}
+		};
+		thread.start();
+		thread.join();
+		assertEquals("1,2,3", result[0]);
+	}
+}
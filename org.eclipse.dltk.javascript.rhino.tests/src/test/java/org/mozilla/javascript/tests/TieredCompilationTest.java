@@ -0,0 +1,122 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.debug.DebugFrame;
+import org.mozilla.javascript.debug.DebuggableScript;
+import org.mozilla.javascript.debug.Debugger;
+
+/**
+ * Runs interpreted functions until their compiled version takes over and
+ * checks that it behaves like the interpreted one.
+ */
+public class TieredCompilationTest {
+
+	private static final String PREFIX = "var T = Packages."
+			+ TieredCompilationTest.class.getName() + ";\n";
+
+	/**
+	 * Called from the scripts: whether the calling function runs as compiled
+	 * code.
+	 */
+	public static boolean isCompiled() {
+		StackTraceElement[] stack = new Throwable().getStackTrace();
+		for (StackTraceElement element : stack) {
+			String className = element.getClassName();
+			if (className.startsWith("org.mozilla.javascript.gen.")) {
+				return true;
+			}
+			if (className.equals("org.mozilla.javascript.Interpreter")) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	private Context cx;
+	private Scriptable scope;
+
+	@Before
+	public void enter() {
+		cx = Context.enter();
+		cx.setOptimizationLevel(-1);
+		cx.setTierUpThreshold(5);
+		scope = cx.initStandardObjects();
+	}
+
+	@After
+	public void exit() {
+		Context.exit();
+	}
+
+	private Object evaluate(String source) {
+		return cx.evaluateString(scope, source, "test", 1, null);
+	}
+
+	private void tierUp(String call) throws InterruptedException {
+		for (int i = 0; i < 1000; i++) {
+			if (Boolean.TRUE.equals(evaluate(call))) {
+				return;
+			}
+			Thread.sleep(10);
+		}
+		throw new AssertionError(call + " was not compiled");
+	}
+
+	@Test
+	public void compiledFunctionGivesTheSameResults() throws Exception {
+		evaluate(PREFIX + "function sum(n) {\n"
+				+ "  var total = 0;\n"
+				+ "  for (var i = 0; i < n; i++) total += i;\n"
+				+ "  return total;\n" + "}\n"
+				+ "function check() { return sum(10) == 45 && T.isCompiled(); }");
+		tierUp("check()");
+		assertEquals(4950, ((Number) evaluate("sum(100)")).intValue());
+	}
+
+	@Test
+	public void staysStrictAfterTierUp() throws Exception {
+		evaluate("'use strict';\n" + PREFIX
+				+ "function f(assign) {\n"
+				+ "  if (assign) undeclared = 1;\n"
+				+ "  return T.isCompiled();\n" + "}");
+		tierUp("f(false)");
+		assertEquals("ReferenceError typeof undefined", evaluate("var name;"
+				+ " try { f(true); name = 'none'; } catch (e) { name = e.name; }"
+				+ " name + ' typeof ' + typeof undeclared;"));
+	}
+
+	@Test
+	public void debuggerStopsTheCompiledCode() throws Exception {
+		evaluate(PREFIX + "function f() { return T.isCompiled(); }");
+		tierUp("f()");
+		cx.setDebugger(new Debugger() {
+			public void handleCompilationDone(Context cx,
+					DebuggableScript fnOrScript, String source) {
+			}
+
+			public DebugFrame getFrame(Context cx, DebuggableScript fnOrScript) {
+				return null;
+			}
+		}, null);
+		assertEquals(Boolean.FALSE, evaluate("f()"));
+		cx.setDebugger(null, null);
+		assertEquals(Boolean.TRUE, evaluate("f()"));
+	}
+
+	@Test
+	public void observedInstructionsStopTheCompiledCode() throws Exception {
+		evaluate(PREFIX + "function f() { return T.isCompiled(); }");
+		tierUp("f()");
+		cx.setInstructionObserverThreshold(1000);
+		assertEquals(Boolean.FALSE, evaluate("f()"));
+		cx.setInstructionObserverThreshold(0);
+		assertTrue(Boolean.TRUE.equals(evaluate("f()")));
+	}
+}
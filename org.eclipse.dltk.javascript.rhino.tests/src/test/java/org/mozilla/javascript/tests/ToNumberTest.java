@@ -0,0 +1,137 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Checks the conversion of strings to numbers, both the plain decimal numbers
+ * converted without allocating and those left to the general conversion.
+ */
+public class ToNumberTest {
+
+	private static void assertNumber(double expected, String s) {
+		// compares the bits so -0 differs from 0
+		assertEquals("\"" + s + "\"", Double.valueOf(expected),
+				Double.valueOf(ScriptRuntime.toNumber(s)));
+	}
+
+	private static void assertDecimal(String s) {
+		assertNumber(Double.parseDouble(s), s);
+	}
+
+	@Test
+	public void plainDecimals() {
+		String[] decimals = { "0", "-0", "+0", "0.0", "-0.0", "00012", "42",
+				"-42", "+7", "3.25", ".5", "5.", "-.5", "+.5", "1e3", "1E3",
+				"1e+3", "1e-3", "-2.5e-3", "0e500", "-0e-500", "0.1", "0.3",
+				"123456.789e3", "9007199254740992", "-9007199254740991" };
+		for (String s : decimals) {
+			assertDecimal(s);
+		}
+	}
+
+	@Test
+	public void decimalsLeftToGeneralConversion() {
+		String[] decimals = {
+				// more significant digits than the fast path takes
+				"9007199254740993", "123456789012345678", "1234567890123456789",
+				"0.1234567890123456789", "3.141592653589793238462643",
+				"100000000000000000000000001", "0.000000000000000000001",
+				// exponents past the table of powers of ten
+				"1e22", "1e23", "1e-22", "1e-23", "123e-25", "4.9e-324",
+				"5e-324", "2e-324", "2.2250738585072014e-308",
+				"1.7976931348623157e308", "1e308", "1e309", "-1e400", "1e-400",
+				"-1e-400", "1e99999999999", "1e-99999999999", "0.0000001e30" };
+		for (String s : decimals) {
+			assertDecimal(s);
+		}
+	}
+
+	@Test
+	public void randomDecimals() {
+		Random random = new Random(20);
+		for (int n = 0; n < 100000; n++) {
+			StringBuilder sb = new StringBuilder();
+			if (random.nextInt(4) == 0) {
+				sb.append(random.nextBoolean() ? '-' : '+');
+			}
+			int digits = 1 + random.nextInt(24);
+			int point = random.nextInt(digits + 2) - 1;
+			for (int i = 0; i < digits; i++) {
+				if (i == point) {
+					sb.append('.');
+				}
+				sb.append((char) ('0' + random.nextInt(10)));
+			}
+			if (random.nextBoolean()) {
+				sb.append(random.nextBoolean() ? 'e' : 'E');
+				int exponent = random.nextInt(700) - 350;
+				if (exponent >= 0 && random.nextBoolean()) {
+					sb.append('+');
+				}
+				sb.append(exponent);
+			}
+			assertDecimal(sb.toString());
+		}
+	}
+
+	@Test
+	public void whitespace() {
+		assertNumber(12, " 12 ");
+		assertNumber(-1.5, "\t\n\r\u000b\f-1.5\u00a0");
+		assertNumber(12, "\ufeff12\u00a0 ");
+		assertNumber(7e-3, "\u2028\u30007e-3\u2029");
+		assertNumber(-0.0, " -0 ");
+		assertNumber(1e23, " 1e23");
+		assertNumber(0, "");
+		assertNumber(0, " \t ");
+	}
+
+	@Test
+	public void hexAndInfinity() {
+		assertNumber(31, "0x1F");
+		assertNumber(31, "0X1f");
+		assertNumber(16, " +0x10 ");
+		assertNumber(-16, "-0x10");
+		assertNumber(Math.pow(2, 64), "0x10000000000000000");
+		assertNumber(Double.NaN, "0x");
+		assertNumber(Double.NaN, "0xg");
+		assertNumber(Double.POSITIVE_INFINITY, "Infinity");
+		assertNumber(Double.POSITIVE_INFINITY, " +Infinity\n");
+		assertNumber(Double.NEGATIVE_INFINITY, "-Infinity");
+		assertNumber(Double.NaN, "infinity");
+		assertNumber(Double.NaN, "Infinityy");
+	}
+
+	@Test
+	public void notNumbers() {
+		String[] texts = { "-", "+", ".", "-.", "e5", ".e5", "1e", "1e+",
+				"1e-", "1e5x", "1..2", "1.2.3", "--1", "+-1", "1 2", "1_000",
+				"12a", "NaN", "1d", "1f", "\u0661", "1e5.5" };
+		for (String s : texts) {
+			assertNumber(Double.NaN, s);
+		}
+	}
+
+	@Test
+	public void scriptConversions() {
+		Context cx = Context.enter();
+		try {
+			Scriptable scope = cx.initStandardObjects();
+			assertEquals("42 -Infinity 3.25 -Infinity NaN 255 0.1",
+					Context.toString(cx.evaluateString(scope,
+							"[Number('42'), Number(' -1e400 '), +'3.25',"
+									+ " 1 / -'0', Number('1x'), '0xff' * 1,"
+									+ " Number('0.1')].join(' ')", "test", 1,
+							null)));
+		} finally {
+			Context.exit();
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+
+public class TypedArrayTest {
+
+	private static void assertResult(String expected, String source) {
+		for (int level = -1; level <= 9; level += 10) {
+			Context cx = Context.enter();
+			try {
+				cx.setOptimizationLevel(level);
+				Scriptable scope = cx.initStandardObjects();
+				assertEquals("optimization level " + level, expected,
+						Context.toString(cx.evaluateString(scope, source,
+								"test", 1, null)));
+			} finally {
+				Context.exit();
+			}
+		}
+	}
+
+	private static String store(String type) {
+		return "var a = new " + type + "(7);\n"
+				+ "var values = [128, 256, -1, 1.5, 2.5, 300, -5];\n"
+				+ "for (var i = 0; i < values.length; i++) a[i] = values[i];\n"
+				+ "Array.prototype.join.call(a)";
+	}
+
+	@Test
+	public void elementConversions() {
+		assertResult("-128,0,-1,1,2,44,-5", store("Int8Array"));
+		assertResult("128,0,255,1,2,44,251", store("Uint8Array"));
+		assertResult("128,255,0,2,2,255,0", store("Uint8ClampedArray"));
+		assertResult("128,256,-1,1,2,300,-5", store("Int16Array"));
+		assertResult("128,256,65535,1,2,300,65531", store("Uint16Array"));
+		assertResult("128,256,-1,1,2,300,-5", store("Int32Array"));
+		assertResult("128,256,4294967295,1,2,300,4294967291",
+				store("Uint32Array"));
+		assertResult("128,256,-1,1.5,2.5,300,-5", store("Float32Array"));
+		assertResult("0.10000000149011612 0.1", "[new Float32Array([0.1])[0],"
+				+ " new Float64Array([0.1])[0]].join(' ')");
+	}
+
+	@Test
+	public void lengthsAndIndices() {
+		assertResult("3 12 4 undefined undefined 3 0,0,0",
+				"var a = new Int32Array(3);\n"
+						+ "a[5] = 1;\n"
+						+ "[a.length, a.buffer.byteLength,"
+						+ " Int32Array.BYTES_PER_ELEMENT, typeof a[5],"
+						+ " typeof a.get(3), Object.keys(a).length,"
+						+ " Array.prototype.join.call(a)].join(' ')");
+	}
+
+	@Test
+	public void viewsShareTheBuffer() {
+		assertResult("4,3,2,1 1,2,3,3 513 1,2,2",
+				"var buffer = new ArrayBuffer(8);\n"
+						+ "var bytes = new Uint8Array(buffer, 0, 4);\n"
+						+ "new Uint32Array(buffer)[0] = 0x01020304;\n"
+						+ "var little = Array.prototype.join.call(bytes);\n"
+						+ "bytes.subarray(0, 2)[0] = 1; bytes[1] = 2;\n"
+						+ "var copy = new Uint8Array(buffer.slice(0, 3));\n"
+						+ "bytes[2] = 3; bytes[3] = 3;\n"
+						+ "[little, Array.prototype.join.call(bytes),"
+						+ " new Uint16Array(buffer)[0],"
+						+ " Array.prototype.join.call(copy)].join(' ')");
+	}
+
+	@Test
+	public void setCopiesElements() {
+		assertResult("0,1,2,3,1,2 0,0,1,0,1,2", "var a = new Int16Array(6);\n"
+				+ "a.set([1, 2, 3], 1); a.set(a.subarray(1, 3), 4);\n"
+				+ "var before = Array.prototype.join.call(a);\n"
+				+ "// the bytes of the first two elements, 0, 0, 1, 0\n"
+				+ "var b = new Int8Array(a.buffer, 0, 4);\n"
+				+ "new Int16Array(a.buffer, 0, 4).set(b);\n"
+				+ "before + ' ' + Array.prototype.join.call(a)");
+	}
+
+	@Test
+	public void dataViewByteOrder() {
+		assertResult("1,2,4,3 258 772 1027 -1 255 1.5 0,0,0,0,0,0,248,63 true",
+				"var view = new DataView(new ArrayBuffer(12));\n"
+						+ "view.setUint16(0, 0x0102);\n"
+						+ "view.setUint16(2, 0x0304, true);\n"
+						+ "view.setInt32(4, -1);\n"
+						+ "var result = [Array.prototype.join.call("
+						+ "new Uint8Array(view.buffer, 0, 4)), view.getUint16(0),"
+						+ " view.getUint16(2, true), view.getUint16(2),"
+						+ " view.getInt32(4), view.getUint8(7)];\n"
+						+ "view.setFloat64(4, 1.5, true);\n"
+						+ "result.concat([view.getFloat64(4, true),"
+						+ " Array.prototype.join.call(new Uint8Array(view.buffer, 4)),"
+						+ " ArrayBuffer.isView(view)]).join(' ')");
+	}
+
+	@Test
+	public void rangeErrors() {
+		assertResult("RangeError RangeError RangeError RangeError",
+				"var buffer = new ArrayBuffer(8);\n"
+						+ "function error(f) { try { f(); return 'none'; }"
+						+ " catch (e) { return e.name; } }\n"
+						+ "[error(function() { new Uint16Array(buffer, 1); }),"
+						+ " error(function() { new Uint32Array(buffer, 4, 2); }),"
+						+ " error(function() { new DataView(buffer).getInt32(6); }),"
+						+ " error(function() { new Int8Array(2).set([1, 2, 3]); })"
+						+ "].join(' ')");
+	}
+
+	@Test
+	public void sharesJavaBytes() {
+		assertResult("7 3 9", "var bytes = java.lang.reflect.Array.newInstance("
+				+ "java.lang.Byte.TYPE, 3);\n"
+				+ "bytes[0] = 7;\n"
+				+ "var a = new Uint8Array(new ArrayBuffer(bytes));\n"
+				+ "a[1] = 9;\n"
+				+ "[a[0], a.length, bytes[1]].join(' ')");
+	}
+}
@@ -1,45 +1,101 @@
 package org.mozilla.javascript;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 /**
+ * Result of a string concatenation that defers the copying of the characters
+ * until the string value is needed (a rope). Appending to a buffer only
+ * creates a new node referencing both parts, so building a string with
+ * repeated <code>+=</code> is linear instead of quadratic.
+ * <p>
+ * The first operation that needs the characters flattens the whole tree
+ * into a single String without recursion; the String is kept and the parts
+ * are released, so later operations on the same buffer are as cheap as on a
+ * String. The String is published before the parts are released, so a
+ * thread that finds the parts gone always finds the String. Buffers are
+ * flattened when they are serialized, so the depth of the tree doesn't
+ * matter there either.
+ *
  * @author jcompagner
  */
 public class CharSequenceBuffer implements Serializable, CharSequence, Wrapper {
 	private static final long serialVersionUID = 4284364553900666990L;
-	private CharSequence cs1;
-	private CharSequence cs2;
-	private int length;
+
+	// concatenations shorter than this are cheaper as plain Strings
+	private static final int MIN_ROPE_LENGTH = 64;
+
+	// right parts shorter than this are merged when appending, so loops that
+	// append single characters don't create a node per character
+	private static final int MERGE_LENGTH = 256;
+
+	private volatile CharSequence cs1;
+	private volatile CharSequence cs2;
+	private final int length;
+	// the characters once flattened, cs1 and cs2 are null then
+	private volatile String flat;
 
 	public CharSequenceBuffer(CharSequence str1, CharSequence str2) {
 		cs1 = str1;
 		cs2 = str2;
 		length = cs1.length() + cs2.length();
+		if (length < 0) {
+			throw new OutOfMemoryError("String length overflow");
+		}
+	}
+
+	/**
+	 * Concatenate the two parts, returning a plain String for short results
+	 * and a CharSequenceBuffer otherwise.
+	 */
+	public static CharSequence concat(CharSequence str1, CharSequence str2) {
+		if (str1 instanceof CharSequenceBuffer) {
+			return ((CharSequenceBuffer) str1).append(str2);
+		}
+		int len1 = str1.length();
+		int len2 = str2.length();
+		if (len1 == 0) {
+			return str2;
+		}
+		if (len2 == 0) {
+			return str1;
+		}
+		if (len1 + len2 < MIN_ROPE_LENGTH
+				&& !(str2 instanceof CharSequenceBuffer)) {
+			return str1.toString().concat(str2.toString());
+		}
+		return new CharSequenceBuffer(str1, str2);
 	}
 
 	public CharSequence append(CharSequence object) {
-		int length1 = this.length;
-		int length2 = object.length();
-		if (length1 < length2) {
-			int tmp = length1;
-			length1 = length2;
-			length2 = tmp;
+		int len = object.length();
+		if (len == 0) {
+			return this;
 		}
-		if (length1 / 4000 == (length1 + object.length()) / 4000) {
-			return new CharSequenceBuffer(this, object);
+		if (len < MERGE_LENGTH && !(object instanceof CharSequenceBuffer)
+				&& flat == null) {
+			CharSequence left = cs1;
+			CharSequence right = cs2;
+			if (left != null && right instanceof String
+					&& right.length() + len < MERGE_LENGTH) {
+				return new CharSequenceBuffer(left,
+						((String) right).concat(object.toString()));
+			}
 		}
-		// becomes to long
-		StringBuilder sb = new StringBuilder(length1 + length2);
-		appendString(cs1, sb);
-		appendString(cs2, sb);
-		appendString(object, sb);
-		return sb.toString();
+		return new CharSequenceBuffer(this, object);
 	}
 
 	public int length() {
 		return length;
 	}
 
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		// only the flat String is written, the parts are released
+		toString();
+		out.defaultWriteObject();
+	}
+
 	/*
 	 * @see java.lang.Object#equals(java.lang.Object)
 	 */
@@ -49,11 +105,7 @@ public class CharSequenceBuffer implements Serializable, CharSequence, Wrapper {
 		if (obj instanceof CharSequence) {
 			CharSequence cs = (CharSequence) obj;
 			if (cs.length() == length()) {
-				for (int i = 0; i < length(); i++) {
-					if (cs.charAt(i) != charAt(i))
-						return false;
-				}
-				return true;
+				return toString().contentEquals(cs);
 			}
 		}
 		return false;
@@ -63,61 +115,57 @@ public class CharSequenceBuffer implements Serializable, CharSequence, Wrapper {
 	 * @see java.lang.String#hashCode()
 	 */
 	public int hashCode() {
-		int h = 0;
-		int off = 0;
-		int len = length;
-		for (int i = 0; i < len; i++) {
-			h = 31 * h + charAt(off++);
-		}
-		return h;
+		return toString().hashCode();
 	}
 
 	public String toString() {
-		StringBuilder sb = new StringBuilder(cs1.length() + cs2.length());
-		appendString(cs1, sb);
-		appendString(cs2, sb);
-		return sb.toString();
+		String result = flat;
+		if (result == null) {
+			result = flatten();
+		}
+		return result;
 	}
 
-	private void appendString(final CharSequence cs, StringBuilder sb) {
-		if (cs instanceof CharSequenceBuffer) {
-			CharSequenceBuffer wsb = (CharSequenceBuffer) cs;
-			appendString(wsb.cs1, sb);
-			appendString(wsb.cs2, sb);
-		} else {
-			sb.append(cs.toString());
+	private String flatten() {
+		char[] chars = new char[length];
+		int pos = 0;
+		ObjArray stack = new ObjArray();
+		stack.push(this);
+		while (!stack.isEmpty()) {
+			Object part = stack.pop();
+			if (part instanceof CharSequenceBuffer) {
+				CharSequenceBuffer node = (CharSequenceBuffer) part;
+				String nodeFlat = node.flat;
+				if (nodeFlat == null) {
+					CharSequence left = node.cs1;
+					CharSequence right = node.cs2;
+					if (left != null && right != null) {
+						stack.push(right);
+						stack.push(left);
+						continue;
+					}
+					// flattened by another thread in the meantime
+					nodeFlat = node.flat;
+				}
+				part = nodeFlat;
+			}
+			String s = part.toString();
+			s.getChars(0, s.length(), chars, pos);
+			pos += s.length();
 		}
+		String result = new String(chars);
+		flat = result;
+		cs1 = null;
+		cs2 = null;
+		return result;
 	}
 
 	public char charAt(int index) {
-		if ((index < 0) || (index >= length())) {
-			throw new StringIndexOutOfBoundsException(index);
-		}
-		if (index >= cs1.length()) {
-			return cs2.charAt(index - cs1.length());
-		}
-		return cs1.charAt(index);
+		return toString().charAt(index);
 	}
 
 	public CharSequence subSequence(int start, int end) {
-		if (start < 0) {
-			throw new StringIndexOutOfBoundsException(start);
-		}
-		if (end > length()) {
-			throw new StringIndexOutOfBoundsException(end);
-		}
-		if (start > end) {
-			throw new StringIndexOutOfBoundsException(end - start);
-		}
-		if (start > cs1.length()) {
-			return cs2.subSequence(start - cs1.length(), end - cs1.length());
-		} else if (end < cs1.length()) {
-			return cs1.subSequence(start, end);
-		} else {
-			return new StringBuilder(end - start).append(
-					cs1.subSequence(start, cs1.length())).append(
-					cs2.subSequence(0, end - cs1.length()));
-		}
+		return toString().substring(start, end);
 	}
 
 	/*
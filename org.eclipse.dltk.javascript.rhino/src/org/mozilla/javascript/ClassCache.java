@@ -40,12 +40,18 @@
 package org.mozilla.javascript;
 
 import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.io.Serializable;
 
 /**
  * Cache of generated classes and data structures to access Java runtime from
  * JavaScript.
+ * <p>
+ * The caches can be used from several threads at the same time, lookups
+ * don't lock. Entries for classes are held softly, so they don't keep the
+ * classes or their class loaders alive when memory gets short, and the
+ * number of classes cached can be limited with
+ * {@link #setMaximumSize(int)}.
  * 
  * @author Igor Bukanov
  * 
@@ -55,9 +61,10 @@ public class ClassCache implements Serializable {
 	private static final long serialVersionUID = -8866246036237312215L;
 	private static final Object AKEY = "ClassCache";
 	private volatile boolean cachingIsEnabled = true;
-	private transient HashMap<Class<?>, JavaMembers> classTable;
-	private transient HashMap<JavaAdapter.JavaAdapterSignature, Class<?>> classAdapterCache;
-	private transient HashMap<Class<?>, Object> interfaceAdapterCache;
+	private transient volatile ClassCacheMap<JavaMembers> classTable;
+	private transient volatile Map<JavaAdapter.JavaAdapterSignature, Class<?>> classAdapterCache;
+	private transient volatile ClassCacheMap<Object> interfaceAdapterCache;
+	private int maximumSize;
 	private int generatedClassSerial;
 	private Scriptable associatedScope;
 
@@ -112,6 +119,13 @@ public class ClassCache implements Serializable {
 	 * Empty caches of generated Java classes and Java reflection information.
 	 */
 	public synchronized void clearCaches() {
+		// the values are attached to the classes, release them right away
+		if (classTable != null) {
+			classTable.clear();
+		}
+		if (interfaceAdapterCache != null) {
+			interfaceAdapterCache.clear();
+		}
 		classTable = null;
 		classAdapterCache = null;
 		interfaceAdapterCache = null;
@@ -153,20 +167,85 @@ public class ClassCache implements Serializable {
 	}
 
 	/**
-	 * @return a map from classes to associated JavaMembers objects
+	 * Return the maximum number of classes the caches keep information for,
+	 * 0 if the number is not limited.
+	 */
+	public final synchronized int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * Limit the number of classes the caches keep information for. When the
+	 * limit is reached, the information of the classes cached first is
+	 * dropped and computed again when the class is used the next time.
+	 * <p>
+	 * The caches are emptied when the limit changes.
+	 * 
+	 * @param maximumSize
+	 *            the maximum number of classes or 0 to cache all classes,
+	 *            which is the default
+	 */
+	public synchronized void setMaximumSize(int maximumSize) {
+		if (maximumSize < 0)
+			throw new IllegalArgumentException();
+		if (maximumSize == this.maximumSize)
+			return;
+		clearCaches();
+		this.maximumSize = maximumSize;
+	}
+
+	/**
+	 * Return the number of lookups of cached class information that found
+	 * an entry since the caches were last emptied.
+	 */
+	public int getHitCount() {
+		ClassCacheMap<JavaMembers> members = classTable;
+		ClassCacheMap<Object> adapters = interfaceAdapterCache;
+		return (members == null ? 0 : members.getHitCount())
+				+ (adapters == null ? 0 : adapters.getHitCount());
+	}
+
+	/**
+	 * Return the number of lookups of cached class information that found
+	 * no entry since the caches were last emptied.
+	 */
+	public int getMissCount() {
+		ClassCacheMap<JavaMembers> members = classTable;
+		ClassCacheMap<Object> adapters = interfaceAdapterCache;
+		return (members == null ? 0 : members.getMissCount())
+				+ (adapters == null ? 0 : adapters.getMissCount());
+	}
+
+	/**
+	 * @return a map from classes to associated JavaMembers objects, the map
+	 *         is safe for use by several threads
 	 */
 	public Map<Class<?>, JavaMembers> getClassCacheMap() {
-		if (classTable == null) {
-			classTable = new HashMap<Class<?>, JavaMembers>();
+		ClassCacheMap<JavaMembers> map = classTable;
+		if (map == null) {
+			synchronized (this) {
+				map = classTable;
+				if (map == null) {
+					map = new ClassCacheMap<JavaMembers>(maximumSize);
+					classTable = map;
+				}
+			}
 		}
-		return classTable;
+		return map;
 	}
 
 	Map<JavaAdapter.JavaAdapterSignature, Class<?>> getInterfaceAdapterCacheMap() {
-		if (classAdapterCache == null) {
-			classAdapterCache = new HashMap<JavaAdapter.JavaAdapterSignature, Class<?>>();
+		Map<JavaAdapter.JavaAdapterSignature, Class<?>> map = classAdapterCache;
+		if (map == null) {
+			synchronized (this) {
+				map = classAdapterCache;
+				if (map == null) {
+					map = new ConcurrentHashMap<JavaAdapter.JavaAdapterSignature, Class<?>>();
+					classAdapterCache = map;
+				}
+			}
 		}
-		return classAdapterCache;
+		return map;
 	}
 
 	/**
@@ -197,14 +276,14 @@ public class ClassCache implements Serializable {
 	}
 
 	Object getInterfaceAdapter(Class<?> cl) {
-		return interfaceAdapterCache == null ? null : interfaceAdapterCache
-				.get(cl);
+		ClassCacheMap<Object> map = interfaceAdapterCache;
+		return map == null ? null : map.get(cl);
 	}
 
 	synchronized void cacheInterfaceAdapter(Class<?> cl, Object iadapter) {
 		if (cachingIsEnabled) {
 			if (interfaceAdapterCache == null) {
-				interfaceAdapterCache = new HashMap<Class<?>, Object>();
+				interfaceAdapterCache = new ClassCacheMap<Object>(maximumSize);
 			}
 			interfaceAdapterCache.put(cl, iadapter);
 		}
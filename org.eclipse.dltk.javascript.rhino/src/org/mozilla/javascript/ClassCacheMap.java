@@ -0,0 +1,206 @@
+package org.mozilla.javascript;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Map from classes to the data {@link ClassCache} keeps for them. Lookups
+ * don't lock. The classes are weakly referenced and the values softly, so
+ * the map doesn't keep the classes or their class loaders alive once memory
+ * gets short: the values reference their classes, and when they are cleared
+ * a class loader that is discarded is collected with its classes and their
+ * entries. Nothing outside the map references the values, so the map and its
+ * values are collected with the {@link ClassCache} and the scope that owns
+ * it.
+ * <p>
+ * When a maximum size is given, the entries put first are evicted once the
+ * map grows larger. {@link #entrySet()} returns a snapshot of the entries.
+ */
+final class ClassCacheMap<V> extends AbstractMap<Class<?>, V> {
+
+	// a weak reference to a class, equal to the other references to the same
+	// class while the class is alive
+	private static final class Key extends WeakReference<Class<?>> {
+		private final int hash;
+
+		Key(Class<?> type, ReferenceQueue<Class<?>> queue) {
+			super(type, queue);
+			hash = System.identityHashCode(type);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Class<?> type = get();
+			return type != null && type == ((Key) obj).get();
+		}
+	}
+
+	// a value with the key it was put for, so it is only evicted while it is
+	// still mapped
+	private static final class Value<V> extends SoftReference<V> {
+		final Key key;
+
+		Value(V value, Key key) {
+			super(value);
+			this.key = key;
+		}
+	}
+
+	private final ConcurrentHashMap<Key, Value<V>> map = new ConcurrentHashMap<Key, Value<V>>();
+	// the keys of the classes that were collected
+	private final ReferenceQueue<Class<?>> queue = new ReferenceQueue<Class<?>>();
+	private final int maximumSize;
+	// the values in the order they were put if the size is limited, with
+	// values that were removed since, guarded by this
+	private final ArrayDeque<Value<V>> order;
+
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	/**
+	 * @param maximumSize
+	 *            the maximum number of entries or 0 if the map is unbounded
+	 */
+	ClassCacheMap(int maximumSize) {
+		this.maximumSize = maximumSize;
+		order = maximumSize > 0 ? new ArrayDeque<Value<V>>() : null;
+	}
+
+	int getHitCount() {
+		return hits.get();
+	}
+
+	int getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Return the value for the class. Only lookups of classes count as hits
+	 * or misses, and not those of values that were collected.
+	 */
+	@Override
+	public V get(Object key) {
+		if (!(key instanceof Class)) {
+			return null;
+		}
+		Key k = new Key((Class<?>) key, null);
+		Value<V> ref = map.get(k);
+		if (ref == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		V value = ref.get();
+		if (value == null) {
+			map.remove(k, ref);
+			return null;
+		}
+		hits.incrementAndGet();
+		return value;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (!(key instanceof Class)) {
+			return false;
+		}
+		Value<V> ref = map.get(new Key((Class<?>) key, null));
+		return ref != null && ref.get() != null;
+	}
+
+	@Override
+	public synchronized V put(Class<?> key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("value is null");
+		}
+		expungeStaleEntries();
+		Key k = new Key(key, queue);
+		Value<V> added = new Value<V>(value, k);
+		Value<V> old = map.put(k, added);
+		if (order != null) {
+			order.add(added);
+			while (map.size() > maximumSize) {
+				Value<V> eldest = order.poll();
+				map.remove(eldest.key, eldest);
+			}
+			if (order.size() > 2 * maximumSize) {
+				// drop the values that are no longer mapped, at most once per
+				// maximumSize puts
+				Iterator<Value<V>> iter = order.iterator();
+				while (iter.hasNext()) {
+					Value<V> v = iter.next();
+					if (map.get(v.key) != v) {
+						iter.remove();
+					}
+				}
+			}
+		}
+		return old == null ? null : old.get();
+	}
+
+	private void expungeStaleEntries() {
+		Reference<? extends Class<?>> key;
+		while ((key = queue.poll()) != null) {
+			map.remove(key);
+		}
+	}
+
+	@Override
+	public synchronized V remove(Object key) {
+		if (!(key instanceof Class)) {
+			return null;
+		}
+		expungeStaleEntries();
+		Value<V> old = map.remove(new Key((Class<?>) key, null));
+		return old == null ? null : old.get();
+	}
+
+	@Override
+	public synchronized void clear() {
+		map.clear();
+		if (order != null) {
+			order.clear();
+		}
+		expungeStaleEntries();
+	}
+
+	@Override
+	public synchronized int size() {
+		expungeStaleEntries();
+		return map.size();
+	}
+
+	@Override
+	public Set<Map.Entry<Class<?>, V>> entrySet() {
+		Set<Map.Entry<Class<?>, V>> entries = new HashSet<Map.Entry<Class<?>, V>>();
+		for (Map.Entry<Key, Value<V>> entry : map.entrySet()) {
+			Class<?> key = entry.getKey().get();
+			V value = entry.getValue().get();
+			if (key != null && value != null) {
+				entries.add(new SimpleImmutableEntry<Class<?>, V>(key, value));
+			}
+		}
+		return Collections.unmodifiableSet(entries);
+	}
+}
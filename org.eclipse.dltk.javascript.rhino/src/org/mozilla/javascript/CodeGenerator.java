@@ -47,10 +47,13 @@
 
 package org.mozilla.javascript;
 
+import java.util.List;
+
 import org.mozilla.javascript.ast.AstRoot;
 import org.mozilla.javascript.ast.ScriptNode;
 import org.mozilla.javascript.ast.Jump;
 import org.mozilla.javascript.ast.FunctionNode;
+import org.mozilla.javascript.ast.Symbol;
 
 /**
  * Generates bytecode for the Interpreter.
@@ -137,6 +140,12 @@ class CodeGenerator extends Icode {
 				itsData.useDynamicScope = true;
 			}
 		}
+		if (theFunction.getSource() != null) {
+			itsData.itsFunctionSource = theFunction.getSource();
+			itsData.itsFunctionSourceStart = theFunction.getSourceStart();
+			itsData.itsFunctionSourceEnd = theFunction.getSourceEnd();
+			itsData.itsFunctionLineno = theFunction.getBaseLineno();
+		}
 		if (theFunction.isGenerator()) {
 			addIcode(Icode_GENERATOR);
 			addUint16(theFunction.getBaseLineno() & 0xFFFF);
@@ -221,6 +230,10 @@ class CodeGenerator extends Icode {
 		InterpreterData[] array = new InterpreterData[functionCount];
 		for (int i = 0; i != functionCount; i++) {
 			FunctionNode fn = scriptOrFn.getFunctionNode(i);
+			if (fn.isLazy()) {
+				array[i] = generateLazyFunction(fn);
+				continue;
+			}
 			CodeGenerator gen = new CodeGenerator();
 			gen.compilerEnv = compilerEnv;
 			gen.scriptOrFn = fn;
@@ -231,6 +244,46 @@ class CodeGenerator extends Icode {
 		itsData.itsNestedFunctions = array;
 	}
 
+	/**
+	 * Creates the data of a function that is compiled on its first call, see
+	 * {@link Interpreter#compileLazily(Context, InterpreterData)}. It has
+	 * everything needed to create and decompile the function, but no icode.
+	 */
+	private InterpreterData generateLazyFunction(FunctionNode fn) {
+		InterpreterData data = new InterpreterData(itsData);
+		data.itsFunctionType = fn.getFunctionType();
+		data.itsNeedsActivation = fn.requiresActivation();
+		if (fn.getFunctionName() != null) {
+			data.itsName = fn.getName();
+		}
+		if (!fn.getIgnoreDynamicScope()) {
+			if (compilerEnv.isUseDynamicScope()) {
+				data.useDynamicScope = true;
+			}
+		}
+		data.isStrict = itsData.isStrict;
+		data.itsICode = new byte[0];
+		data.itsStringTable = null;
+		// the symbol table of the function is not flattened, only its
+		// parameters, which come first, are known until it is compiled
+		int paramCount = fn.getParamCount();
+		List<Symbol> symbols = fn.getSymbols();
+		data.argNames = new String[paramCount];
+		data.argIsConst = new boolean[paramCount];
+		for (int i = 0; i != paramCount; i++) {
+			data.argNames[i] = symbols.get(i).getName();
+		}
+		data.argCount = paramCount;
+		data.itsMaxVars = paramCount;
+		data.encodedSourceStart = fn.getEncodedSourceStart();
+		data.encodedSourceEnd = fn.getEncodedSourceEnd();
+		data.itsLazySource = fn.getLazySource();
+		data.itsLazySourceStart = fn.getLazySourceStart();
+		data.itsLazySourceEnd = fn.getLazySourceEnd();
+		data.itsLazyLineno = fn.getBaseLineno();
+		return data;
+	}
+
 	private void generateRegExpLiterals() {
 		int N = scriptOrFn.getRegexpCount();
 		if (N == 0)
@@ -644,7 +697,7 @@ class CodeGenerator extends Icode {
 		case Token.GETPROPNOWARN:
 			visitExpression(child, 0);
 			child = child.getNext();
-			addStringOp(type, child.getString());
+			addPropertySiteOp(type, child.getString());
 			break;
 
 		case Token.GETELEM:
@@ -707,12 +760,12 @@ class CodeGenerator extends Icode {
 			if (type == Token.SETPROP_OP) {
 				addIcode(Icode_DUP);
 				stackChange(1);
-				addStringOp(Token.GETPROP, property);
+				addPropertySiteOp(Token.GETPROP, property);
 				// Compensate for the following USE_STACK
 				stackChange(-1);
 			}
 			visitExpression(child, 0);
-			addStringOp(Token.SETPROP, property);
+			addPropertySiteOp(Token.SETPROP, property);
 			stackChange(-1);
 		}
 			break;
@@ -968,7 +1021,7 @@ class CodeGenerator extends Icode {
 		case Token.NAME: {
 			String name = left.getString();
 			// stack: ... -> ... function thisObj
-			addStringOp(Icode_NAME_AND_THIS, name);
+			addPropertySiteOp(Icode_NAME_AND_THIS, name);
 			stackChange(2);
 			break;
 		}
@@ -980,7 +1033,7 @@ class CodeGenerator extends Icode {
 			if (type == Token.GETPROP) {
 				String property = id.getString();
 				// stack: ... target -> ... function thisObj
-				addStringOp(Icode_PROP_AND_THIS, property);
+				addPropertySiteOp(Icode_PROP_AND_THIS, property);
 				stackChange(1);
 			} else {
 				visitExpression(id, 0);
@@ -1330,6 +1383,20 @@ class CodeGenerator extends Icode {
 		}
 	}
 
+	/**
+	 * Add an instruction that has an inline cache. The operand is the index of
+	 * its cache in {@link InterpreterData#itsPropertyCaches}, sites past the
+	 * last one that fits in the operand are not cached.
+	 */
+	private void addPropertySiteOp(int op, String str) {
+		addStringOp(op, str);
+		int site = itsData.itsPropertySiteCount;
+		if (site < PropertyCache.NO_SITE) {
+			itsData.itsPropertySiteCount = site + 1;
+		}
+		addUint16(site);
+	}
+
 	private void addIndexOp(int op, int index) {
 		addIndexPrefix(index);
 		if (Icode.validIcode(op)) {
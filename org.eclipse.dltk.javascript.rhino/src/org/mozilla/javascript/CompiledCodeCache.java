@@ -0,0 +1,413 @@
+package org.mozilla.javascript;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persistent cache of compiled scripts and functions. When set on a
+ * {@link ContextFactory} with
+ * {@link ContextFactory#setCompiledCodeCache(CompiledCodeCache)}, the
+ * <code>compileString</code>, <code>compileReader</code> and
+ * <code>compileFunction</code> methods of {@link Context} look up the
+ * compiled form of the source in the cache directory before parsing it, so
+ * warm starts skip parsing and code generation.
+ * <p>
+ * Entries are keyed by a hash of the source text, source name and line
+ * number, the {@link CompilerEnvirons} settings that influence the generated
+ * code and a hash of the engine classes that generate and run the code, so
+ * entries of any other build of the engine are never used. Codegen output is
+ * stored as class bytes that are defined again through the normal
+ * {@link SecurityController} class loader, interpreted code as serialized
+ * {@link InterpreterData}.
+ * <p>
+ * Every entry carries a digest of its content that is checked before
+ * anything is read from it, and only the classes interpreted code consists
+ * of are deserialized. The cache directory should still only be writable by
+ * the application, like any other place code is loaded from.
+ * <p>
+ * The cache is not used while a debugger is set, since the debugger has to
+ * see the compilation. Warnings reported during parsing are only reported
+ * when the source is actually compiled. Failures to read or write the cache
+ * are not reported, the source is compiled as if there was no cache.
+ */
+public class CompiledCodeCache {
+
+	// increment when the way entries are stored changes
+	private static final int FORMAT_VERSION = 1;
+
+	private static final byte CLASS_ENTRY = 'C';
+	private static final byte INTERPRETED_ENTRY = 'I';
+
+	private static final String SUFFIX = ".jsc";
+
+	private static final String DIGEST = "SHA-256";
+
+	// the classes whose code decides what is stored in an entry and how it
+	// runs, a change to any of them makes all entries stale
+	private static final String[] ENGINE_CLASSES = {
+			"org/mozilla/classfile/ClassFileWriter",
+			"org/mozilla/javascript/CodeGenerator",
+			"org/mozilla/javascript/CompiledCodeCache",
+			"org/mozilla/javascript/Decompiler",
+			"org/mozilla/javascript/IRFactory",
+			"org/mozilla/javascript/Icode",
+			"org/mozilla/javascript/Interpreter",
+			"org/mozilla/javascript/InterpreterData",
+			"org/mozilla/javascript/NodeTransformer",
+			"org/mozilla/javascript/Parser",
+			"org/mozilla/javascript/ScriptRuntime",
+			"org/mozilla/javascript/Token",
+			"org/mozilla/javascript/TokenStream",
+			"org/mozilla/javascript/optimizer/Block",
+			"org/mozilla/javascript/optimizer/BodyCodegen",
+			"org/mozilla/javascript/optimizer/Codegen",
+			"org/mozilla/javascript/optimizer/OptFunctionNode",
+			"org/mozilla/javascript/optimizer/OptRuntime",
+			"org/mozilla/javascript/optimizer/OptTransformer",
+			"org/mozilla/javascript/optimizer/Optimizer",
+			"org/mozilla/javascript/regexp/NativeRegExp",
+			"org/mozilla/javascript/regexp/RECompiled" };
+
+	// the classes serialized interpreted code consists of
+	private static final Set<String> INTERPRETED_CLASSES = new HashSet<String>(
+			Arrays.asList("java.lang.Boolean", "java.lang.Double",
+					"java.lang.Integer", "java.lang.Number",
+					"java.lang.Object", "java.lang.String",
+					"org.mozilla.javascript.InterpreterData",
+					"org.mozilla.javascript.UintMap",
+					"org.mozilla.javascript.regexp.RECharSet",
+					"org.mozilla.javascript.regexp.RECompiled"));
+
+	private static String engineHash;
+
+	private final File directory;
+
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	/**
+	 * Create a cache that stores its entries in the given directory. The
+	 * directory is created when the first entry is stored.
+	 */
+	public CompiledCodeCache(File directory) {
+		if (directory == null)
+			throw new IllegalArgumentException("directory is null");
+		this.directory = directory;
+	}
+
+	public final File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Return the number of compilations that were served from the cache.
+	 */
+	public int getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Return the number of compilations that were not found in the cache.
+	 */
+	public int getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Remove all entries from the cache directory.
+	 */
+	public void clear() {
+		File[] files = directory.listFiles();
+		if (files == null)
+			return;
+		for (File file : files) {
+			if (file.getName().endsWith(SUFFIX)) {
+				file.delete();
+			}
+		}
+	}
+
+	String getKey(Context cx, CompilerEnvirons compilerEnv, String source,
+			String sourceName, int lineno, boolean returnFunction) {
+		StringBuilder sb = new StringBuilder(128);
+		sb.append(FORMAT_VERSION).append('|');
+		sb.append(getEngineHash()).append('|');
+		sb.append(sourceName).append('|').append(lineno).append('|');
+		sb.append(returnFunction ? 'F' : 'S').append('|');
+		sb.append(compilerEnv.getLanguageVersion()).append('|');
+		sb.append(compilerEnv.getOptimizationLevel()).append('|');
+		appendFlag(sb, compilerEnv.isGenerateDebugInfo());
+		appendFlag(sb, compilerEnv.isUseDynamicScope());
+		appendFlag(sb, compilerEnv.isReservedKeywordAsIdentifier());
+		appendFlag(sb, compilerEnv.isAllowMemberExprAsFunctionName());
+		appendFlag(sb, compilerEnv.isXmlAvailable());
+		appendFlag(sb, compilerEnv.isGeneratingSource());
+		appendFlag(sb, compilerEnv.isStrictMode());
+		appendFlag(sb, compilerEnv.reportWarningAsError());
+		appendFlag(sb, compilerEnv.isGenerateObserverCount());
+		appendFlag(sb, compilerEnv.getAllowSharpComments());
+		appendFlag(sb, compilerEnv.isRetainFunctionSource());
+		appendFlag(sb, compilerEnv.isLazyFunctions());
+		appendFlag(sb, compilerEnv.isIdeMode());
+		appendFlag(sb, compilerEnv.isCompactAst());
+		appendFlag(sb, compilerEnv.recoverFromErrors());
+		appendFlag(sb, compilerEnv.isRecordingComments());
+		appendFlag(sb, compilerEnv.isRecordingLocalJsDocComments());
+		appendFlag(sb, compilerEnv.getWarnTrailingComma());
+		Set<String> activationNames = compilerEnv.getActivationNames();
+		if (activationNames != null) {
+			// sorted so the key doesn't depend on the set implementation
+			sb.append(new TreeSet<String>(activationNames));
+		}
+		sb.append('|');
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			digest.update(sb.toString().getBytes("UTF-8"));
+			digest.update(source.getBytes("UTF-8"));
+			return toHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String toHex(byte[] hash) {
+		StringBuilder sb = new StringBuilder(hash.length * 2);
+		for (byte b : hash) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+			sb.append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Return a hash of the class files of the engine classes. The
+	 * implementation version is not enough, development builds don't change
+	 * it.
+	 */
+	private static synchronized String getEngineHash() {
+		if (engineHash == null) {
+			try {
+				MessageDigest digest = MessageDigest.getInstance("SHA-1");
+				byte[] buffer = new byte[8192];
+				for (String name : ENGINE_CLASSES) {
+					digest.update(name.getBytes("UTF-8"));
+					InputStream in = CompiledCodeCache.class
+							.getResourceAsStream('/' + name + ".class");
+					if (in == null) {
+						continue;
+					}
+					try {
+						int n;
+						while ((n = in.read(buffer)) > 0) {
+							digest.update(buffer, 0, n);
+						}
+					} finally {
+						in.close();
+					}
+				}
+				engineHash = toHex(digest.digest());
+			} catch (NoSuchAlgorithmException e) {
+				throw new RuntimeException(e);
+			} catch (IOException e) {
+				// unreadable class files, entries can't be told apart
+				engineHash = "";
+			}
+		}
+		return engineHash;
+	}
+
+	private static void appendFlag(StringBuilder sb, boolean flag) {
+		sb.append(flag ? '1' : '0');
+	}
+
+	/**
+	 * Return the byte code stored for the key in the form the compiler
+	 * produced it or null if there is no usable entry.
+	 */
+	Object load(String key) {
+		File file = new File(directory, key + SUFFIX);
+		if (!file.isFile()) {
+			misses.incrementAndGet();
+			return null;
+		}
+		Object bytecode = null;
+		try {
+			byte[] content = readContent(file);
+			if (content != null) {
+				DataInputStream in = new DataInputStream(
+						new ByteArrayInputStream(content));
+				byte kind = in.readByte();
+				if (kind == CLASS_ENTRY) {
+					String className = in.readUTF();
+					byte[] classBytes = new byte[in.readInt()];
+					in.readFully(classBytes);
+					bytecode = new Object[] { className, classBytes };
+				} else if (kind == INTERPRETED_ENTRY) {
+					bytecode = new CodeInputStream(in).readObject();
+					if (!(bytecode instanceof InterpreterData)) {
+						bytecode = null;
+					}
+				}
+			}
+		} catch (IOException e) {
+			bytecode = null;
+		} catch (ClassNotFoundException e) {
+			bytecode = null;
+		}
+		if (bytecode == null) {
+			file.delete();
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return bytecode;
+	}
+
+	/**
+	 * Return the content of an entry file after checking it against the
+	 * digest stored in front of it, null if it doesn't match.
+	 */
+	private static byte[] readContent(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			byte[] expected = new byte[in.readUnsignedByte()];
+			in.readFully(expected);
+			int length = in.readInt();
+			if (length < 0 || length > file.length()) {
+				return null;
+			}
+			byte[] content = new byte[length];
+			in.readFully(content);
+			if (in.read() != -1
+					|| !MessageDigest.isEqual(expected, digest(content))) {
+				return null;
+			}
+			return content;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static byte[] digest(byte[] content) {
+		try {
+			return MessageDigest.getInstance(DIGEST).digest(content);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Store the output of the compiler for the key.
+	 */
+	void store(String key, Object bytecode) {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			return;
+		File file = new File(directory, key + SUFFIX);
+		File tmp = null;
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			if (bytecode instanceof InterpreterData) {
+				out.writeByte(INTERPRETED_ENTRY);
+				ObjectOutputStream oout = new ObjectOutputStream(out);
+				oout.writeObject(bytecode);
+				oout.flush();
+			} else {
+				Object[] nameBytesPair = (Object[]) bytecode;
+				byte[] classBytes = (byte[]) nameBytesPair[1];
+				out.writeByte(CLASS_ENTRY);
+				out.writeUTF((String) nameBytesPair[0]);
+				out.writeInt(classBytes.length);
+				out.write(classBytes);
+			}
+			out.flush();
+			byte[] content = bytes.toByteArray();
+			byte[] hash = digest(content);
+
+			// write to a temporary file of its own first and move it in
+			// place, so concurrent readers in any process never see partial
+			// entries
+			tmp = File.createTempFile(key, ".tmp", directory);
+			out = new DataOutputStream(new FileOutputStream(tmp));
+			try {
+				out.writeByte(hash.length);
+				out.write(hash);
+				out.writeInt(content.length);
+				out.write(content);
+			} finally {
+				out.close();
+			}
+			Files.move(tmp.toPath(), file.toPath(),
+					StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			// the entry is just not cached
+		} finally {
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Resolves classes through the loader of Rhino itself, the thread's
+	 * context loader may not see them, and rejects everything that is not
+	 * part of interpreted code.
+	 */
+	private static class CodeInputStream extends ObjectInputStream {
+
+		CodeInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc)
+				throws IOException, ClassNotFoundException {
+			String name = desc.getName();
+			int dims = 0;
+			while (dims < name.length() && name.charAt(dims) == '[') {
+				++dims;
+			}
+			String element = name.substring(dims);
+			if (dims > 0 && element.length() == 1) {
+				// array of a primitive type
+				return super.resolveClass(desc);
+			}
+			if (dims > 0 && element.startsWith("L") && element.endsWith(";")) {
+				element = element.substring(1, element.length() - 1);
+			}
+			if (!INTERPRETED_CLASSES.contains(element)) {
+				throw new InvalidClassException(name, "not part of code");
+			}
+			Class<?> cl = Kit.classOrNull(
+					CompiledCodeCache.class.getClassLoader(), name);
+			if (cl != null) {
+				return cl;
+			}
+			return super.resolveClass(desc);
+		}
+	}
+}
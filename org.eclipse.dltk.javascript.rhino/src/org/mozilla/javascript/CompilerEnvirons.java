@@ -73,6 +73,9 @@ public class CompilerEnvirons {
 				.hasFeature(Context.FEATURE_MEMBER_EXPR_AS_FUNCTION_NAME);
 		strictMode = cx.hasFeature(Context.FEATURE_STRICT_MODE);
 		warningAsError = cx.hasFeature(Context.FEATURE_WARNING_AS_ERROR);
+		lazyFunctions = cx.hasFeature(Context.FEATURE_LAZY_FUNCTIONS)
+				&& cx.debugger == null;
+		retainFunctionSource = cx.tierUpThreshold > 0 && cx.debugger == null;
 		xmlAvailable = cx.hasFeature(Context.FEATURE_E4X);
 
 		optimizationLevel = cx.getOptimizationLevel();
@@ -253,6 +256,55 @@ public class CompilerEnvirons {
 		return ideMode;
 	}
 
+	/**
+	 * Keep parse trees small, for tools that hold the trees of many sources
+	 * at once. Identifiers, string literals and number literals are shared
+	 * with all other parses through {@link String#intern()}, and the lists of
+	 * the nodes don't keep unused capacity after parsing. Trees that are only
+	 * read take much less memory as a
+	 * {@link org.mozilla.javascript.ast.CompactTree}.
+	 */
+	public void setCompactAst(boolean compact) {
+		compactAst = compact;
+	}
+
+	public boolean isCompactAst() {
+		return compactAst;
+	}
+
+	/**
+	 * Compile the bodies of functions when they are called for the first
+	 * time, see {@link Context#FEATURE_LAZY_FUNCTIONS}.
+	 */
+	public void setLazyFunctions(boolean lazy) {
+		lazyFunctions = lazy;
+	}
+
+	/**
+	 * Return whether function bodies are compiled on their first call. This
+	 * is only done for interpreted code outside of IDE mode.
+	 */
+	public boolean isLazyFunctions() {
+		return lazyFunctions && optimizationLevel < 0 && !ideMode;
+	}
+
+	/**
+	 * Keep the source range of each function with its compiled code, so hot
+	 * functions can be compiled again from their source, see
+	 * {@link Context#setTierUpThreshold(int)}.
+	 */
+	public void setRetainFunctionSource(boolean retain) {
+		retainFunctionSource = retain;
+	}
+
+	/**
+	 * Return whether the source of functions is kept with their compiled
+	 * code. This is only done for interpreted code outside of IDE mode.
+	 */
+	public boolean isRetainFunctionSource() {
+		return retainFunctionSource && optimizationLevel < 0 && !ideMode;
+	}
+
 	public Set<String> getActivationNames() {
 		return activationNames;
 	}
@@ -309,5 +361,8 @@ public class CompilerEnvirons {
 	private boolean warnTrailingComma;
 	private boolean ideMode;
 	private boolean allowSharpComments;
+	private boolean lazyFunctions;
+	private boolean retainFunctionSource;
+	private boolean compactAst;
 	Set<String> activationNames;
 }
@@ -0,0 +1,300 @@
+package org.mozilla.javascript;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.mozilla.javascript.ScriptableObject.Slot;
+
+/**
+ * Slot table of a {@link ScriptableObject} that is shared between threads,
+ * see {@link ScriptableObject#enableConcurrentAccess()}. Lookups never lock
+ * and changes never take the monitor of the object.
+ * <p>
+ * Hash buckets hold immutable chains of nodes that are replaced with
+ * compare-and-set, so a reader always sees a consistent chain. On resize
+ * every bucket of the old table is copied into the new table and then
+ * marked as {@link #MOVED}; threads that find a moved bucket continue in the
+ * new table, threads that changed a bucket while it was being copied make
+ * the copy start over for that bucket.
+ * <p>
+ * The definition order of the slots is kept in the orderedNext list of the
+ * slots. A slot is appended by swapping it into {@link #tail} and then
+ * linking the previous tail to it, so for a short time a slot is in the
+ * table but not yet reachable in the list, and neither are the slots
+ * appended after it. Iterating the properties of an object while other
+ * threads add properties may miss those, like it would if the properties
+ * were added a moment later.
+ * <p>
+ * Removed slots are marked as deleted by the caller and unlinked from the
+ * list by the threads that walk it, see {@link #getNextAdded(Slot)}. An
+ * unlink only ever skips deleted slots and never changes the link of the
+ * slot it skips, and the last slot of the list, whose link an appending
+ * thread may be about to set, is never skipped, so concurrent unlinks and
+ * appends never lose a live slot.
+ */
+final class ConcurrentSlotTable {
+
+	private static final class Node {
+		final Slot slot;
+		final Node next;
+
+		Node(Slot slot, Node next) {
+			this.slot = slot;
+			this.next = next;
+		}
+	}
+
+	private static final class Table {
+		final AtomicReferenceArray<Node> buckets;
+		// set when the table starts to be copied into a larger one
+		final AtomicReference<Table> nextTable = new AtomicReference<Table>();
+
+		Table(int size) {
+			buckets = new AtomicReferenceArray<Node>(size);
+		}
+	}
+
+	private static final Node MOVED = new Node(null, null);
+
+	private volatile Table table;
+	private final AtomicInteger count = new AtomicInteger();
+	// slots removed since the list was last swept
+	private final AtomicInteger removed = new AtomicInteger();
+
+	// head of the definition-order list, never part of the table itself
+	private final Slot head = new Slot(null, 0, 0);
+	private final AtomicReference<Slot> tail = new AtomicReference<Slot>(
+			head);
+
+	/**
+	 * Create a table with the live slots of the definition-order list that
+	 * starts at the given slot.
+	 */
+	ConcurrentSlotTable(Slot firstAdded, int size) {
+		int tableSize = 4;
+		while (4 * size > 3 * tableSize) {
+			tableSize <<= 1;
+		}
+		table = new Table(tableSize);
+		for (Slot slot = firstAdded; slot != null; slot = slot.orderedNext) {
+			if (!slot.wasDeleted) {
+				putIfAbsent(slot);
+			}
+		}
+	}
+
+	int size() {
+		return count.get();
+	}
+
+	/**
+	 * Return the first slot in definition order that is not deleted, or null
+	 * if there is none.
+	 */
+	Slot getFirstAdded() {
+		return getNextAdded(head);
+	}
+
+	/**
+	 * Return the slot after the given one in definition order that is not
+	 * deleted, or null if there is none. Deleted slots in between are
+	 * unlinked from the list.
+	 */
+	Slot getNextAdded(Slot slot) {
+		Slot next = slot.orderedNext;
+		while (next != null && next.wasDeleted) {
+			Slot after = next.orderedNext;
+			if (after == null) {
+				// the last slot stays, the next append links to it
+				return null;
+			}
+			slot.orderedNext = after;
+			next = after;
+		}
+		return next;
+	}
+
+	Slot query(String name, int indexOrHash) {
+		Table t = table;
+		for (;;) {
+			AtomicReferenceArray<Node> buckets = t.buckets;
+			Node node = buckets.get(indexOrHash & (buckets.length() - 1));
+			if (node == MOVED) {
+				t = t.nextTable.get();
+				continue;
+			}
+			return find(node, name, indexOrHash);
+		}
+	}
+
+	/**
+	 * Add the slot if there is no slot with the same key.
+	 *
+	 * @return the slot that is already in the table or null if the slot was
+	 *         added
+	 */
+	Slot putIfAbsent(Slot slot) {
+		int indexOrHash = slot.indexOrHash;
+		Table t = table;
+		for (;;) {
+			AtomicReferenceArray<Node> buckets = t.buckets;
+			int i = indexOrHash & (buckets.length() - 1);
+			Node first = buckets.get(i);
+			if (first == MOVED) {
+				t = t.nextTable.get();
+				continue;
+			}
+			Slot existing = find(first, slot.name, indexOrHash);
+			if (existing != null) {
+				return existing;
+			}
+			if (buckets.compareAndSet(i, first, new Node(slot, first))) {
+				appendOrdered(slot);
+				if (4 * count.incrementAndGet() > 3 * buckets.length()) {
+					resize(t);
+				}
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Replace the slot by another slot for the same key, the new slot is
+	 * added at the end of the definition order and the old one is marked as
+	 * deleted. Its value and name are kept for threads still reading it.
+	 *
+	 * @return false if the slot is not in the table anymore
+	 */
+	boolean replace(Slot slot, Slot newSlot) {
+		if (!change(slot, newSlot)) {
+			return false;
+		}
+		appendOrdered(newSlot);
+		slot.wasDeleted = true;
+		slotRemoved();
+		return true;
+	}
+
+	/**
+	 * Remove the slot from the table and mark it as deleted.
+	 *
+	 * @return false if the slot was not in the table
+	 */
+	boolean remove(Slot slot) {
+		if (!change(slot, null)) {
+			return false;
+		}
+		slot.wasDeleted = true;
+		count.decrementAndGet();
+		slotRemoved();
+		return true;
+	}
+
+	/**
+	 * Unlink the deleted slots from the definition-order list once there
+	 * are more of them than live slots, so objects that get many properties
+	 * deleted without ever being iterated don't keep them.
+	 */
+	private void slotRemoved() {
+		int n = removed.incrementAndGet();
+		if (n > count.get() + 8 && removed.compareAndSet(n, 0)) {
+			Slot slot = head;
+			while (slot != null) {
+				slot = getNextAdded(slot);
+			}
+		}
+	}
+
+	private boolean change(Slot slot, Slot newSlot) {
+		int indexOrHash = slot.indexOrHash;
+		Table t = table;
+		for (;;) {
+			AtomicReferenceArray<Node> buckets = t.buckets;
+			int i = indexOrHash & (buckets.length() - 1);
+			Node first = buckets.get(i);
+			if (first == MOVED) {
+				t = t.nextTable.get();
+				continue;
+			}
+			Node changed = copyChanged(first, slot, newSlot);
+			if (changed == first) {
+				return false;
+			}
+			if (buckets.compareAndSet(i, first, changed)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Return a copy of the chain with the slot replaced or removed, or the
+	 * chain itself if the slot is not part of it.
+	 */
+	private static Node copyChanged(Node first, Slot slot, Slot newSlot) {
+		if (first == null) {
+			return null;
+		}
+		if (first.slot == slot) {
+			return newSlot == null ? first.next : new Node(newSlot,
+					first.next);
+		}
+		Node rest = copyChanged(first.next, slot, newSlot);
+		return rest == first.next ? first : new Node(first.slot, rest);
+	}
+
+	private static Slot find(Node node, String name, int indexOrHash) {
+		for (; node != null; node = node.next) {
+			Slot slot = node.slot;
+			if (slot.indexOrHash == indexOrHash
+					&& (slot.name == name || (name != null && name
+							.equals(slot.name)))) {
+				return slot;
+			}
+		}
+		return null;
+	}
+
+	private void appendOrdered(Slot slot) {
+		Slot last = tail.getAndSet(slot);
+		// orderedNext is volatile, this publishes the slot to the threads
+		// walking the list
+		last.orderedNext = slot;
+	}
+
+	private void resize(Table t) {
+		// only the current table is resized, and only by one thread
+		if (t != table || t.nextTable.get() != null) {
+			return;
+		}
+		AtomicReferenceArray<Node> buckets = t.buckets;
+		int oldSize = buckets.length();
+		Table newTable = new Table(oldSize * 2);
+		if (!t.nextTable.compareAndSet(null, newTable)) {
+			return;
+		}
+		AtomicReferenceArray<Node> newBuckets = newTable.buckets;
+		for (int i = 0; i != oldSize; ++i) {
+			for (;;) {
+				Node first = buckets.get(i);
+				Node low = null;
+				Node high = null;
+				for (Node node = first; node != null; node = node.next) {
+					if ((node.slot.indexOrHash & oldSize) == 0) {
+						low = new Node(node.slot, low);
+					} else {
+						high = new Node(node.slot, high);
+					}
+				}
+				// the new buckets are only reachable after this bucket is
+				// marked as moved
+				newBuckets.set(i, low);
+				newBuckets.set(i + oldSize, high);
+				if (buckets.compareAndSet(i, first, MOVED)) {
+					break;
+				}
+			}
+		}
+		table = newTable;
+	}
+}
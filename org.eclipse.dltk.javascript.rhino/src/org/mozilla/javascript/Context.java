@@ -50,11 +50,15 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.mozilla.javascript.ast.AstRoot;
 import org.mozilla.javascript.ast.ScriptNode;
@@ -319,6 +323,44 @@ public class Context {
 	 */
 	public static final int FEATURE_ENHANCED_JAVA_ACCESS = 13;
 
+	/**
+	 * Controls whether objects created by scripts through object literals and
+	 * <tt>new Object()</tt> share their property layout with other objects
+	 * that got the same properties in the same order. This saves a lot of
+	 * memory when many objects with the same structure are created.
+	 * <p>
+	 * By default {@link #hasFeature(int)} returns false.
+	 * 
+	 * @see ScriptableObject#enableSharedShape()
+	 */
+	public static final int FEATURE_SHARED_SHAPES = 14;
+
+	/**
+	 * Controls whether regular expressions are compiled to Java classes when
+	 * they are executed, instead of being run by the regular expression
+	 * interpreter. Compiled expressions are cached by their source and flags.
+	 * Expressions with constructs the compiler doesn't support are still
+	 * interpreted.
+	 * <p>
+	 * By default {@link #hasFeature(int)} returns false.
+	 */
+	public static final int FEATURE_COMPILE_REGEXP = 15;
+
+	/**
+	 * Controls whether interpreted functions are compiled when they are
+	 * called for the first time instead of together with the script that
+	 * contains them. The function bodies are still parsed with the script, so
+	 * syntax errors are reported right away, but no interpreter code is
+	 * generated for functions that are never called. The source of the
+	 * script is kept as long as one of its functions is not compiled.
+	 * <p>
+	 * This only applies to interpreted code (optimization level -1) and not
+	 * while a debugger is attached.
+	 * <p>
+	 * By default {@link #hasFeature(int)} returns false.
+	 */
+	public static final int FEATURE_LAZY_FUNCTIONS = 16;
+
 	public static final String languageVersionProperty = "language version";
 	public static final String errorReporterProperty = "error reporter";
 
@@ -426,6 +468,9 @@ public class Context {
 		if (old != null) {
 			cx = old;
 		} else {
+			if (cx == null) {
+				cx = factory.takePooledContext();
+			}
 			if (cx == null) {
 				cx = factory.makeContext();
 				if (cx.enterCount != 0) {
@@ -436,6 +481,9 @@ public class Context {
 				if (factory.isSealed() && !cx.isSealed()) {
 					cx.seal(null);
 				}
+				if (factory.getContextPoolSize() > 0) {
+					cx.initialState = new InitialState(cx);
+				}
 			} else {
 				if (cx.enterCount != 0) {
 					throw new IllegalStateException(
@@ -472,6 +520,119 @@ public class Context {
 		if (--cx.enterCount == 0) {
 			VMBridge.instance.setContext(helper, null);
 			cx.factory.onContextReleased(cx);
+			InitialState initialState = cx.initialState;
+			if (initialState != null) {
+				initialState.restore(cx);
+				cx.factory.poolContext(cx);
+			}
+		}
+	}
+
+	/**
+	 * The settings of a pooled Context right after it was created, restored
+	 * when the Context is released so the next thread gets it as if it was
+	 * just made by the factory.
+	 */
+	private static final class InitialState {
+		private final boolean sealed;
+		private final Object sealKey;
+		private final Object interpreterSecurityDomain;
+		private final int version;
+		private final SecurityController securityController;
+		private final boolean hasClassShutter;
+		private final ClassShutter classShutter;
+		private final ErrorReporter errorReporter;
+		private final RegExpProxy regExpProxy;
+		private final Locale locale;
+		private final boolean generatingDebug;
+		private final boolean generatingDebugChanged;
+		private final boolean generatingSource;
+		private final boolean compileFunctionsWithDynamicScopeFlag;
+		private final boolean useDynamicScope;
+		private final int optimizationLevel;
+		private final int maximumInterpreterStackDepth;
+		private final WrapFactory wrapFactory;
+		private final Debugger debugger;
+		private final Object debuggerData;
+		private final Object propertyListeners;
+		private final ClassLoader applicationClassLoader;
+		private final Set<String> activationNames;
+		private final int instructionThreshold;
+		private final int tierUpThreshold;
+		private final boolean generateObserverCount;
+
+		InitialState(Context cx) {
+			sealed = cx.sealed;
+			sealKey = cx.sealKey;
+			interpreterSecurityDomain = cx.interpreterSecurityDomain;
+			version = cx.version;
+			securityController = cx.securityController;
+			hasClassShutter = cx.hasClassShutter;
+			classShutter = cx.classShutter;
+			errorReporter = cx.errorReporter;
+			regExpProxy = cx.regExpProxy;
+			locale = cx.locale;
+			generatingDebug = cx.generatingDebug;
+			generatingDebugChanged = cx.generatingDebugChanged;
+			generatingSource = cx.generatingSource;
+			compileFunctionsWithDynamicScopeFlag = cx.compileFunctionsWithDynamicScopeFlag;
+			useDynamicScope = cx.useDynamicScope;
+			optimizationLevel = cx.optimizationLevel;
+			maximumInterpreterStackDepth = cx.maximumInterpreterStackDepth;
+			wrapFactory = cx.wrapFactory;
+			debugger = cx.debugger;
+			debuggerData = cx.debuggerData;
+			propertyListeners = cx.propertyListeners;
+			applicationClassLoader = cx.applicationClassLoader;
+			activationNames = cx.activationNames == null ? null
+					: new HashSet<String>(cx.activationNames);
+			instructionThreshold = cx.instructionThreshold;
+			tierUpThreshold = cx.tierUpThreshold;
+			generateObserverCount = cx.generateObserverCount;
+		}
+
+		void restore(Context cx) {
+			cx.sealed = sealed;
+			cx.sealKey = sealKey;
+			cx.interpreterSecurityDomain = interpreterSecurityDomain;
+			cx.version = version;
+			cx.securityController = securityController;
+			cx.hasClassShutter = hasClassShutter;
+			cx.classShutter = classShutter;
+			cx.errorReporter = errorReporter;
+			// a proxy made during the last use may hold its regexp statics
+			cx.regExpProxy = regExpProxy;
+			cx.locale = locale;
+			cx.generatingDebug = generatingDebug;
+			cx.generatingDebugChanged = generatingDebugChanged;
+			cx.generatingSource = generatingSource;
+			cx.compileFunctionsWithDynamicScopeFlag = compileFunctionsWithDynamicScopeFlag;
+			cx.useDynamicScope = useDynamicScope;
+			cx.optimizationLevel = optimizationLevel;
+			cx.maximumInterpreterStackDepth = maximumInterpreterStackDepth;
+			cx.wrapFactory = wrapFactory;
+			cx.debugger = debugger;
+			cx.debuggerData = debuggerData;
+			cx.propertyListeners = propertyListeners;
+			cx.applicationClassLoader = applicationClassLoader;
+			cx.activationNames = activationNames == null ? null
+					: new HashSet<String>(activationNames);
+			cx.instructionThreshold = instructionThreshold;
+			cx.tierUpThreshold = tierUpThreshold;
+			cx.generateObserverCount = generateObserverCount;
+			// per use state
+			cx.topCallScope = null;
+			cx.isContinuationsTopCall = false;
+			cx.currentActivationCall = null;
+			cx.cachedXMLLib = null;
+			cx.iterating = null;
+			cx.threadLocalMap = null;
+			cx.lastInterpreterFrame = null;
+			cx.previousInterpreterInvocations = null;
+			cx.instructionCount = 0;
+			cx.scratchIndex = 0;
+			cx.scratchUint32 = 0;
+			cx.scratchScriptable = null;
 		}
 	}
 
@@ -1085,6 +1246,46 @@ public class Context {
 		return ScriptRuntime.initStandardObjects(this, scope, sealed);
 	}
 
+	/**
+	 * Create a scope with the standard objects that is shared by the
+	 * top-level scopes created with
+	 * {@link #newScopeFromSnapshot(ScriptableObject)}.
+	 * <p>
+	 * All objects reachable from the snapshot are sealed and the properties
+	 * of the standard objects are made read-only, so a script running in one
+	 * of the scopes can't change what scripts in the other scopes see. This
+	 * also makes the snapshot safe to use by many threads at the same time.
+	 * Java packages are not frozen, so they can still be loaded on demand.
+	 * 
+	 * @return the snapshot
+	 */
+	public ScriptableObject createStandardObjectsSnapshot() {
+		TopLevel snapshot = new TopLevel();
+		ScriptRuntime.initStandardObjects(this, snapshot, false);
+		ScriptRuntime.freezeStandardObjects(snapshot);
+		return snapshot;
+	}
+
+	/**
+	 * Create a new top-level scope that inherits the standard objects of a
+	 * snapshot made by {@link #createStandardObjectsSnapshot()}. This costs
+	 * about as much as creating an empty object. Variables and functions
+	 * defined by scripts are stored in the new scope, and assigning to a
+	 * standard global like <code>Array</code> only changes it for this scope.
+	 * 
+	 * @param snapshot
+	 *            the shared standard objects
+	 * @return the new scope
+	 */
+	public ScriptableObject newScopeFromSnapshot(ScriptableObject snapshot) {
+		TopLevel scope = new TopLevel();
+		scope.setPrototype(snapshot);
+		if (snapshot instanceof TopLevel) {
+			scope.shareBuiltins((TopLevel) snapshot);
+		}
+		return scope;
+	}
+
 	/**
 	 * Get the singleton object that represents the JavaScript Undefined value.
 	 */
@@ -1387,6 +1588,101 @@ public class Context {
 		}
 	}
 
+	/**
+	 * Compiles many sources at once.
+	 * <p>
+	 * The sources are parsed and compiled in parallel on the
+	 * {@link ContextFactory#getCompilePool() compile pool} of the factory of
+	 * this Context, so compiling the scripts of a large application scales
+	 * with the number of processors. The settings of this Context are used
+	 * for all sources. Warnings and errors are passed to its error reporter
+	 * on the calling thread in the order of the sources, as if the sources
+	 * were compiled one after the other. If a source fails to compile, its
+	 * exception is thrown and the reports of the sources after it are
+	 * dropped. Sources are compiled one after the other when a debugger or a
+	 * regular expression proxy other than the default one is set.
+	 * 
+	 * @param sources
+	 *            the source strings
+	 * @param sourceNames
+	 *            strings describing the sources, such as filenames, in the
+	 *            order of the sources
+	 * @param lineno
+	 *            the starting line number of all sources for reporting
+	 *            errors. Use 0 if the line number is unknown.
+	 * @param securityDomain
+	 *            an arbitrary object that specifies security information about
+	 *            the origin or owner of the scripts. For implementations that
+	 *            don't care about security, this value may be null.
+	 * @return the scripts in the order of the sources
+	 * @see #compileString(String, String, int, Object)
+	 */
+	public final Script[] compileStrings(String[] sources,
+			String[] sourceNames, int lineno, Object securityDomain) {
+		if (sources.length != sourceNames.length) {
+			throw new IllegalArgumentException(
+					"sources and sourceNames differ in length");
+		}
+		if (lineno < 0) {
+			lineno = 0;
+		}
+		Script[] scripts = new Script[sources.length];
+		// the compile threads can only make proxies of the default class
+		boolean customRegExpProxy = regExpProxy != null
+				&& regExpProxy.getClass() != regExpImplClass;
+		if (sources.length < 2 || debugger != null || customRegExpProxy) {
+			for (int i = 0; i != sources.length; ++i) {
+				scripts[i] = compileString(sources[i], sourceNames[i], lineno,
+						securityDomain);
+			}
+			return scripts;
+		}
+		if (securityDomain != null && getSecurityController() == null) {
+			throw new IllegalArgumentException(
+					"securityDomain should be null if setSecurityController() was never called");
+		}
+
+		ForkJoinPool pool = factory.getCompilePool();
+		CompiledCodeCache codeCache = factory.getCompiledCodeCache();
+		CompileTask[] tasks = new CompileTask[sources.length];
+		for (int i = 0; i != sources.length; ++i) {
+			// the environment is made here, Context isn't thread safe
+			CompilerEnvirons compilerEnv = new CompilerEnvirons();
+			compilerEnv.initFromContext(this);
+			compilerEnv.setErrorReporter(new RecordingErrorReporter());
+			String sourceName = sourceNames[i];
+			if (sourceName == null) {
+				sourceName = "unnamed script";
+			}
+			CompileTask task = new CompileTask(this, compilerEnv, sources[i],
+					sourceName, lineno, createCompiler());
+			if (codeCache != null) {
+				task.codeCache = codeCache;
+				task.cacheKey = codeCache.getKey(this, compilerEnv,
+						sources[i], sourceName, lineno, false);
+			}
+			tasks[i] = task;
+			pool.execute(task);
+		}
+		for (CompileTask task : tasks) {
+			task.join();
+		}
+		ErrorReporter reporter = getErrorReporter();
+		for (CompileTask task : tasks) {
+			Throwable failure = ((RecordingErrorReporter) task.compilerEnv
+					.getErrorReporter()).replay(reporter, task.failure);
+			if (failure instanceof RuntimeException)
+				throw (RuntimeException) failure;
+			if (failure != null)
+				throw (Error) failure;
+		}
+		for (int i = 0; i != tasks.length; ++i) {
+			scripts[i] = tasks[i].compiler.createScriptObject(
+					tasks[i].bytecode, securityDomain);
+		}
+		return scripts;
+	}
+
 	/**
 	 * Compile a JavaScript function.
 	 * <p>
@@ -1504,6 +1800,9 @@ public class Context {
 		NativeObject result = new NativeObject();
 		ScriptRuntime.setBuiltinProtoAndParent(result, scope,
 				TopLevel.Builtins.Object);
+		if (hasFeature(FEATURE_SHARED_SHAPES)) {
+			result.enableSharedShape();
+		}
 		return result;
 	}
 
@@ -2234,6 +2533,9 @@ public class Context {
 	 * @see #FEATURE_STRICT_MODE
 	 * @see #FEATURE_WARNING_AS_ERROR
 	 * @see #FEATURE_ENHANCED_JAVA_ACCESS
+	 * @see #FEATURE_SHARED_SHAPES
+	 * @see #FEATURE_COMPILE_REGEXP
+	 * @see #FEATURE_LAZY_FUNCTIONS
 	 */
 	public boolean hasFeature(int featureIndex) {
 		ContextFactory f = getFactory();
@@ -2292,6 +2594,50 @@ public class Context {
 		setGenerateObserverCount(threshold > 0);
 	}
 
+	/**
+	 * Return the threshold for tiered execution of interpreted functions.
+	 * When the threshold is zero, tiered execution is disabled.
+	 * 
+	 * @see #setTierUpThreshold(int)
+	 */
+	public final int getTierUpThreshold() {
+		return tierUpThreshold;
+	}
+
+	/**
+	 * Set the threshold for tiered execution of interpreted functions. When
+	 * the threshold is greater than zero and scripts are interpreted (see
+	 * {@link #setOptimizationLevel(int)}), each interpreted function counts
+	 * its invocations and backward jumps. Once the count reaches the
+	 * threshold the function is compiled to Java bytecode on a background
+	 * thread and subsequent invocations run the compiled code, so large
+	 * amounts of rarely used code start fast while hot functions reach
+	 * compiled speed.
+	 * <p/>
+	 * Only functions of scripts that are compiled while the threshold is set
+	 * keep their source and are compiled again from it, so the compiled code
+	 * reports the same line numbers. It runs for the original function
+	 * object, so <code>arguments.callee</code>, the properties of the function
+	 * and its <code>prototype</code> are the same as in the interpreter.
+	 * <p/>
+	 * Functions that are running when their compiled version becomes
+	 * available continue in the interpreter. Tiered execution is not used
+	 * while a debugger is set or instructions are observed, for generators,
+	 * for named function expressions and for scripts compiled while a
+	 * {@link SecurityController} is set.
+	 * 
+	 * @param threshold
+	 *            The number of invocations and backward jumps before a
+	 *            function gets compiled, 0 to disable tiered execution
+	 */
+	public final void setTierUpThreshold(int threshold) {
+		if (sealed)
+			onSealedMutation();
+		if (threshold < 0)
+			throw new IllegalArgumentException();
+		tierUpThreshold = threshold;
+	}
+
 	/**
 	 * Turn on or off generation of code with callbacks to track the count of
 	 * executed instructions. Currently only affects JVM byte code generation:
@@ -2426,13 +2772,76 @@ public class Context {
 			compilationErrorReporter = compilerEnv.getErrorReporter();
 		}
 
-		if (debugger != null) {
+		CompiledCodeCache codeCache = null;
+		String cacheKey = null;
+		if (debugger == null && compiler == null) {
+			codeCache = getFactory().getCompiledCodeCache();
+		}
+		if (debugger != null || codeCache != null) {
 			if (sourceReader != null) {
 				sourceString = Kit.readReader(sourceReader);
 				sourceReader = null;
 			}
 		}
+		if (codeCache != null) {
+			cacheKey = codeCache.getKey(this, compilerEnv, sourceString,
+					sourceName, lineno, returnFunction);
+			Object bytecode = codeCache.load(cacheKey);
+			if (bytecode != null) {
+				compiler = createCompiler();
+				if (compiler instanceof Interpreter) {
+					if (!(bytecode instanceof InterpreterData))
+						Kit.codeBug();
+					((Interpreter) compiler).itsData = (InterpreterData) bytecode;
+				}
+				if (returnFunction) {
+					return compiler.createFunctionObject(this, scope, bytecode,
+							securityDomain);
+				}
+				return compiler.createScriptObject(bytecode, securityDomain);
+			}
+		}
+
+		if (compiler == null) {
+			compiler = createCompiler();
+		}
+		Object bytecode = compileBytecode(compilerEnv,
+				compilationErrorReporter, sourceReader, sourceString,
+				sourceName, lineno, returnFunction, compiler);
+		if (codeCache != null) {
+			codeCache.store(cacheKey, bytecode);
+		}
+		if (debugger != null) {
+			if (sourceString == null)
+				Kit.codeBug();
+			if (bytecode instanceof DebuggableScript) {
+				DebuggableScript dscript = (DebuggableScript) bytecode;
+				notifyDebugger_r(this, dscript, sourceString);
+			} else {
+				throw new RuntimeException("NOT SUPPORTED");
+			}
+		}
+
+		Object result;
+		if (returnFunction) {
+			result = compiler.createFunctionObject(this, scope, bytecode,
+					securityDomain);
+		} else {
+			result = compiler.createScriptObject(bytecode, securityDomain);
+		}
 
+		return result;
+	}
+
+	/**
+	 * Parse and compile the source to the byte code of the compiler. Doesn't
+	 * use the state of the Context, so different sources can be compiled on
+	 * different threads as long as each has its own compiler.
+	 */
+	private static Object compileBytecode(CompilerEnvirons compilerEnv,
+			ErrorReporter compilationErrorReporter, Reader sourceReader,
+			String sourceString, String sourceName, int lineno,
+			boolean returnFunction, Evaluator compiler) throws IOException {
 		Parser p = new Parser(compilerEnv, compilationErrorReporter);
 		if (returnFunction) {
 			p.calledByCompileFunction = true;
@@ -2463,32 +2872,158 @@ public class Context {
 		ast = null;
 		irf = null;
 
-		if (compiler == null) {
-			compiler = createCompiler();
+		return compiler.compile(compilerEnv, tree, tree.getEncodedSource(),
+				returnFunction);
+	}
+
+	/**
+	 * Compiles one source of {@link #compileStrings} on a thread of the
+	 * compile pool. Failures are kept to be rethrown in the calling thread as
+	 * they are, the pool would wrap them in an exception of its own.
+	 */
+	private static final class CompileTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Context caller;
+		final CompilerEnvirons compilerEnv;
+		private final String sourceString;
+		private final String sourceName;
+		private final int lineno;
+		final Evaluator compiler;
+		CompiledCodeCache codeCache;
+		String cacheKey;
+
+		Object bytecode;
+		Throwable failure;
+
+		CompileTask(Context caller, CompilerEnvirons compilerEnv,
+				String sourceString, String sourceName, int lineno,
+				Evaluator compiler) {
+			this.caller = caller;
+			this.compilerEnv = compilerEnv;
+			this.sourceString = sourceString;
+			this.sourceName = sourceName;
+			this.lineno = lineno;
+			this.compiler = compiler;
+		}
+
+		@Override
+		protected void compute() {
+			// the compilers look up messages, regular expression support and
+			// the error reporter through the current Context. It makes a
+			// regular expression proxy of its own, the one of the caller
+			// isn't made to be used by several threads.
+			Context cx = new Context(caller.factory);
+			cx.version = caller.version;
+			cx.locale = caller.locale;
+			cx.errorReporter = compilerEnv.getErrorReporter();
+			cx = Context.enter(cx, caller.factory);
+			try {
+				if (codeCache != null) {
+					bytecode = codeCache.load(cacheKey);
+					if (bytecode != null) {
+						if (compiler instanceof Interpreter) {
+							((Interpreter) compiler).itsData = (InterpreterData) bytecode;
+						}
+						return;
+					}
+				}
+				bytecode = compileBytecode(compilerEnv,
+						compilerEnv.getErrorReporter(), null, sourceString,
+						sourceName, lineno, false, compiler);
+				if (codeCache != null) {
+					codeCache.store(cacheKey, bytecode);
+				}
+			} catch (RuntimeException e) {
+				failure = e;
+			} catch (Error e) {
+				failure = e;
+			} catch (IOException e) {
+				// Should not happen when dealing with source as string
+				failure = new RuntimeException(e);
+			} finally {
+				Context.exit();
+			}
 		}
+	}
 
-		Object bytecode = compiler.compile(compilerEnv, tree,
-				tree.getEncodedSource(), returnFunction);
-		if (debugger != null) {
-			if (sourceString == null)
-				Kit.codeBug();
-			if (bytecode instanceof DebuggableScript) {
-				DebuggableScript dscript = (DebuggableScript) bytecode;
-				notifyDebugger_r(this, dscript, sourceString);
-			} else {
-				throw new RuntimeException("NOT SUPPORTED");
+	/**
+	 * Keeps the reports of a source that is compiled on the compile pool, to
+	 * pass them to the error reporter of the calling Context in the order of
+	 * the sources.
+	 */
+	private static final class RecordingErrorReporter implements
+			ErrorReporter {
+
+		private static final class Report {
+			final boolean error;
+			final String message;
+			final String sourceName;
+			final int line;
+			final String lineSource;
+			final int lineOffset;
+
+			Report(boolean error, String message, String sourceName, int line,
+					String lineSource, int lineOffset) {
+				this.error = error;
+				this.message = message;
+				this.sourceName = sourceName;
+				this.line = line;
+				this.lineSource = lineSource;
+				this.lineOffset = lineOffset;
 			}
 		}
 
-		Object result;
-		if (returnFunction) {
-			result = compiler.createFunctionObject(this, scope, bytecode,
-					securityDomain);
-		} else {
-			result = compiler.createScriptObject(bytecode, securityDomain);
+		private final List<Report> reports = new ArrayList<Report>();
+		// the exception the compiler was given to throw, and its report
+		private EvaluatorException runtimeError;
+		private Report runtimeErrorReport;
+
+		public void warning(String message, String sourceName, int line,
+				String lineSource, int lineOffset) {
+			reports.add(new Report(false, message, sourceName, line,
+					lineSource, lineOffset));
 		}
 
-		return result;
+		public void error(String message, String sourceName, int line,
+				String lineSource, int lineOffset) {
+			reports.add(new Report(true, message, sourceName, line,
+					lineSource, lineOffset));
+		}
+
+		public EvaluatorException runtimeError(String message,
+				String sourceName, int line, String lineSource, int lineOffset) {
+			runtimeErrorReport = new Report(true, message, sourceName, line,
+					lineSource, lineOffset);
+			runtimeError = new EvaluatorException(message, sourceName, line,
+					lineSource, lineOffset);
+			return runtimeError;
+		}
+
+		/**
+		 * Passes the reports to the given reporter, which may throw like it
+		 * does when it compiles the source itself. Returns the failure of the
+		 * source, with the exception made by the given reporter if the
+		 * failure was made by this one.
+		 */
+		Throwable replay(ErrorReporter reporter, Throwable failure) {
+			for (Report r : reports) {
+				if (r.error) {
+					reporter.error(r.message, r.sourceName, r.line,
+							r.lineSource, r.lineOffset);
+				} else {
+					reporter.warning(r.message, r.sourceName, r.line,
+							r.lineSource, r.lineOffset);
+				}
+			}
+			if (failure != null && failure == runtimeError) {
+				Report r = runtimeErrorReport;
+				return reporter.runtimeError(r.message, r.sourceName, r.line,
+						r.lineSource, r.lineOffset);
+			}
+			return failure;
+		}
 	}
 
 	private static void notifyDebugger_r(Context cx, DebuggableScript dscript,
@@ -2571,8 +3106,7 @@ public class Context {
 
 	RegExpProxy getRegExpProxy() {
 		if (regExpProxy == null) {
-			Class<?> cl = Kit
-					.classOrNull("org.mozilla.javascript.regexp.RegExpImpl");
+			Class<?> cl = regExpImplClass;
 			if (cl != null) {
 				regExpProxy = (RegExpProxy) Kit.newInstanceOrNull(cl);
 			}
@@ -2580,6 +3114,9 @@ public class Context {
 		return regExpProxy;
 	}
 
+	private static final Class<?> regExpImplClass = Kit
+			.classOrNull("org.mozilla.javascript.regexp.RegExpImpl");
+
 	final boolean isVersionECMA1() {
 		return version == VERSION_DEFAULT || version >= VERSION_1_3;
 	}
@@ -2679,6 +3216,8 @@ public class Context {
 	private Object propertyListeners;
 	private Map<Object, Object> threadLocalMap;
 	private ClassLoader applicationClassLoader;
+	// set for contexts that are pooled by their factory
+	private InitialState initialState;
 
 	/**
 	 * This is the list of names of objects forcing the creation of function
@@ -2696,6 +3235,7 @@ public class Context {
 	// For instruction counting (interpreter only)
 	int instructionCount;
 	int instructionThreshold;
+	int tierUpThreshold;
 
 	// It can be used to return the second index-like result from function
 	int scratchIndex;
@@ -42,6 +42,8 @@ package org.mozilla.javascript;
 
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Factory class that Rhino runtime uses to create new {@link Context}
@@ -150,6 +152,13 @@ public class ContextFactory {
 	private volatile Object listeners;
 	private boolean disabledListening;
 	private ClassLoader applicationClassLoader;
+	private volatile CompiledCodeCache compiledCodeCache;
+
+	// released contexts, null when contexts are not pooled
+	private volatile AtomicReferenceArray<Context> contextPool;
+
+	// pool that Context.compileStrings compiles on, created when first used
+	private volatile ForkJoinPool compilePool;
 
 	/**
 	 * Listener of {@link Context} creation and release events.
@@ -301,6 +310,15 @@ public class ContextFactory {
 
 		case Context.FEATURE_ENHANCED_JAVA_ACCESS:
 			return false;
+
+		case Context.FEATURE_SHARED_SHAPES:
+			return false;
+
+		case Context.FEATURE_COMPILE_REGEXP:
+			return false;
+
+		case Context.FEATURE_LAZY_FUNCTIONS:
+			return false;
 		}
 		// It is a bug to call the method with unknown featureIndex
 		throw new IllegalArgumentException(String.valueOf(featureIndex));
@@ -395,6 +413,129 @@ public class ContextFactory {
 		this.applicationClassLoader = loader;
 	}
 
+	/**
+	 * Get the persistent cache of compiled code used by the {@link Context}
+	 * instances of this factory or null if compiled code is not cached.
+	 */
+	public final CompiledCodeCache getCompiledCodeCache() {
+		return compiledCodeCache;
+	}
+
+	/**
+	 * Set the persistent cache of compiled code used by the {@link Context}
+	 * instances of this factory.
+	 * 
+	 * @param cache
+	 *            the cache or null to disable caching
+	 * @see CompiledCodeCache
+	 */
+	public final void setCompiledCodeCache(CompiledCodeCache cache) {
+		checkNotSealed();
+		this.compiledCodeCache = cache;
+	}
+
+	/**
+	 * Get the maximum number of released {@link Context} instances kept for
+	 * reuse, 0 if contexts are not pooled.
+	 */
+	public final int getContextPoolSize() {
+		AtomicReferenceArray<Context> pool = contextPool;
+		return pool == null ? 0 : pool.length();
+	}
+
+	/**
+	 * Set the maximum number of released {@link Context} instances kept for
+	 * reuse. With pooling, a Context that is released by the last
+	 * {@link Context#exit()} of a thread is reset to the state it had after
+	 * {@link #makeContext()} and {@link #onContextCreated(Context)}, and the
+	 * next {@link #enterContext()} on any thread takes it from the pool
+	 * instead of making a new one. Listeners are then notified of the
+	 * creation of a Context only once, but of each release.
+	 * <p>
+	 * Contexts that are passed to {@link #enterContext(Context)} are never
+	 * pooled. Subclasses of Context that keep their own per-thread state
+	 * should not be used with pooling.
+	 * 
+	 * @param size
+	 *            the maximum number of pooled contexts, 0 to disable pooling
+	 */
+	public final void setContextPoolSize(int size) {
+		checkNotSealed();
+		if (size < 0)
+			throw new IllegalArgumentException();
+		this.contextPool = size == 0 ? null
+				: new AtomicReferenceArray<Context>(size);
+	}
+
+	/**
+	 * Get the pool that {@link Context#compileStrings} compiles sources on.
+	 * Unless one was set, a pool with a thread per processor is created the
+	 * first time it is needed.
+	 */
+	public final ForkJoinPool getCompilePool() {
+		ForkJoinPool pool = compilePool;
+		if (pool == null) {
+			synchronized (this) {
+				pool = compilePool;
+				if (pool == null) {
+					pool = new ForkJoinPool();
+					compilePool = pool;
+				}
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * Set the pool that {@link Context#compileStrings} compiles sources on,
+	 * for example to limit the number of threads used for compilation.
+	 * 
+	 * @param pool
+	 *            the pool or null to use a default pool
+	 */
+	public final void setCompilePool(ForkJoinPool pool) {
+		checkNotSealed();
+		this.compilePool = pool;
+	}
+
+	/**
+	 * Take a released Context from the pool or return null if there is none.
+	 */
+	final Context takePooledContext() {
+		AtomicReferenceArray<Context> pool = contextPool;
+		if (pool == null)
+			return null;
+		// threads start at their own position, so a thread mostly gets back
+		// the context it released and threads rarely compete for a slot
+		int size = pool.length();
+		int start = (int) (Thread.currentThread().getId() % size);
+		for (int i = 0; i != size; ++i) {
+			int pos = start + i < size ? start + i : start + i - size;
+			Context cx = pool.get(pos);
+			if (cx != null && pool.compareAndSet(pos, cx, null)) {
+				return cx;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Put a released and reset Context in the pool if it is not full.
+	 */
+	final void poolContext(Context cx) {
+		AtomicReferenceArray<Context> pool = contextPool;
+		if (pool == null)
+			return;
+		int size = pool.length();
+		int start = (int) (Thread.currentThread().getId() % size);
+		for (int i = 0; i != size; ++i) {
+			int pos = start + i < size ? start + i : start + i - size;
+			if (pool.get(pos) == null && pool.compareAndSet(pos, null, cx)) {
+				return;
+			}
+		}
+	}
+
 	/**
 	 * Execute top call to script or function. When the runtime is about to
 	 * execute a script or function that will create the first stack frame with
@@ -498,6 +639,17 @@ public class ContextFactory {
 	 * with the thread, then {@link #makeContext()} will be called to construct
 	 * new Context instance. The instance will be temporary associated with the
 	 * thread during call to {@link ContextAction#run(Context)}.
+	 * <p>
+	 * This is also the way to run scripts on virtual threads, for example by
+	 * submitting one task per script invocation that calls this method to an
+	 * executor that starts a virtual thread per task. The Context is only
+	 * bound to the virtual thread during the call, and the thread doesn't
+	 * keep any per-thread storage after it. To avoid making a Context for
+	 * every virtual thread, enable {@link #setContextPoolSize(int) pooling}.
+	 * Scopes that all virtual threads share should use
+	 * {@link ScriptableObject#enableConcurrentAccess()}, so property changes
+	 * in them don't lock the object monitor, which pins the carrier thread of
+	 * a virtual thread on many JVMs.
 	 * 
 	 * @see ContextFactory#call(ContextAction)
 	 * @see Context#call(ContextFactory factory, Callable callable, Scriptable
@@ -47,6 +47,7 @@ class DefaultErrorReporter implements ErrorReporter {
 	static final DefaultErrorReporter instance = new DefaultErrorReporter();
 
 	private boolean forEval;
+	private boolean ignoreWarnings;
 	private ErrorReporter chainedReporter;
 
 	private DefaultErrorReporter() {
@@ -59,9 +60,21 @@ class DefaultErrorReporter implements ErrorReporter {
 		return r;
 	}
 
+	/**
+	 * Returns a reporter for source that is parsed again after it was
+	 * compiled. The warnings were reported the first time, so only the errors
+	 * are passed on to the given reporter.
+	 */
+	static ErrorReporter forReparse(ErrorReporter reporter) {
+		DefaultErrorReporter r = new DefaultErrorReporter();
+		r.ignoreWarnings = true;
+		r.chainedReporter = reporter;
+		return r;
+	}
+
 	public void warning(String message, String sourceURI, int line,
 			String lineText, int lineOffset) {
-		if (chainedReporter != null) {
+		if (chainedReporter != null && !ignoreWarnings) {
 			chainedReporter.warning(message, sourceURI, line, lineText,
 					lineOffset);
 		} else {
@@ -0,0 +1,338 @@
+package org.mozilla.javascript;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Shortest round-trip conversion of doubles to decimal strings with the
+ * Grisu3 algorithm of Florian Loitsch, "Printing Floating-Point Numbers
+ * Quickly and Accurately with Integers" (PLDI 2010), as done by the
+ * double-conversion library.
+ * <p>
+ * Grisu3 works with 64-bit integers only and produces the shortest digits
+ * that read back as the same double. For about 0.5% of the doubles it can't
+ * prove the digits are the shortest, {@link #numberToString(double)} returns
+ * null for them and the caller falls back to {@link DToA}. Subnormal numbers
+ * are the exception: DToA gets the digits of many of them wrong, so they are
+ * converted with BigDecimal arithmetic instead.
+ */
+final class FastDtoa {
+
+	private FastDtoa() {
+	}
+
+	private static final long SIGNIFICAND_MASK = 0x000FFFFFFFFFFFFFL;
+	private static final long HIDDEN_BIT = 0x0010000000000000L;
+	private static final int EXPONENT_BIAS = 0x3FF + 52;
+	private static final int DENORMAL_EXPONENT = -EXPONENT_BIAS + 1;
+
+	private static final int MINIMAL_TARGET_EXPONENT = -60;
+	private static final int MAXIMAL_TARGET_EXPONENT = -32;
+
+	// 10^k for k = -348, -340, ..., 340 as normalized 64-bit significands
+	// and binary exponents, rounded to nearest
+	private static final int CACHED_POWERS_OFFSET = 348;
+	private static final int DECIMAL_EXPONENT_DISTANCE = 8;
+	private static final double D_1_LOG2_10 = 0.30102999566398114;
+
+	private static final long[] CACHED_POWERS_SIGNIFICAND = {
+			0xfa8fd5a0081c0288L, 0xbaaee17fa23ebf76L, 0x8b16fb203055ac76L,
+			0xcf42894a5dce35eaL, 0x9a6bb0aa55653b2dL, 0xe61acf033d1a45dfL,
+			0xab70fe17c79ac6caL, 0xff77b1fcbebcdc4fL, 0xbe5691ef416bd60cL,
+			0x8dd01fad907ffc3cL, 0xd3515c2831559a83L, 0x9d71ac8fada6c9b5L,
+			0xea9c227723ee8bcbL, 0xaecc49914078536dL, 0x823c12795db6ce57L,
+			0xc21094364dfb5637L, 0x9096ea6f3848984fL, 0xd77485cb25823ac7L,
+			0xa086cfcd97bf97f4L, 0xef340a98172aace5L, 0xb23867fb2a35b28eL,
+			0x84c8d4dfd2c63f3bL, 0xc5dd44271ad3cdbaL, 0x936b9fcebb25c996L,
+			0xdbac6c247d62a584L, 0xa3ab66580d5fdaf6L, 0xf3e2f893dec3f126L,
+			0xb5b5ada8aaff80b8L, 0x87625f056c7c4a8bL, 0xc9bcff6034c13053L,
+			0x964e858c91ba2655L, 0xdff9772470297ebdL, 0xa6dfbd9fb8e5b88fL,
+			0xf8a95fcf88747d94L, 0xb94470938fa89bcfL, 0x8a08f0f8bf0f156bL,
+			0xcdb02555653131b6L, 0x993fe2c6d07b7facL, 0xe45c10c42a2b3b06L,
+			0xaa242499697392d3L, 0xfd87b5f28300ca0eL, 0xbce5086492111aebL,
+			0x8cbccc096f5088ccL, 0xd1b71758e219652cL, 0x9c40000000000000L,
+			0xe8d4a51000000000L, 0xad78ebc5ac620000L, 0x813f3978f8940984L,
+			0xc097ce7bc90715b3L, 0x8f7e32ce7bea5c70L, 0xd5d238a4abe98068L,
+			0x9f4f2726179a2245L, 0xed63a231d4c4fb27L, 0xb0de65388cc8ada8L,
+			0x83c7088e1aab65dbL, 0xc45d1df942711d9aL, 0x924d692ca61be758L,
+			0xda01ee641a708deaL, 0xa26da3999aef774aL, 0xf209787bb47d6b85L,
+			0xb454e4a179dd1877L, 0x865b86925b9bc5c2L, 0xc83553c5c8965d3dL,
+			0x952ab45cfa97a0b3L, 0xde469fbd99a05fe3L, 0xa59bc234db398c25L,
+			0xf6c69a72a3989f5cL, 0xb7dcbf5354e9beceL, 0x88fcf317f22241e2L,
+			0xcc20ce9bd35c78a5L, 0x98165af37b2153dfL, 0xe2a0b5dc971f303aL,
+			0xa8d9d1535ce3b396L, 0xfb9b7cd9a4a7443cL, 0xbb764c4ca7a44410L,
+			0x8bab8eefb6409c1aL, 0xd01fef10a657842cL, 0x9b10a4e5e9913129L,
+			0xe7109bfba19c0c9dL, 0xac2820d9623bf429L, 0x80444b5e7aa7cf85L,
+			0xbf21e44003acdd2dL, 0x8e679c2f5e44ff8fL, 0xd433179d9c8cb841L,
+			0x9e19db92b4e31ba9L, 0xeb96bf6ebadf77d9L, 0xaf87023b9bf0ee6bL };
+
+	private static final short[] CACHED_POWERS_BINARY_EXPONENT = {
+			-1220, -1193, -1166, -1140, -1113, -1087, -1060, -1034, -1007, -980,
+			-954, -927, -901, -874, -847, -821, -794, -768, -741, -715,
+			-688, -661, -635, -608, -582, -555, -529, -502, -475, -449,
+			-422, -396, -369, -343, -316, -289, -263, -236, -210, -183,
+			-157, -130, -103, -77, -50, -24, 3, 30, 56, 83,
+			109, 136, 162, 189, 216, 242, 269, 295, 322, 348,
+			375, 402, 428, 455, 481, 508, 534, 561, 588, 614,
+			641, 667, 694, 720, 747, 774, 800, 827, 853, 880,
+			907, 933, 960, 986, 1013, 1039, 1066 };
+
+	private static final long FAILED = Long.MIN_VALUE;
+
+	/**
+	 * Return the ECMAScript Number::toString form of a finite, non-zero
+	 * double in radix 10, or null if the shortest digits were not found.
+	 */
+	static String numberToString(double v) {
+		boolean negative = v < 0;
+		if (negative) {
+			v = -v;
+		}
+		char[] buffer = new char[18];
+		long result = grisu3(v, buffer);
+		if (result == FAILED) {
+			return v < Double.MIN_NORMAL ? subnormalToString(negative, v)
+					: null;
+		}
+		int length = (int) (result >> 32);
+		int decimalExponent = (int) result;
+		return format(negative, buffer, length, decimalExponent + length);
+	}
+
+	/**
+	 * Return the shortest digits of a positive subnormal v, found by rounding
+	 * its exact value to more and more digits until the result reads back as
+	 * v. The spacing of subnormal numbers is uniform, so when the closest
+	 * number of some digits is not read back as v, no other number of that
+	 * many digits is.
+	 */
+	private static String subnormalToString(boolean negative, double v) {
+		BigDecimal exact = new BigDecimal(v);
+		for (int precision = 1;; precision++) {
+			BigDecimal rounded = exact.round(new MathContext(precision,
+					RoundingMode.HALF_EVEN));
+			if (rounded.doubleValue() == v) {
+				rounded = rounded.stripTrailingZeros();
+				char[] digits = rounded.unscaledValue().toString()
+						.toCharArray();
+				return format(negative, digits, digits.length, digits.length
+						- rounded.scale());
+			}
+		}
+	}
+
+	/**
+	 * Write the shortest digits of v to the buffer. Return the number of
+	 * digits in the upper and the decimal exponent of the last digit in the
+	 * lower 32 bits, or {@link #FAILED}.
+	 */
+	private static long grisu3(double v, char[] buffer) {
+		long bits = Double.doubleToRawLongBits(v);
+		long f = bits & SIGNIFICAND_MASK;
+		int biasedExponent = (int) (bits >>> 52) & 0x7FF;
+		int e;
+		if (biasedExponent != 0) {
+			f += HIDDEN_BIT;
+			e = biasedExponent - EXPONENT_BIAS;
+		} else {
+			e = DENORMAL_EXPONENT;
+		}
+
+		// the boundaries m- and m+ halfway to the neighboring doubles, with
+		// the exponent of the normalized m+
+		long plusF = (f << 1) + 1;
+		int plusE = e - 1;
+		int shift = Long.numberOfLeadingZeros(plusF);
+		plusF <<= shift;
+		plusE -= shift;
+		long minusF;
+		int minusE;
+		if ((bits & SIGNIFICAND_MASK) == 0 && biasedExponent > 1) {
+			// the lower boundary is closer
+			minusF = (f << 2) - 1;
+			minusE = e - 2;
+		} else {
+			minusF = (f << 1) - 1;
+			minusE = e - 1;
+		}
+		minusF <<= minusE - plusE;
+
+		// normalized, w has the same exponent as m+
+		shift = Long.numberOfLeadingZeros(f);
+		long wF = f << shift;
+		int wE = e - shift;
+
+		int minExponent = MINIMAL_TARGET_EXPONENT - (wE + 64);
+		int k = (int) Math.ceil((minExponent + 63) * D_1_LOG2_10);
+		int index = (CACHED_POWERS_OFFSET + k - 1) / DECIMAL_EXPONENT_DISTANCE
+				+ 1;
+		long cachedF = CACHED_POWERS_SIGNIFICAND[index];
+		int cachedE = CACHED_POWERS_BINARY_EXPONENT[index];
+		int mk = index * DECIMAL_EXPONENT_DISTANCE - CACHED_POWERS_OFFSET;
+
+		long scaledW = multiply(wF, cachedF);
+		long scaledMinus = multiply(minusF, cachedF);
+		long scaledPlus = multiply(plusF, cachedF);
+		int scaledE = wE + cachedE + 64;
+		if (scaledE < MINIMAL_TARGET_EXPONENT
+				|| scaledE > MAXIMAL_TARGET_EXPONENT) {
+			throw Kit.codeBug();
+		}
+
+		return digitGen(scaledMinus, scaledW, scaledPlus, scaledE, buffer, mk);
+	}
+
+	/**
+	 * Return the upper 64 bits of the 128-bit product of x and y, rounded.
+	 */
+	private static long multiply(long x, long y) {
+		long a = x >>> 32;
+		long b = x & 0xFFFFFFFFL;
+		long c = y >>> 32;
+		long d = y & 0xFFFFFFFFL;
+		long ac = a * c;
+		long bc = b * c;
+		long ad = a * d;
+		long bd = b * d;
+		long tmp = (bd >>> 32) + (ad & 0xFFFFFFFFL) + (bc & 0xFFFFFFFFL)
+				+ (1L << 31);
+		return ac + (ad >>> 32) + (bc >>> 32) + (tmp >>> 32);
+	}
+
+	// unsigned comparison
+	private static boolean lessThan(long x, long y) {
+		return (x ^ Long.MIN_VALUE) < (y ^ Long.MIN_VALUE);
+	}
+
+	/**
+	 * Generate the digits of w, stopping as soon as they identify a number
+	 * between low and high. All three have the exponent e.
+	 */
+	private static long digitGen(long low, long w, long high, int e,
+			char[] buffer, int mk) {
+		long unit = 1;
+		long tooLow = low - unit;
+		long tooHigh = high + unit;
+		long unsafeInterval = tooHigh - tooLow;
+		int oneShift = -e;
+		long one = 1L << oneShift;
+		long integrals = tooHigh >>> oneShift;
+		long fractionals = tooHigh & (one - 1);
+
+		int kappa = 0;
+		long divisor = 1;
+		if (integrals != 0) {
+			kappa = 1;
+			while (divisor * 10 <= integrals) {
+				divisor *= 10;
+				kappa++;
+			}
+		}
+
+		int length = 0;
+		while (kappa > 0) {
+			int digit = (int) (integrals / divisor);
+			buffer[length++] = (char) ('0' + digit);
+			integrals %= divisor;
+			kappa--;
+			long rest = (integrals << oneShift) + fractionals;
+			if (lessThan(rest, unsafeInterval)) {
+				if (!roundWeed(buffer, length, tooHigh - w, unsafeInterval,
+						rest, divisor << oneShift, unit)) {
+					return FAILED;
+				}
+				return ((long) length << 32) | ((kappa - mk) & 0xFFFFFFFFL);
+			}
+			divisor /= 10;
+		}
+
+		for (;;) {
+			fractionals *= 10;
+			unit *= 10;
+			unsafeInterval *= 10;
+			int digit = (int) (fractionals >>> oneShift);
+			buffer[length++] = (char) ('0' + digit);
+			fractionals &= one - 1;
+			kappa--;
+			if (lessThan(fractionals, unsafeInterval)) {
+				if (!roundWeed(buffer, length, (tooHigh - w) * unit,
+						unsafeInterval, fractionals, one, unit)) {
+					return FAILED;
+				}
+				return ((long) length << 32) | ((kappa - mk) & 0xFFFFFFFFL);
+			}
+		}
+	}
+
+	/**
+	 * Move the last digit towards w as long as the digits stay in the safe
+	 * interval, and check that the result is the closest to w of the digits
+	 * that could have been generated.
+	 */
+	private static boolean roundWeed(char[] buffer, int length,
+			long distanceTooHighW, long unsafeInterval, long rest,
+			long tenKappa, long unit) {
+		long smallDistance = distanceTooHighW - unit;
+		long bigDistance = distanceTooHighW + unit;
+		while (lessThan(rest, smallDistance)
+				&& !lessThan(unsafeInterval - rest, tenKappa)
+				&& (lessThan(rest + tenKappa, smallDistance) || !lessThan(
+						smallDistance - rest, rest + tenKappa - smallDistance))) {
+			buffer[length - 1]--;
+			rest += tenKappa;
+		}
+		if (lessThan(rest, bigDistance)
+				&& !lessThan(unsafeInterval - rest, tenKappa)
+				&& (lessThan(rest + tenKappa, bigDistance) || lessThan(rest
+						+ tenKappa - bigDistance, bigDistance - rest))) {
+			return false;
+		}
+		return !lessThan(rest, 2 * unit)
+				&& !lessThan(unsafeInterval - 4 * unit, rest);
+	}
+
+	/**
+	 * Format k digits as ECMA-262 9.8.1 ToString applied to the Number type,
+	 * where n is the position of the decimal point.
+	 */
+	private static String format(boolean negative, char[] digits, int k,
+			int n) {
+		StringBuilder sb = new StringBuilder(k + 8);
+		if (negative) {
+			sb.append('-');
+		}
+		if (k <= n && n <= 21) {
+			sb.append(digits, 0, k);
+			for (int i = k; i < n; i++) {
+				sb.append('0');
+			}
+		} else if (0 < n && n <= 21) {
+			sb.append(digits, 0, n);
+			sb.append('.');
+			sb.append(digits, n, k - n);
+		} else if (-6 < n && n <= 0) {
+			sb.append("0.");
+			for (int i = n; i < 0; i++) {
+				sb.append('0');
+			}
+			sb.append(digits, 0, k);
+		} else {
+			sb.append(digits[0]);
+			if (k > 1) {
+				sb.append('.');
+				sb.append(digits, 1, k - 1);
+			}
+			sb.append('e');
+			int exponent = n - 1;
+			if (exponent < 0) {
+				sb.append('-');
+				exponent = -exponent;
+			} else {
+				sb.append('+');
+			}
+			sb.append(exponent);
+		}
+		return sb.toString();
+	}
+}
@@ -549,6 +549,26 @@ public abstract class IdScriptableObject extends ScriptableObject implements
 		return 0;
 	}
 
+	/**
+	 * Return true if the name is served from instance or prototype ids
+	 * instead of the property slots.
+	 */
+	final boolean hasIdFor(String name) {
+		if (findInstanceIdInfo(name) != 0) {
+			return true;
+		}
+		PrototypeValues values = prototypeValues;
+		return values != null && values.findId(name) != 0;
+	}
+
+	/**
+	 * Return true if this object has prototype ids, which unlike instance ids
+	 * are not the same for all objects of a class.
+	 */
+	final boolean hasPrototypeIds() {
+		return prototypeValues != null;
+	}
+
 	/**
 	 * Map id back to property name it defines.
 	 */
@@ -45,10 +45,12 @@ import org.mozilla.javascript.debug.DebuggableScript;
 final class InterpretedFunction extends NativeFunction implements Script {
 	static final long serialVersionUID = 541475680333911468L;
 
-	InterpreterData idata;
+	volatile InterpreterData idata;
 	SecurityController securityController;
 	Object securityDomain;
 	Scriptable[] functionRegExps;
+	// compiled version of this function, see TieredCompilation
+	transient Function tieredTarget;
 
 	private InterpretedFunction(InterpreterData idata,
 			Object staticSecurityDomain) {
@@ -74,7 +76,11 @@ final class InterpretedFunction extends NativeFunction implements Script {
 	}
 
 	private InterpretedFunction(InterpretedFunction parent, int index) {
-		this.idata = parent.idata.itsNestedFunctions[index];
+		InterpreterData data = parent.idata.itsNestedFunctions[index];
+		if (data.itsLazyCompiled != null) {
+			data = data.itsLazyCompiled;
+		}
+		this.idata = data;
 		this.securityController = parent.securityController;
 		this.securityDomain = parent.securityDomain;
 	}
@@ -130,6 +136,36 @@ final class InterpretedFunction extends NativeFunction implements Script {
 		}
 	}
 
+	/**
+	 * Returns the data to interpret this function with, compiling the
+	 * function first if it was only parsed with its script.
+	 */
+	InterpreterData ensureCompiled(Context cx) {
+		InterpreterData data = idata;
+		if (data.itsLazySource == null) {
+			return data;
+		}
+		synchronized (this) {
+			data = idata;
+			if (data.itsLazySource != null) {
+				data = Interpreter.compileLazily(cx, data);
+				if (data.itsRegExpLiterals != null) {
+					RegExpProxy rep = ScriptRuntime.checkRegExpProxy(cx);
+					Scriptable scope = getParentScope();
+					int N = data.itsRegExpLiterals.length;
+					Scriptable[] array = new Scriptable[N];
+					for (int i = 0; i != N; ++i) {
+						array[i] = rep.wrapRegExp(cx, scope,
+								data.itsRegExpLiterals[i]);
+					}
+					functionRegExps = array;
+				}
+				idata = data;
+			}
+		}
+		return data;
+	}
+
 	@Override
 	public String getFunctionName() {
 		return (idata.itsName == null) ? "" : idata.itsName;
@@ -155,6 +191,10 @@ final class InterpretedFunction extends NativeFunction implements Script {
 		if (!ScriptRuntime.hasTopCall(cx)) {
 			return ScriptRuntime.doTopCall(this, cx, scope, thisObj, args);
 		}
+		Function target = TieredCompilation.getTarget(cx, this);
+		if (target != null) {
+			return target.call(cx, scope, thisObj, args);
+		}
 		return Interpreter.interpret(this, cx, scope, thisObj, args);
 	}
 
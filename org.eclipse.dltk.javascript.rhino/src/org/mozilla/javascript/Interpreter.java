@@ -51,6 +51,7 @@ import java.io.Serializable;
 import java.util.List;
 import java.util.ArrayList;
 
+import org.mozilla.javascript.ast.AstRoot;
 import org.mozilla.javascript.ast.FunctionNode;
 import org.mozilla.javascript.ast.ScriptNode;
 import org.mozilla.javascript.ScriptRuntime.NoSuchMethodShim;
@@ -358,6 +359,17 @@ public final class Interpreter extends Icode implements Evaluator {
 				break;
 			}
 
+			case Token.GETPROP:
+			case Token.GETPROPNOWARN:
+			case Token.SETPROP:
+			case Icode_NAME_AND_THIS:
+			case Icode_PROP_AND_THIS: {
+				int site = getIndex(iCode, pc);
+				out.println(tname + " " + site);
+				pc += 2;
+				break;
+			}
+
 			case Icode_CALLSPECIAL: {
 				int callType = iCode[pc] & 0xFF;
 				boolean isNew = (iCode[pc + 1] != 0);
@@ -552,6 +564,14 @@ public final class Interpreter extends Icode implements Evaluator {
 			// type of ++/--
 			return 1 + 1;
 
+		case Token.GETPROP:
+		case Token.GETPROPNOWARN:
+		case Token.SETPROP:
+		case Icode_NAME_AND_THIS:
+		case Icode_PROP_AND_THIS:
+			// property cache site
+			return 1 + 2;
+
 		case Icode_SHORTNUMBER:
 			// short number
 			return 1 + 2;
@@ -804,6 +824,49 @@ public final class Interpreter extends Icode implements Evaluator {
 				idata.encodedSourceEnd);
 	}
 
+	/**
+	 * Compiles a function that was only parsed with its script, see
+	 * {@link Context#FEATURE_LAZY_FUNCTIONS}. The result is shared by all
+	 * function objects created from the same data.
+	 */
+	static InterpreterData compileLazily(Context cx, InterpreterData stub) {
+		synchronized (stub) {
+			InterpreterData data = stub.itsLazyCompiled;
+			if (data != null) {
+				return data;
+			}
+			CompilerEnvirons compilerEnv = new CompilerEnvirons();
+			compilerEnv.initFromContext(cx);
+			compilerEnv.setLanguageVersion(stub.languageVersion);
+			compilerEnv.setOptimizationLevel(-1);
+			// the source passed the checks when its script was compiled
+			compilerEnv.setStrictMode(false);
+			ErrorReporter reporter = DefaultErrorReporter.forReparse(cx
+					.getErrorReporter());
+			compilerEnv.setErrorReporter(reporter);
+
+			Parser p = new Parser(compilerEnv, reporter);
+			p.calledByCompileFunction = true;
+			p.calledInStrictMode = stub.isStrict;
+			String source = stub.itsLazySource.substring(
+					stub.itsLazySourceStart, stub.itsLazySourceEnd);
+			AstRoot ast = p.parse(source, stub.itsSourceFile,
+					stub.itsLazyLineno);
+			((FunctionNode) ast.getFirstChild())
+					.setFunctionType(stub.itsFunctionType);
+			IRFactory irf = new IRFactory(compilerEnv, reporter);
+			ScriptNode tree = irf.transformTree(ast);
+
+			data = new CodeGenerator().compile(compilerEnv, tree,
+					tree.getEncodedSource(), true);
+			data.topLevel = false;
+			data.parentData = stub.parentData;
+			data.useDynamicScope = stub.useDynamicScope;
+			stub.itsLazyCompiled = data;
+			return data;
+		}
+	}
+
 	private static void initFunction(Context cx, Scriptable scope,
 			InterpretedFunction parent, int index) {
 		InterpretedFunction fn;
@@ -903,6 +966,7 @@ public final class Interpreter extends Icode implements Evaluator {
 		final Object undefined = Undefined.instance;
 
 		final boolean instructionCounting = (cx.instructionThreshold != 0);
+		final boolean tierCounting = (cx.tierUpThreshold != 0);
 		// arbitrary number to add to instructionCount when calling
 		// other functions
 		final int INVOCATION_COST = 100;
@@ -1394,22 +1458,42 @@ public final class Interpreter extends Icode implements Evaluator {
 							continue Loop;
 						}
 						case Token.GETPROPNOWARN: {
+							int site = getIndex(iCode, frame.pc);
+							frame.pc += 2;
 							Object lhs = stack[stackTop];
 							if (lhs == DBL_MRK)
 								lhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
-							stack[stackTop] = ScriptRuntime
-									.getObjectPropNoWarn(lhs, stringReg, cx);
+							Object value = PropertyCache.get(frame.idata,
+									site, lhs, cx);
+							if (value == Scriptable.NOT_FOUND) {
+								value = ScriptRuntime.getObjectPropNoWarn(lhs,
+										stringReg, cx);
+								PropertyCache.update(frame.idata, site, lhs,
+										stringReg, cx);
+							}
+							stack[stackTop] = value;
 							continue Loop;
 						}
 						case Token.GETPROP: {
+							int site = getIndex(iCode, frame.pc);
+							frame.pc += 2;
 							Object lhs = stack[stackTop];
 							if (lhs == DBL_MRK)
 								lhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
-							stack[stackTop] = ScriptRuntime.getObjectProp(lhs,
-									stringReg, cx, frame.scope);
+							Object value = PropertyCache.get(frame.idata,
+									site, lhs, cx);
+							if (value == Scriptable.NOT_FOUND) {
+								value = ScriptRuntime.getObjectProp(lhs,
+										stringReg, cx, frame.scope);
+								PropertyCache.update(frame.idata, site, lhs,
+										stringReg, cx);
+							}
+							stack[stackTop] = value;
 							continue Loop;
 						}
 						case Token.SETPROP: {
+							int site = getIndex(iCode, frame.pc);
+							frame.pc += 2;
 							Object rhs = stack[stackTop];
 							if (rhs == DBL_MRK)
 								rhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
@@ -1417,8 +1501,14 @@ public final class Interpreter extends Icode implements Evaluator {
 							Object lhs = stack[stackTop];
 							if (lhs == DBL_MRK)
 								lhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
-							stack[stackTop] = ScriptRuntime.setObjectProp(lhs,
-									stringReg, rhs, cx);
+							if (!PropertyCache.set(frame.idata, site, lhs, rhs,
+									cx)) {
+								ScriptRuntime.setObjectProp(lhs, stringReg,
+										rhs, cx);
+								PropertyCache.update(frame.idata, site, lhs,
+										stringReg, cx);
+							}
+							stack[stackTop] = rhs;
 							continue Loop;
 						}
 						case Icode_PROP_INC_DEC: {
@@ -1443,6 +1533,16 @@ public final class Interpreter extends Icode implements Evaluator {
 										cx, frame.scope);
 							} else {
 								double d = sDbl[stackTop + 1];
+								int index = (int) d;
+								if (index == d && lhs instanceof NativeArray
+										&& ((NativeArray) lhs)
+												.hasDoubleElement(index)) {
+									// a number of a packed array stays unboxed
+									stack[stackTop] = DBL_MRK;
+									sDbl[stackTop] = ((NativeArray) lhs)
+											.getDoubleElement(index);
+									continue Loop;
+								}
 								value = ScriptRuntime
 										.getObjectIndex(lhs, d, cx);
 							}
@@ -1452,6 +1552,19 @@ public final class Interpreter extends Icode implements Evaluator {
 						case Token.SETELEM: {
 							stackTop -= 2;
 							Object rhs = stack[stackTop + 2];
+							if (rhs == DBL_MRK && stack[stackTop + 1] == DBL_MRK
+									&& stack[stackTop] instanceof NativeArray) {
+								double d = sDbl[stackTop + 1];
+								int index = (int) d;
+								if (index == d
+										&& ((NativeArray) stack[stackTop])
+												.putDoubleElement(index,
+														sDbl[stackTop + 2])) {
+									stack[stackTop] = DBL_MRK;
+									sDbl[stackTop] = sDbl[stackTop + 2];
+									continue Loop;
+								}
+							}
 							if (rhs == DBL_MRK) {
 								rhs = ScriptRuntime
 										.wrapNumber(sDbl[stackTop + 2]);
@@ -1524,27 +1637,59 @@ public final class Interpreter extends Icode implements Evaluator {
 							indexReg += frame.localShift;
 							stack[indexReg] = null;
 							continue Loop;
-						case Icode_NAME_AND_THIS:
+						case Icode_NAME_AND_THIS: {
 							// stringReg: name
+							int site = getIndex(iCode, frame.pc);
+							frame.pc += 2;
 							++stackTop;
+							// only names resolved directly in the top scope
+							// are cached, thisObj is the scope then
+							boolean topScope = frame.scope.getParentScope() == null
+									&& !cx.useDynamicScope;
+							Callable fun = topScope ? PropertyCache
+									.getFunction(frame.idata, site,
+											frame.scope, cx) : null;
+							if (fun != null) {
+								stack[stackTop] = fun;
+								++stackTop;
+								stack[stackTop] = frame.scope;
+								continue Loop;
+							}
 							stack[stackTop] = ScriptRuntime
 									.getNameFunctionAndThis(stringReg, cx,
 											frame.scope);
 							++stackTop;
 							stack[stackTop] = ScriptRuntime
 									.lastStoredScriptable(cx);
+							if (topScope) {
+								PropertyCache.update(frame.idata, site,
+										frame.scope, stringReg, cx);
+							}
 							continue Loop;
+						}
 						case Icode_PROP_AND_THIS: {
+							int site = getIndex(iCode, frame.pc);
+							frame.pc += 2;
 							Object obj = stack[stackTop];
 							if (obj == DBL_MRK)
 								obj = ScriptRuntime.wrapNumber(sDbl[stackTop]);
 							// stringReg: property
+							Callable fun = PropertyCache.getFunction(
+									frame.idata, site, obj, cx);
+							if (fun != null) {
+								stack[stackTop] = fun;
+								++stackTop;
+								stack[stackTop] = obj;
+								continue Loop;
+							}
 							stack[stackTop] = ScriptRuntime
 									.getPropFunctionAndThis(obj, stringReg, cx,
 											frame.scope);
 							++stackTop;
 							stack[stackTop] = ScriptRuntime
 									.lastStoredScriptable(cx);
+							PropertyCache.update(frame.idata, site, obj,
+									stringReg, cx);
 							continue Loop;
 						}
 						case Icode_ELEM_AND_THIS: {
@@ -1645,7 +1790,8 @@ public final class Interpreter extends Icode implements Evaluator {
 							}
 							if (fun instanceof InterpretedFunction) {
 								InterpretedFunction ifun = (InterpretedFunction) fun;
-								if (frame.fnOrScript.securityDomain == ifun.securityDomain) {
+								if (frame.fnOrScript.securityDomain == ifun.securityDomain
+										&& TieredCompilation.getTarget(cx, ifun) == null) {
 									CallFrame callParentFrame = frame;
 									CallFrame calleeFrame = new CallFrame();
 									if (op == Icode_TAIL_CALL) {
@@ -1734,7 +1880,9 @@ public final class Interpreter extends Icode implements Evaluator {
 											.getCallable(funThisObj);
 									if (applyCallable instanceof InterpretedFunction) {
 										InterpretedFunction iApplyCallable = (InterpretedFunction) applyCallable;
-										if (frame.fnOrScript.securityDomain == iApplyCallable.securityDomain) {
+										if (frame.fnOrScript.securityDomain == iApplyCallable.securityDomain
+												&& TieredCompilation.getTarget(
+														cx, iApplyCallable) == null) {
 											frame = initFrameForApplyOrCall(cx,
 													frame, indexReg, stack,
 													sDbl, stackTop, op,
@@ -1757,7 +1905,9 @@ public final class Interpreter extends Icode implements Evaluator {
 								// InterpretedFunction
 								if (noSuchMethodMethod instanceof InterpretedFunction) {
 									InterpretedFunction ifun = (InterpretedFunction) noSuchMethodMethod;
-									if (frame.fnOrScript.securityDomain == ifun.securityDomain) {
+									if (frame.fnOrScript.securityDomain == ifun.securityDomain
+											&& TieredCompilation.getTarget(cx,
+													ifun) == null) {
 										frame = initFrameForNoSuchMethod(cx,
 												frame, indexReg, stack, sDbl,
 												stackTop, op, funThisObj,
@@ -1791,7 +1941,8 @@ public final class Interpreter extends Icode implements Evaluator {
 							Object lhs = stack[stackTop];
 							if (lhs instanceof InterpretedFunction) {
 								InterpretedFunction f = (InterpretedFunction) lhs;
-								if (frame.fnOrScript.securityDomain == f.securityDomain) {
+								if (frame.fnOrScript.securityDomain == f.securityDomain
+										&& TieredCompilation.getTarget(cx, f) == null) {
 									Scriptable newInstance = f.createObject(cx,
 											frame.scope);
 									CallFrame calleeFrame = new CallFrame();
@@ -2315,6 +2466,10 @@ public final class Interpreter extends Icode implements Evaluator {
 					}
 					int offset = getShort(iCode, frame.pc);
 					if (offset != 0) {
+						if (offset < 0 && tierCounting) {
+							// backward jumps count towards tiered execution
+							++frame.idata.itsHotness;
+						}
 						// -1 accounts for pc pointing to jump opcode + 1
 						frame.pc += offset - 1;
 					} else {
@@ -2749,7 +2904,7 @@ public final class Interpreter extends Icode implements Evaluator {
 			Scriptable thisObj, Object[] args, double[] argsDbl, int argShift,
 			int argCount, InterpretedFunction fnOrScript,
 			CallFrame parentFrame, CallFrame frame) {
-		InterpreterData idata = fnOrScript.idata;
+		InterpreterData idata = fnOrScript.ensureCompiled(cx);
 
 		boolean useActivation = idata.itsNeedsActivation;
 		DebugFrame debuggerFrame = null;
@@ -3125,28 +3280,13 @@ public final class Interpreter extends Icode implements Evaluator {
 		} else {
 			if (lhs instanceof Scriptable || rhs instanceof Scriptable) {
 				stack[stackTop] = ScriptRuntime.add(lhs, rhs, cx);
-			} else if (lhs instanceof CharSequenceBuffer) {
+			} else if (lhs instanceof String || rhs instanceof String
+					|| lhs instanceof CharSequenceBuffer
+					|| rhs instanceof CharSequenceBuffer) {
 				// CharSequenceBuffer
-				if (rhs instanceof CharSequenceBuffer) {
-					lhs = ((CharSequenceBuffer) lhs)
-							.append((CharSequenceBuffer) rhs);
-				} else {
-					lhs = ((CharSequenceBuffer) lhs).append(ScriptRuntime
-							.toString(rhs));
-				}
-				stack[stackTop] = lhs;
-			} else if (lhs instanceof String || rhs instanceof String || rhs instanceof CharSequenceBuffer) {
-				if (rhs instanceof CharSequenceBuffer) {
-					CharSequenceBuffer sb = new CharSequenceBuffer(
-							ScriptRuntime.toString(lhs),
-							(CharSequenceBuffer) rhs);
-					stack[stackTop] = sb;
-				} else {
-					CharSequenceBuffer sb = new CharSequenceBuffer(
-							ScriptRuntime.toString(lhs),
-							ScriptRuntime.toString(rhs));
-					stack[stackTop] = sb;
-				}
+				stack[stackTop] = CharSequenceBuffer.concat(
+						ScriptRuntime.toCharSequence(lhs),
+						ScriptRuntime.toCharSequence(rhs));
 			} else {
 				double lDbl = (lhs instanceof Number) ? ((Number) lhs)
 						.doubleValue() : ScriptRuntime.toNumber(lhs);
@@ -3167,21 +3307,13 @@ public final class Interpreter extends Icode implements Evaluator {
 				rhs = tmp;
 			}
 			stack[stackTop] = ScriptRuntime.add(lhs, rhs, cx);
-		} else if (lhs instanceof String) {
-			String lstr = (String) lhs;
-			String rstr = ScriptRuntime.toString(d);
-			if (leftRightOrder) {
-				stack[stackTop] = lstr.concat(rstr);
-			} else {
-				stack[stackTop] = rstr.concat(lstr);
-			}
-		} else if (lhs instanceof CharSequenceBuffer) {
-			CharSequenceBuffer lstr = (CharSequenceBuffer) lhs;
+		} else if (lhs instanceof String || lhs instanceof CharSequenceBuffer) {
+			CharSequence lstr = (CharSequence) lhs;
 			String rstr = ScriptRuntime.toString(d);
 			if (leftRightOrder) {
-				stack[stackTop] = lstr.append(rstr);
+				stack[stackTop] = CharSequenceBuffer.concat(lstr, rstr);
 			} else {
-				stack[stackTop] = new CharSequenceBuffer(rstr, lstr);
+				stack[stackTop] = CharSequenceBuffer.concat(rstr, lstr);
 			}
 		} else {
 			double lDbl = (lhs instanceof Number) ? ((Number) lhs)
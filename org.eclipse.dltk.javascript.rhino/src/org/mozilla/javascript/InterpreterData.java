@@ -65,6 +65,7 @@ final class InterpreterData implements Serializable, DebuggableScript {
 		this.languageVersion = parent.languageVersion;
 		this.itsSourceFile = parent.itsSourceFile;
 		this.encodedSource = parent.encodedSource;
+		this.isStrict = parent.isStrict;
 
 		init();
 	}
@@ -86,6 +87,18 @@ final class InterpreterData implements Serializable, DebuggableScript {
 
 	byte[] itsICode;
 
+	// number of property access instructions with an inline cache
+	int itsPropertySiteCount;
+
+	// inline caches of the property access instructions, indexed by the site
+	// operand of the instruction
+	transient PropertyCache[] itsPropertyCaches;
+
+	// tiered execution: invocation and backward jump count and the state of
+	// the compiled version, see TieredCompilation
+	transient int itsHotness;
+	transient volatile Object itsTieredCode;
+
 	int[] itsExceptionTable;
 
 	int itsMaxVars;
@@ -120,6 +133,21 @@ final class InterpreterData implements Serializable, DebuggableScript {
 
 	boolean evalScriptFlag; // true if script corresponds to eval() code
 
+	// lazily compiled function: the source range it is compiled from on its
+	// first call and the compiled version, see Interpreter.compileLazily
+	String itsLazySource;
+	int itsLazySourceStart;
+	int itsLazySourceEnd;
+	int itsLazyLineno;
+	transient volatile InterpreterData itsLazyCompiled;
+
+	// source range of a compiled function, kept to compile it again for
+	// tiered execution, see TieredCompilation
+	String itsFunctionSource;
+	int itsFunctionSourceStart;
+	int itsFunctionSourceEnd;
+	int itsFunctionLineno;
+
 	public boolean isTopLevel() {
 		return topLevel;
 	}
@@ -41,13 +41,22 @@
 
 package org.mozilla.javascript;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.*;
 import java.io.*;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Wrappper class for Method and Constructor instances to cache
  * getParameterTypes() results, recover from IllegalAccessException in some
  * cases and provide serialization support.
+ * <p>
+ * Members that are called more often are invoked through a method handle
+ * that is bound once per member, so the JIT can inline the call into the
+ * calling code instead of going through reflection every time.
  * 
  * @author Igor Bukanov
  */
@@ -62,6 +71,28 @@ public final class MemberBox implements Serializable {
 
 	transient Class returnType;
 
+	// reflective calls before the method handle is bound, members that are
+	// only called a few times don't pay for creating it
+	private static final int BIND_THRESHOLD = 16;
+
+	private static final MethodType INVOKE_TYPE = MethodType.methodType(
+			Object.class, Object.class, Object[].class);
+	private static final MethodType NEW_INSTANCE_TYPE = MethodType
+			.methodType(Object.class, Object[].class);
+
+	private static final AtomicIntegerFieldUpdater<MemberBox> REFLECTIVE_CALLS = AtomicIntegerFieldUpdater
+			.newUpdater(MemberBox.class, "reflectiveCalls");
+
+	// the numbers Method.invoke unboxes and widens in this order
+	private static final Class<?>[] NUMBER_CLASSES = { Byte.class,
+			Short.class, Integer.class, Long.class, Float.class, Double.class };
+	private static final Class<?>[] NUMBER_TYPES = { Byte.TYPE, Short.TYPE,
+			Integer.TYPE, Long.TYPE, Float.TYPE, Double.TYPE };
+
+	// of type INVOKE_TYPE or NEW_INSTANCE_TYPE once bound
+	private transient volatile MethodHandle handle;
+	private transient volatile int reflectiveCalls;
+
 	public MemberBox(Method method) {
 		init(method);
 	}
@@ -152,6 +183,25 @@ public final class MemberBox implements Serializable {
 	}
 
 	Object invoke(Object target, Object[] args) {
+		MethodHandle mh = handle;
+		if (mh != null) {
+			if (args == null) {
+				args = Context.emptyArgs;
+			}
+			try {
+				return (Object) mh.invokeExact(target, args);
+			} catch (Throwable ex) {
+				throw handleException(ex, target, args);
+			}
+		}
+		Object result = invokeReflective(target, args);
+		if (REFLECTIVE_CALLS.incrementAndGet(this) == BIND_THRESHOLD) {
+			bindHandle();
+		}
+		return result;
+	}
+
+	private Object invokeReflective(Object target, Object[] args) {
 		Method method = method();
 		try {
 			try {
@@ -184,6 +234,25 @@ public final class MemberBox implements Serializable {
 	}
 
 	Object newInstance(Object[] args) {
+		MethodHandle mh = handle;
+		if (mh != null) {
+			if (args == null) {
+				args = Context.emptyArgs;
+			}
+			try {
+				return (Object) mh.invokeExact(args);
+			} catch (Throwable ex) {
+				throw handleException(ex, null, args);
+			}
+		}
+		Object result = newInstanceReflective(args);
+		if (REFLECTIVE_CALLS.incrementAndGet(this) == BIND_THRESHOLD) {
+			bindHandle();
+		}
+		return result;
+	}
+
+	private Object newInstanceReflective(Object[] args) {
 		Constructor<?> ctor = ctor();
 		try {
 			try {
@@ -199,6 +268,111 @@ public final class MemberBox implements Serializable {
 		}
 	}
 
+	/**
+	 * Method.invoke rejects a receiver or arguments of the wrong type with an
+	 * IllegalArgumentException before the member is called. The method handle
+	 * fails on them with an exception the member itself might have thrown as
+	 * well, so they are checked after such a failure.
+	 */
+	private RuntimeException handleException(Throwable ex, Object target,
+			Object[] args) {
+		if (ex instanceof ClassCastException
+				|| ex instanceof NullPointerException
+				|| ex instanceof IllegalArgumentException
+				|| ex instanceof WrongMethodTypeException) {
+			if (target == null && isMethod() && !isStatic()) {
+				// Method.invoke fails on the receiver first
+				throw Context.throwAsScriptRuntimeEx(new NullPointerException());
+			}
+			String mismatch = checkArguments(target, args);
+			if (mismatch != null) {
+				throw Context
+						.throwAsScriptRuntimeEx(new IllegalArgumentException(
+								mismatch));
+			}
+		}
+		// Must allow ContinuationPending exceptions to propagate unhindered
+		if (ex instanceof ContinuationPending)
+			throw (ContinuationPending) ex;
+		throw Context.throwAsScriptRuntimeEx(ex);
+	}
+
+	/**
+	 * Return the message of Method.invoke for the receiver and arguments of
+	 * a call or null if the member accepts them.
+	 */
+	private String checkArguments(Object target, Object[] args) {
+		if (args.length != argTypes.length) {
+			return "wrong number of arguments";
+		}
+		if (isMethod() && !isStatic()
+				&& !getDeclaringClass().isInstance(target)) {
+			return "object is not an instance of declaring class";
+		}
+		for (int i = 0; i != args.length; ++i) {
+			Class<?> type = argTypes[i];
+			Object arg = args[i];
+			if (type.isPrimitive() ? !isUnboxable(arg, type) : arg != null
+					&& !type.isInstance(arg)) {
+				return "argument type mismatch";
+			}
+		}
+		return null;
+	}
+
+	private static boolean isUnboxable(Object arg, Class<?> type) {
+		if (arg instanceof Boolean) {
+			return type == Boolean.TYPE;
+		}
+		int from;
+		if (arg instanceof Character) {
+			if (type == Character.TYPE) {
+				return true;
+			}
+			// char widens like int
+			from = 2;
+		} else {
+			from = arg == null ? -1 : indexOf(NUMBER_CLASSES, arg.getClass());
+		}
+		return from >= 0 && indexOf(NUMBER_TYPES, type) >= from;
+	}
+
+	private static int indexOf(Class<?>[] classes, Class<?> c) {
+		for (int i = 0; i != classes.length; ++i) {
+			if (classes[i] == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Bind the method handle for the member after the reflective calls
+	 * succeeded, so the member is accessible by then. If the member can't be
+	 * bound it keeps being invoked through reflection.
+	 */
+	private void bindHandle() {
+		MethodHandle mh;
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			if (isMethod()) {
+				mh = lookup.unreflect(method()).asFixedArity();
+				if (isStatic()) {
+					mh = MethodHandles.dropArguments(mh, 0, Object.class);
+				}
+				mh = mh.asSpreader(Object[].class, argTypes.length).asType(
+						INVOKE_TYPE);
+			} else {
+				mh = lookup.unreflectConstructor(ctor()).asFixedArity()
+						.asSpreader(Object[].class, argTypes.length)
+						.asType(NEW_INSTANCE_TYPE);
+			}
+		} catch (Exception ex) {
+			return;
+		}
+		handle = mh;
+	}
+
 	private static Method searchAccessibleMethod(Method method,
 			Class<?>[] params) {
 		int modifiers = method.getModifiers();
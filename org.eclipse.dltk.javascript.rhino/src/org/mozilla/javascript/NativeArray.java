@@ -53,6 +53,12 @@ import java.util.Set;
 
 /**
  * This class implements the Array native object.
+ * <p>
+ * An array without holes whose elements are all Integers or all Doubles keeps
+ * them unboxed in an <code>int[]</code> or <code>double[]</code>; any other
+ * element, a hole or a property descriptor moves the elements to the
+ * <code>Object[]</code> store for good. An empty array takes the kind of the
+ * first element put into it.
  * 
  * @author Norris Boyd
  * @author Mike McCabe
@@ -89,7 +95,10 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 
 	public NativeArray(long lengthArg) {
 		denseOnly = lengthArg <= maximumInitialCapacity;
-		if (denseOnly) {
+		if (lengthArg == 0) {
+			elementsKind = INT_ELEMENTS;
+			ints = EMPTY_INTS;
+		} else if (denseOnly) {
 			int intLength = (int) lengthArg;
 			if (intLength < DEFAULT_INITIAL_CAPACITY)
 				intLength = DEFAULT_INITIAL_CAPACITY;
@@ -105,6 +114,203 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 		length = array.length;
 	}
 
+	/**
+	 * Move the elements to an <code>int[]</code> or <code>double[]</code> if
+	 * they are all Integers or all Doubles. Used for array literals, whose
+	 * element array isn't shared with anyone else.
+	 */
+	void packElements() {
+		if (elementsKind != OBJECT_ELEMENTS || !denseOnly || length == 0) {
+			return;
+		}
+		int len = (int) length;
+		int kind = elementsKindOf(dense[0]);
+		if (kind == OBJECT_ELEMENTS) {
+			return;
+		}
+		for (int i = 1; i < len; i++) {
+			if (elementsKindOf(dense[i]) != kind) {
+				return;
+			}
+		}
+		if (kind == INT_ELEMENTS) {
+			int[] values = new int[len];
+			for (int i = 0; i < len; i++) {
+				values[i] = ((Integer) dense[i]).intValue();
+			}
+			setPrimitiveElements(kind, values, len);
+		} else {
+			double[] values = new double[len];
+			for (int i = 0; i < len; i++) {
+				values[i] = ((Double) dense[i]).doubleValue();
+			}
+			setPrimitiveElements(kind, values, len);
+		}
+	}
+
+	private static int elementsKindOf(Object value) {
+		if (value instanceof Integer) {
+			return INT_ELEMENTS;
+		}
+		if (value instanceof Double) {
+			return DOUBLE_ELEMENTS;
+		}
+		return OBJECT_ELEMENTS;
+	}
+
+	/**
+	 * Replace the elements by the first length values of the given
+	 * <code>int[]</code> or <code>double[]</code>.
+	 */
+	private void setPrimitiveElements(int kind, Object values, int length) {
+		elementsKind = kind;
+		ints = kind == INT_ELEMENTS ? (int[]) values : null;
+		doubles = kind == DOUBLE_ELEMENTS ? (double[]) values : null;
+		dense = null;
+		this.length = length;
+	}
+
+	/**
+	 * Return the <code>int[]</code> or <code>double[]</code> of a packed
+	 * array.
+	 */
+	private Object primitiveElements() {
+		return elementsKind == INT_ELEMENTS ? (Object) ints : doubles;
+	}
+
+	/**
+	 * Return the element at the given index, which is less than the length of
+	 * a dense array.
+	 */
+	private Object getDenseElement(int index) {
+		switch (elementsKind) {
+		case INT_ELEMENTS:
+			return Integer.valueOf(ints[index]);
+		case DOUBLE_ELEMENTS:
+			return ScriptRuntime.wrapNumber(doubles[index]);
+		default:
+			return dense[index];
+		}
+	}
+
+	/**
+	 * Move the elements of a packed array to <code>dense</code>, before a
+	 * change the primitive array can't hold.
+	 */
+	private void toObjectElements() {
+		if (elementsKind == OBJECT_ELEMENTS) {
+			return;
+		}
+		int len = (int) length;
+		int capacity = Math.max(elementsKind == INT_ELEMENTS ? ints.length
+				: doubles.length, DEFAULT_INITIAL_CAPACITY);
+		Object[] values = new Object[capacity];
+		for (int i = 0; i < len; i++) {
+			values[i] = getDenseElement(i);
+		}
+		Arrays.fill(values, len, capacity, NOT_FOUND);
+		elementsKind = OBJECT_ELEMENTS;
+		ints = null;
+		doubles = null;
+		dense = values;
+	}
+
+	private boolean ensurePrimitiveCapacity(int capacity) {
+		int current = elementsKind == INT_ELEMENTS ? ints.length
+				: doubles.length;
+		if (capacity > current) {
+			if (capacity > MAX_PRE_GROW_SIZE) {
+				return false;
+			}
+			capacity = Math.max(capacity, Math.max(
+					(int) (current * GROW_FACTOR), DEFAULT_INITIAL_CAPACITY));
+			if (elementsKind == INT_ELEMENTS) {
+				ints = Arrays.copyOf(ints, capacity);
+			} else {
+				doubles = Arrays.copyOf(doubles, capacity);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Store the value in a packed array if it keeps the array packed: the
+	 * index is at most the length and the value is of the kind of the
+	 * elements. Return false if the elements have to be moved to
+	 * <code>dense</code> first.
+	 */
+	private boolean putPrimitive(int index, Object value) {
+		int len = (int) length;
+		if (index > len) {
+			return false;
+		}
+		int kind = elementsKindOf(value);
+		if (kind != elementsKind) {
+			if (kind == OBJECT_ELEMENTS || len != 0) {
+				return false;
+			}
+			// an empty array takes the kind of its first element
+			elementsKind = kind;
+			ints = kind == INT_ELEMENTS ? EMPTY_INTS : null;
+			doubles = kind == DOUBLE_ELEMENTS ? EMPTY_DOUBLES : null;
+		}
+		if (index == len) {
+			if (!ensurePrimitiveCapacity(len + 1)) {
+				return false;
+			}
+			length = len + 1;
+		}
+		if (kind == INT_ELEMENTS) {
+			ints[index] = ((Integer) value).intValue();
+		} else {
+			doubles[index] = ((Double) value).doubleValue();
+		}
+		return true;
+	}
+
+	/**
+	 * Copy the elements of a dense array to the given array, boxing them if
+	 * the array is packed. Return the index after the last copied element.
+	 */
+	private int copyDenseElements(Object[] to, int at) {
+		int len = (int) length;
+		if (elementsKind == OBJECT_ELEMENTS) {
+			System.arraycopy(dense, 0, to, at, len);
+		} else {
+			for (int i = 0; i < len; i++) {
+				to[at + i] = getDenseElement(i);
+			}
+		}
+		return at + len;
+	}
+
+	/**
+	 * Return true if the element at the given index is in the
+	 * <code>double[]</code> of a plain packed array, for the interpreter to
+	 * read it without boxing.
+	 */
+	final boolean hasDoubleElement(int index) {
+		return elementsKind == DOUBLE_ELEMENTS && 0 <= index && index < length
+				&& getClass() == NativeArray.class;
+	}
+
+	final double getDoubleElement(int index) {
+		return doubles[index];
+	}
+
+	/**
+	 * Store the number at the given index if it is in the
+	 * <code>double[]</code> of a plain packed array that isn't sealed, return
+	 * false if the element has to be put the usual way.
+	 */
+	final boolean putDoubleElement(int index, double value) {
+		if (hasDoubleElement(index) && !isSealed()) {
+			doubles[index] = value;
+			return true;
+		}
+		return false;
+	}
+
 	@Override
 	public String getClassName() {
 		return "Array";
@@ -403,6 +609,11 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 
 	@Override
 	public Object get(int index, Scriptable start) {
+		if (elementsKind != OBJECT_ELEMENTS) {
+			if (0 <= index && index < length)
+				return getDenseElement(index);
+			return super.get(index, start);
+		}
 		if (!denseOnly && isGetterOrSetter(null, index, false))
 			return super.get(index, start);
 		if (dense != null && 0 <= index && index < dense.length)
@@ -412,6 +623,11 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 
 	@Override
 	public boolean has(int index, Scriptable start) {
+		if (elementsKind != OBJECT_ELEMENTS) {
+			if (0 <= index && index < length)
+				return true;
+			return super.has(index, start);
+		}
 		if (!denseOnly && isGetterOrSetter(null, index, false))
 			return super.has(index, start);
 		if (dense != null && 0 <= index && index < dense.length)
@@ -443,6 +659,7 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 			// If the object is sealed, super will throw exception
 			long index = toArrayIndex(id);
 			if (index >= length) {
+				toObjectElements();
 				length = index + 1;
 				denseOnly = false;
 			}
@@ -450,6 +667,7 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 	}
 
 	private boolean ensureCapacity(int capacity) {
+		toObjectElements();
 		if (capacity > dense.length) {
 			if (capacity > MAX_PRE_GROW_SIZE) {
 				denseOnly = false;
@@ -467,6 +685,11 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 
 	@Override
 	public void put(int index, Scriptable start, Object value) {
+		if (elementsKind != OBJECT_ELEMENTS && start == this && 0 <= index) {
+			if (!isSealed() && putPrimitive(index, value))
+				return;
+			toObjectElements();
+		}
 		if (start == this && !isSealed() && dense != null && 0 <= index
 				&& (denseOnly || !isGetterOrSetter(null, index, true))) {
 			if (index < dense.length) {
@@ -495,6 +718,11 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 
 	@Override
 	public void delete(int index) {
+		if (elementsKind != OBJECT_ELEMENTS && 0 <= index && index < length
+				&& !isSealed()) {
+			// leaves a hole
+			toObjectElements();
+		}
 		if (dense != null && 0 <= index && index < dense.length && !isSealed()
 				&& (denseOnly || !isGetterOrSetter(null, index, true))) {
 			dense[index] = NOT_FOUND;
@@ -506,6 +734,15 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 	@Override
 	public Object[] getIds() {
 		Object[] superIds = super.getIds();
+		if (elementsKind != OBJECT_ELEMENTS) {
+			int N = (int) length;
+			Object[] ids = new Object[N + superIds.length];
+			for (int i = 0; i != N; ++i) {
+				ids[i] = Integer.valueOf(i);
+			}
+			System.arraycopy(superIds, 0, ids, N, superIds.length);
+			return ids;
+		}
 		if (dense == null) {
 			return superIds;
 		}
@@ -587,10 +824,10 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 
 	@Override
 	protected ScriptableObject getOwnPropertyDescriptor(Context cx, Object id) {
-		if (dense != null) {
+		if (dense != null || elementsKind != OBJECT_ELEMENTS) {
 			int index = toIndex(id);
 			if (0 <= index && index < length) {
-				Object value = dense[index];
+				Object value = getDenseElement(index);
 				return defaultIndexPropertyDescriptor(value);
 			}
 		}
@@ -599,6 +836,7 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 
 	@Override
 	public void defineOwnProperty(Context cx, Object id, ScriptableObject desc) {
+		toObjectElements();
 		if (dense != null) {
 			Object[] values = dense;
 			dense = null;
@@ -678,6 +916,8 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 	void setDenseOnly(boolean denseOnly) {
 		if (denseOnly && !this.denseOnly)
 			throw new IllegalArgumentException();
+		if (!denseOnly)
+			toObjectElements();
 		this.denseOnly = denseOnly;
 	}
 
@@ -695,6 +935,14 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 			throw ScriptRuntime.constructError("RangeError", msg);
 		}
 
+		if (elementsKind != OBJECT_ELEMENTS) {
+			if (longVal <= length) {
+				// the elements after the new length are never read
+				length = longVal;
+				return;
+			}
+			toObjectElements();
+		}
 		if (denseOnly) {
 			if (longVal < length) {
 				// downcast okay because denseOnly
@@ -934,7 +1182,11 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 					if (i != 0) {
 						sb.append(separator);
 					}
-					if (i < na.dense.length) {
+					if (na.elementsKind == INT_ELEMENTS) {
+						sb.append(na.ints[i]);
+					} else if (na.elementsKind == DOUBLE_ELEMENTS) {
+						sb.append(ScriptRuntime.toString(na.doubles[i]));
+					} else if (i < na.dense.length) {
 						Object temp = na.dense[i];
 						if (temp != null && temp != Undefined.instance
 								&& temp != Scriptable.NOT_FOUND) {
@@ -980,7 +1232,23 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 			Object[] args) {
 		if (thisObj instanceof NativeArray) {
 			NativeArray na = (NativeArray) thisObj;
-			if (na.denseOnly) {
+			if (na.elementsKind == INT_ELEMENTS) {
+				int[] ints = na.ints;
+				for (int i = 0, j = ((int) na.length) - 1; i < j; i++, j--) {
+					int temp = ints[i];
+					ints[i] = ints[j];
+					ints[j] = temp;
+				}
+				return thisObj;
+			} else if (na.elementsKind == DOUBLE_ELEMENTS) {
+				double[] doubles = na.doubles;
+				for (int i = 0, j = ((int) na.length) - 1; i < j; i++, j--) {
+					double temp = doubles[i];
+					doubles[i] = doubles[j];
+					doubles[j] = temp;
+				}
+				return thisObj;
+			} else if (na.denseOnly) {
 				for (int i = 0, j = ((int) na.length) - 1; i < j; i++, j--) {
 					Object temp = na.dense[i];
 					na.dense[i] = na.dense[j];
@@ -1008,7 +1276,14 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 	private static Scriptable js_sort(final Context cx, final Scriptable scope,
 			final Scriptable thisObj, final Object[] args) {
 		final Comparator<Object> comparator;
-		if (args.length > 0 && Undefined.instance != args[0]) {
+		boolean hasCompareFunction = args.length > 0
+				&& Undefined.instance != args[0];
+		if (!hasCompareFunction && thisObj instanceof NativeArray
+				&& ((NativeArray) thisObj).elementsKind != OBJECT_ELEMENTS) {
+			((NativeArray) thisObj).sortPrimitiveElements();
+			return thisObj;
+		}
+		if (hasCompareFunction) {
 			final Callable jsCompareFunction = ScriptRuntime
 					.getValueFunctionAndThis(args[0], cx);
 			final Scriptable funThis = ScriptRuntime.lastStoredScriptable(cx);
@@ -1078,6 +1353,39 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 		return thisObj;
 	}
 
+	/**
+	 * Sort the numbers of a packed array by their string values, as sort
+	 * without a compare function does, converting each number only once.
+	 */
+	private void sortPrimitiveElements() {
+		int len = (int) length;
+		final String[] keys = new String[len];
+		Integer[] order = new Integer[len];
+		for (int i = 0; i < len; i++) {
+			keys[i] = elementsKind == INT_ELEMENTS ? Integer.toString(ints[i])
+					: ScriptRuntime.toString(doubles[i]);
+			order[i] = Integer.valueOf(i);
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer x, Integer y) {
+				return keys[x.intValue()].compareTo(keys[y.intValue()]);
+			}
+		});
+		if (elementsKind == INT_ELEMENTS) {
+			int[] sorted = new int[ints.length];
+			for (int i = 0; i < len; i++) {
+				sorted[i] = ints[order[i].intValue()];
+			}
+			ints = sorted;
+		} else {
+			double[] sorted = new double[doubles.length];
+			for (int i = 0; i < len; i++) {
+				sorted[i] = doubles[order[i].intValue()];
+			}
+			doubles = sorted;
+		}
+	}
+
 	/**
 	 * Non-ECMA methods.
 	 */
@@ -1085,6 +1393,21 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 	private static Object js_push(Context cx, Scriptable thisObj, Object[] args) {
 		if (thisObj instanceof NativeArray) {
 			NativeArray na = (NativeArray) thisObj;
+			if (na.elementsKind != OBJECT_ELEMENTS) {
+				int pushed = 0;
+				while (pushed < args.length
+						&& na.putPrimitive((int) na.length, args[pushed])) {
+					pushed++;
+				}
+				if (pushed == args.length) {
+					return ScriptRuntime.wrapNumber(na.length);
+				}
+				// the rest goes to dense
+				na.toObjectElements();
+				Object[] rest = new Object[args.length - pushed];
+				System.arraycopy(args, pushed, rest, 0, rest.length);
+				args = rest;
+			}
 			if (na.denseOnly
 					&& na.ensureCapacity((int) na.length + args.length)) {
 				for (int i = 0; i < args.length; i++) {
@@ -1120,6 +1443,9 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 			NativeArray na = (NativeArray) thisObj;
 			if (na.denseOnly && na.length > 0) {
 				na.length--;
+				if (na.elementsKind != OBJECT_ELEMENTS) {
+					return na.getDenseElement((int) na.length);
+				}
 				result = na.dense[(int) na.length];
 				na.dense[(int) na.length] = NOT_FOUND;
 				return result;
@@ -1147,6 +1473,13 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 	private static Object js_shift(Context cx, Scriptable thisObj, Object[] args) {
 		if (thisObj instanceof NativeArray) {
 			NativeArray na = (NativeArray) thisObj;
+			if (na.elementsKind != OBJECT_ELEMENTS && na.length > 0) {
+				Object result = na.getDenseElement(0);
+				na.length--;
+				Object elements = na.primitiveElements();
+				System.arraycopy(elements, 1, elements, 0, (int) na.length);
+				return result;
+			}
 			if (na.denseOnly && na.length > 0) {
 				na.length--;
 				Object result = na.dense[0];
@@ -1187,6 +1520,9 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 			Object[] args) {
 		if (thisObj instanceof NativeArray) {
 			NativeArray na = (NativeArray) thisObj;
+			if (na.elementsKind != OBJECT_ELEMENTS && args.length == 0) {
+				return ScriptRuntime.wrapNumber(na.length);
+			}
 			if (na.denseOnly
 					&& na.ensureCapacity((int) na.length + args.length)) {
 				System.arraycopy(na.dense, 0, na.dense, args.length,
@@ -1229,6 +1565,9 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 		if (thisObj instanceof NativeArray) {
 			na = (NativeArray) thisObj;
 			denseMode = na.denseOnly;
+			if (denseMode && args.length > 0) {
+				na.toObjectElements();
+			}
 		}
 
 		/* create an empty Array to return. */
@@ -1356,34 +1695,71 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 			NativeArray denseThis = (NativeArray) thisObj;
 			NativeArray denseResult = (NativeArray) result;
 			if (denseThis.denseOnly && denseResult.denseOnly) {
-				// First calculate length of resulting array
+				// First calculate length of resulting array, and the kind of
+				// elements all parts have if they are all packed alike
 				boolean canUseDense = true;
 				int length = (int) denseThis.length;
+				int kind = length == 0 ? -1 : denseThis.elementsKind;
 				for (int i = 0; i < args.length && canUseDense; i++) {
+					int argKind;
 					if (args[i] instanceof NativeArray) {
 						// only try to use dense approach for Array-like
 						// objects that are actually NativeArrays
 						final NativeArray arg = (NativeArray) args[i];
 						canUseDense = arg.denseOnly;
 						length += arg.length;
+						argKind = arg.length == 0 ? -1 : arg.elementsKind;
 					} else if (ScriptRuntime.instanceOf(args[i], ctor, cx)) {
 						// Array-like but not NativeArray
 						canUseDense = false;
+						argKind = OBJECT_ELEMENTS;
 					}
 					else {
 						length++;
+						argKind = elementsKindOf(args[i]);
+					}
+					if (kind == -1) {
+						kind = argKind;
+					} else if (argKind != -1 && argKind != kind) {
+						kind = OBJECT_ELEMENTS;
 					}
 				}
-				if (canUseDense && denseResult.ensureCapacity(length)) {
-					System.arraycopy(denseThis.dense, 0, denseResult.dense, 0,
-							(int) denseThis.length);
+				if (canUseDense && kind != -1 && kind != OBJECT_ELEMENTS
+						&& length <= MAX_PRE_GROW_SIZE) {
+					Object elements = kind == INT_ELEMENTS ? (Object) new int[length]
+							: new double[length];
 					int cursor = (int) denseThis.length;
+					if (cursor != 0) {
+						System.arraycopy(denseThis.primitiveElements(), 0,
+								elements, 0, cursor);
+					}
+					for (int i = 0; i < args.length; i++) {
+						if (args[i] instanceof NativeArray) {
+							NativeArray arg = (NativeArray) args[i];
+							if (arg.length != 0) {
+								System.arraycopy(arg.primitiveElements(), 0,
+										elements, cursor, (int) arg.length);
+								cursor += (int) arg.length;
+							}
+						} else if (kind == INT_ELEMENTS) {
+							((int[]) elements)[cursor++] = ((Integer) args[i])
+									.intValue();
+						} else {
+							((double[]) elements)[cursor++] = ((Double) args[i])
+									.doubleValue();
+						}
+					}
+					denseResult.setPrimitiveElements(kind, elements, length);
+					return result;
+				}
+				if (canUseDense && denseResult.ensureCapacity(length)) {
+					int cursor = denseThis.copyDenseElements(denseResult.dense,
+							0);
 					for (int i = 0; i < args.length && canUseDense; i++) {
 						if (args[i] instanceof NativeArray) {
 							NativeArray arg = (NativeArray) args[i];
-							System.arraycopy(arg.dense, 0, denseResult.dense,
-									cursor, (int) arg.length);
-							cursor += (int) arg.length;
+							cursor = arg.copyDenseElements(denseResult.dense,
+									cursor);
 						} else {
 							denseResult.dense[cursor++] = args[i];
 						}
@@ -1452,6 +1828,18 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 			}
 		}
 
+		if (thisObj instanceof NativeArray && result instanceof NativeArray) {
+			NativeArray na = (NativeArray) thisObj;
+			if (na.elementsKind != OBJECT_ELEMENTS && begin < end) {
+				int from = (int) begin, to = (int) end;
+				((NativeArray) result).setPrimitiveElements(na.elementsKind,
+						na.elementsKind == INT_ELEMENTS ? (Object) Arrays
+								.copyOfRange(na.ints, from, to) : Arrays
+								.copyOfRange(na.doubles, from, to), to - from);
+				return result;
+			}
+		}
+
 		for (long slot = begin; slot < end; slot++) {
 			Object temp = getElem(cx, thisObj, slot);
 			setElem(cx, result, slot - begin, temp);
@@ -1540,6 +1928,10 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 		}
 		if (thisObj instanceof NativeArray) {
 			NativeArray na = (NativeArray) thisObj;
+			if (na.elementsKind != OBJECT_ELEMENTS) {
+				int index = na.indexOfNumber(compareTo, (int) start, isLast);
+				return index == -1 ? NEGATIVE_ONE : Long.valueOf(index);
+			}
 			if (na.denseOnly) {
 				if (isLast) {
 					for (int i = (int) start; i >= 0; i--) {
@@ -1577,6 +1969,32 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 		return NEGATIVE_ONE;
 	}
 
+	/**
+	 * indexOf and lastIndexOf of a packed array, which holds only numbers
+	 * that are equal to no other value than a number.
+	 */
+	private int indexOfNumber(Object compareTo, int start, boolean isLast) {
+		if (!(compareTo instanceof Number)) {
+			return -1;
+		}
+		double d = ((Number) compareTo).doubleValue();
+		int len = (int) length;
+		if (isLast) {
+			for (int i = start; i >= 0; i--) {
+				if ((elementsKind == INT_ELEMENTS ? ints[i] : doubles[i]) == d) {
+					return i;
+				}
+			}
+		} else {
+			for (int i = start; i < len; i++) {
+				if ((elementsKind == INT_ELEMENTS ? ints[i] : doubles[i]) == d) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
 	/**
 	 * Implements the methods "every", "filter", "forEach", "map", and "some".
 	 */
@@ -2090,10 +2508,28 @@ public class NativeArray extends IdScriptableObject implements List, Wrapper {
 	private Object[] dense;
 
 	/**
-	 * True if all numeric properties are stored in <code>dense</code>.
+	 * True if all numeric properties are stored in <code>dense</code>, or in
+	 * <code>ints</code> or <code>doubles</code>.
 	 */
 	private boolean denseOnly;
 
+	/**
+	 * Where the elements of a dense array are stored: <code>dense</code>
+	 * for OBJECT_ELEMENTS, which may have holes, else the first length values
+	 * of <code>ints</code> or <code>doubles</code>, which have none. Packed
+	 * arrays are always denseOnly.
+	 */
+	private int elementsKind;
+
+	private int[] ints;
+	private double[] doubles;
+
+	private static final int OBJECT_ELEMENTS = 0, INT_ELEMENTS = 1,
+			DOUBLE_ELEMENTS = 2;
+
+	private static final int[] EMPTY_INTS = new int[0];
+	private static final double[] EMPTY_DOUBLES = new double[0];
+
 	/**
 	 * The maximum size of <code>dense</code> that will be allocated initially.
 	 */
@@ -51,6 +51,10 @@ import org.mozilla.javascript.debug.DebuggableScript;
  */
 public abstract class NativeFunction extends BaseFunction {
 
+	// the interpreted function this compiled function runs for, see
+	// TieredCompilation
+	transient NativeFunction tieredOwner;
+
 	public final void initScriptFunction(Context cx, Scriptable scope) {
 		ScriptRuntime.setFunctionProtoAndParent(this, scope);
 	}
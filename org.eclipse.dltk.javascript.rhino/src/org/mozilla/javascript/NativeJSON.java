@@ -42,19 +42,27 @@ package org.mozilla.javascript;
 
 import org.mozilla.javascript.json.JsonParser;
 
-import java.util.Stack;
-import java.util.Collection;
-import java.util.Iterator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.LinkedList;
 
 /**
  * This class implements the JSON native object. See ECMA 15.12.
+ * <p>
+ * Besides strings, JSON.parse reads Java {@link Reader}s and UTF-8
+ * {@link InputStream}s as they are, without reading them into a string first.
+ * Java code can parse from a reader and stringify to a {@link Writer} with the
+ * static methods of this class.
  * 
  * @author Matthew Crumley, Raphael Speyer
  */
-final class NativeJSON extends IdScriptableObject {
+public final class NativeJSON extends IdScriptableObject {
 	static final long serialVersionUID = -4567599697595654984L;
 
 	private static final Object JSON_TAG = "JSON";
@@ -120,11 +128,23 @@ final class NativeJSON extends IdScriptableObject {
 			return "JSON";
 
 		case Id_parse: {
-			String jtext = ScriptRuntime.toString(args, 0);
 			Object reviver = null;
 			if (args.length > 1) {
 				reviver = args[1];
 			}
+			Object json = args.length > 0 ? args[0] : null;
+			if (json instanceof Wrapper) {
+				// a Java Reader or InputStream is parsed as it is read
+				json = ((Wrapper) json).unwrap();
+			}
+			if (json instanceof Reader || json instanceof InputStream) {
+				Reader reader = json instanceof Reader ? (Reader) json
+						: new InputStreamReader((InputStream) json,
+								StandardCharsets.UTF_8);
+				return parse(cx, scope, reader,
+						reviver instanceof Callable ? (Callable) reviver : null);
+			}
+			String jtext = ScriptRuntime.toString(args, 0);
 			if (reviver instanceof Callable) {
 				return parse(cx, scope, jtext, (Callable) reviver);
 			} else {
@@ -163,6 +183,37 @@ final class NativeJSON extends IdScriptableObject {
 	public static Object parse(Context cx, Scriptable scope, String jtext,
 			Callable reviver) {
 		Object unfiltered = parse(cx, scope, jtext);
+		if (reviver == null) {
+			return unfiltered;
+		}
+		return revive(cx, scope, unfiltered, reviver);
+	}
+
+	/**
+	 * Parse the JSON text read from the given reader up to its end, as
+	 * JSON.parse does for a string. The reader is not closed.
+	 * 
+	 * @param reviver
+	 *            the reviver function or null
+	 */
+	public static Object parse(Context cx, Scriptable scope, Reader json,
+			Callable reviver) {
+		Object unfiltered;
+		try {
+			unfiltered = new JsonParser(cx, scope).parseValue(json);
+		} catch (JsonParser.ParseException ex) {
+			throw ScriptRuntime.constructError("SyntaxError", ex.getMessage());
+		} catch (IOException ex) {
+			throw Context.throwAsScriptRuntimeEx(ex);
+		}
+		if (reviver == null) {
+			return unfiltered;
+		}
+		return revive(cx, scope, unfiltered, reviver);
+	}
+
+	private static Object revive(Context cx, Scriptable scope,
+			Object unfiltered, Callable reviver) {
 		Scriptable root = cx.newObject(scope);
 		root.put("", root, unfiltered);
 		return walk(cx, scope, reviver, root, "");
@@ -218,51 +269,106 @@ final class NativeJSON extends IdScriptableObject {
 	}
 
 	private static class StringifyState {
-		StringifyState(Context cx, Scriptable scope, String indent, String gap,
-				Callable replacer, List<Object> propertyList, Object space) {
+		StringifyState(Context cx, Scriptable scope, String gap,
+				Callable replacer, Object[] propertyList, Object space) {
 			this.cx = cx;
 			this.scope = scope;
 
-			this.indent = indent;
 			this.gap = gap;
 			this.replacer = replacer;
 			this.propertyList = propertyList;
 			this.space = space;
 		}
 
-		Stack<Scriptable> stack = new Stack<Scriptable>();
-		String indent;
+		// the objects and arrays being written, to find cycles
+		Scriptable[] stack = new Scriptable[8];
+		int depth;
 		String gap;
 		Callable replacer;
-		List<Object> propertyList;
+		Object[] propertyList;
 		Object space;
 
 		Context cx;
 		Scriptable scope;
+
+		void push(Scriptable value) {
+			for (int i = 0; i < depth; i++) {
+				if (stack[i] == value) {
+					throw ScriptRuntime.typeError0("msg.cyclic.value");
+				}
+			}
+			if (depth == stack.length) {
+				stack = Arrays.copyOf(stack, depth * 2);
+			}
+			stack[depth++] = value;
+		}
+
+		void pop() {
+			stack[--depth] = null;
+		}
+
+		/**
+		 * Start a new line indented to the current depth.
+		 */
+		void newLine(Appendable out) throws IOException {
+			out.append('\n');
+			for (int i = 0; i < depth; i++) {
+				out.append(gap);
+			}
+		}
 	}
 
 	public static Object stringify(Context cx, Scriptable scope, Object value,
 			Object replacer, Object space) {
-		String indent = "";
+		StringBuilder out = new StringBuilder();
+		try {
+			if (!stringify(cx, scope, value, replacer, space, out)) {
+				return Undefined.instance;
+			}
+		} catch (IOException e) {
+			// not thrown by a StringBuilder
+			throw new IllegalStateException(e);
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Write the JSON text of the value to the given writer as it is produced,
+	 * instead of building a string as JSON.stringify does. The writer should
+	 * be buffered, the text is written in small pieces.
+	 * 
+	 * @return false, without writing anything, if the value has no JSON text
+	 *         and JSON.stringify would return undefined
+	 */
+	public static boolean stringify(Context cx, Scriptable scope,
+			Object value, Object replacer, Object space, Writer out)
+			throws IOException {
+		return stringify(cx, scope, value, replacer, space, (Appendable) out);
+	}
+
+	private static boolean stringify(Context cx, Scriptable scope,
+			Object value, Object replacer, Object space, Appendable out)
+			throws IOException {
 		String gap = "";
 
-		List<Object> propertyList = null;
+		Object[] propertyList = null;
 		Callable replacerFunction = null;
 
 		if (replacer instanceof Callable) {
 			replacerFunction = (Callable) replacer;
 		} else if (replacer instanceof NativeArray) {
-			propertyList = new LinkedList<Object>();
+			List<Object> properties = new ArrayList<Object>();
 			NativeArray replacerArray = (NativeArray) replacer;
 			for (int i : replacerArray.getIndexIds()) {
 				Object v = replacerArray.get(i, replacerArray);
 				if (v instanceof String || v instanceof Number) {
-					propertyList.add(v);
+					properties.add(v);
 				} else if (v instanceof NativeString
 						|| v instanceof NativeNumber) {
-					propertyList.add(ScriptRuntime.toString(v));
+					properties.add(ScriptRuntime.toString(v));
 				}
 			}
+			propertyList = properties.toArray();
 		}
 
 		if (space instanceof NativeNumber) {
@@ -283,17 +389,26 @@ final class NativeJSON extends IdScriptableObject {
 			}
 		}
 
-		StringifyState state = new StringifyState(cx, scope, indent, gap,
+		StringifyState state = new StringifyState(cx, scope, gap,
 				replacerFunction, propertyList, space);
 
 		ScriptableObject wrapper = new NativeObject();
 		wrapper.setParentScope(scope);
 		wrapper.setPrototype(ScriptableObject.getObjectPrototype(scope));
 		wrapper.defineProperty("", value, 0);
-		return str("", wrapper, state);
+		Object json = value("", wrapper, state);
+		if (!isSerializable(json)) {
+			return false;
+		}
+		str(json, state, out);
+		return true;
 	}
 
-	private static Object str(Object key, Scriptable holder,
+	/**
+	 * Return the value of the property to write: the value after toJSON, the
+	 * replacer function and unwrapping of Number, String and Boolean objects.
+	 */
+	private static Object value(Object key, Scriptable holder,
 			StringifyState state) {
 		Object value = null;
 		if (key instanceof String) {
@@ -323,191 +438,163 @@ final class NativeJSON extends IdScriptableObject {
 			value = ((NativeBoolean) value)
 					.getDefaultValue(ScriptRuntime.BooleanClass);
 		}
+		return value;
+	}
 
-		if (value == null)
-			return "null";
-		if (value.equals(Boolean.TRUE))
-			return "true";
-		if (value.equals(Boolean.FALSE))
-			return "false";
-
-		if (value instanceof String) {
-			return quote((String) value);
-		}
-		if (value instanceof CharSequenceBuffer) {
-			return quote(value.toString());
-		}
+	/**
+	 * Return false for the values that have no JSON text, such as undefined
+	 * and functions.
+	 */
+	private static boolean isSerializable(Object value) {
+		return value == null || value.equals(Boolean.TRUE)
+				|| value.equals(Boolean.FALSE) || value instanceof String
+				|| value instanceof CharSequenceBuffer
+				|| value instanceof Number
+				|| (value instanceof Scriptable && !(value instanceof Callable));
+	}
 
-		if (value instanceof Number) {
+	/**
+	 * Write the JSON text of a value for which isSerializable is true.
+	 */
+	private static void str(Object value, StringifyState state, Appendable out)
+			throws IOException {
+		if (value == null) {
+			out.append("null");
+		} else if (value.equals(Boolean.TRUE)) {
+			out.append("true");
+		} else if (value.equals(Boolean.FALSE)) {
+			out.append("false");
+		} else if (value instanceof String) {
+			quote((String) value, out);
+		} else if (value instanceof CharSequenceBuffer) {
+			quote(value.toString(), out);
+		} else if (value instanceof Number) {
 			double d = ((Number) value).doubleValue();
 			if (d == d && d != Double.POSITIVE_INFINITY
 					&& d != Double.NEGATIVE_INFINITY) {
-				return ScriptRuntime.toString(value);
+				out.append(ScriptRuntime.toString(value));
 			} else {
-				return "null";
+				out.append("null");
 			}
+		} else if (value instanceof NativeArray) {
+			ja((NativeArray) value, state, out);
+		} else {
+			jo((Scriptable) value, state, out);
 		}
-
-		if (value instanceof Scriptable && !(value instanceof Callable)) {
-			if (value instanceof NativeArray) {
-				return ja((NativeArray) value, state);
-			}
-			return jo((Scriptable) value, state);
-		}
-
-		return Undefined.instance;
-	}
-
-	private static String join(Collection<Object> objs, String delimiter) {
-		if (objs == null || objs.isEmpty()) {
-			return "";
-		}
-		Iterator<Object> iter = objs.iterator();
-		if (!iter.hasNext())
-			return "";
-		StringBuilder builder = new StringBuilder(iter.next().toString());
-		while (iter.hasNext()) {
-			builder.append(delimiter).append(iter.next().toString());
-		}
-		return builder.toString();
 	}
 
-	private static String jo(Scriptable value, StringifyState state) {
-		if (state.stack.search(value) != -1) {
-			throw ScriptRuntime.typeError0("msg.cyclic.value");
-		}
-		state.stack.push(value);
+	private static void jo(Scriptable value, StringifyState state,
+			Appendable out) throws IOException {
+		state.push(value);
 
-		String stepback = state.indent;
-		state.indent = state.indent + state.gap;
 		Object[] k = null;
 		if (state.propertyList != null) {
-			k = state.propertyList.toArray();
+			k = state.propertyList;
 		} else {
 			k = value.getIds();
 		}
 
-		List<Object> partial = new LinkedList<Object>();
-
+		boolean empty = true;
+		out.append('{');
 		for (Object p : k) {
-			Object strP = str(p, value, state);
-			if (strP != Undefined.instance) {
-				String member = quote(p.toString()) + ":";
+			Object v = value(p, value, state);
+			if (isSerializable(v)) {
+				if (!empty) {
+					out.append(',');
+				}
+				empty = false;
+				if (state.gap.length() > 0) {
+					state.newLine(out);
+				}
+				quote(p.toString(), out);
+				out.append(':');
 				if (state.gap.length() > 0) {
-					member = member + " ";
+					out.append(' ');
 				}
-				member = member + strP;
-				partial.add(member);
+				str(v, state, out);
 			}
 		}
 
-		final String finalValue;
-
-		if (partial.isEmpty()) {
-			finalValue = "{}";
-		} else {
-			if (state.gap.length() == 0) {
-				finalValue = '{' + join(partial, ",") + '}';
-			} else {
-				String separator = ",\n" + state.indent;
-				String properties = join(partial, separator);
-				finalValue = "{\n" + state.indent + properties + '\n'
-						+ stepback + '}';
-			}
+		state.pop();
+		if (!empty && state.gap.length() > 0) {
+			state.newLine(out);
 		}
-
-		state.stack.pop();
-		state.indent = stepback;
-		return finalValue;
+		out.append('}');
 	}
 
-	private static String ja(NativeArray value, StringifyState state) {
-		if (state.stack.search(value) != -1) {
-			throw ScriptRuntime.typeError0("msg.cyclic.value");
-		}
-		state.stack.push(value);
-
-		String stepback = state.indent;
-		state.indent = state.indent + state.gap;
-		List<Object> partial = new LinkedList<Object>();
+	private static void ja(NativeArray value, StringifyState state,
+			Appendable out) throws IOException {
+		state.push(value);
 
 		int len = (int) value.getLength();
+		out.append('[');
 		for (int index = 0; index < len; index++) {
-			Object strP = str(index, value, state);
-			if (strP == Undefined.instance) {
-				partial.add("null");
-			} else {
-				partial.add(strP);
+			if (index > 0) {
+				out.append(',');
 			}
-		}
-
-		final String finalValue;
-
-		if (partial.isEmpty()) {
-			finalValue = "[]";
-		} else {
-			if (state.gap.length() == 0) {
-				finalValue = '[' + join(partial, ",") + ']';
+			if (state.gap.length() > 0) {
+				state.newLine(out);
+			}
+			Object v = value(index, value, state);
+			if (isSerializable(v)) {
+				str(v, state, out);
 			} else {
-				String separator = ",\n" + state.indent;
-				String properties = join(partial, separator);
-				finalValue = "[\n" + state.indent + properties + '\n'
-						+ stepback + ']';
+				out.append("null");
 			}
 		}
 
-		state.stack.pop();
-		state.indent = stepback;
-		return finalValue;
+		state.pop();
+		if (len > 0 && state.gap.length() > 0) {
+			state.newLine(out);
+		}
+		out.append(']');
 	}
 
-	private static String quote(String string) {
-		StringBuffer product = new StringBuffer(string.length() + 2); // two
-																		// extra
-																		// chars
-																		// for "
-																		// on
-																		// either
-																		// side
-		product.append('"');
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private static void quote(String string, Appendable out)
+			throws IOException {
+		out.append('"');
 		int length = string.length();
+		// the chars after the last escaped one that are still to be written
+		int start = 0;
 		for (int i = 0; i < length; i++) {
 			char c = string.charAt(i);
+			if (c >= ' ' && c != '"' && c != '\\') {
+				continue;
+			}
+			out.append(string, start, i);
+			start = i + 1;
 			switch (c) {
 			case '"':
-				product.append("\\\"");
+				out.append("\\\"");
 				break;
 			case '\\':
-				product.append("\\\\");
+				out.append("\\\\");
 				break;
 			case '\b':
-				product.append("\\b");
+				out.append("\\b");
 				break;
 			case '\f':
-				product.append("\\f");
+				out.append("\\f");
 				break;
 			case '\n':
-				product.append("\\n");
+				out.append("\\n");
 				break;
 			case '\r':
-				product.append("\\r");
+				out.append("\\r");
 				break;
 			case '\t':
-				product.append("\\t");
+				out.append("\\t");
 				break;
 			default:
-				if (c < ' ') {
-					product.append("\\u");
-					String hex = String.format("%04x", (int) c);
-					product.append(hex);
-				} else {
-					product.append(c);
-				}
+				out.append("\\u00").append(HEX_DIGITS[c >> 4]).append(
+						HEX_DIGITS[c & 0xF]);
 				break;
 			}
 		}
-		product.append('"');
-		return product.toString();
+		out.append(string, start, length);
+		out.append('"');
 	}
 
 	// #string_id_map#
@@ -155,7 +155,7 @@ public class NativeJavaMethod extends BaseFunction {
 			throw new RuntimeException("No methods defined for call");
 		}
 
-		int index = findFunction(cx, methods, args);
+		int index = findCachedFunction(cx, args);
 		if (index < 0) {
 			for (int i = 0; i < args.length; i++) {
 				if (args[i] instanceof NativeJavaArray
@@ -537,6 +537,111 @@ public class NativeJavaMethod extends BaseFunction {
 		*/
 	}
 
+	/**
+	 * Same as findFunction for the methods of this object, but remembers the
+	 * chosen method for the types of the arguments. The choice of
+	 * findFunction only depends on the classes of the arguments and of the
+	 * objects wrapped by them, so later calls with arguments of the same
+	 * types skip the overload resolution.
+	 */
+	private int findCachedFunction(Context cx, Object[] args) {
+		if (methods.length < 2) {
+			return findFunction(cx, methods, args);
+		}
+		boolean enhancedAccess = cx
+				.hasFeature(Context.FEATURE_ENHANCED_JAVA_ACCESS);
+		ResolvedOverload[] resolved = resolvedOverloads;
+		if (resolved != null) {
+			for (int i = 0; i != resolved.length; ++i) {
+				if (resolved[i].matches(args, enhancedAccess)) {
+					return resolved[i].index;
+				}
+			}
+		}
+		int index = findFunction(cx, methods, args);
+		if (index >= 0) {
+			Class<?>[] types = ResolvedOverload.getTypes(args);
+			if (types != null) {
+				// copy on write, a lost update only costs a resolution
+				int length = resolved == null ? 0 : resolved.length;
+				if (length < MAX_RESOLVED_OVERLOADS) {
+					ResolvedOverload[] newResolved = new ResolvedOverload[length + 1];
+					if (length != 0) {
+						System.arraycopy(resolved, 0, newResolved, 0, length);
+					}
+					newResolved[length] = new ResolvedOverload(types,
+							enhancedAccess, index);
+					resolvedOverloads = newResolved;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * The method chosen by findFunction for arguments of certain types.
+	 */
+	private static final class ResolvedOverload {
+		// per argument its class and the class of the object it wraps
+		private final Class<?>[] types;
+		private final boolean enhancedAccess;
+		final int index;
+
+		ResolvedOverload(Class<?>[] types, boolean enhancedAccess, int index) {
+			this.types = types;
+			this.enhancedAccess = enhancedAccess;
+			this.index = index;
+		}
+
+		/**
+		 * Return the types of the arguments or null if they can't be used as
+		 * a key.
+		 */
+		static Class<?>[] getTypes(Object[] args) {
+			Class<?>[] types = new Class<?>[args.length * 2];
+			for (int i = 0; i != args.length; ++i) {
+				Object arg = args[i];
+				if (arg == null) {
+					continue;
+				}
+				types[2 * i] = arg.getClass();
+				if (arg instanceof Wrapper) {
+					Object wrapped = ((Wrapper) arg).unwrap();
+					// findFunction unwraps twice, don't bother with that
+					if (wrapped == null || wrapped instanceof Wrapper) {
+						return null;
+					}
+					types[2 * i + 1] = wrapped.getClass();
+				}
+			}
+			return types;
+		}
+
+		boolean matches(Object[] args, boolean enhancedAccess) {
+			if (types.length != args.length * 2
+					|| this.enhancedAccess != enhancedAccess) {
+				return false;
+			}
+			for (int i = 0; i != args.length; ++i) {
+				Object arg = args[i];
+				if (arg == null) {
+					if (types[2 * i] != null) {
+						return false;
+					}
+				} else if (arg.getClass() != types[2 * i]) {
+					return false;
+				} else if (arg instanceof Wrapper) {
+					Object wrapped = ((Wrapper) arg).unwrap();
+					if (wrapped == null
+							|| wrapped.getClass() != types[2 * i + 1]) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+	}
+
 	/** Types are equal */
 	private static final int PREFERENCE_EQUAL = 0;
 	private static final int PREFERENCE_FIRST_ARG = 1;
@@ -702,4 +807,8 @@ public class NativeJavaMethod extends BaseFunction {
 
 	MemberBox[] methods;
 	private String functionName;
+
+	// the number of argument type combinations remembered per method
+	private static final int MAX_RESOLVED_OVERLOADS = 8;
+	private transient volatile ResolvedOverload[] resolvedOverloads;
 }
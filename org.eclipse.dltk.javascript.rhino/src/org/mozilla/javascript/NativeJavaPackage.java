@@ -128,12 +128,45 @@ public class NativeJavaPackage extends ScriptableObject {
 			NativeJavaPackage pkg = new NativeJavaPackage(true, newPackage,
 					classLoader);
 			ScriptRuntime.setObjectProtoAndParent(pkg, scope);
+			if (hasConcurrentAccess()) {
+				pkg.enableConcurrentAccess();
+			}
 			super.put(name, this, pkg);
 			return pkg;
 		}
 	}
 
-	synchronized Object getPkgProperty(String name, Scriptable start,
+	/**
+	 * Switch this package and the packages below it to the slot table for
+	 * concurrent access. Packages loaded later below it use it too, and
+	 * classes and packages that are already loaded are then found without
+	 * locking the package. Used for the packages of a standard-objects
+	 * snapshot, which all threads using the snapshot load classes through.
+	 */
+	void enableSharedAccess() {
+		enableConcurrentAccess();
+		Object[] ids = getAllIds();
+		for (int i = 0; i != ids.length; ++i) {
+			if (ids[i] instanceof String) {
+				Object value = super.get((String) ids[i], this);
+				if (value instanceof NativeJavaPackage
+						&& !((NativeJavaPackage) value).hasConcurrentAccess()) {
+					((NativeJavaPackage) value).enableSharedAccess();
+				}
+			}
+		}
+	}
+
+	Object getPkgProperty(String name, Scriptable start, boolean createPkg) {
+		if (hasConcurrentAccess()) {
+			Object cached = super.get(name, start);
+			if (cached != NOT_FOUND)
+				return cached;
+		}
+		return loadPkgProperty(name, start, createPkg);
+	}
+
+	private synchronized Object loadPkgProperty(String name, Scriptable start,
 			boolean createPkg) {
 		Object cached = super.get(name, start);
 		if (cached != NOT_FOUND)
@@ -167,6 +200,9 @@ public class NativeJavaPackage extends ScriptableObject {
 				NativeJavaPackage pkg;
 				pkg = new NativeJavaPackage(true, className, classLoader);
 				ScriptRuntime.setObjectProtoAndParent(pkg, getParentScope());
+				if (hasConcurrentAccess()) {
+					pkg.enableConcurrentAccess();
+				}
 				newValue = pkg;
 			} else {
 				// add to negative cache
@@ -177,7 +177,11 @@ public class NativeObject extends IdScriptableObject implements Map {
 			}
 			if (args.length == 0 || args[0] == null
 					|| args[0] == Undefined.instance) {
-				return new NativeObject();
+				NativeObject result = new NativeObject();
+				if (cx.hasFeature(Context.FEATURE_SHARED_SHAPES)) {
+					result.enableSharedShape();
+				}
+				return result;
 			}
 			return ScriptRuntime.toObject(cx, scope, args[0]);
 		}
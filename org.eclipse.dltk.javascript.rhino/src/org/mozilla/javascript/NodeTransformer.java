@@ -67,6 +67,10 @@ public class NodeTransformer {
 		transformCompilationUnit(tree);
 		for (int i = 0; i != tree.getFunctionCount(); ++i) {
 			FunctionNode fn = tree.getFunctionNode(i);
+			if (fn.isLazy()) {
+				// transformed when it is compiled on its first call
+				continue;
+			}
 			transform(fn);
 		}
 	}
@@ -86,8 +90,9 @@ public class NodeTransformer {
 		// uncomment to print tree before transformation
 		if (Token.printTrees)
 			System.out.println(tree.toStringTree(tree));
-		boolean inStrictMode = tree instanceof AstRoot
-				&& ((AstRoot) tree).isInStrictMode();
+		// functions are strict when their script is
+		AstRoot root = tree.getAstRoot();
+		boolean inStrictMode = root != null && root.isInStrictMode();
 		transformCompilationUnit_r(tree, tree, tree, createScopeObjects,
 				inStrictMode);
 	}
@@ -55,6 +55,8 @@ import java.io.Reader;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -102,8 +104,16 @@ public class Parser {
 	private IdeErrorReporter errorCollector;
 	private String sourceURI;
 	private char[] sourceChars;
+	// the source kept for functions compiled on their first call or by
+	// tiered compilation
+	private String functionSource;
+	// the part of the source parsed by reparse
+	private int reparsedStart;
+	private int reparsedEnd;
 
 	boolean calledByCompileFunction; // ugly - set directly by Context
+	// set when a function of a strict script is compiled on its own
+	boolean calledInStrictMode;
 	private boolean parseFinished; // set when finished to prevent reuse
 
 	private TokenStream ts;
@@ -478,10 +488,17 @@ public class Parser {
 		if (parseFinished)
 			throw new IllegalStateException("parser reused");
 		this.sourceURI = sourceURI;
+		if (compilerEnv.isLazyFunctions()
+				|| compilerEnv.isRetainFunctionSource()) {
+			this.functionSource = sourceString;
+		}
 		if (compilerEnv.isIdeMode()) {
+			// the token stream scans the characters that are kept
 			this.sourceChars = sourceString.toCharArray();
+			this.ts = new TokenStream(this, sourceString, sourceChars, lineno);
+		} else {
+			this.ts = new TokenStream(this, null, sourceString, lineno);
 		}
-		this.ts = new TokenStream(this, null, sourceString, lineno);
 		try {
 			return parse();
 		} catch (IOException iox) {
@@ -503,7 +520,7 @@ public class Parser {
 			throws IOException {
 		if (parseFinished)
 			throw new IllegalStateException("parser reused");
-		if (compilerEnv.isIdeMode()) {
+		if (compilerEnv.isIdeMode() || compilerEnv.isLazyFunctions()) {
 			return parse(readFully(sourceReader), sourceURI, lineno);
 		}
 		try {
@@ -515,6 +532,479 @@ public class Parser {
 		}
 	}
 
+	/**
+	 * Parses a script again after a single edit of its source, reusing the
+	 * top-level statements of the previous tree that the edit doesn't touch.
+	 * Only the statements around the edit are scanned and parsed again, the
+	 * ones after them are moved by the length change of the edit.
+	 * <p>
+	 * This needs ide-mode and an {@link IdeErrorReporter}. The previous tree
+	 * is updated and returned if neither it nor the reparsed statements have
+	 * syntax errors and the reparsed statements still end where the
+	 * unchanged statements begin. Otherwise, or without ide-mode, the whole
+	 * source is parsed into a new tree.
+	 * Problems are only reported for the part of the source between
+	 * {@link #getReparsedStart()} and {@link #getReparsedEnd()}; problems
+	 * reported before for the part after it move by
+	 * {@code insertedText.length() - removedLength}.
+	 * 
+	 * @param previous
+	 *            the tree of the source before the edit. Unless it is
+	 *            returned, it is left as it was.
+	 * @param sourceString
+	 *            the source after the edit
+	 * @param offset
+	 *            the position of the edit
+	 * @param removedLength
+	 *            the number of characters the edit removed at
+	 *            {@code offset}
+	 * @param insertedText
+	 *            the text the edit inserted at {@code offset}
+	 * @return the tree of {@code sourceString}
+	 * @throws IllegalArgumentException
+	 *             if the edit doesn't fit the source
+	 */
+	public AstRoot reparse(AstRoot previous, String sourceString, int offset,
+			int removedLength, String insertedText) {
+		if (parseFinished)
+			throw new IllegalStateException("parser reused");
+		int delta = insertedText.length() - removedLength;
+		if (offset < 0 || removedLength < 0
+				|| offset + insertedText.length() > sourceString.length()
+				|| offset + removedLength > sourceString.length() - delta
+				|| !sourceString.startsWith(insertedText, offset)) {
+			throw new IllegalArgumentException("edit doesn't fit the source");
+		}
+		int lineno = Math.max(previous.getBaseLineno(), 0);
+		if (compilerEnv.isIdeMode() && errorCollector != null) {
+			ErrorCollector problems = new ErrorCollector();
+			Parser p = new Parser(compilerEnv, problems);
+			if (p.reparse(previous, sourceString, lineno, offset, offset
+					+ removedLength, delta)) {
+				parseFinished = true;
+				for (ParseProblem problem : problems.getErrors()) {
+					errorCollector.warning(problem.getMessage(),
+							problem.getSourceName(), problem.getFileOffset(),
+							problem.getLength());
+				}
+				reparsedStart = p.reparsedStart;
+				reparsedEnd = p.reparsedEnd;
+				return previous;
+			}
+		}
+		reparsedStart = 0;
+		reparsedEnd = sourceString.length();
+		return parse(sourceString, previous.getSourceName(), lineno);
+	}
+
+	/**
+	 * Returns the start of the part of the source that the last call of
+	 * {@link #reparse} parsed.
+	 */
+	public int getReparsedStart() {
+		return reparsedStart;
+	}
+
+	/**
+	 * Returns the end of the part of the source that the last call of
+	 * {@link #reparse} parsed.
+	 */
+	public int getReparsedEnd() {
+		return reparsedEnd;
+	}
+
+	// Parses the top-level statements around the edit from editStart to
+	// editEnd (positions before the edit) into a scratch root, and replaces
+	// the statements of previous with them if that was exact. The scratch
+	// parse starts at the end of the statement before the first one it
+	// parses again, so the parser state there is known: the root scope, no
+	// pending jsdoc but the one checked below, and strict mode from the
+	// previous tree.
+	private boolean reparse(final AstRoot previous, String source,
+			int baseLineno, int editStart, int editEnd, int delta) {
+		List<AstNode> statements = new ArrayList<AstNode>();
+		for (Node n : previous) {
+			statements.add((AstNode) n);
+		}
+		int count = statements.size();
+		if (count == 0 || previous.hasSyntaxErrors()) {
+			// the positions of recovered nodes can't be trusted
+			return false;
+		}
+
+		// the statements touching the edit, with one more on each side as
+		// the edit may join or split them
+		int first = 0;
+		while (first < count && getNodeEnd(statements.get(first)) < editStart) {
+			first++;
+		}
+		int last = count - 1;
+		while (last >= 0 && statements.get(last).getPosition() > editEnd) {
+			last--;
+		}
+		first = Math.max(first - 1, 0);
+		last = last + 1;
+		// a statement after the directive prologue can't become a directive
+		int directives = 0;
+		while (directives < count
+				&& getDirective(statements.get(directives)) != null) {
+			directives++;
+		}
+		if (first <= directives) {
+			first = 0;
+		}
+		boolean toEnd = last >= count;
+		if (toEnd) {
+			last = count - 1;
+		}
+		int start = first == 0 ? 0 : getNodeEnd(statements.get(first - 1));
+		int end = toEnd ? source.length() : getNodeEnd(statements.get(last))
+				+ delta;
+		if (start > 0
+				&& ScriptRuntime.isJSLineTerminator(source.charAt(start - 1))) {
+			return false;
+		}
+		Set<AstNode> replaced = new HashSet<AstNode>(statements.subList(first,
+				last + 1));
+
+		// a jsdoc comment is attached to the next node that takes one, which
+		// may be in another statement
+		String jsdoc = null;
+		boolean jsdocAtEnd = false;
+		if (compilerEnv.isRecordingLocalJsDocComments()) {
+			Comment comment = lastJsDoc(previous, start);
+			if (comment != null) {
+				AstNode owner = findJsDocOwner(statements, comment);
+				if (owner == null) {
+					// dropped somewhere, can't tell if it was before start
+					return false;
+				}
+				if (owner.getAbsolutePosition() >= start) {
+					jsdoc = comment.getValue();
+				}
+			}
+			comment = toEnd ? null : lastJsDoc(previous, end - delta);
+			if (comment != null) {
+				AstNode owner = findJsDocOwner(statements, comment);
+				if (owner == null
+						|| owner.getAbsolutePosition() >= end - delta) {
+					return false;
+				}
+			}
+			jsdocAtEnd = !toEnd;
+		}
+
+		// the root-level symbols of the statements that are kept, to check
+		// redeclarations against
+		final AstRoot root = new AstRoot(0);
+		if (previous.getSymbolTable() != null) {
+			for (Symbol symbol : previous.getSymbolTable().values()) {
+				if (!replaced.contains(symbol.getNode())) {
+					root.putSymbol(new Symbol(symbol.getDeclType(), symbol
+							.getName()));
+				}
+			}
+		}
+		int keptSymbolCount = root.getSymbols().size();
+
+		int lineno = baseLineno;
+		for (int i = 0; i < start; i++) {
+			char c = source.charAt(i);
+			if (c == '\r' && i + 1 < start && source.charAt(i + 1) == '\n')
+				continue;
+			if (ScriptRuntime.isJSLineTerminator(c))
+				lineno++;
+		}
+
+		this.sourceURI = previous.getSourceName();
+		this.sourceChars = source.toCharArray();
+		this.ts = new TokenStream(this, source, sourceChars, start, end,
+				lineno);
+		currentScope = currentScriptOrFn = root;
+		currentJsDocComment = jsdoc;
+		inUseStrictDirective = first == 0 ? false : previous.isInStrictMode();
+		try {
+			parseStatements(root, start, first == 0);
+		} catch (IOException iox) {
+			// Should never happen
+			throw new IllegalStateException();
+		} catch (StackOverflowError ex) {
+			return false;
+		} finally {
+			parseFinished = true;
+		}
+		if (syntaxErrorCount != 0
+				|| (first == 0 && root.isInStrictMode() != previous
+						.isInStrictMode())
+				|| (jsdocAtEnd && currentJsDocComment != null)) {
+			return false;
+		}
+		List<AstNode> parsed = new ArrayList<AstNode>();
+		for (Node n : root) {
+			parsed.add((AstNode) n);
+		}
+		int lineDelta = 0;
+		if (!toEnd) {
+			// the last statement was not edited and must be parsed as before
+			AstNode before = statements.get(last);
+			AstNode after = parsed.isEmpty() ? null : parsed
+					.get(parsed.size() - 1);
+			if (after == null
+					|| after.getPosition() != before.getPosition() + delta
+					|| after.getLength() != before.getLength()) {
+				return false;
+			}
+			lineDelta = after.getLineno() - before.getLineno();
+		}
+
+		// the replaced statements must declare the same symbols, so that the
+		// symbols of the other statements stay as they are
+		List<Symbol> symbols = previous.getSymbols();
+		List<Symbol> parsedSymbols = root.getSymbols().subList(
+				keptSymbolCount, root.getSymbols().size());
+		int k = 0;
+		for (Symbol symbol : symbols) {
+			if (!replaced.contains(symbol.getNode()))
+				continue;
+			if (k == parsedSymbols.size())
+				return false;
+			Symbol s = parsedSymbols.get(k++);
+			if (!s.getName().equals(symbol.getName())
+					|| s.getDeclType() != symbol.getDeclType()
+					|| (s.getContainingTable() == root) != (symbol
+							.getContainingTable() == previous)) {
+				return false;
+			}
+		}
+		if (k != parsedSymbols.size()) {
+			return false;
+		}
+
+		// from here on previous is updated
+		List<Symbol> newSymbols = new ArrayList<Symbol>(symbols.size());
+		Map<String, Symbol> symbolTable = new LinkedHashMap<String, Symbol>();
+		k = 0;
+		for (Symbol symbol : symbols) {
+			if (replaced.contains(symbol.getNode())) {
+				symbol = parsedSymbols.get(k++);
+			}
+			if (symbol.getContainingTable() == root) {
+				symbol.setContainingTable(previous);
+			}
+			if (symbol.getContainingTable() == previous) {
+				symbolTable.put(symbol.getName(), symbol);
+			}
+			newSymbols.add(symbol);
+		}
+		previous.setSymbols(newSymbols);
+		previous.setSymbolTable(symbolTable.isEmpty() ? null : symbolTable);
+
+		Map<AstNode, List<Scope>> statementScopes = getStatementScopes(previous);
+		previous.removeChildren();
+		for (int i = 0; i < count; i++) {
+			if (i == first) {
+				for (AstNode n : parsed) {
+					previous.addChildToBack(n);
+					n.setParent(previous);
+				}
+			}
+			if (i < first || i > last) {
+				AstNode n = statements.get(i);
+				previous.addChildToBack(n);
+				if (i > last) {
+					n.setPosition(n.getPosition() + delta);
+					if (lineDelta != 0)
+						shiftLinenos(n, lineDelta);
+				}
+			}
+		}
+
+		// the child scopes of the root are in the order of the statements
+		// they were parsed in, so they are put together again from those of
+		// the kept statements and the parsed ones
+		List<Scope> scopes = previous.getChildScopes();
+		List<Scope> parsedScopes = root.getChildScopes();
+		if (scopes != null || parsedScopes != null) {
+			List<Scope> childScopes = new ArrayList<Scope>();
+			for (int i = 0; i < count; i++) {
+				if (i == first && parsedScopes != null) {
+					childScopes.addAll(parsedScopes);
+				}
+				List<Scope> kept = i < first || i > last ? statementScopes
+						.get(statements.get(i)) : null;
+				if (kept != null) {
+					childScopes.addAll(kept);
+				}
+			}
+			if (scopes != null) {
+				scopes.clear();
+			}
+			for (Scope scope : childScopes) {
+				previous.addChildScope(scope);
+			}
+		}
+		for (AstNode n : parsed) {
+			n.visit(new NodeVisitor() {
+				public boolean visit(AstNode node) {
+					if (node instanceof Scope) {
+						Scope scope = (Scope) node;
+						if (scope.getParentScope() == root)
+							scope.setParentScope(previous);
+						if (scope.getTop() == root)
+							scope.setTop(previous);
+					}
+					return true;
+				}
+			});
+		}
+
+		List<Comment> comments = new ArrayList<Comment>();
+		if (previous.getComments() != null) {
+			comments.addAll(previous.getComments());
+		}
+		previous.setComments(null);
+		int rootEnd = 0;
+		for (Comment c : comments) {
+			if (c.getPosition() < start) {
+				previous.addComment(c);
+				rootEnd = Math.max(rootEnd, getNodeEnd(c));
+			}
+		}
+		if (scannedComments != null) {
+			for (Comment c : scannedComments) {
+				previous.addComment(c);
+				rootEnd = Math.max(rootEnd, getNodeEnd(c));
+			}
+		}
+		for (Comment c : comments) {
+			if (c.getPosition() >= end - delta) {
+				c.setPosition(c.getPosition() + delta);
+				if (lineDelta != 0 && c.lineno >= 0)
+					c.lineno += lineDelta;
+				previous.addComment(c);
+				rootEnd = Math.max(rootEnd, getNodeEnd(c));
+			}
+		}
+		if (previous.getLastChild() != null) {
+			rootEnd = Math.max(rootEnd,
+					getNodeEnd((AstNode) previous.getLastChild()));
+		}
+		previous.setLength(rootEnd);
+		// the root starts where it did, only its end line moves
+		int endLinenoDelta = toEnd ? ts.lineno - previous.getEndLineno()
+				: lineDelta;
+		if (endLinenoDelta != 0 && previous.getEndLineno() >= 0) {
+			int rootLineno = previous.getLineno();
+			previous.shiftLinenos(endLinenoDelta);
+			previous.setLineno(rootLineno);
+		}
+		for (AstNode n : parsed) {
+			compact(n);
+		}
+		if (compilerEnv.isCompactAst()) {
+			previous.trimToSize();
+		}
+		reparsedStart = start;
+		reparsedEnd = end;
+		return true;
+	}
+
+	// Returns the child scopes of root by the top-level statement they were
+	// parsed in. A scope that is not in the tree, like the temporary scope of
+	// a for loop, belongs to the statement of the next scope that is.
+	private static Map<AstNode, List<Scope>> getStatementScopes(AstRoot root) {
+		Map<AstNode, List<Scope>> statementScopes = new IdentityHashMap<AstNode, List<Scope>>();
+		if (root.getChildScopes() == null) {
+			return statementScopes;
+		}
+		List<Scope> pending = new ArrayList<Scope>();
+		for (Scope scope : root.getChildScopes()) {
+			pending.add(scope);
+			AstNode n = scope;
+			while (n.getParent() != null && n.getParent() != root)
+				n = n.getParent();
+			if (n.getParent() == root) {
+				List<Scope> scopes = statementScopes.get(n);
+				if (scopes == null) {
+					scopes = new ArrayList<Scope>();
+					statementScopes.put(n, scopes);
+				}
+				scopes.addAll(pending);
+				pending.clear();
+			}
+		}
+		return statementScopes;
+	}
+
+	// Releases the unused capacity of the lists in the tree of node when a
+	// compact tree was asked for.
+	private void compact(AstNode node) {
+		if (!compilerEnv.isCompactAst())
+			return;
+		node.visit(new NodeVisitor() {
+			public boolean visit(AstNode n) {
+				n.trimToSize();
+				return true;
+			}
+		});
+	}
+
+	// Returns the last jsdoc comment that ends before pos, or null.
+	private Comment lastJsDoc(AstRoot root, int pos) {
+		Comment comment = null;
+		if (root.getComments() != null) {
+			for (Comment c : root.getComments()) {
+				if (getNodeEnd(c) > pos)
+					break;
+				if (c.getCommentType() == Token.CommentType.JSDOC)
+					comment = c;
+			}
+		}
+		return comment;
+	}
+
+	// Returns the first node after the comment that has its text as jsdoc, or
+	// null if there is none.
+	private AstNode findJsDocOwner(List<AstNode> statements,
+			final Comment comment) {
+		final int pos = comment.getPosition();
+		final AstNode[] owner = new AstNode[1];
+		for (AstNode statement : statements) {
+			if (getNodeEnd(statement) <= pos)
+				continue;
+			statement.visit(new NodeVisitor() {
+				public boolean visit(AstNode node) {
+					if (owner[0] != null)
+						return false;
+					if (node.getJsDoc() == comment.getValue()) {
+						owner[0] = node;
+						return false;
+					}
+					return true;
+				}
+			});
+			if (owner[0] != null)
+				break;
+		}
+		return owner[0];
+	}
+
+	// Moves the line numbers of a statement and all nodes in it.
+	private void shiftLinenos(AstNode statement, final int delta) {
+		statement.visit(new NodeVisitor() {
+			public boolean visit(AstNode node) {
+				// getLineno() would return the line of the parent for nodes
+				// that have none
+				if (node instanceof ScriptNode) {
+					((ScriptNode) node).shiftLinenos(delta);
+				} else if (node.lineno >= 0) {
+					node.lineno += delta;
+				}
+				return true;
+			}
+		});
+	}
+
 	private AstRoot parse() throws IOException {
 		int pos = 0;
 		AstRoot root = new AstRoot(pos);
@@ -523,44 +1013,13 @@ public class Parser {
 		int baseLineno = ts.lineno; // line number where source starts
 		int end = pos; // in case source is empty
 
-		boolean inDirectivePrologue = true;
 		boolean savedStrictMode = inUseStrictDirective;
 		// TODO: eval code should get strict mode from invoking code
-		inUseStrictDirective = false;
+		inUseStrictDirective = calledInStrictMode;
+		root.setInStrictMode(calledInStrictMode);
 
 		try {
-			for (;;) {
-				int tt = peekToken();
-				if (tt <= Token.EOF) {
-					break;
-				}
-
-				AstNode n;
-				if (tt == Token.FUNCTION) {
-					consumeToken();
-					try {
-						n = function(calledByCompileFunction ? FunctionNode.FUNCTION_EXPRESSION
-								: FunctionNode.FUNCTION_STATEMENT);
-					} catch (ParserException e) {
-						break;
-					}
-				} else {
-					n = statement();
-					if (inDirectivePrologue) {
-						String directive = getDirective(n);
-						if (directive == null) {
-							inDirectivePrologue = false;
-						} else if (directive.equals("use strict")) {
-							inUseStrictDirective = true;
-							root.setInStrictMode(true);
-						}
-					}
-
-				}
-				end = getNodeEnd(n);
-				root.addChildToBack(n);
-				n.setParent(root);
-			}
+			end = parseStatements(root, end, true);
 		} catch (StackOverflowError ex) {
 			String msg = lookupMessage("msg.too.deep.parser.recursion");
 			if (!compilerEnv.isIdeMode())
@@ -576,6 +1035,7 @@ public class Parser {
 			if (!compilerEnv.isIdeMode())
 				throw errorReporter.runtimeError(msg, sourceURI, baseLineno,
 						null, 0);
+			root.setSyntaxErrors(true);
 		}
 
 		// add comments to root in lexical order
@@ -593,9 +1053,58 @@ public class Parser {
 		root.setSourceName(sourceURI);
 		root.setBaseLineno(baseLineno);
 		root.setEndLineno(ts.lineno);
+		compact(root);
 		return root;
 	}
 
+	// Parses the statements of a script up to the end of the token stream,
+	// adds them to root and returns the end of the last one.
+	private int parseStatements(AstRoot root, int end,
+			boolean inDirectivePrologue) throws IOException {
+		for (;;) {
+			int tt = peekToken();
+			if (tt <= Token.EOF) {
+				break;
+			}
+
+			int symbolCount = root.getSymbols().size();
+			AstNode n;
+			if (tt == Token.FUNCTION) {
+				consumeToken();
+				try {
+					n = function(calledByCompileFunction ? FunctionNode.FUNCTION_EXPRESSION
+							: FunctionNode.FUNCTION_STATEMENT);
+				} catch (ParserException e) {
+					break;
+				}
+			} else {
+				n = statement();
+				if (inDirectivePrologue) {
+					String directive = getDirective(n);
+					if (directive == null) {
+						inDirectivePrologue = false;
+					} else if (directive.equals("use strict")) {
+						inUseStrictDirective = true;
+						root.setInStrictMode(true);
+					}
+				}
+
+			}
+			if (compilerEnv.isIdeMode()) {
+				// remember the statement that declared each symbol, so that
+				// reparse can tell which symbols belong to replaced statements
+				List<Symbol> symbols = root.getSymbols();
+				for (int i = symbolCount; i < symbols.size(); i++) {
+					symbols.get(i).setNode(n);
+				}
+			}
+			end = getNodeEnd(n);
+			root.addChildToBack(n);
+			n.setParent(root);
+		}
+		return end;
+	}
+
 	private AstNode parseFunctionBody() throws IOException {
 		if (!matchToken(Token.LC)) {
 			if (compilerEnv.getLanguageVersion() < Context.VERSION_1_8) {
@@ -835,6 +1344,21 @@ public class Parser {
 		fnNode.setBaseLineno(baseLineno);
 		fnNode.setEndLineno(ts.lineno);
 
+		// The body was parsed to report syntax errors, but it is compiled
+		// from its source when the function is called. The function that
+		// compileFunction returns is compiled right away.
+		if (functionSource != null && syntaxErrorCount == 0
+				&& memberExprNode == null && !fnNode.isExpressionClosure()) {
+			if (compilerEnv.isLazyFunctions()
+					&& (insideFunction() || !calledByCompileFunction)) {
+				fnNode.setLazySource(functionSource, functionSourceStart,
+						ts.tokenEnd);
+			} else {
+				fnNode.setSource(functionSource, functionSourceStart,
+						ts.tokenEnd);
+			}
+		}
+
 		// Set the parent scope. Needed for finding undeclared vars.
 		// Have to wait until after parsing the function to set its parent
 		// scope, since defineSymbol needs the defining-scope check to stop
@@ -2314,7 +2838,11 @@ public class Parser {
 				int beg = ts.tokenBeg;
 				AstNode expr = (peekToken() == Token.RC) ? new EmptyExpression(
 						beg, ts.tokenEnd - beg) : expr();
-				mustMatchToken(Token.RC, "msg.syntax");
+				if (!mustMatchToken(Token.RC, "msg.syntax")) {
+					// the token after the expression is still to be read,
+					// scanning more xml would drop it
+					return makeErrorNode();
+				}
 				XmlExpression xexpr = new XmlExpression(beg, expr);
 				xexpr.setIsXmlAttribute(ts.isXMLAttribute());
 				xexpr.setLength(ts.tokenEnd - beg);
@@ -2877,6 +3405,7 @@ public class Parser {
 				return arrayComprehension(elements.get(0), pos);
 			} else if (tt == Token.EOF) {
 				reportError("msg.no.bracket.arg");
+				break;
 			} else {
 				if (!after_lb_or_comma) {
 					reportError("msg.no.bracket.arg");
@@ -3114,6 +3643,8 @@ public class Parser {
 	private ObjectProperty getterSetterProperty(int pos, AstNode propName,
 			boolean isGetter) throws IOException {
 		FunctionNode fn = function(FunctionNode.FUNCTION_EXPRESSION);
+		// there is no function keyword to compile the function from
+		fn.setLazySource(null, -1, -1);
 		// We've already parsed the function name, so fn should be anonymous.
 		Name name = fn.getFunctionName();
 		if (name != null && name.length() != 0) {
@@ -0,0 +1,346 @@
+package org.mozilla.javascript;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+
+import org.mozilla.javascript.ScriptableObject.Slot;
+import org.mozilla.javascript.debug.IDebuggerWithWatchPoints;
+
+/**
+ * Inline cache for the property access instructions of the
+ * {@link Interpreter}. Caches are kept per instruction in
+ * {@link InterpreterData#itsPropertyCaches}, indexed by the site number the
+ * {@link CodeGenerator} gives each property access instruction, and remember
+ * where the property was found for the last few kinds of receivers.
+ * <p>
+ * Receivers are told apart by their class and, for objects in shared-shape
+ * mode, their {@link PropertyMap}, so all objects with the same layout share
+ * an entry. The property is either an own property of the receiver, found
+ * through the value index of the map or the slot table of the receiver, or a
+ * property of one of its prototypes. Entries for the latter remember the
+ * prototypes up to the object holding the property and check that the
+ * receiver and the prototypes in between still don't have the property.
+ * <p>
+ * Only data properties of objects whose property access is not customized by
+ * their class are cached, so a hit always gives the same result as the full
+ * lookup through {@link ScriptRuntime}. Entries are immutable, so the caches
+ * can be updated without locking by all threads that run the script.
+ */
+final class PropertyCache {
+
+	// site operand of instructions that are not cached
+	static final int NO_SITE = 0xFFFF;
+
+	// after this many kinds of receivers the site is considered megamorphic
+	// and the cache is not consulted anymore
+	private static final int MAX_ENTRIES = 4;
+
+	// after this many misses that found nothing to cache the site is not
+	// consulted anymore either
+	private static final int MAX_MISSES = 16;
+
+	// prototypes looked through for the property
+	private static final int MAX_DEPTH = 4;
+
+	private static final WeakReference<?>[] NO_PROTOTYPES = new WeakReference<?>[0];
+
+	private static final PropertyCache MEGAMORPHIC = new PropertyCache(0, null);
+
+	private static final ClassValue<Boolean> PLAIN_ACCESS = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			try {
+				return Boolean.valueOf(isPlain(type.getMethod("get",
+						String.class, Scriptable.class))
+						&& isPlain(type.getMethod("has", String.class,
+								Scriptable.class))
+						&& isPlain(type.getMethod("put", String.class,
+								Scriptable.class, Object.class)));
+			} catch (NoSuchMethodException e) {
+				return Boolean.FALSE;
+			} catch (SecurityException e) {
+				return Boolean.FALSE;
+			}
+		}
+
+		private boolean isPlain(Method method) {
+			Class<?> declaringClass = method.getDeclaringClass();
+			return declaringClass == ScriptableObject.class
+					|| declaringClass == IdScriptableObject.class;
+		}
+	};
+
+	// the receivers: their class and their map, null for objects that are
+	// not in shared-shape mode, whose own properties are looked up by name
+	private final Class<?> type;
+	private final PropertyMap map;
+	private final String name;
+
+	// the prototypes up to the one holding the property, weak so caches in
+	// shared code don't keep scopes alive; empty for own properties
+	private final WeakReference<?>[] prototypes;
+
+	// where the value is: the map and value index of the object holding it,
+	// or the data slot of the prototype holding it
+	private final PropertyMap holderMap;
+	private final int index;
+	private final WeakReference<Slot> slot;
+
+	private final PropertyCache next;
+	private final int size;
+	private final int misses;
+
+	private PropertyCache(int misses, PropertyCache next) {
+		this(null, null, null, NO_PROTOTYPES, null, -1, null, next, misses);
+	}
+
+	private PropertyCache(Class<?> type, PropertyMap map, String name,
+			WeakReference<?>[] prototypes, PropertyMap holderMap, int index,
+			Slot slot, PropertyCache next, int misses) {
+		this.type = type;
+		this.map = map;
+		this.name = name;
+		this.prototypes = prototypes;
+		this.holderMap = holderMap;
+		this.index = index;
+		this.slot = slot == null ? null : new WeakReference<Slot>(slot);
+		this.next = next;
+		this.size = (type == null ? 0 : 1)
+				+ (next == null ? 0 : next.size);
+		this.misses = misses;
+	}
+
+	// a copy of this entry in front of other entries
+	private PropertyCache(PropertyCache entry, PropertyCache next, int misses) {
+		this.type = entry.type;
+		this.map = entry.map;
+		this.name = entry.name;
+		this.prototypes = entry.prototypes;
+		this.holderMap = entry.holderMap;
+		this.index = entry.index;
+		this.slot = entry.slot;
+		this.next = next;
+		this.size = (type == null ? 0 : 1)
+				+ (next == null ? 0 : next.size);
+		this.misses = misses;
+	}
+
+	private boolean matches(ScriptableObject obj) {
+		return obj.getClass() == type
+				&& obj.getPropertyMap() == map
+				&& !(obj instanceof IdScriptableObject && ((IdScriptableObject) obj)
+						.hasPrototypeIds());
+	}
+
+	private static Object getValue(Slot s) {
+		if (s != null && !s.wasDeleted) {
+			Object value = s.value;
+			if (value != null && !(value instanceof LazilyLoadedCtor)) {
+				return value;
+			}
+		}
+		return Scriptable.NOT_FOUND;
+	}
+
+	private Object get(ScriptableObject obj) {
+		if (!matches(obj)) {
+			return Scriptable.NOT_FOUND;
+		}
+		if (prototypes.length == 0) {
+			if (map != null) {
+				return obj.getSharedShapeValue(map, index);
+			}
+			return getValue(obj.getDataSlot(name));
+		}
+		// an object in shared-shape mode doesn't have the property, as
+		// its map doesn't
+		if (map == null && obj.hasSlot(name)) {
+			return Scriptable.NOT_FOUND;
+		}
+		ScriptableObject holder = obj;
+		for (int i = 0; i != prototypes.length; ++i) {
+			Object prototype = prototypes[i].get();
+			if (prototype == null || holder.getPrototype() != prototype) {
+				return Scriptable.NOT_FOUND;
+			}
+			holder = (ScriptableObject) prototype;
+			if (i != prototypes.length - 1 && holder.hasSlot(name)) {
+				return Scriptable.NOT_FOUND;
+			}
+		}
+		if (holderMap != null) {
+			return holder.getSharedShapeValue(holderMap, index);
+		}
+		return getValue(slot.get());
+	}
+
+	private boolean set(ScriptableObject obj, Object value) {
+		// a put always goes to the receiver, so only own properties
+		if (prototypes.length != 0 || !matches(obj)) {
+			return false;
+		}
+		if (map != null) {
+			return obj.setSharedShapeValue(map, index, value);
+		}
+		// puts into sealed objects have to report msg.modify.sealed,
+		// objects in shared-shape mode are never sealed
+		if (obj.isSealed()) {
+			return false;
+		}
+		Slot s = obj.getDataSlot(name);
+		if (s != null && (s.getAttributes() & ScriptableObject.READONLY) == 0) {
+			s.value = value;
+			return true;
+		}
+		return false;
+	}
+
+	private static PropertyCache getSite(InterpreterData idata, int site,
+			Object obj, Context cx) {
+		PropertyCache[] caches = idata.itsPropertyCaches;
+		if (caches == null || site >= caches.length
+				|| !(obj instanceof ScriptableObject)
+				|| cx.debugger instanceof IDebuggerWithWatchPoints) {
+			return null;
+		}
+		PropertyCache c = caches[site];
+		return c == MEGAMORPHIC ? null : c;
+	}
+
+	/**
+	 * Return the cached value of the property accessed by the instruction with
+	 * the given site or NOT_FOUND on a cache miss.
+	 */
+	static Object get(InterpreterData idata, int site, Object obj, Context cx) {
+		for (PropertyCache c = getSite(idata, site, obj, cx); c != null; c = c.next) {
+			if (c.type != null) {
+				Object value = c.get((ScriptableObject) obj);
+				if (value != Scriptable.NOT_FOUND) {
+					return value;
+				}
+			}
+		}
+		return Scriptable.NOT_FOUND;
+	}
+
+	/**
+	 * Return the cached function called by the instruction with the given site
+	 * or null on a cache miss.
+	 */
+	static Callable getFunction(InterpreterData idata, int site, Object obj,
+			Context cx) {
+		Object value = get(idata, site, obj, cx);
+		return value instanceof Callable ? (Callable) value : null;
+	}
+
+	/**
+	 * Store the value through the cache of the instruction with the given
+	 * site.
+	 *
+	 * @return false on a cache miss
+	 */
+	static boolean set(InterpreterData idata, int site, Object obj,
+			Object value, Context cx) {
+		for (PropertyCache c = getSite(idata, site, obj, cx); c != null; c = c.next) {
+			if (c.type != null && c.set((ScriptableObject) obj, value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Remember where the property was found after a cache miss of the
+	 * instruction with the given site.
+	 */
+	static void update(InterpreterData idata, int site, Object obj,
+			String name, Context cx) {
+		if (site >= idata.itsPropertySiteCount
+				|| !(obj instanceof ScriptableObject)) {
+			return;
+		}
+		PropertyCache[] caches = idata.itsPropertyCaches;
+		PropertyCache c = caches == null ? null : caches[site];
+		if (c == MEGAMORPHIC
+				|| cx.debugger instanceof IDebuggerWithWatchPoints) {
+			return;
+		}
+		PropertyCache entry = find((ScriptableObject) obj, name);
+		if (caches == null) {
+			caches = new PropertyCache[idata.itsPropertySiteCount];
+			idata.itsPropertyCaches = caches;
+		}
+		int misses = c == null ? 0 : c.misses;
+		if (entry == null) {
+			if (++misses >= MAX_MISSES) {
+				caches[site] = MEGAMORPHIC;
+			} else if (c == null) {
+				caches[site] = new PropertyCache(misses, null);
+			} else {
+				caches[site] = new PropertyCache(c, c.next, misses);
+			}
+		} else if (c != null && c.size >= MAX_ENTRIES) {
+			caches[site] = MEGAMORPHIC;
+		} else {
+			// a head without an entry only counted the misses
+			caches[site] = new PropertyCache(entry,
+					c != null && c.type == null ? c.next : c, misses);
+		}
+	}
+
+	private static boolean isPlain(ScriptableObject obj, String name) {
+		return PLAIN_ACCESS.get(obj.getClass()).booleanValue()
+				&& !(obj instanceof IdScriptableObject && ((IdScriptableObject) obj)
+						.hasIdFor(name));
+	}
+
+	/**
+	 * Return an entry for the receiver and the property, or null if the
+	 * property is not a data property that can be cached.
+	 */
+	private static PropertyCache find(ScriptableObject obj, String name) {
+		if (!isPlain(obj, name)
+				|| (obj instanceof IdScriptableObject && ((IdScriptableObject) obj)
+						.hasPrototypeIds())) {
+			return null;
+		}
+		Class<?> type = obj.getClass();
+		PropertyMap map = obj.getPropertyMap();
+		if (map != null) {
+			int index = map.find(name);
+			if (index >= 0) {
+				return new PropertyCache(type, map, name, NO_PROTOTYPES, map,
+						index, null, null, 0);
+			}
+		} else if (obj.getDataSlot(name) != null) {
+			return new PropertyCache(type, null, name, NO_PROTOTYPES, null,
+					-1, null, null, 0);
+		} else if (obj.hasSlot(name)) {
+			return null;
+		}
+		WeakReference<?>[] prototypes = new WeakReference<?>[MAX_DEPTH];
+		ScriptableObject holder = obj;
+		for (int depth = 0; depth != MAX_DEPTH; ++depth) {
+			Scriptable prototype = holder.getPrototype();
+			if (!(prototype instanceof ScriptableObject)
+					|| !isPlain((ScriptableObject) prototype, name)) {
+				return null;
+			}
+			holder = (ScriptableObject) prototype;
+			prototypes[depth] = new WeakReference<ScriptableObject>(holder);
+			PropertyMap holderMap = holder.getPropertyMap();
+			int index = holderMap != null ? holderMap.find(name) : -1;
+			Slot s = holderMap == null ? holder.getDataSlot(name) : null;
+			if (index >= 0 || s != null) {
+				WeakReference<?>[] chain = new WeakReference<?>[depth + 1];
+				System.arraycopy(prototypes, 0, chain, 0, chain.length);
+				return new PropertyCache(type, map, name, chain, holderMap,
+						index, s, null, 0);
+			}
+			if (holder.hasSlot(name)) {
+				return null;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,122 @@
+package org.mozilla.javascript;
+
+import java.util.HashMap;
+
+/**
+ * Immutable description of the layout of a {@link ScriptableObject} that is
+ * in shared-shape mode. Objects that get the same plain data properties added
+ * in the same order end up with the same PropertyMap, so the name to index
+ * mapping lives here once and each object only keeps its values.
+ * <p>
+ * Maps form a transition tree rooted at {@link #EMPTY}: adding a property to
+ * an object replaces its map by the child map for that property name. Only
+ * properties with {@link ScriptableObject#EMPTY} attributes are described by
+ * a map; everything else makes the object fall back to its own slot table.
+ */
+final class PropertyMap {
+
+	static final PropertyMap EMPTY = new PropertyMap(null, null);
+
+	// objects with more properties than this are better off with their own
+	// hashtable
+	static final int MAX_PROPERTIES = 64;
+
+	// objects used as dictionaries would otherwise grow the tree forever
+	private static final int MAX_TRANSITIONS = 32;
+
+	// below this size a linear scan beats hashing
+	private static final int LINEAR_SEARCH_LIMIT = 8;
+
+	final int size;
+	private final String[] keys;
+	// open addressing table with index + 1 of the key, null for small maps
+	private final int[] table;
+
+	private HashMap<String, PropertyMap> transitions;
+	private volatile PropertyMap lastTransition;
+
+	private PropertyMap(PropertyMap parent, String name) {
+		if (parent == null) {
+			size = 0;
+			keys = new String[0];
+			table = null;
+			return;
+		}
+		size = parent.size + 1;
+		keys = new String[size];
+		System.arraycopy(parent.keys, 0, keys, 0, parent.size);
+		keys[parent.size] = name;
+		if (size > LINEAR_SEARCH_LIMIT) {
+			int tableSize = LINEAR_SEARCH_LIMIT * 2;
+			while (tableSize < size * 2)
+				tableSize <<= 1;
+			table = new int[tableSize];
+			for (int i = 0; i != size; ++i) {
+				int pos = keys[i].hashCode() & (tableSize - 1);
+				while (table[pos] != 0)
+					pos = (pos + 1) & (tableSize - 1);
+				table[pos] = i + 1;
+			}
+		} else {
+			table = null;
+		}
+	}
+
+	/**
+	 * Return the index of the given property in the value array of objects
+	 * with this map or -1 if the map has no such property.
+	 */
+	int find(String name) {
+		String[] k = keys;
+		int[] t = table;
+		if (t == null) {
+			for (int i = 0; i != k.length; ++i) {
+				String key = k[i];
+				if (key == name || key.equals(name))
+					return i;
+			}
+			return -1;
+		}
+		int mask = t.length - 1;
+		int pos = name.hashCode() & mask;
+		for (;;) {
+			int entry = t[pos];
+			if (entry == 0)
+				return -1;
+			String key = k[entry - 1];
+			if (key == name || key.equals(name))
+				return entry - 1;
+			pos = (pos + 1) & mask;
+		}
+	}
+
+	String getKey(int index) {
+		return keys[index];
+	}
+
+	/**
+	 * Return the map describing this map plus the property <code>name</code>
+	 * or null if the object should give up on sharing its shape. The caller
+	 * must make sure this map does not have the property yet.
+	 */
+	PropertyMap addProperty(String name) {
+		PropertyMap last = lastTransition;
+		if (last != null && name.equals(last.keys[size]))
+			return last;
+		if (size >= MAX_PROPERTIES)
+			return null;
+		synchronized (this) {
+			if (transitions == null)
+				transitions = new HashMap<String, PropertyMap>(4);
+			PropertyMap next = transitions.get(name);
+			if (next == null) {
+				if (transitions.size() >= MAX_TRANSITIONS)
+					return null;
+				next = new PropertyMap(this, name);
+				transitions.put(name, next);
+			}
+			lastTransition = next;
+			return next;
+		}
+	}
+}
@@ -133,6 +133,11 @@ public class ScriptRuntime {
 
 	}
 
+	// initialized before the classes below, as loading Context takes its
+	// emptyArgs from here
+	public static final Object[] emptyArgs = new Object[0];
+	public static final String[] emptyStrings = new String[0];
+
 	/*
 	 * There's such a huge space (and some time) waste for the Foo.class syntax:
 	 * the compiler sticks in a test of a static field in the enclosing class
@@ -181,6 +186,26 @@ public class ScriptRuntime {
 			"org.mozilla.javascript.ImporterTopLevel",
 			"Continuation",
 			"org.mozilla.javascript.NativeContinuation",
+			"ArrayBuffer",
+			"org.mozilla.javascript.typedarrays.NativeArrayBuffer",
+			"DataView", "org.mozilla.javascript.typedarrays.NativeDataView",
+			"Int8Array", "org.mozilla.javascript.typedarrays.NativeInt8Array",
+			"Uint8Array",
+			"org.mozilla.javascript.typedarrays.NativeUint8Array",
+			"Uint8ClampedArray",
+			"org.mozilla.javascript.typedarrays.NativeUint8ClampedArray",
+			"Int16Array",
+			"org.mozilla.javascript.typedarrays.NativeInt16Array",
+			"Uint16Array",
+			"org.mozilla.javascript.typedarrays.NativeUint16Array",
+			"Int32Array",
+			"org.mozilla.javascript.typedarrays.NativeInt32Array",
+			"Uint32Array",
+			"org.mozilla.javascript.typedarrays.NativeUint32Array",
+			"Float32Array",
+			"org.mozilla.javascript.typedarrays.NativeFloat32Array",
+			"Float64Array",
+			"org.mozilla.javascript.typedarrays.NativeFloat64Array",
 			// TODO Grotesque hack using literal string (xml) just to minimize
 			// changes for now
 			"XML", "(xml)", "XMLList", "(xml)", "Namespace", "(xml)", "QName",
@@ -269,6 +294,60 @@ public class ScriptRuntime {
 		return scope;
 	}
 
+	/**
+	 * Seal all objects reachable from the scope and make the properties of
+	 * all of them except the scope itself read-only. Properties served by ids
+	 * are already protected by sealing. Top-level properties stay writable,
+	 * assigning them through a scope that inherits from this one defines them
+	 * in that scope. Java packages stay open and switch to concurrent access
+	 * instead.
+	 */
+	static void freezeStandardObjects(ScriptableObject scope) {
+		ObjToIntMap seen = new ObjToIntMap();
+		ObjArray pending = new ObjArray();
+		seen.put(scope, 0);
+		pending.push(scope);
+		while (!pending.isEmpty()) {
+			ScriptableObject obj = (ScriptableObject) pending.pop();
+			Object[] ids = obj.getAllIds();
+			for (int i = 0; i != ids.length; ++i) {
+				Object value;
+				if (ids[i] instanceof String) {
+					String name = (String) ids[i];
+					// initializes lazily loaded constructors
+					value = obj.get(name, obj);
+					if (obj != scope
+							&& !obj.isSealed()
+							&& !(obj instanceof IdScriptableObject && ((IdScriptableObject) obj)
+									.hasIdFor(name))) {
+						obj.setAttributes(name, obj.getAttributes(name)
+								| ScriptableObject.READONLY);
+					}
+				} else {
+					value = obj.get(((Integer) ids[i]).intValue(), obj);
+				}
+				addToFreeze(value, seen, pending);
+			}
+			addToFreeze(obj.getPrototype(), seen, pending);
+			obj.sealObject();
+		}
+	}
+
+	private static void addToFreeze(Object value, ObjToIntMap seen,
+			ObjArray pending) {
+		if (value instanceof NativeJavaPackage) {
+			// packages load classes on demand for all threads sharing the
+			// snapshot
+			NativeJavaPackage pkg = (NativeJavaPackage) value;
+			if (!pkg.hasConcurrentAccess()) {
+				pkg.enableSharedAccess();
+			}
+		} else if (value instanceof ScriptableObject && !seen.has(value)) {
+			seen.put(value, 0);
+			pending.push(value);
+		}
+	}
+
 	public static ScriptableObject getLibraryScopeOrNull(Scriptable scope) {
 		ScriptableObject libScope;
 		libScope = (ScriptableObject) ScriptableObject.getTopScopeValue(scope,
@@ -582,6 +661,10 @@ public class ScriptRuntime {
 	 * See ECMA 9.3.1
 	 */
 	public static double toNumber(String s) {
+		double fast = toNumberFast(s);
+		if (fast == fast) {
+			return fast;
+		}
 		int len = s.length();
 		int start = 0;
 		char startChar;
@@ -650,6 +733,99 @@ public class ScriptRuntime {
 		}
 	}
 
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/**
+	 * Convert a plain decimal number without surrounding whitespace, like
+	 * "-42", "3.25" or "1e-3", without allocating. The result is exact if
+	 * the digits form an integer up to 2^53 and the decimal exponent is at
+	 * most 22, since both are doubles and IEEE division and multiplication
+	 * round correctly. Return NaN for anything else, which
+	 * {@link #toNumber(String)} then converts the general way.
+	 */
+	private static double toNumberFast(String s) {
+		int len = s.length();
+		if (len == 0) {
+			return NaN;
+		}
+		int i = 0;
+		char c = s.charAt(0);
+		boolean negative = c == '-';
+		if (negative || c == '+') {
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean sawDigit = false;
+		boolean fraction = false;
+		for (; i < len; i++) {
+			c = s.charAt(i);
+			if ('0' <= c && c <= '9') {
+				sawDigit = true;
+				if (mantissa != 0 || c != '0') {
+					// stay below 10^18 so the mantissa can't overflow
+					if (++digits > 18) {
+						return NaN;
+					}
+					mantissa = mantissa * 10 + (c - '0');
+				}
+				if (fraction) {
+					scale--;
+				}
+			} else if (c == '.' && !fraction) {
+				fraction = true;
+			} else {
+				break;
+			}
+		}
+		if (!sawDigit) {
+			return NaN;
+		}
+		if (i < len && (c == 'e' || c == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < len) {
+				c = s.charAt(i);
+				negativeExponent = c == '-';
+				if (negativeExponent || c == '+') {
+					i++;
+				}
+			}
+			int exponent = 0;
+			int start = i;
+			for (; i < len; i++) {
+				c = s.charAt(i);
+				if (c < '0' || '9' < c) {
+					break;
+				}
+				if (exponent < 1000) {
+					exponent = exponent * 10 + (c - '0');
+				}
+			}
+			if (i == start) {
+				return NaN;
+			}
+			scale += negativeExponent ? -exponent : exponent;
+		}
+		if (i != len || mantissa > (1L << 53)) {
+			return NaN;
+		}
+		double d = mantissa;
+		if (mantissa != 0 && scale != 0) {
+			if (-22 <= scale && scale < 0) {
+				d /= POWERS_OF_TEN[-scale];
+			} else if (0 < scale && scale <= 22) {
+				d *= POWERS_OF_TEN[scale];
+			} else {
+				return NaN;
+			}
+		}
+		return negative ? -d : d;
+	}
+
 	/**
 	 * Helper function for builtin objects that use the varargs form. ECMA
 	 * function formal arguments are undefined if not supplied; this function
@@ -838,12 +1014,33 @@ public class ScriptRuntime {
 
 		if (base != 10) {
 			return DToA.JS_dtobasestr(base, d);
-		} else {
-			StringBuffer result = new StringBuffer();
-			DToA.JS_dtostr(result, DToA.DTOSTR_STANDARD, 0, d);
-			return result.toString();
 		}
+		// integers below 2^53 are exact and have no shorter form
+		if (-MAX_EXACT_INTEGER <= d && d <= MAX_EXACT_INTEGER) {
+			long l = (long) d;
+			if (l == d) {
+				if (0 <= l && l < SMALL_INTEGER_STRINGS.length) {
+					return SMALL_INTEGER_STRINGS[(int) l];
+				}
+				return Long.toString(l);
+			}
+		}
+		String s = FastDtoa.numberToString(d);
+		if (s != null) {
+			return s;
+		}
+		StringBuffer result = new StringBuffer();
+		DToA.JS_dtostr(result, DToA.DTOSTR_STANDARD, 0, d);
+		return result.toString();
+	}
+
+	private static final double MAX_EXACT_INTEGER = 9007199254740991.0;
 
+	private static final String[] SMALL_INTEGER_STRINGS = new String[1024];
+	static {
+		for (int i = 0; i != SMALL_INTEGER_STRINGS.length; ++i) {
+			SMALL_INTEGER_STRINGS[i] = Integer.toString(i);
+		}
 	}
 
 	static String uneval(Context cx, Scriptable scope, Object value) {
@@ -2630,27 +2827,42 @@ public class ScriptRuntime {
 		if (val2 instanceof Scriptable)
 			val2 = ((Scriptable) val2).getDefaultValue(null);
 		// CharSequenceBuffer
-		if (val1 instanceof CharSequenceBuffer) {
-			if (val2 instanceof CharSequenceBuffer) {
-				return ((CharSequenceBuffer) val1)
-						.append((CharSequenceBuffer) val2);
-			} else {
-				return ((CharSequenceBuffer) val1).append(toString(val2));
-			}
-		}
-		if (!(val1 instanceof String) && !(val2 instanceof String))
+		if (!(val1 instanceof String) && !(val2 instanceof String)
+				&& !(val1 instanceof CharSequenceBuffer)
+				&& !(val2 instanceof CharSequenceBuffer))
 			if ((val1 instanceof Number) && (val2 instanceof Number))
 				return wrapNumber(((Number) val1).doubleValue()
 						+ ((Number) val2).doubleValue());
 			else
 				return wrapNumber(toNumber(val1) + toNumber(val2));
-		// CharSequenceBuffer
-		if (val2 instanceof CharSequenceBuffer) {
-			return new CharSequenceBuffer(toString(val1),
-					(CharSequenceBuffer) val2);
-		} else {
-			return new CharSequenceBuffer(toString(val1), toString(val2));
+		return CharSequenceBuffer.concat(toCharSequence(val1),
+				toCharSequence(val2));
+	}
+
+	/**
+	 * Like toString but keeps a pending concatenation unflattened.
+	 */
+	static CharSequence toCharSequence(Object val) {
+		if (val instanceof CharSequenceBuffer) {
+			return (CharSequenceBuffer) val;
 		}
+		return toString(val);
+	}
+
+	/**
+	 * Implements string literal + value for compiled code, the result can be
+	 * a {@link CharSequenceBuffer}.
+	 */
+	public static CharSequence concatString(String val1, Object val2) {
+		return CharSequenceBuffer.concat(val1, toCharSequence(val2));
+	}
+
+	/**
+	 * Implements value + string literal for compiled code, the result can be
+	 * a {@link CharSequenceBuffer}.
+	 */
+	public static CharSequence concatString(Object val1, String val2) {
+		return CharSequenceBuffer.concat(toCharSequence(val1), val2);
 	}
 
 	public static String add(String val1, Object val2) {
@@ -2819,11 +3031,12 @@ public class ScriptRuntime {
 	 * See ECMA 11.9
 	 */
 	public static boolean eq(Object x, Object y) {
-		// CharSequenceBuffer
+		// CharSequenceBuffer, compares like the String it stands for
 		if (x instanceof CharSequenceBuffer) {
-			return x.equals(y);
-		} else if (y instanceof CharSequenceBuffer) {
-			return y.equals(x);
+			x = x.toString();
+		}
+		if (y instanceof CharSequenceBuffer) {
+			y = y.toString();
 		}
 
 		// SPECIAL DATE HANDLING
@@ -3290,7 +3503,9 @@ public class ScriptRuntime {
 
 	public static Scriptable createFunctionActivation(NativeFunction funObj,
 			Scriptable scope, Object[] args) {
-		return new NativeCall(funObj, scope, args);
+		// compiled code of a hot interpreted function acts for that function
+		NativeFunction owner = funObj.tieredOwner;
+		return new NativeCall(owner != null ? owner : funObj, scope, args);
 	}
 
 	public static void enterActivationFunction(Context cx, Scriptable scope) {
@@ -3554,7 +3769,11 @@ public class ScriptRuntime {
 					++j;
 				}
 			}
-			return cx.newArray(scope, sparse);
+			Scriptable array = cx.newArray(scope, sparse);
+			if (array instanceof NativeArray) {
+				((NativeArray) array).packElements();
+			}
+			return array;
 		}
 
 		Scriptable array = cx.newArray(scope, length);
@@ -4038,7 +4257,4 @@ public class ScriptRuntime {
 		return new JavaScriptException(error, filename, linep[0]);
 	}
 
-	public static final Object[] emptyArgs = new Object[0];
-	public static final String[] emptyStrings = new String[0];
-
 }
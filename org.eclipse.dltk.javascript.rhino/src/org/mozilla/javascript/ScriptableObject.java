@@ -153,6 +153,14 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 	private transient Slot firstAdded;
 	private transient Slot lastAdded;
 
+	// shared-shape storage, used instead of the slots above until the object
+	// needs something a PropertyMap can't describe
+	private transient volatile SharedShape sharedShape;
+
+	// lock-free slot table used instead of the slots above by objects that
+	// are shared between threads, count then only tells if it is sealed
+	private transient volatile ConcurrentSlotTable concurrentSlots;
+
 	private volatile Map<Object, Object> associatedValues;
 
 	private static final int SLOT_QUERY = 1;
@@ -166,7 +174,7 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 
 	private boolean isExtensible = true;
 
-	private static class Slot implements Serializable {
+	static class Slot implements Serializable {
 		private static final long serialVersionUID = -6090581677123995491L;
 		String name; // This can change due to caching
 		int indexOrHash;
@@ -348,6 +356,53 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 
 	}
 
+	/**
+	 * Map and values of an object in shared-shape mode. Both are published
+	 * together through a single volatile field, so a reader never sees a map
+	 * without storage for all of its properties. Values live in fixed size
+	 * blocks that are shared by all states of an object, so a store into an
+	 * existing property can't get lost while another thread adds a property.
+	 */
+	private static final class SharedShape {
+		static final int BLOCK_SHIFT = 3;
+		static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+		static final SharedShape EMPTY = new SharedShape(PropertyMap.EMPTY,
+				new Object[0][]);
+
+		final PropertyMap map;
+		private final Object[][] blocks;
+
+		private SharedShape(PropertyMap map, Object[][] blocks) {
+			this.map = map;
+			this.blocks = blocks;
+		}
+
+		Object get(int index) {
+			return blocks[index >> BLOCK_SHIFT][index & (BLOCK_SIZE - 1)];
+		}
+
+		void set(int index, Object value) {
+			blocks[index >> BLOCK_SHIFT][index & (BLOCK_SIZE - 1)] = value;
+		}
+
+		/**
+		 * Return the state after adding a property with the given map, which
+		 * has to be the child of the current map.
+		 */
+		SharedShape add(PropertyMap next, Object value) {
+			int index = map.size;
+			Object[][] b = blocks;
+			if ((index >> BLOCK_SHIFT) == b.length) {
+				b = new Object[b.length + 1][];
+				System.arraycopy(blocks, 0, b, 0, blocks.length);
+				b[blocks.length] = new Object[BLOCK_SIZE];
+			}
+			b[index >> BLOCK_SHIFT][index & (BLOCK_SIZE - 1)] = value;
+			return new SharedShape(next, b);
+		}
+	}
+
 	static void checkValidAttributes(int attributes) {
 		final int mask = READONLY | DONTENUM | PERMANENT | UNINITIALIZED_CONST;
 		if ((attributes & ~mask) != 0) {
@@ -395,6 +450,10 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 	 * @return true if and only if the property was found in the object
 	 */
 	public boolean has(String name, Scriptable start) {
+		SharedShape shape = sharedShape;
+		if (shape != null) {
+			return shape.map.find(name) >= 0;
+		}
 		return null != getSlot(name, 0, SLOT_QUERY);
 	}
 
@@ -620,6 +679,10 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 	 * @see org.mozilla.javascript.ScriptableObject#EMPTY
 	 */
 	public int getAttributes(String name) {
+		SharedShape shape = sharedShape;
+		if (shape != null && shape.map.find(name) >= 0) {
+			return EMPTY;
+		}
 		return findAttributeSlot(name, 0, SLOT_QUERY).getAttributes();
 	}
 
@@ -667,6 +730,10 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 	 */
 	public void setAttributes(String name, int attributes) {
 		checkNotSealed(name, 0);
+		SharedShape shape = sharedShape;
+		if (attributes == EMPTY && shape != null && shape.map.find(name) >= 0) {
+			return;
+		}
 		findAttributeSlot(name, 0, SLOT_MODIFY).setAttributes(attributes);
 	}
 
@@ -1768,6 +1835,10 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 			attributes = applyDescriptorToAttributeBitset(DONTENUM | READONLY
 					| PERMANENT, desc);
 		} else {
+			if (sharedShape != null) {
+				// the slot is a copy of a property of the shared shape
+				slot = getSlot(cx, id, SLOT_MODIFY);
+			}
 			attributes = applyDescriptorToAttributeBitset(slot.getAttributes(),
 					desc);
 		}
@@ -2081,9 +2152,11 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 	 * @since 1.4R3
 	 */
 	public synchronized void sealObject() {
+		leaveSharedShape();
 		if (count >= 0) {
 			// Make sure all LazilyLoadedCtors are initialized before sealing.
-			Slot slot = firstAdded;
+			ConcurrentSlotTable table = concurrentSlots;
+			Slot slot = table != null ? table.getFirstAdded() : firstAdded;
 			while (slot != null) {
 				if (slot.value instanceof LazilyLoadedCtor) {
 					LazilyLoadedCtor initializer = (LazilyLoadedCtor) slot.value;
@@ -2610,6 +2683,11 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 	}
 
 	private Object getImpl(String name, int index, Scriptable start) {
+		SharedShape shape = sharedShape;
+		if (shape != null && name != null) {
+			int i = shape.map.find(name);
+			return i < 0 ? Scriptable.NOT_FOUND : shape.get(i);
+		}
 		Slot slot = getSlot(name, index, SLOT_QUERY);
 		if (slot == null) {
 			return Scriptable.NOT_FOUND;
@@ -2632,6 +2710,10 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 	 */
 	private boolean putImpl(String name, int index, Scriptable start,
 			Object value, int constFlag) {
+		if (sharedShape != null && name != null && constFlag == EMPTY
+				&& putShaped(name, start, value)) {
+			return this == start;
+		}
 		Slot slot;
 		if (this != start) {
 			slot = getSlot(name, index, SLOT_QUERY);
@@ -2639,6 +2721,11 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 				return false;
 			}
 		} else if (!isExtensible()) {
+			SharedShape shape = sharedShape;
+			if (shape != null && name != null && shape.map.find(name) >= 0) {
+				// the value is stored into the slot below
+				leaveSharedShape();
+			}
 			slot = getSlot(name, index, SLOT_QUERY);
 			if (slot == null) {
 				return true;
@@ -2664,6 +2751,237 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 		return slot.setValue(value, this, start);
 	}
 
+	/**
+	 * Put for objects in shared-shape mode. Returns false if the object left
+	 * shared-shape mode and the put has to go through the slot table.
+	 */
+	private boolean putShaped(String name, Scriptable start, Object value) {
+		SharedShape shape = sharedShape;
+		if (shape == null) {
+			return false;
+		}
+		if (this != start) {
+			// plain data properties are never READONLY, so the caller
+			// always has to put into start
+			return true;
+		}
+		int i = shape.map.find(name);
+		if (i >= 0) {
+			shape.set(i, value);
+			// if the object moved to its slot table meanwhile the value
+			// may not have been copied, so store it there again
+			return sharedShape != null;
+		}
+		if (!isExtensible()) {
+			return true;
+		}
+		checkNotSealed(name, 0);
+		return addShapedProperty(name, value);
+	}
+
+	private synchronized boolean addShapedProperty(String name, Object value) {
+		SharedShape shape = sharedShape;
+		if (shape == null) {
+			return false;
+		}
+		int i = shape.map.find(name);
+		if (i >= 0) {
+			// another thread added it in the meantime
+			shape.set(i, value);
+			return true;
+		}
+		PropertyMap next = shape.map.addProperty(name);
+		if (next == null) {
+			leaveSharedShape();
+			return false;
+		}
+		count = next.size;
+		sharedShape = shape.add(next, value);
+		return true;
+	}
+
+	/**
+	 * Switch an empty object to shared-shape mode. Objects in this mode that
+	 * get the same plain properties added in the same order share a single
+	 * property layout and keep only their values, which saves a lot of memory
+	 * when many objects with the same structure are created.
+	 * <p>
+	 * The object converts itself back to a private property table as soon as
+	 * it gets a property that is not a plain data property with
+	 * {@link #EMPTY} attributes, an indexed property, a property deletion or
+	 * gets sealed, so all ScriptableObject semantics are preserved.
+	 * 
+	 * @return true if the object is in shared-shape mode after the call
+	 */
+	protected final synchronized boolean enableSharedShape() {
+		if (sharedShape != null) {
+			return true;
+		}
+		if (count != 0 || concurrentSlots != null) {
+			return false;
+		}
+		slots = null;
+		firstAdded = null;
+		lastAdded = null;
+		sharedShape = SharedShape.EMPTY;
+		return true;
+	}
+
+	/**
+	 * Return true if this object stores its properties in shared-shape mode.
+	 * 
+	 * @see #enableSharedShape()
+	 */
+	public final boolean hasSharedShape() {
+		return sharedShape != null;
+	}
+
+	/**
+	 * Switch this object to a slot table that many threads can use at the
+	 * same time, like a top-level scope that is shared by all requests of a
+	 * server. Property lookups then never lock and adding, replacing or
+	 * deleting properties uses compare-and-set instead of the monitor of the
+	 * object, so threads don't contend on it.
+	 * <p>
+	 * This should be called before the object is published to other
+	 * threads. The mode is not kept when the object is serialized.
+	 */
+	public final synchronized void enableConcurrentAccess() {
+		if (concurrentSlots != null) {
+			return;
+		}
+		leaveSharedShape();
+		int size = count < 0 ? ~count : count;
+		concurrentSlots = new ConcurrentSlotTable(firstAdded, size);
+		count = count < 0 ? ~0 : 0;
+		slots = null;
+		firstAdded = null;
+		lastAdded = null;
+	}
+
+	/**
+	 * Return true if this object uses the slot table for concurrent access.
+	 * 
+	 * @see #enableConcurrentAccess()
+	 */
+	public final boolean hasConcurrentAccess() {
+		return concurrentSlots != null;
+	}
+
+	final PropertyMap getPropertyMap() {
+		SharedShape shape = sharedShape;
+		return shape != null ? shape.map : null;
+	}
+
+	/**
+	 * Return the value at the given index if this object still has the given
+	 * map or NOT_FOUND otherwise.
+	 */
+	final Object getSharedShapeValue(PropertyMap map, int index) {
+		SharedShape shape = sharedShape;
+		if (shape == null || shape.map != map) {
+			return Scriptable.NOT_FOUND;
+		}
+		return shape.get(index);
+	}
+
+	/**
+	 * Store the value at the given index if this object still has the given
+	 * map.
+	 * 
+	 * @return false if the map did not match and nothing was stored
+	 */
+	final boolean setSharedShapeValue(PropertyMap map, int index, Object value) {
+		SharedShape shape = sharedShape;
+		if (shape == null || shape.map != map) {
+			return false;
+		}
+		shape.set(index, value);
+		// store again through the slot table if the object left shared-shape
+		// mode meanwhile
+		return sharedShape != null;
+	}
+
+	/**
+	 * Return the slot for the named property if it is a plain data slot in the
+	 * slot table of this object, null otherwise. Unlike getSlot this never
+	 * makes the object leave shared-shape mode.
+	 */
+	final Slot getDataSlot(String name) {
+		Slot slot = queryTableSlot(name);
+		return slot != null && slot.getClass() == Slot.class ? slot : null;
+	}
+
+	/**
+	 * Return true if this object has an own property with the given name in
+	 * its shared shape or slot table. Ids of subclasses are not looked at.
+	 */
+	final boolean hasSlot(String name) {
+		SharedShape shape = sharedShape;
+		if (shape != null) {
+			return shape.map.find(name) >= 0;
+		}
+		return queryTableSlot(name) != null;
+	}
+
+	private Slot queryTableSlot(String name) {
+		ConcurrentSlotTable table = concurrentSlots;
+		if (table != null) {
+			return table.query(name, name.hashCode());
+		}
+		Slot[] slotsLocalRef = slots;
+		if (slotsLocalRef == null || sharedShape != null) {
+			return null;
+		}
+		int indexOrHash = name.hashCode();
+		Slot slot = slotsLocalRef[getSlotIndex(slotsLocalRef.length,
+				indexOrHash)];
+		for (; slot != null; slot = slot.next) {
+			if (indexOrHash == slot.indexOrHash && name.equals(slot.name)) {
+				return slot;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Move the properties of an object in shared-shape mode to its own slot
+	 * table.
+	 */
+	private synchronized void leaveSharedShape() {
+		SharedShape shape = sharedShape;
+		if (shape == null) {
+			return;
+		}
+		PropertyMap map = shape.map;
+		int tableSize = INITIAL_SLOT_SIZE;
+		while (4 * map.size > 3 * tableSize) {
+			tableSize <<= 1;
+		}
+		Slot[] newSlots = new Slot[tableSize];
+		Slot first = null;
+		Slot last = null;
+		for (int i = 0; i != map.size; ++i) {
+			String name = map.getKey(i);
+			Slot slot = new Slot(name, name.hashCode(), EMPTY);
+			slot.value = shape.get(i);
+			addKnownAbsentSlot(newSlots, slot,
+					getSlotIndex(tableSize, slot.indexOrHash));
+			if (last == null) {
+				first = slot;
+			} else {
+				last.orderedNext = slot;
+			}
+			last = slot;
+		}
+		firstAdded = first;
+		lastAdded = last;
+		slots = newSlots;
+		count = map.size;
+		// publishes the slot table to the lock-free readers
+		sharedShape = null;
+	}
+
 	private Slot findAttributeSlot(String name, int index, int accessType) {
 		Slot slot = getSlot(name, index, accessType);
 		if (slot == null) {
@@ -2676,6 +2994,10 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 	/**
 	 * Locate the slot with given name or index. Depending on the accessType
 	 * parameter and the current slot status, a new slot may be allocated.
+	 * <p>
+	 * For an object in shared-shape mode a SLOT_QUERY returns a copy of the
+	 * property and the object stays in that mode, so the slot must not be
+	 * changed. All other access types move the object to its own slot table.
 	 * 
 	 * @param name
 	 *            property name or null if slot holds spare array index.
@@ -2683,6 +3005,25 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 	 *            index or 0 if slot holds property name.
 	 */
 	private Slot getSlot(String name, int index, int accessType) {
+		SharedShape shape = sharedShape;
+		if (shape != null) {
+			if (accessType == SLOT_QUERY) {
+				// a copy of the property, changes to it are not seen
+				int i = name != null ? shape.map.find(name) : -1;
+				if (i < 0) {
+					return null;
+				}
+				Slot slot = new Slot(name, name.hashCode(), EMPTY);
+				slot.value = shape.get(i);
+				return slot;
+			}
+			// callers need a real slot
+			leaveSharedShape();
+		}
+		ConcurrentSlotTable table = concurrentSlots;
+		if (table != null) {
+			return getConcurrentSlot(table, name, index, accessType);
+		}
 		// Check the hashtable without using synchronization
 		Slot[] slotsLocalRef = slots; // Get stable local reference
 		if (slotsLocalRef == null && accessType == SLOT_QUERY) {
@@ -2725,8 +3066,60 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 		return createSlot(name, indexOrHash, accessType);
 	}
 
+	private Slot getConcurrentSlot(ConcurrentSlotTable table, String name,
+			int index, int accessType) {
+		int indexOrHash = (name != null ? name.hashCode() : index);
+		for (;;) {
+			Slot slot = table.query(name, indexOrHash);
+			switch (accessType) {
+			case SLOT_QUERY:
+				return slot;
+			case SLOT_MODIFY:
+			case SLOT_MODIFY_CONST:
+				if (slot != null)
+					return slot;
+				break;
+			case SLOT_MODIFY_GETTER_SETTER:
+				if (slot instanceof GetterSlot)
+					return slot;
+				break;
+			case SLOT_CONVERT_ACCESSOR_TO_DATA:
+				if (!(slot instanceof GetterSlot))
+					return slot;
+				break;
+			}
+			if (slot == null) {
+				Slot newSlot = (accessType == SLOT_MODIFY_GETTER_SETTER ? new GetterSlot(
+						name, indexOrHash, 0) : new Slot(name, indexOrHash, 0));
+				if (accessType == SLOT_MODIFY_CONST)
+					newSlot.setAttributes(CONST);
+				if (table.putIfAbsent(newSlot) == null) {
+					return newSlot;
+				}
+				// same as createSlot when another thread was first
+				if (accessType == SLOT_MODIFY_CONST) {
+					return null;
+				}
+			} else {
+				Slot newSlot = (accessType == SLOT_MODIFY_GETTER_SETTER ? new GetterSlot(
+						name, indexOrHash, slot.getAttributes()) : new Slot(
+						name, indexOrHash, slot.getAttributes()));
+				newSlot.value = slot.value;
+				if (table.replace(slot, newSlot)) {
+					return newSlot;
+				}
+			}
+			// another thread changed the slot, look again
+		}
+	}
+
 	private synchronized Slot createSlot(String name, int indexOrHash,
 			int accessType) {
+		ConcurrentSlotTable table = concurrentSlots;
+		if (table != null) {
+			// switched while waiting for the lock
+			return getConcurrentSlot(table, name, indexOrHash, accessType);
+		}
 		Slot[] slotsLocalRef = slots;
 		int insertPos;
 		if (count == 0) {
@@ -2819,7 +3212,32 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 		return newSlot;
 	}
 
-	private synchronized void removeSlot(String name, int index) {
+	private void removeSlot(String name, int index) {
+		ConcurrentSlotTable table = concurrentSlots;
+		if (table != null) {
+			Slot slot = table.query(name, (name != null ? name.hashCode()
+					: index));
+			if (slot != null && (slot.getAttributes() & PERMANENT) == 0) {
+				table.remove(slot);
+			}
+			return;
+		}
+		removeTableSlot(name, index);
+	}
+
+	private synchronized void removeTableSlot(String name, int index) {
+		if (concurrentSlots != null) {
+			// switched while waiting for the lock
+			removeSlot(name, index);
+			return;
+		}
+		SharedShape shape = sharedShape;
+		if (shape != null) {
+			if (name == null || shape.map.find(name) < 0) {
+				return;
+			}
+			leaveSharedShape();
+		}
 		int indexOrHash = (name != null ? name.hashCode() : index);
 
 		Slot[] slotsLocalRef = slots;
@@ -2901,6 +3319,30 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 	}
 
 	Object[] getIds(boolean getAll) {
+		SharedShape shape = sharedShape;
+		if (shape != null) {
+			PropertyMap map = shape.map;
+			if (map.size == 0)
+				return ScriptRuntime.emptyArgs;
+			Object[] ids = new Object[map.size];
+			for (int i = 0; i != ids.length; ++i) {
+				ids[i] = map.getKey(i);
+			}
+			return ids;
+		}
+		ConcurrentSlotTable table = concurrentSlots;
+		if (table != null) {
+			ObjArray ids = new ObjArray();
+			for (Slot slot = table.getFirstAdded(); slot != null; slot = table
+					.getNextAdded(slot)) {
+				if (!slot.wasDeleted
+						&& (getAll || (slot.getAttributes() & DONTENUM) == 0)) {
+					ids.add(slot.name != null ? slot.name : Integer
+							.valueOf(slot.indexOrHash));
+				}
+			}
+			return ids.toArray();
+		}
 		Slot[] s = slots;
 		Object[] a = ScriptRuntime.emptyArgs;
 		if (s == null)
@@ -2943,6 +3385,30 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 
 	private synchronized void writeObject(ObjectOutputStream out)
 			throws IOException {
+		SharedShape shape = sharedShape;
+		if (shape != null) {
+			ObjArray live = new ObjArray();
+			for (int i = 0; i != shape.map.size; ++i) {
+				String name = shape.map.getKey(i);
+				Slot slot = new Slot(name, name.hashCode(), EMPTY);
+				slot.value = shape.get(i);
+				live.add(slot);
+			}
+			writeSlots(out, live);
+			return;
+		}
+		ConcurrentSlotTable table = concurrentSlots;
+		if (table != null) {
+			ObjArray live = new ObjArray();
+			for (Slot slot = table.getFirstAdded(); slot != null; slot = table
+					.getNextAdded(slot)) {
+				if (!slot.wasDeleted) {
+					live.add(slot);
+				}
+			}
+			writeSlots(out, live);
+			return;
+		}
 		out.defaultWriteObject();
 		int objectsCount = count;
 		if (objectsCount < 0) {
@@ -2973,6 +3439,35 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 		}
 	}
 
+	/**
+	 * Write the properties of an object in shared-shape mode or with the
+	 * concurrent slot table in the format of the normal slot table, so the
+	 * object is read back as an ordinary object.
+	 */
+	private void writeSlots(ObjectOutputStream out, ObjArray live)
+			throws IOException {
+		int objectsCount = live.size();
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("prototypeObject", prototypeObject);
+		fields.put("parentScopeObject", parentScopeObject);
+		fields.put("count", isSealed() ? ~objectsCount : objectsCount);
+		fields.put("associatedValues", associatedValues);
+		fields.put("isExtensible", isExtensible);
+		out.writeFields();
+		if (objectsCount == 0) {
+			out.writeInt(0);
+		} else {
+			int tableSize = INITIAL_SLOT_SIZE;
+			while (4 * objectsCount > 3 * tableSize) {
+				tableSize <<= 1;
+			}
+			out.writeInt(tableSize);
+			for (int i = 0; i != objectsCount; ++i) {
+				out.writeObject(live.get(i));
+			}
+		}
+	}
+
 	private void readObject(ObjectInputStream in) throws IOException,
 			ClassNotFoundException {
 		in.defaultReadObject();
@@ -3034,11 +3529,15 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
 	// a subclass that implements java.util.Map.
 
 	public int size() {
+		ConcurrentSlotTable table = concurrentSlots;
+		if (table != null) {
+			return table.size();
+		}
 		return count;
 	}
 
 	public boolean isEmpty() {
-		return count == 0;
+		return size() == 0;
 	}
 
 	public Object get(Object key) {
@@ -0,0 +1,206 @@
+package org.mozilla.javascript;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.FunctionNode;
+import org.mozilla.javascript.ast.ScriptNode;
+
+/**
+ * Promotion of hot interpreted functions to compiled code, see
+ * {@link Context#setTierUpThreshold(int)}.
+ * <p>
+ * The state of a function is kept in
+ * {@link InterpreterData#itsTieredCode}: null while it is still counted,
+ * {@link #PENDING} while it is compiled, {@link #FAILED} if it can't be
+ * compiled, the Codegen byte code once it is compiled and finally the
+ * constructor of the compiled function class once the class is defined.
+ * Every {@link InterpretedFunction} instance then gets its own compiled
+ * function with the same parent scope.
+ * <p>
+ * Functions are compiled from their original source, which is kept in
+ * {@link InterpreterData#itsFunctionSource} when tiered execution is enabled
+ * at compile time. The activations of the compiled function are created for
+ * the interpreted function, so the function seen by the script stays the
+ * same.
+ */
+final class TieredCompilation {
+
+	private static final Object PENDING = new Object();
+	private static final Object FAILED = new Object();
+
+	// the optimization level used for compiled functions
+	private static final int OPTIMIZATION_LEVEL = 9;
+
+	private static final Class<?> codegenClass = Kit
+			.classOrNull("org.mozilla.javascript.optimizer.Codegen");
+
+	private static Executor executor;
+
+	private TieredCompilation() {
+	}
+
+	/**
+	 * Return the compiled version of the function if there is one, null if
+	 * the function should be interpreted. Calling this counts as an
+	 * invocation of the function.
+	 */
+	static Function getTarget(Context cx, InterpretedFunction f) {
+		// compiled code doesn't call the debugger and doesn't count the
+		// instructions the way the interpreter does
+		if (cx.debugger != null || cx.instructionThreshold != 0
+				|| cx.generateObserverCount) {
+			return null;
+		}
+		Function target = f.tieredTarget;
+		if (target != null) {
+			return target;
+		}
+		if (cx.tierUpThreshold <= 0 || codegenClass == null) {
+			return null;
+		}
+		InterpreterData idata = f.idata;
+		if (idata.itsLazySource != null) {
+			// not compiled yet, the interpreter compiles it first
+			return null;
+		}
+		Object code = idata.itsTieredCode;
+		if (code == null) {
+			if (++idata.itsHotness < cx.tierUpThreshold) {
+				return null;
+			}
+			submit(cx, f);
+			return null;
+		}
+		if (code == PENDING || code == FAILED) {
+			return null;
+		}
+		target = instantiate(cx, f);
+		f.tieredTarget = target;
+		return target;
+	}
+
+	private static boolean isEligible(InterpretedFunction f) {
+		InterpreterData idata = f.idata;
+		if (idata.itsFunctionType == 0 || idata.itsFunctionSource == null
+				|| f.securityController != null || idata.evalScriptFlag) {
+			return false;
+		}
+		if (idata.itsICode.length != 0
+				&& idata.itsICode[0] == Icode.Icode_GENERATOR) {
+			return false;
+		}
+		// the function's own name is only bound for function statements
+		// when compiled through compileFunction
+		return idata.itsFunctionType == FunctionNode.FUNCTION_STATEMENT
+				|| idata.itsName == null || idata.itsName.length() == 0;
+	}
+
+	private static void submit(Context cx, final InterpretedFunction f) {
+		final InterpreterData idata = f.idata;
+		synchronized (idata) {
+			if (idata.itsTieredCode != null) {
+				return;
+			}
+			if (!isEligible(f)) {
+				idata.itsTieredCode = FAILED;
+				return;
+			}
+			idata.itsTieredCode = PENDING;
+		}
+		final CompilerEnvirons compilerEnv = new CompilerEnvirons();
+		compilerEnv.initFromContext(cx);
+		compilerEnv.setLanguageVersion(idata.languageVersion);
+		compilerEnv.setOptimizationLevel(OPTIMIZATION_LEVEL);
+		// the source passed the checks when its script was compiled
+		compilerEnv.setStrictMode(false);
+		compilerEnv.setErrorReporter(DefaultErrorReporter.instance);
+		final ContextFactory factory = cx.getFactory();
+		getExecutor().execute(new Runnable() {
+			public void run() {
+				Object code;
+				try {
+					code = factory.call(new ContextAction() {
+						public Object run(Context bcx) {
+							return compile(compilerEnv, idata);
+						}
+					});
+				} catch (RuntimeException e) {
+					code = FAILED;
+				}
+				idata.itsTieredCode = code;
+			}
+		});
+	}
+
+	private static Object compile(CompilerEnvirons compilerEnv,
+			InterpreterData idata) {
+		ErrorReporter reporter = compilerEnv.getErrorReporter();
+		Parser p = new Parser(compilerEnv, reporter);
+		p.calledByCompileFunction = true;
+		p.calledInStrictMode = idata.isStrict;
+		String source = idata.itsFunctionSource.substring(
+				idata.itsFunctionSourceStart, idata.itsFunctionSourceEnd);
+		AstRoot ast = p.parse(source, idata.itsSourceFile,
+				idata.itsFunctionLineno);
+		if (ast.getFirstChild() == null
+				|| ast.getFirstChild().getType() != Token.FUNCTION) {
+			return FAILED;
+		}
+		// compileFunction parses a function expression, which binds its own
+		// name to the compiled function object
+		((FunctionNode) ast.getFirstChild())
+				.setFunctionType(idata.itsFunctionType);
+		IRFactory irf = new IRFactory(compilerEnv, reporter);
+		ScriptNode tree = irf.transformTree(ast);
+		Evaluator compiler = (Evaluator) Kit.newInstanceOrNull(codegenClass);
+		if (compiler == null) {
+			return FAILED;
+		}
+		return compiler.compile(compilerEnv, tree, tree.getEncodedSource(),
+				true);
+	}
+
+	private static Function instantiate(Context cx, InterpretedFunction f) {
+		InterpreterData idata = f.idata;
+		Scriptable scope = f.getParentScope();
+		synchronized (idata) {
+			Object code = idata.itsTieredCode;
+			try {
+				NativeFunction target;
+				if (code instanceof Constructor<?>) {
+					target = (NativeFunction) ((Constructor<?>) code)
+							.newInstance(scope, cx, Integer.valueOf(0));
+				} else {
+					Evaluator compiler = (Evaluator) Kit
+							.newInstanceOrNull(codegenClass);
+					target = (NativeFunction) compiler.createFunctionObject(
+							cx, scope, code, null);
+					idata.itsTieredCode = target.getClass()
+							.getConstructors()[0];
+				}
+				target.tieredOwner = f;
+				return target;
+			} catch (Exception e) {
+				idata.itsTieredCode = FAILED;
+				return null;
+			}
+		}
+	}
+
+	private static synchronized Executor getExecutor() {
+		if (executor == null) {
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Rhino tiered compilation");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+}
@@ -82,11 +82,43 @@ class TokenStream {
 			if (sourceString == null)
 				Kit.codeBug();
 			this.sourceString = sourceString;
-			this.sourceEnd = sourceString.length();
+			this.sourceBuffer = sourceString.toCharArray();
+			this.sourceEnd = sourceBuffer.length;
 		}
 		this.sourceCursor = this.cursor = 0;
 	}
 
+	/**
+	 * Scans sourceString, reading its characters from sourceChars, which
+	 * must hold them and is not copied.
+	 */
+	TokenStream(Parser parser, String sourceString, char[] sourceChars,
+			int lineno) {
+		this.parser = parser;
+		this.lineno = lineno;
+		this.sourceString = sourceString;
+		this.sourceBuffer = sourceChars;
+		this.sourceEnd = sourceChars.length;
+		this.sourceCursor = this.cursor = 0;
+	}
+
+	/**
+	 * Scans the part of sourceString from start to end, start being on the
+	 * given line. Token positions are offsets into the whole string.
+	 */
+	TokenStream(Parser parser, String sourceString, char[] sourceChars,
+			int start, int end, int lineno) {
+		this(parser, sourceString, sourceChars, lineno);
+		this.sourceEnd = end;
+		this.sourceCursor = this.cursor = start;
+		int i = start;
+		while (i > 0 && !ScriptRuntime.isJSLineTerminator(sourceString
+				.charAt(i - 1))) {
+			i--;
+		}
+		this.lineStart = i;
+	}
+
 	/*
 	 * This function uses the cached op, string and number fields in
 	 * TokenStream; if getToken has been called since the passed token was
@@ -543,6 +575,10 @@ class TokenStream {
 
 			if (identifierStart) {
 				boolean containsEscape = isUnicodeEscapeStart;
+				int slot = containsEscape ? -1 : scanAsciiIdentifier(c);
+				if (slot >= 0) {
+					return nameToken(slot, false);
+				}
 				for (;;) {
 					if (isUnicodeEscapeStart) {
 						// strictly speaking we should probably push-back
@@ -589,31 +625,9 @@ class TokenStream {
 					}
 				}
 				ungetChar(c);
-
-				String str = getStringFromBuffer();
-				if (!containsEscape) {
-					// OPT we shouldn't have to make a string (object!) to
-					// check if it's a keyword.
-
-					// Return the corresponding token if it's a keyword
-					int result = stringToKeyword(str);
-					if (result != Token.EOF) {
-						if ((result == Token.LET || result == Token.YIELD)
-								&& parser.compilerEnv.getLanguageVersion() < Context.VERSION_1_7) {
-							// LET and YIELD are tokens only in 1.7 and later
-							string = result == Token.LET ? "let" : "yield";
-							result = Token.NAME;
-						}
-						if (result != Token.RESERVED) {
-							return result;
-						} else if (!parser.compilerEnv
-								.isReservedKeywordAsIdentifier()) {
-							return result;
-						}
-					}
-				}
-				this.string = (String) allStrings.intern(str);
-				return Token.NAME;
+				tokenEnd = cursor;
+				return nameToken(lookupString(stringBuffer, 0, stringBufferTop),
+						containsEscape);
 			}
 
 			// is it a number?
@@ -687,7 +701,8 @@ class TokenStream {
 				}
 				ungetChar(c);
 				String numString = getStringFromBuffer();
-				this.string = numString;
+				this.string = parser.compilerEnv.isCompactAst() ? numString
+						.intern() : numString;
 
 				double dval;
 				if (base == 10 && !isInteger) {
@@ -716,6 +731,11 @@ class TokenStream {
 				quoteChar = c;
 				stringBufferTop = 0;
 
+				int slot = scanPlainString(c);
+				if (slot >= 0) {
+					this.string = strings[slot];
+					return Token.STRING;
+				}
 				c = getChar();
 				strLoop: while (c != quoteChar) {
 					if (c == '\n' || c == EOF_CHAR) {
@@ -825,8 +845,9 @@ class TokenStream {
 					c = getChar();
 				}
 
-				String str = getStringFromBuffer();
-				this.string = (String) allStrings.intern(str);
+				tokenEnd = cursor;
+				this.string = strings[lookupString(stringBuffer, 0,
+						stringBufferTop)];
 				return Token.STRING;
 			}
 
@@ -1434,6 +1455,158 @@ class TokenStream {
 		return false;
 	}
 
+	/**
+	 * Returns the token for the identifier in the given slot of the string
+	 * table, which is a keyword unless it contains escapes.
+	 */
+	private int nameToken(int slot, boolean containsEscape) {
+		if (!containsEscape) {
+			// Return the corresponding token if it's a keyword
+			int result = stringKeywords[slot];
+			if (result != Token.EOF) {
+				if ((result == Token.LET || result == Token.YIELD)
+						&& parser.compilerEnv.getLanguageVersion() < Context.VERSION_1_7) {
+					// LET and YIELD are tokens only in 1.7 and later
+					string = result == Token.LET ? "let" : "yield";
+					result = Token.NAME;
+				}
+				if (result != Token.RESERVED) {
+					return result;
+				} else if (!parser.compilerEnv
+						.isReservedKeywordAsIdentifier()) {
+					return result;
+				}
+			}
+		}
+		this.string = strings[slot];
+		return Token.NAME;
+	}
+
+	/**
+	 * Scans the rest of an identifier that starts with c directly in the
+	 * source buffer if it only has ASCII characters. Returns the slot of the
+	 * identifier in the string table or -1 if it has to be scanned character
+	 * by character.
+	 */
+	private int scanAsciiIdentifier(int c) {
+		int start = sourceCursor - 1;
+		if (ungetCursor != 0 || c >= 128 || start < 0
+				|| sourceBuffer[start] != c) {
+			return -1;
+		}
+		int end = sourceCursor;
+		while (end < sourceEnd && isAsciiIdentifierPart(sourceBuffer[end])) {
+			end++;
+		}
+		// at the end of the buffer the identifier may continue after the next
+		// read, and at the end of the source the end of the token is set as
+		// the character by character scan does
+		if (end == sourceEnd || sourceBuffer[end] >= 128
+				|| sourceBuffer[end] == '\\') {
+			return -1;
+		}
+		cursor += end - sourceCursor;
+		sourceCursor = end;
+		tokenEnd = cursor;
+		return lookupString(sourceBuffer, start, end - start);
+	}
+
+	private static boolean isAsciiIdentifierPart(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+				|| (c >= '0' && c <= '9') || c == '_' || c == '$';
+	}
+
+	/**
+	 * Scans a string literal that the quote q starts directly in the source
+	 * buffer if it has no escapes or characters that getChar() would change.
+	 * Returns the slot of the string in the string table or -1 if it has to be
+	 * scanned character by character.
+	 */
+	private int scanPlainString(int q) {
+		int start = sourceCursor;
+		if (ungetCursor != 0 || start == 0 || sourceBuffer[start - 1] != q) {
+			return -1;
+		}
+		for (int i = start; i < sourceEnd; i++) {
+			char c = sourceBuffer[i];
+			if (c == q) {
+				cursor += i + 1 - start;
+				sourceCursor = i + 1;
+				tokenEnd = cursor;
+				return lookupString(sourceBuffer, start, i - start);
+			}
+			if (c < 128 ? c == '\\' || c == '\n' || c == '\r'
+					: c != BYTE_ORDER_MARK
+							&& (isJSFormatChar(c) || ScriptRuntime
+									.isJSLineTerminator(c))) {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the slot of the string table that holds the string with the
+	 * given characters, adding the string if it isn't there yet. Identifiers
+	 * and string literals that occur more than once share one instance per
+	 * parse, or within the JVM when a compact tree is asked for.
+	 */
+	private int lookupString(char[] chars, int start, int length) {
+		int hash = 0;
+		for (int i = start, end = start + length; i != end; i++) {
+			hash = 31 * hash + chars[i];
+		}
+		int mask = strings.length - 1;
+		int slot = hash & mask;
+		for (;;) {
+			String str = strings[slot];
+			if (str == null)
+				break;
+			if (stringHashes[slot] == hash && str.length() == length) {
+				int i = 0;
+				while (i != length && str.charAt(i) == chars[start + i]) {
+					i++;
+				}
+				if (i == length)
+					return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		String str = new String(chars, start, length);
+		if (parser.compilerEnv.isCompactAst()) {
+			str = str.intern();
+		}
+		strings[slot] = str;
+		stringHashes[slot] = hash;
+		stringKeywords[slot] = stringToKeyword(str);
+		if (++stringCount * 2 > strings.length) {
+			growStrings();
+			return lookupString(chars, start, length);
+		}
+		return slot;
+	}
+
+	private void growStrings() {
+		String[] oldStrings = strings;
+		int[] oldHashes = stringHashes;
+		int[] oldKeywords = stringKeywords;
+		strings = new String[oldStrings.length * 2];
+		stringHashes = new int[strings.length];
+		stringKeywords = new int[strings.length];
+		int mask = strings.length - 1;
+		for (int i = 0; i != oldStrings.length; i++) {
+			if (oldStrings[i] == null)
+				continue;
+			int slot = oldHashes[i] & mask;
+			while (strings[slot] != null) {
+				slot = (slot + 1) & mask;
+			}
+			strings[slot] = oldStrings[i];
+			stringHashes[slot] = oldHashes[i];
+			stringKeywords[slot] = oldKeywords[i];
+		}
+	}
+
 	private String getStringFromBuffer() {
 		tokenEnd = cursor;
 		return new String(stringBuffer, 0, stringBufferTop);
@@ -1486,24 +1659,14 @@ class TokenStream {
 		}
 
 		for (;;) {
-			int c;
-			if (sourceString != null) {
-				if (sourceCursor == sourceEnd) {
+			if (sourceCursor == sourceEnd) {
+				if (sourceString != null || !fillSourceBuffer()) {
 					hitEOF = true;
 					return EOF_CHAR;
 				}
-				cursor++;
-				c = sourceString.charAt(sourceCursor++);
-			} else {
-				if (sourceCursor == sourceEnd) {
-					if (!fillSourceBuffer()) {
-						hitEOF = true;
-						return EOF_CHAR;
-					}
-				}
-				cursor++;
-				c = sourceBuffer[sourceCursor++];
 			}
+			cursor++;
+			int c = sourceBuffer[sourceCursor++];
 
 			if (lineEndChar >= 0) {
 				if (lineEndChar == '\r' && c == '\n') {
@@ -1542,24 +1705,14 @@ class TokenStream {
 		}
 
 		for (;;) {
-			int c;
-			if (sourceString != null) {
-				if (sourceCursor == sourceEnd) {
+			if (sourceCursor == sourceEnd) {
+				if (sourceString != null || !fillSourceBuffer()) {
 					hitEOF = true;
 					return EOF_CHAR;
 				}
-				cursor++;
-				c = sourceString.charAt(sourceCursor++);
-			} else {
-				if (sourceCursor == sourceEnd) {
-					if (!fillSourceBuffer()) {
-						hitEOF = true;
-						return EOF_CHAR;
-					}
-				}
-				cursor++;
-				c = sourceBuffer[sourceCursor++];
 			}
+			cursor++;
+			int c = sourceBuffer[sourceCursor++];
 
 			if (c <= 127) {
 				if (c == '\n' || c == '\r') {
@@ -1764,7 +1917,14 @@ class TokenStream {
 
 	private char[] stringBuffer = new char[128];
 	private int stringBufferTop;
-	private ObjToIntMap allStrings = new ObjToIntMap(50);
+
+	// identifiers and string literals seen so far, an open addressing hash
+	// table looked up by the characters of a token, see lookupString()
+	private String[] strings = new String[128];
+	private int[] stringHashes = new int[128];
+	// the keyword token of each string or Token.EOF
+	private int[] stringKeywords = new int[128];
+	private int stringCount;
 
 	// Room to backtrace from to < on failed match of the last - in <!--
 	private final int[] ungetBuffer = new int[3];
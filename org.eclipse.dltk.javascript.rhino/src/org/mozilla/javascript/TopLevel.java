@@ -123,6 +123,14 @@ public class TopLevel extends IdScriptableObject {
 		}
 	}
 
+	/**
+	 * Use the built-in objects cached by the top-level scope this scope
+	 * inherits the standard objects from.
+	 */
+	void shareBuiltins(TopLevel snapshot) {
+		ctors = snapshot.ctors;
+	}
+
 	/**
 	 * Static helper method to get a built-in object constructor with the given
 	 * <code>type</code> from the given <code>scope</code>. If the scope is not
@@ -183,6 +183,12 @@ public class ArrayComprehension extends Scope {
 		this.rp = rp;
 	}
 
+	@Override
+	public void trimToSize() {
+		super.trimToSize();
+		trimToSize(loops);
+	}
+
 	@Override
 	public String toSource(int depth) {
 		StringBuilder sb = new StringBuilder(250);
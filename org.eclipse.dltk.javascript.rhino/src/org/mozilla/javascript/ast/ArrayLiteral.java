@@ -214,6 +214,11 @@ public class ArrayLiteral extends AstNode implements DestructuringForm {
 		return isDestructuring;
 	}
 
+	@Override
+	public void trimToSize() {
+		trimToSize(elements);
+	}
+
 	@Override
 	public String toSource(int depth) {
 		StringBuilder sb = new StringBuilder();
@@ -43,6 +43,7 @@ import org.mozilla.javascript.Node;
 import org.mozilla.javascript.Token;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -488,6 +489,24 @@ public abstract class AstNode extends Node implements Comparable<AstNode> {
 		}
 	}
 
+	/**
+	 * Releases the unused capacity of the lists of this node. The parser
+	 * calls this for all nodes when
+	 * {@link org.mozilla.javascript.CompilerEnvirons#isCompactAst()} is set.
+	 * The lists can still be changed afterwards.
+	 */
+	public void trimToSize() {
+	}
+
+	/**
+	 * Releases the unused capacity of {@code list} if it has any.
+	 */
+	protected static void trimToSize(List<?> list) {
+		if (list instanceof ArrayList) {
+			((ArrayList<?>) list).trimToSize();
+		}
+	}
+
 	/**
 	 * Bounces an IllegalArgumentException up if arg is {@code null}.
 	 * 
@@ -59,6 +59,7 @@ public class AstRoot extends ScriptNode {
 
 	private SortedSet<Comment> comments;
 	private boolean inStrictMode;
+	private boolean syntaxErrors;
 
 	{
 		type = Token.SCRIPT;
@@ -123,6 +124,21 @@ public class AstRoot extends ScriptNode {
 		return inStrictMode;
 	}
 
+	/**
+	 * Sets whether the parser reported syntax errors for this script.
+	 */
+	public void setSyntaxErrors(boolean syntaxErrors) {
+		this.syntaxErrors = syntaxErrors;
+	}
+
+	/**
+	 * Returns true if the parser reported syntax errors for this script, in
+	 * which case parts of the tree may have been recovered from the errors.
+	 */
+	public boolean hasSyntaxErrors() {
+		return syntaxErrors;
+	}
+
 	/**
 	 * Visits the comment nodes in the order they appear in the source code. The
 	 * comments are not visited by the {@link #visit} function - you must use
@@ -0,0 +1,361 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.mozilla.javascript.ast;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Parser;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parse tree stored in flat arrays, for tools that hold the trees of many
+ * sources at once, e.g. to analyze a whole workspace. The nodes are numbered
+ * in the order {@link AstRoot#visitAll} visits them, the root being 0, so
+ * the descendants of a node follow it. The class, token type, absolute
+ * position, length, line, parent and subtree end of every node are kept in
+ * a single int array, and identifiers and string literal values are shared
+ * with all other trees through {@link String#intern()}.
+ * <p>
+ * {@link #getNode(int)} returns the {@link AstNode} of a node. The nodes are
+ * made by parsing the source again when one is first asked for, and are
+ * kept until memory gets short. Changes to them are not seen by the other
+ * methods.
+ */
+public final class CompactTree {
+
+	// the ints of a node in nodes
+	private static final int KIND = 0; // class number << 16 | token type
+	private static final int POSITION = 1;
+	private static final int LENGTH = 2;
+	private static final int LINENO = 3;
+	private static final int PARENT = 4;
+	private static final int END = 5; // the number after the descendants
+	private static final int STRING = 6;
+	private static final int STRIDE = 7;
+
+	private final CompilerEnvirons compilerEnv;
+	private final String source;
+	private final String sourceName;
+	private final int baseLineno;
+
+	private final int size;
+	private final int[] nodes;
+	private final Class<?>[] classes;
+	private final String[] strings;
+	// the nodes that have a jsdoc comment, in order, and their comments
+	private final int[] jsDocNodes;
+	private final String[] jsDocs;
+
+	private SoftReference<AstNode[]> astNodes;
+
+	/**
+	 * Parses a source into a compact tree. Problems are reported to the
+	 * error reporter of {@code compilerEnv}.
+	 */
+	public static CompactTree parse(CompilerEnvirons compilerEnv,
+			String source, String sourceName, int lineno) {
+		AstRoot root = new Parser(compilerEnv, compilerEnv.getErrorReporter())
+				.parse(source, sourceName, lineno);
+		return new CompactTree(compilerEnv, source, root);
+	}
+
+	/**
+	 * Stores a parse tree in a compact tree.
+	 *
+	 * @param compilerEnv
+	 *            the environment {@code root} was parsed with, used to
+	 *            parse {@code source} again for {@link #getNode(int)}
+	 * @param source
+	 *            the source of {@code root}
+	 * @param root
+	 *            the tree, which is not referenced by the compact tree
+	 */
+	public CompactTree(CompilerEnvirons compilerEnv, String source,
+			AstRoot root) {
+		this.compilerEnv = compilerEnv;
+		this.source = source;
+		this.sourceName = root.getSourceName();
+		this.baseLineno = Math.max(root.getBaseLineno(), 0);
+
+		AstNode[] list = toArray(root);
+		size = list.length;
+		nodes = new int[size * STRIDE];
+		Map<AstNode, Integer> numbers = new IdentityHashMap<AstNode, Integer>(
+				size);
+		Map<Class<?>, Integer> classNumbers = new HashMap<Class<?>, Integer>();
+		List<Class<?>> classList = new ArrayList<Class<?>>();
+		Map<String, Integer> stringNumbers = new HashMap<String, Integer>();
+		List<String> stringList = new ArrayList<String>();
+		List<Integer> jsDocNodeList = new ArrayList<Integer>();
+		List<String> jsDocList = new ArrayList<String>();
+		for (int i = 0; i < size; i++) {
+			AstNode node = list[i];
+			numbers.put(node, i);
+			Integer classNumber = classNumbers.get(node.getClass());
+			if (classNumber == null) {
+				classNumber = classList.size();
+				classNumbers.put(node.getClass(), classNumber);
+				classList.add(node.getClass());
+			}
+			int k = i * STRIDE;
+			nodes[k + KIND] = classNumber << 16 | (node.getType() & 0xFFFF);
+			nodes[k + POSITION] = node.getAbsolutePosition();
+			nodes[k + LENGTH] = node.getLength();
+			nodes[k + LINENO] = node.getLineno();
+			Integer parent = node.getParent() == null ? null : numbers
+					.get(node.getParent());
+			nodes[k + PARENT] = parent == null ? -1 : parent;
+			nodes[k + END] = i + 1;
+			String string = null;
+			if (node instanceof Name) {
+				string = ((Name) node).getIdentifier();
+			} else if (node instanceof StringLiteral) {
+				string = ((StringLiteral) node).getValue();
+			}
+			if (string == null) {
+				nodes[k + STRING] = -1;
+			} else {
+				Integer stringNumber = stringNumbers.get(string);
+				if (stringNumber == null) {
+					stringNumber = stringList.size();
+					stringNumbers.put(string, stringNumber);
+					stringList.add(string.intern());
+				}
+				nodes[k + STRING] = stringNumber;
+			}
+			String jsDoc = node.getJsDoc();
+			if (jsDoc != null) {
+				jsDocNodeList.add(i);
+				jsDocList.add(jsDoc);
+			}
+		}
+		// the descendants of a node follow it, so the subtree of a node ends
+		// where the subtree of its last child does
+		for (int i = size - 1; i > 0; i--) {
+			int parent = nodes[i * STRIDE + PARENT];
+			if (parent >= 0
+					&& nodes[parent * STRIDE + END] < nodes[i * STRIDE + END]) {
+				nodes[parent * STRIDE + END] = nodes[i * STRIDE + END];
+			}
+		}
+		classes = classList.toArray(new Class<?>[classList.size()]);
+		strings = stringList.toArray(new String[stringList.size()]);
+		jsDocNodes = new int[jsDocNodeList.size()];
+		for (int i = 0; i < jsDocNodes.length; i++) {
+			jsDocNodes[i] = jsDocNodeList.get(i);
+		}
+		jsDocs = jsDocList.toArray(new String[jsDocList.size()]);
+	}
+
+	private static AstNode[] toArray(AstRoot root) {
+		final List<AstNode> list = new ArrayList<AstNode>();
+		root.visitAll(new NodeVisitor() {
+			public boolean visit(AstNode node) {
+				list.add(node);
+				return true;
+			}
+		});
+		return list.toArray(new AstNode[list.size()]);
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public String getSourceName() {
+		return sourceName;
+	}
+
+	/**
+	 * Returns the number of nodes.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the {@link AstNode} class of a node.
+	 */
+	public Class<?> getNodeClass(int node) {
+		return classes[nodes[node * STRIDE + KIND] >>> 16];
+	}
+
+	/**
+	 * Returns the token type of a node, see {@link Node#getType()}.
+	 */
+	public int getType(int node) {
+		return (short) nodes[node * STRIDE + KIND];
+	}
+
+	/**
+	 * Returns the absolute position of a node in the source.
+	 */
+	public int getPosition(int node) {
+		return nodes[node * STRIDE + POSITION];
+	}
+
+	public int getLength(int node) {
+		return nodes[node * STRIDE + LENGTH];
+	}
+
+	public int getLineno(int node) {
+		return nodes[node * STRIDE + LINENO];
+	}
+
+	/**
+	 * Returns the parent of a node, or -1 for the root.
+	 */
+	public int getParent(int node) {
+		return nodes[node * STRIDE + PARENT];
+	}
+
+	/**
+	 * Returns the first child of a node, or -1 if it has none.
+	 */
+	public int getFirstChild(int node) {
+		return nodes[node * STRIDE + END] > node + 1 ? node + 1 : -1;
+	}
+
+	/**
+	 * Returns the next child of the parent of a node, or -1 if the node is
+	 * the last one.
+	 */
+	public int getNextSibling(int node) {
+		int parent = getParent(node);
+		int next = nodes[node * STRIDE + END];
+		return parent >= 0 && next < nodes[parent * STRIDE + END] ? next : -1;
+	}
+
+	/**
+	 * Returns the identifier of a {@link Name} or the value of a
+	 * {@link StringLiteral}, or {@code null} for other nodes.
+	 */
+	public String getString(int node) {
+		int string = nodes[node * STRIDE + STRING];
+		return string < 0 ? null : strings[string];
+	}
+
+	/**
+	 * Returns the jsdoc comment of a node, see {@link Node#getJsDoc()}.
+	 */
+	public String getJsDoc(int node) {
+		int low = 0, high = jsDocNodes.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (jsDocNodes[mid] < node) {
+				low = mid + 1;
+			} else if (jsDocNodes[mid] > node) {
+				high = mid - 1;
+			} else {
+				return jsDocs[mid];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the innermost node that contains a position of the source, or
+	 * -1 if the root doesn't contain it.
+	 */
+	public int getNodeAt(int position) {
+		if (!contains(0, position)) {
+			return -1;
+		}
+		int node = 0;
+		for (int child = getFirstChild(node); child >= 0;) {
+			if (contains(child, position)) {
+				node = child;
+				child = getFirstChild(node);
+			} else {
+				child = getNextSibling(child);
+			}
+		}
+		return node;
+	}
+
+	private boolean contains(int node, int position) {
+		int start = getPosition(node);
+		return position >= start && position < start + getLength(node);
+	}
+
+	/**
+	 * Returns the {@link AstNode} of a node.
+	 *
+	 * @throws IllegalStateException
+	 *             if the source doesn't parse to the same tree again
+	 */
+	public AstNode getNode(int node) {
+		return getAstNodes()[node];
+	}
+
+	/**
+	 * Returns the {@link AstRoot} of the tree.
+	 *
+	 * @see #getNode(int)
+	 */
+	public AstRoot getRoot() {
+		return (AstRoot) getNode(0);
+	}
+
+	private synchronized AstNode[] getAstNodes() {
+		AstNode[] list = astNodes == null ? null : astNodes.get();
+		if (list == null) {
+			AstRoot root = new Parser(compilerEnv, new ErrorCollector())
+					.parse(source, sourceName, baseLineno);
+			list = toArray(root);
+			if (list.length != size) {
+				throw new IllegalStateException(
+						"source parsed to another tree");
+			}
+			for (int i = 0; i < size; i++) {
+				if (list[i].getClass() != getNodeClass(i)
+						|| list[i].getAbsolutePosition() != getPosition(i)) {
+					throw new IllegalStateException(
+							"source parsed to another tree");
+				}
+			}
+			astNodes = new SoftReference<AstNode[]>(list);
+		}
+		return list;
+	}
+}
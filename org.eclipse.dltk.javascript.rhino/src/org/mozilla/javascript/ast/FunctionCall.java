@@ -180,6 +180,11 @@ public class FunctionCall extends AstNode {
 		this.rp = rp;
 	}
 
+	@Override
+	public void trimToSize() {
+		trimToSize(arguments);
+	}
+
 	@Override
 	public String toSource(int depth) {
 		StringBuilder sb = new StringBuilder();
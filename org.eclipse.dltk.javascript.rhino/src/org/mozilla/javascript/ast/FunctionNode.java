@@ -133,6 +133,10 @@ public class FunctionNode extends ScriptNode {
 	private List<Node> generatorResumePoints;
 	private Map<Node, int[]> liveLocals;
 	private AstNode memberExprNode;
+	private String source;
+	private int sourceStart;
+	private int sourceEnd;
+	private boolean lazy;
 
 	{
 		type = Token.FUNCTION;
@@ -396,6 +400,78 @@ public class FunctionNode extends ScriptNode {
 		functionType = type;
 	}
 
+	/**
+	 * Returns true if the body of this function is compiled when the function
+	 * is called for the first time, from the source range given by
+	 * {@link #getLazySource()}, {@link #getLazySourceStart()} and
+	 * {@link #getLazySourceEnd()}.
+	 */
+	public boolean isLazy() {
+		return lazy;
+	}
+
+	/**
+	 * Sets the source the function is compiled from on its first call.
+	 * 
+	 * @param source
+	 *            the source containing the function, or null if the function
+	 *            is compiled with the script that contains it
+	 * @param start
+	 *            the absolute position of the <tt>function</tt> keyword
+	 * @param end
+	 *            the absolute position after the closing brace
+	 */
+	public void setLazySource(String source, int start, int end) {
+		setSource(source, start, end);
+		lazy = source != null;
+	}
+
+	public String getLazySource() {
+		return lazy ? source : null;
+	}
+
+	public int getLazySourceStart() {
+		return sourceStart;
+	}
+
+	public int getLazySourceEnd() {
+		return sourceEnd;
+	}
+
+	/**
+	 * Sets the source the function can be compiled from again, see
+	 * {@link org.mozilla.javascript.CompilerEnvirons#setRetainFunctionSource(boolean)}.
+	 * 
+	 * @param source
+	 *            the source containing the function, or null if it isn't kept
+	 * @param start
+	 *            the absolute position of the <tt>function</tt> keyword
+	 * @param end
+	 *            the absolute position after the closing brace
+	 */
+	public void setSource(String source, int start, int end) {
+		this.source = source;
+		sourceStart = start;
+		sourceEnd = end;
+		lazy = false;
+	}
+
+	/**
+	 * Returns the source set by {@link #setSource(String, int, int)} or
+	 * {@link #setLazySource(String, int, int)}.
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	public int getSourceStart() {
+		return sourceStart;
+	}
+
+	public int getSourceEnd() {
+		return sourceEnd;
+	}
+
 	public boolean isGetterOrSetter() {
 		return functionForm == Form.GETTER || functionForm == Form.SETTER;
 	}
@@ -436,6 +512,12 @@ public class FunctionNode extends ScriptNode {
 		return memberExprNode;
 	}
 
+	@Override
+	public void trimToSize() {
+		super.trimToSize();
+		trimToSize(params);
+	}
+
 	@Override
 	public String toSource(int depth) {
 		StringBuilder sb = new StringBuilder();
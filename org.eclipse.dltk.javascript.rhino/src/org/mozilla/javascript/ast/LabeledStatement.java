@@ -144,6 +144,11 @@ public class LabeledStatement extends AstNode {
 		return labels.get(0);
 	}
 
+	@Override
+	public void trimToSize() {
+		trimToSize(labels);
+	}
+
 	@Override
 	public String toSource(int depth) {
 		StringBuilder sb = new StringBuilder();
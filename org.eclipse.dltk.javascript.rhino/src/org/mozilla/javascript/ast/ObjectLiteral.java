@@ -150,6 +150,11 @@ public class ObjectLiteral extends AstNode implements DestructuringForm {
 		return isDestructuring;
 	}
 
+	@Override
+	public void trimToSize() {
+		trimToSize(elements);
+	}
+
 	@Override
 	public String toSource(int depth) {
 		StringBuilder sb = new StringBuilder();
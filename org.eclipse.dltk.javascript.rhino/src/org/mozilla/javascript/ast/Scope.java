@@ -273,6 +273,11 @@ public class Scope extends Jump {
 		return stmts;
 	}
 
+	@Override
+	public void trimToSize() {
+		trimToSize(childScopes);
+	}
+
 	@Override
 	public String toSource(int depth) {
 		StringBuilder sb = new StringBuilder();
@@ -62,7 +62,7 @@ public class ScriptNode extends Scope {
 
 	private List<FunctionNode> functions;
 	private List<RegExpLiteral> regexps;
-	private List<FunctionNode> EMPTY_LIST = Collections.emptyList();
+	private static final List<FunctionNode> EMPTY_LIST = Collections.emptyList();
 
 	private List<Symbol> symbols = new ArrayList<Symbol>(4);
 	private int paramCount = 0;
@@ -200,6 +200,17 @@ public class ScriptNode extends Scope {
 		endLineno = lineno;
 	}
 
+	/**
+	 * Moves the base and end line numbers by {@code delta} lines, for a
+	 * script or function that moved as a whole within its source.
+	 */
+	public void shiftLinenos(int delta) {
+		if (lineno >= 0)
+			lineno += delta;
+		if (endLineno >= 0)
+			endLineno += delta;
+	}
+
 	public int getFunctionCount() {
 		return functions == null ? 0 : functions.size();
 	}
@@ -356,6 +367,14 @@ public class ScriptNode extends Scope {
 		return "$" + tempNumber++;
 	}
 
+	@Override
+	public void trimToSize() {
+		super.trimToSize();
+		trimToSize(functions);
+		trimToSize(regexps);
+		trimToSize(symbols);
+	}
+
 	@Override
 	public void visit(NodeVisitor v) {
 		if (v.visit(this)) {
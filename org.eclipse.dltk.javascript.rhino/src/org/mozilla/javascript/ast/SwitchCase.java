@@ -150,6 +150,11 @@ public class SwitchCase extends AstNode {
 		statement.setParent(this);
 	}
 
+	@Override
+	public void trimToSize() {
+		trimToSize(statements);
+	}
+
 	@Override
 	public String toSource(int depth) {
 		StringBuilder sb = new StringBuilder();
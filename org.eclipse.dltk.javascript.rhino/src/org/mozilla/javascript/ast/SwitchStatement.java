@@ -187,6 +187,11 @@ public class SwitchStatement extends Jump {
 		this.rp = rp;
 	}
 
+	@Override
+	public void trimToSize() {
+		trimToSize(cases);
+	}
+
 	@Override
 	public String toSource(int depth) {
 		String pad = makeIndent(depth);
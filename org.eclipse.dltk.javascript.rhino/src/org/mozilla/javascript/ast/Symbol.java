@@ -104,7 +104,10 @@ public class Symbol {
 	}
 
 	/**
-	 * Returns the node associated with this identifier
+	 * Returns the node associated with this identifier. In ide-mode the
+	 * parser associates the symbols of a script with the top-level statement
+	 * that declares them, which {@link org.mozilla.javascript.Parser#reparse}
+	 * uses to tell which symbols a reparsed statement declared.
 	 */
 	public Node getNode() {
 		return node;
@@ -126,6 +129,8 @@ public class Symbol {
 
 	/**
 	 * Sets the node associated with this identifier
+	 * 
+	 * @see #getNode()
 	 */
 	public void setNode(Node node) {
 		this.node = node;
@@ -172,6 +172,11 @@ public class TryStatement extends AstNode {
 		this.finallyPosition = finallyPosition;
 	}
 
+	@Override
+	public void trimToSize() {
+		trimToSize(catchClauses);
+	}
+
 	@Override
 	public String toSource(int depth) {
 		StringBuilder sb = new StringBuilder(250);
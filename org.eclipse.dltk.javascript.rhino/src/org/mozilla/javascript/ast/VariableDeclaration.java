@@ -151,6 +151,11 @@ public class VariableDeclaration extends AstNode {
 		return Token.typeToName(type).toLowerCase();
 	}
 
+	@Override
+	public void trimToSize() {
+		trimToSize(variables);
+	}
+
 	@Override
 	public String toSource(int depth) {
 		StringBuilder sb = new StringBuilder();
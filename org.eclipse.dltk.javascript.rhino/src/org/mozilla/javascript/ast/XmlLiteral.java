@@ -105,6 +105,11 @@ public class XmlLiteral extends AstNode {
 		fragment.setParent(this);
 	}
 
+	@Override
+	public void trimToSize() {
+		trimToSize(fragments);
+	}
+
 	@Override
 	public String toSource(int depth) {
 		StringBuilder sb = new StringBuilder(250);
@@ -53,9 +53,9 @@ public class VMBridge_jdk13 extends VMBridge {
 	@Override
 	protected Object getThreadContextHelper() {
 		// To make subsequent batch calls to getContext/setContext faster
-		// associate permanently one element array with contextLocal
-		// so getContext/setContext would need just to read/write the first
-		// array element.
+		// associate one element array with contextLocal while the thread
+		// has a Context, so getContext/setContext would need just to
+		// read/write the first array element.
 		// Note that it is necessary to use Object[], not Context[] to allow
 		// garbage collection of Rhino classes. For details see comments
 		// by Attila Szegedi in
@@ -63,8 +63,8 @@ public class VMBridge_jdk13 extends VMBridge {
 
 		Object[] storage = contextLocal.get();
 		if (storage == null) {
+			// set in contextLocal once a Context is set
 			storage = new Object[1];
-			contextLocal.set(storage);
 		}
 		return storage;
 	}
@@ -79,6 +79,14 @@ public class VMBridge_jdk13 extends VMBridge {
 	protected void setContext(Object contextHelper, Context cx) {
 		Object[] storage = (Object[]) contextHelper;
 		storage[0] = cx;
+		if (cx == null) {
+			// Threads don't keep the storage once they leave the Context,
+			// virtual threads are typically used for one task only and
+			// there can be millions of them.
+			contextLocal.remove();
+		} else if (contextLocal.get() != storage) {
+			contextLocal.set(storage);
+		}
 	}
 
 	@Override
@@ -44,11 +44,18 @@ import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptRuntime;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
 
 /**
  * This class converts a stream of JSON tokens into a JSON value.
+ * <p>
+ * The text is read through a small buffer, so a large document can be parsed
+ * from a {@link Reader} without holding all of it in memory. Strings are
+ * created straight from the buffer and object keys that were seen before are
+ * reused. A parser keeps no state between calls: one instance may be used by
+ * several threads at once.
  * 
  * See ECMA 15.12.
  * 
@@ -57,77 +64,238 @@ import java.util.List;
  */
 public class JsonParser {
 
-	private Context cx;
-	private Scriptable scope;
+	private static final int BUFFER_SIZE = 8192;
+	private static final int KEY_CACHE_SIZE = 256;
 
-	private int pos;
-	private int length;
-	private String src;
+	private final Context cx;
+	private final Scriptable scope;
 
 	public JsonParser(Context cx, Scriptable scope) {
 		this.cx = cx;
 		this.scope = scope;
 	}
 
-	public synchronized Object parseValue(String json) throws ParseException {
+	/**
+	 * Create a parser that creates the objects and arrays in the context of
+	 * the calling thread, for an instance that is shared by several threads.
+	 */
+	public JsonParser(Scriptable scope) {
+		this(null, scope);
+	}
+
+	public Object parseValue(String json) throws ParseException {
 		if (json == null) {
 			throw new ParseException("Input string may not be null");
 		}
-		pos = 0;
-		length = json.length();
-		src = json;
-		Object value = readValue();
-		consumeWhitespace();
-		if (pos < length) {
-			throw new ParseException("Expected end of stream at char " + pos);
+		try {
+			return parse(new Input(context(), null, json));
+		} catch (IOException e) {
+			// not thrown for a string
+			throw new ParseException(e);
+		}
+	}
+
+	/**
+	 * Parse the JSON text read from the given reader up to its end. The
+	 * reader is not closed.
+	 */
+	public Object parseValue(Reader json) throws ParseException, IOException {
+		if (json == null) {
+			throw new ParseException("Input reader may not be null");
+		}
+		return parse(new Input(context(), json, null));
+	}
+
+	private Context context() {
+		if (cx != null) {
+			return cx;
+		}
+		Context current = Context.getCurrentContext();
+		if (current == null) {
+			throw new IllegalStateException(
+					"No Context associated with current Thread");
+		}
+		return current;
+	}
+
+	private Object parse(Input in) throws ParseException, IOException {
+		Object value = readValue(in);
+		consumeWhitespace(in);
+		if (in.peek() != -1) {
+			throw new ParseException("Expected end of stream at char "
+					+ in.position());
 		}
 		return value;
 	}
 
-	private Object readValue() throws ParseException {
-		consumeWhitespace();
-		while (pos < length) {
-			char c = src.charAt(pos++);
-			switch (c) {
-			case '{':
-				return readObject();
-			case '[':
-				return readArray();
-			case 't':
-				return readTrue();
-			case 'f':
-				return readFalse();
-			case '"':
-				return readString();
-			case 'n':
-				return readNull();
-			case '1':
-			case '2':
-			case '3':
-			case '4':
-			case '5':
-			case '6':
-			case '7':
-			case '8':
-			case '9':
-			case '0':
-			case '-':
-				return readNumber(c);
-			default:
-				throw new ParseException("Unexpected token: " + c);
+	/**
+	 * The state of one parse: the buffered text and the values of the arrays
+	 * being read.
+	 */
+	private static final class Input {
+		final Context cx;
+		private final Reader reader;
+		private final String src;
+		private int srcPos;
+
+		final char[] buf;
+		int pos;
+		int limit;
+		// the number of chars read before those in buf
+		private int offset;
+
+		// the elements of the arrays being read, innermost last
+		private Object[] values = new Object[16];
+		private int valueCount;
+
+		private final String[] keys = new String[KEY_CACHE_SIZE];
+		private StringBuilder chars;
+
+		Input(Context cx, Reader reader, String src) {
+			this.cx = cx;
+			this.reader = reader;
+			this.src = src;
+			buf = new char[src == null ? BUFFER_SIZE : Math.max(1, Math.min(
+					BUFFER_SIZE, src.length()))];
+		}
+
+		/**
+		 * Read more chars into the buffer, return false at the end of the
+		 * text.
+		 */
+		boolean fill() throws IOException {
+			offset += limit;
+			pos = 0;
+			if (reader != null) {
+				int n;
+				do {
+					n = reader.read(buf, 0, buf.length);
+				} while (n == 0);
+				limit = Math.max(n, 0);
+			} else {
+				limit = Math.min(buf.length, src.length() - srcPos);
+				src.getChars(srcPos, srcPos + limit, buf, 0);
+				srcPos += limit;
+			}
+			return limit > 0;
+		}
+
+		/**
+		 * Return the next char without consuming it, or -1 at the end.
+		 */
+		int peek() throws IOException {
+			if (pos == limit && !fill()) {
+				return -1;
+			}
+			return buf[pos];
+		}
+
+		/**
+		 * Consume and return the next char, or -1 at the end.
+		 */
+		int read() throws IOException {
+			if (pos == limit && !fill()) {
+				return -1;
 			}
+			return buf[pos++];
+		}
+
+		int position() {
+			return offset + pos;
+		}
+
+		StringBuilder chars() {
+			if (chars == null) {
+				chars = new StringBuilder();
+			} else {
+				chars.setLength(0);
+			}
+			return chars;
+		}
+
+		void pushValue(Object value) {
+			if (valueCount == values.length) {
+				values = Arrays.copyOf(values, valueCount * 2);
+			}
+			values[valueCount++] = value;
+		}
+
+		Object[] popValues(int start) {
+			Object[] result = Arrays.copyOfRange(values, start, valueCount);
+			Arrays.fill(values, start, valueCount, null);
+			valueCount = start;
+			return result;
+		}
+
+		/**
+		 * Return the key in buf from start to end, the same String as for an
+		 * earlier key with the same chars if there was one.
+		 */
+		String key(int start, int end) {
+			int hash = 0;
+			for (int i = start; i < end; i++) {
+				hash = 31 * hash + buf[i];
+			}
+			int slot = (hash ^ (hash >>> 16)) & (KEY_CACHE_SIZE - 1);
+			String key = keys[slot];
+			if (key != null && key.length() == end - start) {
+				int i = start;
+				while (i < end && key.charAt(i - start) == buf[i]) {
+					i++;
+				}
+				if (i == end) {
+					return key;
+				}
+			}
+			key = new String(buf, start, end - start);
+			keys[slot] = key;
+			return key;
 		}
-		throw new ParseException("Empty JSON string");
 	}
 
-	private Object readObject() throws ParseException {
-		Scriptable object = cx.newObject(scope);
+	private Object readValue(Input in) throws ParseException, IOException {
+		consumeWhitespace(in);
+		int c = in.read();
+		switch (c) {
+		case '{':
+			return readObject(in);
+		case '[':
+			return readArray(in);
+		case 't':
+			return readTrue(in);
+		case 'f':
+			return readFalse(in);
+		case '"':
+			return readString(in, false);
+		case 'n':
+			return readNull(in);
+		case '1':
+		case '2':
+		case '3':
+		case '4':
+		case '5':
+		case '6':
+		case '7':
+		case '8':
+		case '9':
+		case '0':
+		case '-':
+			return readNumber(in, (char) c);
+		case -1:
+			throw new ParseException("Empty JSON string");
+		default:
+			throw new ParseException("Unexpected token: " + (char) c);
+		}
+	}
+
+	private Object readObject(Input in) throws ParseException, IOException {
+		Scriptable object = in.cx.newObject(scope);
 		String id;
 		Object value;
 		boolean needsComma = false;
-		consumeWhitespace();
-		while (pos < length) {
-			char c = src.charAt(pos++);
+		consumeWhitespace(in);
+		int c;
+		while ((c = in.read()) != -1) {
 			switch (c) {
 			case '}':
 				return object;
@@ -142,9 +310,9 @@ public class JsonParser {
 				if (needsComma) {
 					throw new ParseException("Missing comma in object literal");
 				}
-				id = readString();
-				consume(':');
-				value = readValue();
+				id = readString(in, true);
+				consume(in, ':');
+				value = readValue(in);
 
 				long index = ScriptRuntime.indexFromString(id);
 				if (index < 0) {
@@ -158,55 +326,70 @@ public class JsonParser {
 			default:
 				throw new ParseException("Unexpected token in object literal");
 			}
-			consumeWhitespace();
+			consumeWhitespace(in);
 		}
 		throw new ParseException("Unterminated object literal");
 	}
 
-	private Object readArray() throws ParseException {
-		List<Object> list = new ArrayList<Object>();
+	private Object readArray(Input in) throws ParseException, IOException {
+		int start = in.valueCount;
 		boolean needsComma = false;
-		consumeWhitespace();
-		while (pos < length) {
-			char c = src.charAt(pos);
+		consumeWhitespace(in);
+		int c;
+		while ((c = in.peek()) != -1) {
 			switch (c) {
 			case ']':
-				pos += 1;
-				return cx.newArray(scope, list.toArray());
+				in.pos += 1;
+				return in.cx.newArray(scope, in.popValues(start));
 			case ',':
 				if (!needsComma) {
 					throw new ParseException(
 							"Unexpected comma in array literal");
 				}
 				needsComma = false;
-				pos += 1;
+				in.pos += 1;
 				break;
 			default:
 				if (needsComma) {
 					throw new ParseException("Missing comma in array literal");
 				}
-				list.add(readValue());
+				in.pushValue(readValue(in));
 				needsComma = true;
 			}
-			consumeWhitespace();
+			consumeWhitespace(in);
 		}
 		throw new ParseException("Unterminated array literal");
 	}
 
-	private String readString() throws ParseException {
-		StringBuilder b = new StringBuilder();
-		while (pos < length) {
-			char c = src.charAt(pos++);
+	private String readString(Input in, boolean key) throws ParseException,
+			IOException {
+		// a string without escapes that ends in the buffer is created from it
+		// directly
+		char[] buf = in.buf;
+		for (int i = in.pos; i < in.limit; i++) {
+			char c = buf[i];
+			if (c == '"') {
+				int start = in.pos;
+				in.pos = i + 1;
+				return key ? in.key(start, i) : new String(buf, start, i
+						- start);
+			}
+			if (c == '\\' || c <= '\u001F') {
+				break;
+			}
+		}
+		StringBuilder b = in.chars();
+		int c;
+		while ((c = in.read()) != -1) {
 			if (c <= '\u001F') {
 				throw new ParseException("String contains control character");
 			}
 			switch (c) {
 			case '\\':
-				if (pos >= length) {
-					throw new ParseException("Unterminated string");
-				}
-				c = src.charAt(pos++);
+				c = in.read();
 				switch (c) {
+				case -1:
+					throw new ParseException("Unterminated string");
 				case '"':
 					b.append('"');
 					break;
@@ -232,61 +415,86 @@ public class JsonParser {
 					b.append('\t');
 					break;
 				case 'u':
-					if (length - pos < 5) {
-						throw new ParseException("Invalid character code: \\u"
-								+ src.substring(pos));
-					}
-					try {
-						b.append((char) Integer.parseInt(
-								src.substring(pos, pos + 4), 16));
-						pos += 4;
-					} catch (NumberFormatException nfx) {
-						throw new ParseException("Invalid character code: "
-								+ src.substring(pos, pos + 4));
-					}
+					b.append(readCharCode(in));
 					break;
 				default:
 					throw new ParseException(
-							"Unexcpected character in string: '\\" + c + "'");
+							"Unexcpected character in string: '\\" + (char) c
+									+ "'");
 				}
 				break;
 			case '"':
 				return b.toString();
 			default:
-				b.append(c);
+				b.append((char) c);
 				break;
 			}
 		}
 		throw new ParseException("Unterminated string literal");
 	}
 
-	private Number readNumber(char first) throws ParseException {
-		StringBuilder b = new StringBuilder();
+	private char readCharCode(Input in) throws ParseException, IOException {
+		char[] digits = new char[4];
+		for (int i = 0; i < 4; i++) {
+			int c = in.read();
+			if (c == -1) {
+				throw new ParseException("Invalid character code: \\u"
+						+ new String(digits, 0, i));
+			}
+			digits[i] = (char) c;
+		}
+		int code = 0;
+		for (char c : digits) {
+			int digit = Character.digit(c, 16);
+			if (digit < 0) {
+				throw new ParseException("Invalid character code: "
+						+ new String(digits));
+			}
+			code = (code << 4) | digit;
+		}
+		return (char) code;
+	}
+
+	private Number readNumber(Input in, char first) throws ParseException,
+			IOException {
+		StringBuilder b = in.chars();
 		b.append(first);
-		while (pos < length) {
-			char c = src.charAt(pos);
-			if (!Character.isDigit(c) && c != '-' && c != '+' && c != '.'
-					&& c != 'e' && c != 'E') {
+		boolean integer = true;
+		int c;
+		while ((c = in.peek()) != -1) {
+			if (c < '0' || c > '9') {
+				if (c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E'
+						&& !Character.isDigit((char) c)) {
+					break;
+				}
+				integer = false;
+			}
+			in.pos += 1;
+			b.append((char) c);
+		}
+		int numLength = b.length();
+		// check for leading zeroes
+		for (int i = 0; i < numLength; i++) {
+			char d = b.charAt(i);
+			if (Character.isDigit(d)) {
+				if (d == '0' && numLength > i + 1
+						&& Character.isDigit(b.charAt(i + 1))) {
+					throw new ParseException("Unsupported number format: " + b);
+				}
 				break;
 			}
-			pos += 1;
-			b.append(c);
+		}
+		int start = first == '-' ? 1 : 0;
+		if (integer && numLength > start && numLength - start <= 9) {
+			// small integers don't need Double.parseDouble
+			int value = 0;
+			for (int i = start; i < numLength; i++) {
+				value = value * 10 + (b.charAt(i) - '0');
+			}
+			return Integer.valueOf(first == '-' ? -value : value);
 		}
 		String num = b.toString();
-		int numLength = num.length();
 		try {
-			// check for leading zeroes
-			for (int i = 0; i < numLength; i++) {
-				char c = num.charAt(i);
-				if (Character.isDigit(c)) {
-					if (c == '0' && numLength > i + 1
-							&& Character.isDigit(num.charAt(i + 1))) {
-						throw new ParseException("Unsupported number format: "
-								+ num);
-					}
-					break;
-				}
-			}
 			final double dval = Double.parseDouble(num);
 			final int ival = (int) dval;
 			if (ival == dval) {
@@ -299,43 +507,37 @@ public class JsonParser {
 		}
 	}
 
-	private Boolean readTrue() throws ParseException {
-		if (length - pos < 3 || src.charAt(pos) != 'r'
-				|| src.charAt(pos + 1) != 'u' || src.charAt(pos + 2) != 'e') {
+	private Boolean readTrue(Input in) throws ParseException, IOException {
+		if (in.read() != 'r' || in.read() != 'u' || in.read() != 'e') {
 			throw new ParseException("Unexpected token: t");
 		}
-		pos += 3;
 		return Boolean.TRUE;
 	}
 
-	private Boolean readFalse() throws ParseException {
-		if (length - pos < 4 || src.charAt(pos) != 'a'
-				|| src.charAt(pos + 1) != 'l' || src.charAt(pos + 2) != 's'
-				|| src.charAt(pos + 3) != 'e') {
+	private Boolean readFalse(Input in) throws ParseException, IOException {
+		if (in.read() != 'a' || in.read() != 'l' || in.read() != 's'
+				|| in.read() != 'e') {
 			throw new ParseException("Unexpected token: f");
 		}
-		pos += 4;
 		return Boolean.FALSE;
 	}
 
-	private Object readNull() throws ParseException {
-		if (length - pos < 3 || src.charAt(pos) != 'u'
-				|| src.charAt(pos + 1) != 'l' || src.charAt(pos + 2) != 'l') {
+	private Object readNull(Input in) throws ParseException, IOException {
+		if (in.read() != 'u' || in.read() != 'l' || in.read() != 'l') {
 			throw new ParseException("Unexpected token: n");
 		}
-		pos += 3;
 		return null;
 	}
 
-	private void consumeWhitespace() {
-		while (pos < length) {
-			char c = src.charAt(pos);
+	private void consumeWhitespace(Input in) throws IOException {
+		int c;
+		while ((c = in.peek()) != -1) {
 			switch (c) {
 			case ' ':
 			case '\t':
 			case '\r':
 			case '\n':
-				pos += 1;
+				in.pos += 1;
 				break;
 			default:
 				return;
@@ -343,17 +545,19 @@ public class JsonParser {
 		}
 	}
 
-	private void consume(char token) throws ParseException {
-		consumeWhitespace();
-		if (pos >= length) {
+	private void consume(Input in, char token) throws ParseException,
+			IOException {
+		consumeWhitespace(in);
+		int c = in.read();
+		if (c == -1) {
 			throw new ParseException("Expected " + token
 					+ " but reached end of stream");
 		}
-		char c = src.charAt(pos++);
 		if (c == token) {
 			return;
 		} else {
-			throw new ParseException("Expected " + token + " found " + c);
+			throw new ParseException("Expected " + token + " found "
+					+ (char) c);
 		}
 	}
 
@@ -2375,11 +2375,13 @@ class BodyCodegen {
 				break;
 			default:
 				if (child.getType() == Token.STRING) {
-					addScriptRuntimeInvoke("add", "(Ljava/lang/String;"
-							+ "Ljava/lang/Object;" + ")Ljava/lang/String;");
+					addScriptRuntimeInvoke("concatString",
+							"(Ljava/lang/String;" + "Ljava/lang/Object;"
+									+ ")Ljava/lang/CharSequence;");
 				} else if (child.getNext().getType() == Token.STRING) {
-					addScriptRuntimeInvoke("add", "(Ljava/lang/Object;"
-							+ "Ljava/lang/String;" + ")Ljava/lang/String;");
+					addScriptRuntimeInvoke("concatString",
+							"(Ljava/lang/Object;" + "Ljava/lang/String;"
+									+ ")Ljava/lang/CharSequence;");
 				} else {
 					cfw.addALoad(contextLocal);
 					addScriptRuntimeInvoke("add", "(Ljava/lang/Object;"
@@ -41,7 +41,7 @@
 
 package org.mozilla.javascript.regexp;
 
-import java.io.Serializable;
+import java.util.ArrayList;
 
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Function;
@@ -82,57 +82,57 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 
 	private static final boolean debug = false;
 
-	private static final byte REOP_EMPTY = 0; /*
+	static final byte REOP_EMPTY = 0; /*
 											 * match rest of input against rest
 											 * of r.e.
 											 */
-	private static final byte REOP_ALT = 1; /*
+	static final byte REOP_ALT = 1; /*
 											 * alternative subexpressions in kid
 											 * and next
 											 */
-	private static final byte REOP_BOL = 2; /*
+	static final byte REOP_BOL = 2; /*
 											 * beginning of input (or line if
 											 * multiline)
 											 */
-	private static final byte REOP_EOL = 3; /*
+	static final byte REOP_EOL = 3; /*
 											 * end of input (or line if
 											 * multiline)
 											 */
-	private static final byte REOP_WBDRY = 4; /* match "" at word boundary */
-	private static final byte REOP_WNONBDRY = 5; /* match "" at word non-boundary */
-	private static final byte REOP_QUANT = 6; /* quantified atom: atom{1,2} */
-	private static final byte REOP_STAR = 7; /* zero or more occurrences of kid */
-	private static final byte REOP_PLUS = 8; /* one or more occurrences of kid */
-	private static final byte REOP_OPT = 9; /* optional subexpression in kid */
-	private static final byte REOP_LPAREN = 10; /*
+	static final byte REOP_WBDRY = 4; /* match "" at word boundary */
+	static final byte REOP_WNONBDRY = 5; /* match "" at word non-boundary */
+	static final byte REOP_QUANT = 6; /* quantified atom: atom{1,2} */
+	static final byte REOP_STAR = 7; /* zero or more occurrences of kid */
+	static final byte REOP_PLUS = 8; /* one or more occurrences of kid */
+	static final byte REOP_OPT = 9; /* optional subexpression in kid */
+	static final byte REOP_LPAREN = 10; /*
 												 * left paren bytecode: kid is
 												 * u.num'th sub-regexp
 												 */
-	private static final byte REOP_RPAREN = 11; /* right paren bytecode */
-	private static final byte REOP_DOT = 12; /* stands for any character */
+	static final byte REOP_RPAREN = 11; /* right paren bytecode */
+	static final byte REOP_DOT = 12; /* stands for any character */
 	// private static final byte REOP_CCLASS = 13; /* character class: [a-f] */
-	private static final byte REOP_DIGIT = 14; /* match a digit char: [0-9] */
-	private static final byte REOP_NONDIGIT = 15; /*
+	static final byte REOP_DIGIT = 14; /* match a digit char: [0-9] */
+	static final byte REOP_NONDIGIT = 15; /*
 												 * match a non-digit char:
 												 * [^0-9]
 												 */
-	private static final byte REOP_ALNUM = 16; /*
+	static final byte REOP_ALNUM = 16; /*
 												 * match an alphanumeric char:
 												 * [0-9a-z_A-Z]
 												 */
-	private static final byte REOP_NONALNUM = 17; /*
+	static final byte REOP_NONALNUM = 17; /*
 												 * match a non-alphanumeric
 												 * char: [^0-9a-z_A-Z]
 												 */
-	private static final byte REOP_SPACE = 18; /* match a whitespace char */
-	private static final byte REOP_NONSPACE = 19; /* match a non-whitespace char */
-	private static final byte REOP_BACKREF = 20; /*
+	static final byte REOP_SPACE = 18; /* match a whitespace char */
+	static final byte REOP_NONSPACE = 19; /* match a non-whitespace char */
+	static final byte REOP_BACKREF = 20; /*
 												 * back-reference (e.g., \1) to
 												 * a parenthetical
 												 */
-	private static final byte REOP_FLAT = 21; /* match a flat string */
-	private static final byte REOP_FLAT1 = 22; /* match a single char */
-	private static final byte REOP_JUMP = 23; /* for deoptimized closure loops */
+	static final byte REOP_FLAT = 21; /* match a flat string */
+	static final byte REOP_FLAT1 = 22; /* match a single char */
+	static final byte REOP_JUMP = 23; /* for deoptimized closure loops */
 	// private static final byte REOP_DOTSTAR = 24; /* optimize .* to use a
 	// single opcode */
 	// private static final byte REOP_ANCHOR = 25; /* like .* but skips left
@@ -141,18 +141,18 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 	// pattern */
 	// private static final byte REOP_UCFLAT = 27; /* flat Unicode string; len
 	// immediate counts chars */
-	private static final byte REOP_UCFLAT1 = 28; /* single Unicode char */
+	static final byte REOP_UCFLAT1 = 28; /* single Unicode char */
 	// private static final byte REOP_UCCLASS = 29; /* Unicode character class,
 	// vector of chars to match */
 	// private static final byte REOP_NUCCLASS = 30; /* negated Unicode
 	// character class */
 	// private static final byte REOP_BACKREFi = 31; /* case-independent
 	// REOP_BACKREF */
-	private static final byte REOP_FLATi = 32; /* case-independent REOP_FLAT */
-	private static final byte REOP_FLAT1i = 33; /* case-independent REOP_FLAT1 */
+	static final byte REOP_FLATi = 32; /* case-independent REOP_FLAT */
+	static final byte REOP_FLAT1i = 33; /* case-independent REOP_FLAT1 */
 	// private static final byte REOP_UCFLATi = 34; /* case-independent
 	// REOP_UCFLAT */
-	private static final byte REOP_UCFLAT1i = 35; /* case-independent REOP_UCFLAT1 */
+	static final byte REOP_UCFLAT1i = 35; /* case-independent REOP_UCFLAT1 */
 	// private static final byte REOP_ANCHOR1 = 36; /* first-char discriminating
 	// REOP_ANCHOR */
 	// private static final byte REOP_NCCLASS = 37; /* negated 8-bit character
@@ -163,45 +163,45 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 	// of REOP_LPAREN */
 	// private static final byte REOP_RPARENNON = 40; /* non-capturing version
 	// of REOP_RPAREN */
-	private static final byte REOP_ASSERT = 41; /*
+	static final byte REOP_ASSERT = 41; /*
 												 * zero width positive lookahead
 												 * assertion
 												 */
-	private static final byte REOP_ASSERT_NOT = 42; /*
+	static final byte REOP_ASSERT_NOT = 42; /*
 													 * zero width negative
 													 * lookahead assertion
 													 */
-	private static final byte REOP_ASSERTTEST = 43; /*
+	static final byte REOP_ASSERTTEST = 43; /*
 													 * sentinel at end of
 													 * assertion child
 													 */
-	private static final byte REOP_ASSERTNOTTEST = 44; /*
+	static final byte REOP_ASSERTNOTTEST = 44; /*
 														 * sentinel at end of
 														 * !assertion child
 														 */
-	private static final byte REOP_MINIMALSTAR = 45; /* non-greedy version of * */
-	private static final byte REOP_MINIMALPLUS = 46; /* non-greedy version of + */
-	private static final byte REOP_MINIMALOPT = 47; /* non-greedy version of ? */
-	private static final byte REOP_MINIMALQUANT = 48; /* non-greedy version of {} */
-	private static final byte REOP_ENDCHILD = 49; /*
+	static final byte REOP_MINIMALSTAR = 45; /* non-greedy version of * */
+	static final byte REOP_MINIMALPLUS = 46; /* non-greedy version of + */
+	static final byte REOP_MINIMALOPT = 47; /* non-greedy version of ? */
+	static final byte REOP_MINIMALQUANT = 48; /* non-greedy version of {} */
+	static final byte REOP_ENDCHILD = 49; /*
 												 * sentinel at end of quantifier
 												 * child
 												 */
-	private static final byte REOP_CLASS = 50; /* character class with index */
-	private static final byte REOP_REPEAT = 51; /*
+	static final byte REOP_CLASS = 50; /* character class with index */
+	static final byte REOP_REPEAT = 51; /*
 												 * directs execution of greedy
 												 * quantifier
 												 */
-	private static final byte REOP_MINIMALREPEAT = 52; /*
+	static final byte REOP_MINIMALREPEAT = 52; /*
 														 * directs execution of
 														 * non-greedy quantifier
 														 */
-	private static final byte REOP_END = 53;
+	static final byte REOP_END = 53;
 
 	public static void init(Context cx, Scriptable scope, boolean sealed) {
 
 		NativeRegExp proto = new NativeRegExp();
-		proto.re = (RECompiled) compileRE(cx, "", null, false);
+		proto.re = (RECompiled) RegExpImpl.compile(cx, "", null, false);
 		proto.activatePrototypeMap(MAX_PROTOTYPE_ID);
 		proto.setParentScope(scope);
 		proto.setPrototype(getObjectPrototype(scope));
@@ -270,7 +270,7 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 		String s = args.length == 0 ? "" : ScriptRuntime.toString(args[0]);
 		String global = args.length > 1 && args[1] != Undefined.instance ? ScriptRuntime
 				.toString(args[1]) : null;
-		this.re = (RECompiled) compileRE(cx, s, global, false);
+		this.re = (RECompiled) RegExpImpl.compile(cx, s, global, false);
 		this.lastIndex = 0;
 		return this;
 	}
@@ -385,6 +385,10 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 			System.out.println();
 		}
 		regexp.parenCount = state.parenCount;
+		if (state.warnings != null) {
+			regexp.warnings = state.warnings.toArray(new String[state.warnings
+					.size()]);
+		}
 
 		// If re starts with literal, init anchorCh accordingly
 		switch (regexp.program[0]) {
@@ -416,15 +420,15 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 		return '0' <= c && c <= '9';
 	}
 
-	private static boolean isWord(char c) {
+	static boolean isWord(char c) {
 		return Character.isLetter(c) || isDigit(c) || c == '_';
 	}
 
-	private static boolean isLineTerm(char c) {
+	static boolean isLineTerm(char c) {
 		return ScriptRuntime.isJSLineTerminator(c);
 	}
 
-	private static boolean isREWhiteSpace(int c) {
+	static boolean isREWhiteSpace(int c) {
 		return ScriptRuntime.isJSWhitespaceOrLineTerminator(c);
 	}
 
@@ -437,7 +441,7 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 	 * equal to decimal 128 and cu's code point value is less than decimal 128,
 	 * then return ch. 6. Return cu.
 	 */
-	private static char upcase(char ch) {
+	static char upcase(char ch) {
 		if (ch < 128) {
 			if ('a' <= ch && ch <= 'z') {
 				return (char) (ch + ('A' - 'a'));
@@ -810,7 +814,7 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 					 * compatibility reasons. (see
 					 * http://bugzilla.mozilla.org/show_bug.cgi?id=141078)
 					 */
-					reportWarning(state.cx, "msg.bad.backref", "");
+					reportWarning(state, "msg.bad.backref", "");
 					/* octal escape */
 					num = 0;
 					while (state.cp < state.cpend) {
@@ -840,7 +844,7 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 					num = getDecimalValue(c, state, 0xFFFF,
 							"msg.overlarge.backref");
 					if (num > state.parenCount)
-						reportWarning(state.cx, "msg.bad.backref", "");
+						reportWarning(state, "msg.bad.backref", "");
 					/*
 					 * n > 9 or > count of parentheses, then treat as octal
 					 * instead.
@@ -1152,7 +1156,7 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 		addIndex(array, from, pc - from);
 	}
 
-	private static int getOffset(byte[] array, int pc) {
+	static int getOffset(byte[] array, int pc) {
 		return getIndex(array, pc);
 	}
 
@@ -1166,12 +1170,12 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 		return pc + 2;
 	}
 
-	private static int getIndex(byte[] array, int pc) {
+	static int getIndex(byte[] array, int pc) {
 		return ((array[pc] & 0xFF) << 8) | (array[pc + 1] & 0xFF);
 	}
 
-	private static final int OFFSET_LEN = 2;
-	private static final int INDEX_LEN = 2;
+	static final int OFFSET_LEN = 2;
+	static final int INDEX_LEN = 2;
 
 	private static int emitREBytecode(CompilerState state, RECompiled re,
 			int pc, RENode t) {
@@ -1422,16 +1426,16 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 	}
 
 	/* Compile the source of the class into a RECharSet */
-	private static void processCharSet(REGlobalData gData, RECharSet charSet) {
+	private static void processCharSet(RECompiled re, RECharSet charSet) {
 		synchronized (charSet) {
 			if (!charSet.converted) {
-				processCharSetImpl(gData, charSet);
+				processCharSetImpl(re, charSet);
 				charSet.converted = true;
 			}
 		}
 	}
 
-	private static void processCharSetImpl(REGlobalData gData, RECharSet charSet) {
+	private static void processCharSetImpl(RECompiled re, RECharSet charSet) {
 		int src = charSet.startIndex;
 		int end = src + charSet.strlength;
 
@@ -1450,17 +1454,17 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 		if (src == end)
 			return;
 
-		if (gData.regexp.source[src] == '^') {
+		if (re.source[src] == '^') {
 			charSet.sense = false;
 			++src;
 		}
 
 		while (src != end) {
 			nDigits = 2;
-			switch (gData.regexp.source[src]) {
+			switch (re.source[src]) {
 			case '\\':
 				++src;
-				c = gData.regexp.source[src++];
+				c = re.source[src++];
 				switch (c) {
 				case 'b':
 					thisCh = 0x8;
@@ -1482,8 +1486,8 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 					break;
 				case 'c':
 					if (((src + 1) < end)
-							&& isWord(gData.regexp.source[src + 1]))
-						thisCh = (char) (gData.regexp.source[src++] & 0x1F);
+							&& isWord(re.source[src + 1]))
+						thisCh = (char) (re.source[src++] & 0x1F);
 					else {
 						--src;
 						thisCh = '\\';
@@ -1495,7 +1499,7 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 				case 'x':
 					n = 0;
 					for (i = 0; (i < nDigits) && (src < end); i++) {
-						c = gData.regexp.source[src++];
+						c = re.source[src++];
 						int digit = toASCIIHexDigit(c);
 						if (digit < 0) {
 							/*
@@ -1524,11 +1528,11 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 					 * ranges, but supported here for backwards compatibility.
 					 */
 					n = (c - '0');
-					c = gData.regexp.source[src];
+					c = re.source[src];
 					if ('0' <= c && c <= '7') {
 						src++;
 						n = 8 * n + (c - '0');
-						c = gData.regexp.source[src];
+						c = re.source[src];
 						if ('0' <= c && c <= '7') {
 							src++;
 							i = 8 * n + (c - '0');
@@ -1578,12 +1582,12 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 				break;
 
 			default:
-				thisCh = gData.regexp.source[src++];
+				thisCh = re.source[src++];
 				break;
 
 			}
 			if (inRange) {
-				if ((gData.regexp.flags & JSREG_FOLD) != 0) {
+				if ((re.flags & JSREG_FOLD) != 0) {
 					addCharacterRangeToCharSet(charSet, upcase(rangeStart),
 							upcase(thisCh));
 					addCharacterRangeToCharSet(charSet, downcase(rangeStart),
@@ -1593,14 +1597,14 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 				}
 				inRange = false;
 			} else {
-				if ((gData.regexp.flags & JSREG_FOLD) != 0) {
+				if ((re.flags & JSREG_FOLD) != 0) {
 					addCharacterToCharSet(charSet, upcase(thisCh));
 					addCharacterToCharSet(charSet, downcase(thisCh));
 				} else {
 					addCharacterToCharSet(charSet, thisCh);
 				}
 				if (src < (end - 1)) {
-					if (gData.regexp.source[src] == '-') {
+					if (re.source[src] == '-') {
 						++src;
 						inRange = true;
 						rangeStart = thisCh;
@@ -1614,10 +1618,10 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 	 * Initialize the character set if it this is the first call. Test the bit -
 	 * if the ^ flag was specified, non-inclusion is a success
 	 */
-	private static boolean classMatcher(REGlobalData gData, RECharSet charSet,
+	static boolean classMatcher(RECompiled re, RECharSet charSet,
 			char ch) {
 		if (!charSet.converted) {
-			processCharSet(gData, charSet);
+			processCharSet(re, charSet);
 		}
 
 		int byteIndex = ch / 8;
@@ -1840,7 +1844,7 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 				int index = getIndex(program, pc);
 				pc += INDEX_LEN;
 				if (gData.cp != end) {
-					if (classMatcher(gData, gData.regexp.classList[index],
+					if (classMatcher(gData.regexp, gData.regexp.classList[index],
 							input.charAt(gData.cp))) {
 						gData.cp++;
 						result = true;
@@ -2130,7 +2134,8 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 	}
 
 	private static boolean matchRegExp(REGlobalData gData, RECompiled re,
-			String input, int start, int end, boolean multiline) {
+			RegExpMatcher compiled, String input, int start, int end,
+			boolean multiline) {
 		if (re.parenCount != 0) {
 			gData.parens = new long[re.parenCount];
 		} else {
@@ -2145,6 +2150,12 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 		gData.regexp = re;
 		gData.lastParen = 0;
 
+		RegExpMatcher matcher = null;
+		if (compiled != null) {
+			matcher = compiled.newMatcher(re, input, end, gData.parens,
+					multiline);
+		}
+
 		int anchorCh = gData.regexp.anchorCh;
 		//
 		// have to include the position beyond the last character
@@ -2173,7 +2184,16 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 			for (int j = 0; j < re.parenCount; j++) {
 				gData.set_parens(j, -1, 0);
 			}
-			boolean result = executeREBytecode(gData, input, end);
+			boolean result;
+			if (matcher != null) {
+				int index = matcher.match(i);
+				result = index >= 0;
+				if (result) {
+					gData.cp = index;
+				}
+			} else {
+				result = executeREBytecode(gData, input, end);
+			}
 
 			gData.backTrackStackTop = null;
 			gData.stateStackTop = null;
@@ -2199,7 +2219,12 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 		//
 		// Call the recursive matcher to do the real work.
 		//
-		boolean matches = matchRegExp(gData, re, str, start, end, res.multiline);
+		RegExpMatcher compiled = null;
+		if (cx.hasFeature(Context.FEATURE_COMPILE_REGEXP)) {
+			compiled = RegExpCodegen.getMatcher(re);
+		}
+		boolean matches = matchRegExp(gData, re, compiled, str, start, end,
+				res.multiline);
 		if (!matches) {
 			if (matchType != PREFIX)
 				return null;
@@ -2315,6 +2340,18 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 		return re.flags;
 	}
 
+	private static void reportWarning(CompilerState state, String messageId,
+			String arg) {
+		// kept whether reported or not, a Context in strict mode may get the
+		// expression from the cache later
+		if (state.warnings == null) {
+			state.warnings = new ArrayList<String>();
+		}
+		state.warnings.add(messageId);
+		state.warnings.add(arg);
+		reportWarning(state.cx, messageId, arg);
+	}
+
 	private static void reportWarning(Context cx, String messageId, String arg) {
 		if (cx.hasFeature(Context.FEATURE_STRICT_MODE)) {
 			String msg = ScriptRuntime.getMessage1(messageId, arg);
@@ -2322,6 +2359,19 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 		}
 	}
 
+	/**
+	 * Report the warnings of compiling a regular expression again, for an
+	 * expression that was compiled earlier for another Context.
+	 */
+	static void reportWarnings(Context cx, RECompiled regexp) {
+		String[] warnings = regexp.warnings;
+		if (warnings != null) {
+			for (int i = 0; i < warnings.length; i += 2) {
+				reportWarning(cx, warnings[i], warnings[i + 1]);
+			}
+		}
+	}
+
 	private static void reportError(String messageId, String arg) {
 		String msg = ScriptRuntime.getMessage1(messageId, arg);
 		throw ScriptRuntime.constructError("SyntaxError", msg);
@@ -2575,18 +2625,6 @@ public class NativeRegExp extends IdScriptableObject implements Function {
 
 } // class NativeRegExp
 
-class RECompiled implements Serializable {
-	static final long serialVersionUID = -6144956577595844213L;
-
-	char[] source; /* locked source string, sans // */
-	int parenCount; /* number of parenthesized submatches */
-	int flags; /* flags */
-	byte[] program; /* regular expression bytecode */
-	int classCount; /* count [...] bitmaps */
-	RECharSet[] classList; /* list of [...] bitmaps */
-	int anchorCh = -1; /* if >= 0, then re starts with this literal char */
-}
-
 class RENode {
 
 	RENode(byte op) {
@@ -2642,6 +2680,7 @@ class CompilerState {
 	int classCount; /* number of [] encountered */
 	int progLength; /* estimated bytecode length */
 	RENode result;
+	ArrayList<String> warnings; /* message ids and arguments */
 }
 
 class REProgState {
@@ -2722,28 +2761,3 @@ class REGlobalData {
 	}
 
 }
-
-/*
- * This struct holds a bitmap representation of a class from a regexp. There's a
- * list of these referenced by the classList field in the NativeRegExp struct
- * below. The initial state has startIndex set to the offset in the original
- * regexp source of the beginning of the class contents. The first use of the
- * class converts the source representation into a bitmap.
- */
-final class RECharSet implements Serializable {
-	static final long serialVersionUID = 7931787979395898394L;
-
-	RECharSet(int length, int startIndex, int strlength) {
-		this.length = length;
-		this.startIndex = startIndex;
-		this.strlength = strlength;
-	}
-
-	int length;
-	int startIndex;
-	int strlength;
-
-	volatile transient boolean converted;
-	volatile transient boolean sense;
-	volatile transient byte[] bits;
-}
@@ -0,0 +1,842 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1998.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.mozilla.javascript.regexp;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mozilla.classfile.ByteCode;
+import org.mozilla.classfile.ClassFileWriter;
+import org.mozilla.javascript.GeneratedClassLoader;
+import org.mozilla.javascript.SecurityController;
+
+/**
+ * Compiles the program of a regular expression to a subclass of
+ * {@link RegExpMatcher}, so a match runs as JVM bytecode instead of through
+ * the backtracking interpreter of {@link NativeRegExp}.
+ * <p>
+ * Every position in a sequence of terms that backtracking can return to
+ * becomes a method that matches the rest of the expression from there, so
+ * backtracking is a return from that method and the state to restore lives
+ * in its locals. Quantifiers repeat in a loop and only call the method of the
+ * rest of the expression for each count they may give back.
+ * <p>
+ * Programs with quantified terms other than characters, classes and literal
+ * strings, with groups in quantified terms or in lookaheads, or with a
+ * quantifier that has a maximum of 0 are not compiled, for them
+ * {@link #getMatcher(RECompiled)} returns null and the interpreter is used.
+ * <p>
+ * The matcher is kept by the {@link RECompiled}, so the expressions that share
+ * a compiled expression through the cache of {@link RegExpImpl}, those with
+ * equal source and flags, also share their class.
+ */
+final class RegExpCodegen {
+
+	private static final String MATCHER_CLASS = "org.mozilla.javascript.regexp.RegExpMatcher";
+
+	private static final AtomicInteger serial = new AtomicInteger();
+
+	/**
+	 * Return the matcher of the compiled expression, compiling it if it is
+	 * not compiled yet, or null if it can't be compiled. The matcher is kept
+	 * by the RECompiled, so it is shared with everything that shares the
+	 * expression through the cache of {@link RegExpImpl}.
+	 */
+	static RegExpMatcher getMatcher(RECompiled re) {
+		if (!re.matcherChecked) {
+			synchronized (re) {
+				if (!re.matcherChecked) {
+					re.matcher = compile(re);
+					re.matcherChecked = true;
+				}
+			}
+		}
+		return re.matcher;
+	}
+
+	private static RegExpMatcher compile(RECompiled re) {
+		RegExpCodegen codegen = new RegExpCodegen(re);
+		Seq top = codegen.parseSeq();
+		if (top == null || codegen.program[codegen.pc] != NativeRegExp.REOP_END) {
+			return null;
+		}
+		link(top, null, 0);
+
+		String className = "org.mozilla.javascript.gen.RegExp_"
+				+ serial.incrementAndGet();
+		byte[] bytes;
+		try {
+			bytes = codegen.generate(className, top);
+		} catch (ClassFileWriter.ClassFileFormatException ex) {
+			// a method is too large
+			return null;
+		}
+
+		GeneratedClassLoader loader = SecurityController.createLoader(
+				RegExpMatcher.class.getClassLoader(), null);
+		Class<?> cl = loader.defineClass(className, bytes);
+		loader.linkClass(cl);
+		try {
+			return (RegExpMatcher) cl.getConstructor().newInstance();
+		} catch (Exception ex) {
+			throw new RuntimeException("Unable to instantiate compiled class:"
+					+ ex.toString(), ex);
+		}
+	}
+
+	/**
+	 * A term of the expression.
+	 */
+	private static final class Node {
+		final byte op;
+		// the character, class, capture or source index
+		int index;
+		// the length of a literal string
+		int length;
+		// the alternatives, lookahead or quantified terms
+		Seq kid;
+		Seq kid2;
+		int min;
+		int max;
+		boolean greedy;
+
+		Node(byte op) {
+			this.op = op;
+		}
+	}
+
+	/**
+	 * A sequence of terms and what to match after it: the terms from
+	 * <code>nextIndex</code> of <code>next</code> or nothing if that is null.
+	 */
+	private static final class Seq {
+		final ArrayList<Node> nodes = new ArrayList<Node>();
+		Seq next;
+		int nextIndex;
+		// the ids of the methods matching from each index, 0 if there is none
+		int[] methodIds;
+	}
+
+	private final RECompiled re;
+	private final byte[] program;
+	private int pc;
+
+	private ClassFileWriter cfw;
+	private String className;
+	private final ArrayList<Seq> pendingSeqs = new ArrayList<Seq>();
+	private final ArrayList<Integer> pendingIndexes = new ArrayList<Integer>();
+	private int methodCount;
+
+	// locals of the generated methods
+	private static final int THIS = 0, CP = 1, INPUT = 2, END = 3,
+			FIRST_TEMP = 4;
+	private int localTop;
+	private int failLabel;
+	private boolean failUsed;
+
+	private RegExpCodegen(RECompiled re) {
+		this.re = re;
+		this.program = re.program;
+	}
+
+	/**
+	 * Parse the terms up to the op that ends the sequence, or return null if
+	 * the program can't be compiled.
+	 */
+	private Seq parseSeq() {
+		Seq seq = new Seq();
+		for (;;) {
+			byte op = program[pc];
+			Node node = new Node(op);
+			switch (op) {
+			case NativeRegExp.REOP_END:
+			case NativeRegExp.REOP_JUMP:
+			case NativeRegExp.REOP_ENDCHILD:
+			case NativeRegExp.REOP_ASSERTTEST:
+			case NativeRegExp.REOP_ASSERTNOTTEST:
+				return seq;
+
+			case NativeRegExp.REOP_EMPTY:
+				pc++;
+				continue;
+
+			case NativeRegExp.REOP_BOL:
+			case NativeRegExp.REOP_EOL:
+			case NativeRegExp.REOP_WBDRY:
+			case NativeRegExp.REOP_WNONBDRY:
+			case NativeRegExp.REOP_DOT:
+			case NativeRegExp.REOP_DIGIT:
+			case NativeRegExp.REOP_NONDIGIT:
+			case NativeRegExp.REOP_ALNUM:
+			case NativeRegExp.REOP_NONALNUM:
+			case NativeRegExp.REOP_SPACE:
+			case NativeRegExp.REOP_NONSPACE:
+				pc++;
+				break;
+
+			case NativeRegExp.REOP_FLAT:
+			case NativeRegExp.REOP_FLATi:
+				node.index = index(pc + 1);
+				node.length = index(pc + 1 + NativeRegExp.INDEX_LEN);
+				pc += 1 + 2 * NativeRegExp.INDEX_LEN;
+				break;
+
+			case NativeRegExp.REOP_FLAT1:
+			case NativeRegExp.REOP_FLAT1i:
+				node.index = program[pc + 1] & 0xFF;
+				pc += 2;
+				break;
+
+			case NativeRegExp.REOP_UCFLAT1:
+			case NativeRegExp.REOP_UCFLAT1i:
+			case NativeRegExp.REOP_CLASS:
+			case NativeRegExp.REOP_BACKREF:
+			case NativeRegExp.REOP_LPAREN:
+			case NativeRegExp.REOP_RPAREN:
+				node.index = index(pc + 1);
+				pc += 1 + NativeRegExp.INDEX_LEN;
+				break;
+
+			case NativeRegExp.REOP_ALT: {
+				int nextAlt = target(pc + 1);
+				pc += 1 + NativeRegExp.OFFSET_LEN;
+				node.kid = parseSeq();
+				if (node.kid == null || program[pc] != NativeRegExp.REOP_JUMP)
+					return null;
+				int next = target(pc + 1);
+				pc = nextAlt;
+				node.kid2 = parseSeq();
+				if (node.kid2 == null
+						|| program[pc] != NativeRegExp.REOP_JUMP
+						|| target(pc + 1) != next)
+					return null;
+				pc = next;
+				break;
+			}
+
+			case NativeRegExp.REOP_ASSERT:
+			case NativeRegExp.REOP_ASSERT_NOT: {
+				int next = target(pc + 1);
+				pc += 1 + NativeRegExp.OFFSET_LEN;
+				node.kid = parseSeq();
+				// captures set in a lookahead are not restored when the
+				// terms after it fail
+				if (node.kid == null || hasCaptures(node.kid))
+					return null;
+				pc = next;
+				break;
+			}
+
+			case NativeRegExp.REOP_STAR:
+			case NativeRegExp.REOP_PLUS:
+			case NativeRegExp.REOP_OPT:
+			case NativeRegExp.REOP_QUANT:
+			case NativeRegExp.REOP_MINIMALSTAR:
+			case NativeRegExp.REOP_MINIMALPLUS:
+			case NativeRegExp.REOP_MINIMALOPT:
+			case NativeRegExp.REOP_MINIMALQUANT: {
+				pc++;
+				switch (op) {
+				case NativeRegExp.REOP_STAR:
+				case NativeRegExp.REOP_MINIMALSTAR:
+					node.min = 0;
+					node.max = -1;
+					break;
+				case NativeRegExp.REOP_PLUS:
+				case NativeRegExp.REOP_MINIMALPLUS:
+					node.min = 1;
+					node.max = -1;
+					break;
+				case NativeRegExp.REOP_OPT:
+				case NativeRegExp.REOP_MINIMALOPT:
+					node.min = 0;
+					node.max = 1;
+					break;
+				default:
+					node.min = index(pc);
+					node.max = index(pc + NativeRegExp.INDEX_LEN) - 1;
+					pc += 2 * NativeRegExp.INDEX_LEN;
+					break;
+				}
+				node.greedy = op == NativeRegExp.REOP_STAR
+						|| op == NativeRegExp.REOP_PLUS
+						|| op == NativeRegExp.REOP_OPT
+						|| op == NativeRegExp.REOP_QUANT;
+				int parenCount = index(pc);
+				pc += 2 * NativeRegExp.INDEX_LEN;
+				int next = target(pc);
+				pc += NativeRegExp.OFFSET_LEN;
+				node.kid = parseSeq();
+				if (node.kid == null || parenCount != 0 || node.max == 0)
+					return null;
+				node.length = fixedLength(node.kid);
+				if (node.length <= 0)
+					return null;
+				pc = next;
+				break;
+			}
+
+			default:
+				return null;
+			}
+			seq.nodes.add(node);
+		}
+	}
+
+	private int index(int at) {
+		return NativeRegExp.getIndex(program, at);
+	}
+
+	private int target(int at) {
+		return at + NativeRegExp.getOffset(program, at);
+	}
+
+	private static boolean hasCaptures(Seq seq) {
+		for (Node node : seq.nodes) {
+			if (node.op == NativeRegExp.REOP_LPAREN
+					|| (node.kid != null && hasCaptures(node.kid))
+					|| (node.kid2 != null && hasCaptures(node.kid2))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Return the number of characters the terms match if they are characters,
+	 * classes or literal strings, -1 otherwise.
+	 */
+	private static int fixedLength(Seq seq) {
+		int length = 0;
+		for (Node node : seq.nodes) {
+			if (isChar(node.op)) {
+				length++;
+			} else if (node.op == NativeRegExp.REOP_FLAT
+					|| node.op == NativeRegExp.REOP_FLATi) {
+				length += node.length;
+			} else {
+				return -1;
+			}
+		}
+		return length;
+	}
+
+	private static boolean isChar(byte op) {
+		switch (op) {
+		case NativeRegExp.REOP_DOT:
+		case NativeRegExp.REOP_DIGIT:
+		case NativeRegExp.REOP_NONDIGIT:
+		case NativeRegExp.REOP_ALNUM:
+		case NativeRegExp.REOP_NONALNUM:
+		case NativeRegExp.REOP_SPACE:
+		case NativeRegExp.REOP_NONSPACE:
+		case NativeRegExp.REOP_FLAT1:
+		case NativeRegExp.REOP_FLAT1i:
+		case NativeRegExp.REOP_UCFLAT1:
+		case NativeRegExp.REOP_UCFLAT1i:
+		case NativeRegExp.REOP_CLASS:
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Set what is matched after the sequence and after the sequences of its
+	 * alternatives and lookaheads.
+	 */
+	private static void link(Seq seq, Seq next, int nextIndex) {
+		seq.next = next;
+		seq.nextIndex = nextIndex;
+		seq.methodIds = new int[seq.nodes.size() + 1];
+		for (int i = 0; i != seq.nodes.size(); ++i) {
+			Node node = seq.nodes.get(i);
+			if (node.op == NativeRegExp.REOP_ALT) {
+				link(node.kid, seq, i + 1);
+				link(node.kid2, seq, i + 1);
+			} else if (node.op == NativeRegExp.REOP_ASSERT
+					|| node.op == NativeRegExp.REOP_ASSERT_NOT) {
+				link(node.kid, null, 0);
+			}
+		}
+	}
+
+	private byte[] generate(String className, Seq top) {
+		this.className = className;
+		cfw = new ClassFileWriter(className, MATCHER_CLASS, null);
+		cfw.setFlags((short) (ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_FINAL));
+
+		cfw.startMethod("<init>", "()V", ClassFileWriter.ACC_PUBLIC);
+		cfw.addALoad(THIS);
+		cfw.addInvoke(ByteCode.INVOKESPECIAL, MATCHER_CLASS, "<init>", "()V");
+		cfw.add(ByteCode.RETURN);
+		cfw.stopMethod((short) 1);
+
+		cfw.startMethod("create", "()L" + MATCHER_CLASS.replace('.', '/')
+				+ ";", ClassFileWriter.ACC_PROTECTED);
+		cfw.add(ByteCode.NEW, className);
+		cfw.add(ByteCode.DUP);
+		cfw.addInvoke(ByteCode.INVOKESPECIAL, className, "<init>", "()V");
+		cfw.add(ByteCode.ARETURN);
+		cfw.stopMethod((short) 1);
+
+		cfw.startMethod("match", "(I)I", ClassFileWriter.ACC_PROTECTED);
+		cfw.addALoad(THIS);
+		cfw.addILoad(CP);
+		cfw.addInvoke(ByteCode.INVOKESPECIAL, className, methodName(top, 0),
+				"(I)I");
+		cfw.add(ByteCode.IRETURN);
+		cfw.stopMethod((short) 2);
+
+		while (!pendingSeqs.isEmpty()) {
+			int last = pendingSeqs.size() - 1;
+			Seq seq = pendingSeqs.remove(last);
+			int index = pendingIndexes.remove(last).intValue();
+			generateMethod(seq, index);
+		}
+		return cfw.toByteArray();
+	}
+
+	/**
+	 * Return the name of the method matching the terms of the sequence from
+	 * the given index, adding it to the methods to generate if it is new.
+	 */
+	private String methodName(Seq seq, int index) {
+		int id = seq.methodIds[index];
+		if (id == 0) {
+			id = seq.methodIds[index] = ++methodCount;
+			pendingSeqs.add(seq);
+			pendingIndexes.add(Integer.valueOf(index));
+		}
+		return "m" + id;
+	}
+
+	private void generateMethod(Seq seq, int index) {
+		cfw.startMethod(methodName(seq, index), "(I)I",
+				ClassFileWriter.ACC_PRIVATE);
+		localTop = FIRST_TEMP;
+		failLabel = cfw.acquireLabel();
+		failUsed = false;
+		cfw.addALoad(THIS);
+		cfw.add(ByteCode.GETFIELD, MATCHER_CLASS, "input", "Ljava/lang/String;");
+		cfw.addAStore(INPUT);
+		cfw.addALoad(THIS);
+		cfw.add(ByteCode.GETFIELD, MATCHER_CLASS, "end", "I");
+		cfw.addIStore(END);
+
+		int size = seq.nodes.size();
+		int i = index;
+		for (; i != size; ++i) {
+			Node node = seq.nodes.get(i);
+			if (node.op == NativeRegExp.REOP_ALT
+					|| node.op == NativeRegExp.REOP_LPAREN
+					|| node.op == NativeRegExp.REOP_RPAREN
+					|| node.kid != null
+					&& node.op != NativeRegExp.REOP_ASSERT
+					&& node.op != NativeRegExp.REOP_ASSERT_NOT) {
+				// the rest of the sequence is matched by another method
+				generateBacktracking(node, seq, i + 1);
+				break;
+			}
+			generateTerm(node);
+		}
+		if (i == size) {
+			addMatchRest(seq, size);
+			cfw.add(ByteCode.IRETURN);
+		}
+		if (failUsed) {
+			cfw.markLabel(failLabel);
+			cfw.addPush(-1);
+			cfw.add(ByteCode.IRETURN);
+		}
+		cfw.stopMethod((short) localTop);
+	}
+
+	private int newLocal(int size) {
+		int local = localTop;
+		localTop += size;
+		return local;
+	}
+
+	private void addJumpToFail(int op) {
+		failUsed = true;
+		cfw.add(op, failLabel);
+	}
+
+	/**
+	 * Push the result of matching the terms of the sequence from the given
+	 * index at CP.
+	 */
+	private void addMatchRest(Seq seq, int index) {
+		while (seq != null && index == seq.nodes.size()) {
+			index = seq.nextIndex;
+			seq = seq.next;
+		}
+		if (seq == null) {
+			cfw.addILoad(CP);
+		} else {
+			cfw.addALoad(THIS);
+			cfw.addILoad(CP);
+			cfw.addInvoke(ByteCode.INVOKESPECIAL, className, methodName(seq,
+					index), "(I)I");
+		}
+	}
+
+	private void addIncrement(int local, int delta) {
+		if (0 <= delta && delta <= 127) {
+			cfw.add(ByteCode.IINC, local, delta);
+		} else {
+			cfw.addILoad(local);
+			cfw.addPush(delta);
+			cfw.add(ByteCode.IADD);
+			cfw.addIStore(local);
+		}
+	}
+
+	/**
+	 * Generate a term that can't be backtracked into: it advances CP past
+	 * what it matches or jumps to the fail label.
+	 */
+	private void generateTerm(Node node) {
+		byte op = node.op;
+		if (isChar(op)) {
+			cfw.addILoad(CP);
+			cfw.addILoad(END);
+			addJumpToFail(ByteCode.IF_ICMPGE);
+			generateCharTest(node, 0);
+			addIncrement(CP, 1);
+			return;
+		}
+		switch (op) {
+		case NativeRegExp.REOP_FLAT:
+		case NativeRegExp.REOP_FLATi:
+			if (node.length <= 16) {
+				generateLengthCheck(node.length);
+				generateCharTest(node, 0);
+				addIncrement(CP, node.length);
+			} else {
+				cfw.addALoad(THIS);
+				cfw.addPush(node.index);
+				cfw.addPush(node.length);
+				cfw.addILoad(CP);
+				cfw.addInvoke(ByteCode.INVOKEVIRTUAL, MATCHER_CLASS,
+						"matchFlat", "(III)I");
+				cfw.add(ByteCode.DUP);
+				cfw.addIStore(CP);
+				addJumpToFail(ByteCode.IFLT);
+			}
+			break;
+
+		case NativeRegExp.REOP_BACKREF:
+			cfw.addALoad(THIS);
+			cfw.addPush(node.index);
+			cfw.addILoad(CP);
+			cfw.addInvoke(ByteCode.INVOKEVIRTUAL, MATCHER_CLASS,
+					"matchBackref", "(II)I");
+			cfw.add(ByteCode.DUP);
+			cfw.addIStore(CP);
+			addJumpToFail(ByteCode.IFLT);
+			break;
+
+		case NativeRegExp.REOP_BOL:
+		case NativeRegExp.REOP_EOL:
+		case NativeRegExp.REOP_WBDRY:
+		case NativeRegExp.REOP_WNONBDRY: {
+			String name = op == NativeRegExp.REOP_BOL ? "atLineStart"
+					: op == NativeRegExp.REOP_EOL ? "atLineEnd"
+							: "atWordBoundary";
+			cfw.addALoad(THIS);
+			cfw.addILoad(CP);
+			cfw.addInvoke(ByteCode.INVOKEVIRTUAL, MATCHER_CLASS, name, "(I)Z");
+			addJumpToFail(op == NativeRegExp.REOP_WNONBDRY ? ByteCode.IFNE
+					: ByteCode.IFEQ);
+			break;
+		}
+
+		case NativeRegExp.REOP_ASSERT:
+		case NativeRegExp.REOP_ASSERT_NOT:
+			addMatchRest(node.kid, 0);
+			addJumpToFail(op == NativeRegExp.REOP_ASSERT ? ByteCode.IFLT
+					: ByteCode.IFGE);
+			break;
+
+		default:
+			throw new IllegalStateException(String.valueOf(op));
+		}
+	}
+
+	/**
+	 * Jump to the fail label unless there are at least the given number of
+	 * characters after CP.
+	 */
+	private void generateLengthCheck(int length) {
+		cfw.addILoad(END);
+		cfw.addILoad(CP);
+		cfw.add(ByteCode.ISUB);
+		cfw.addPush(length);
+		addJumpToFail(ByteCode.IF_ICMPLT);
+	}
+
+	/**
+	 * Test the characters at the given offset from CP against a character
+	 * term or literal string, the characters must be there.
+	 */
+	private void generateCharTest(Node node, int offset) {
+		byte op = node.op;
+		if (op == NativeRegExp.REOP_FLAT || op == NativeRegExp.REOP_FLATi) {
+			for (int i = 0; i != node.length; ++i) {
+				generateCharTest(op == NativeRegExp.REOP_FLATi,
+						re.source[node.index + i], offset + i);
+			}
+			return;
+		}
+		switch (op) {
+		case NativeRegExp.REOP_FLAT1:
+		case NativeRegExp.REOP_UCFLAT1:
+			generateCharTest(false, (char) node.index, offset);
+			return;
+		case NativeRegExp.REOP_FLAT1i:
+		case NativeRegExp.REOP_UCFLAT1i:
+			generateCharTest(true, (char) node.index, offset);
+			return;
+		case NativeRegExp.REOP_CLASS:
+			cfw.addALoad(THIS);
+			cfw.addPush(node.index);
+			addCharAt(offset);
+			cfw.addInvoke(ByteCode.INVOKEVIRTUAL, MATCHER_CLASS, "inClass",
+					"(IC)Z");
+			addJumpToFail(ByteCode.IFEQ);
+			return;
+		}
+		String name;
+		boolean negate = false;
+		switch (op) {
+		case NativeRegExp.REOP_DOT:
+			name = "isLineTerm";
+			negate = true;
+			break;
+		case NativeRegExp.REOP_DIGIT:
+		case NativeRegExp.REOP_NONDIGIT:
+			name = "isDigit";
+			negate = op == NativeRegExp.REOP_NONDIGIT;
+			break;
+		case NativeRegExp.REOP_ALNUM:
+		case NativeRegExp.REOP_NONALNUM:
+			name = "isWord";
+			negate = op == NativeRegExp.REOP_NONALNUM;
+			break;
+		case NativeRegExp.REOP_SPACE:
+		case NativeRegExp.REOP_NONSPACE:
+			name = "isSpace";
+			negate = op == NativeRegExp.REOP_NONSPACE;
+			break;
+		default:
+			throw new IllegalStateException(String.valueOf(op));
+		}
+		addCharAt(offset);
+		cfw.addInvoke(ByteCode.INVOKESTATIC, MATCHER_CLASS, name, "(C)Z");
+		addJumpToFail(negate ? ByteCode.IFNE : ByteCode.IFEQ);
+	}
+
+	private void generateCharTest(boolean fold, char c, int offset) {
+		addCharAt(offset);
+		if (fold) {
+			cfw.addInvoke(ByteCode.INVOKESTATIC, MATCHER_CLASS, "upcase",
+					"(C)C");
+			c = NativeRegExp.upcase(c);
+		}
+		cfw.addPush(c);
+		addJumpToFail(ByteCode.IF_ICMPNE);
+	}
+
+	private void addCharAt(int offset) {
+		cfw.addALoad(INPUT);
+		cfw.addILoad(CP);
+		if (offset != 0) {
+			cfw.addPush(offset);
+			cfw.add(ByteCode.IADD);
+		}
+		cfw.addInvoke(ByteCode.INVOKEVIRTUAL, "java/lang/String", "charAt",
+				"(I)C");
+	}
+
+	/**
+	 * Generate a term that is backtracked into when the terms of the sequence
+	 * from the given index fail to match.
+	 */
+	private void generateBacktracking(Node node, Seq seq, int next) {
+		switch (node.op) {
+		case NativeRegExp.REOP_ALT: {
+			int result = newLocal(1);
+			int matched = cfw.acquireLabel();
+			addMatchRest(node.kid, 0);
+			cfw.add(ByteCode.DUP);
+			cfw.addIStore(result);
+			cfw.add(ByteCode.IFGE, matched);
+			addMatchRest(node.kid2, 0);
+			cfw.add(ByteCode.IRETURN);
+			cfw.markLabel(matched);
+			cfw.addILoad(result);
+			cfw.add(ByteCode.IRETURN);
+			return;
+		}
+
+		case NativeRegExp.REOP_LPAREN:
+		case NativeRegExp.REOP_RPAREN: {
+			int old = newLocal(2);
+			int result = newLocal(1);
+			int matched = cfw.acquireLabel();
+			cfw.addALoad(THIS);
+			cfw.addPush(node.index);
+			if (node.op == NativeRegExp.REOP_LPAREN) {
+				cfw.addILoad(CP);
+				cfw.addPush(0);
+			} else {
+				int start = newLocal(1);
+				cfw.addALoad(THIS);
+				cfw.addPush(node.index);
+				cfw.addInvoke(ByteCode.INVOKEVIRTUAL, MATCHER_CLASS,
+						"parenStart", "(I)I");
+				cfw.add(ByteCode.DUP);
+				cfw.addIStore(start);
+				cfw.addILoad(CP);
+				cfw.addILoad(start);
+				cfw.add(ByteCode.ISUB);
+			}
+			cfw.addInvoke(ByteCode.INVOKEVIRTUAL, MATCHER_CLASS, "setParen",
+					"(III)J");
+			cfw.addLStore(old);
+			addMatchRest(seq, next);
+			cfw.add(ByteCode.DUP);
+			cfw.addIStore(result);
+			cfw.add(ByteCode.IFGE, matched);
+			cfw.addALoad(THIS);
+			cfw.addPush(node.index);
+			cfw.addLLoad(old);
+			cfw.addInvoke(ByteCode.INVOKEVIRTUAL, MATCHER_CLASS,
+					"restoreParen", "(IJ)V");
+			cfw.markLabel(matched);
+			cfw.addILoad(result);
+			cfw.add(ByteCode.IRETURN);
+			return;
+		}
+		}
+		generateQuantifier(node, seq, next);
+	}
+
+	private void generateQuantifier(Node node, Seq seq, int next) {
+		int count = newLocal(1);
+		int result = newLocal(1);
+		int matched = cfw.acquireLabel();
+		int loop = cfw.acquireLabel();
+		cfw.addPush(0);
+		cfw.addIStore(count);
+		if (node.greedy) {
+			// take as many as possible, then give them back one by one
+			int taken = cfw.acquireLabel();
+			int notMatched = failLabel;
+			boolean notMatchedUsed = failUsed;
+			failLabel = taken;
+			cfw.markLabel(loop);
+			if (node.max != -1) {
+				cfw.addILoad(count);
+				cfw.addPush(node.max);
+				cfw.add(ByteCode.IF_ICMPGE, taken);
+			}
+			generateKidTest(node, count);
+			cfw.add(ByteCode.GOTO, loop);
+			cfw.markLabel(taken);
+			failLabel = notMatched;
+			failUsed = notMatchedUsed;
+
+			int retry = cfw.acquireLabel();
+			cfw.markLabel(retry);
+			cfw.addILoad(count);
+			cfw.addPush(node.min);
+			addJumpToFail(ByteCode.IF_ICMPLT);
+			addMatchRest(seq, next);
+			cfw.add(ByteCode.DUP);
+			cfw.addIStore(result);
+			cfw.add(ByteCode.IFGE, matched);
+			addIncrement(CP, -node.length);
+			addIncrement(count, -1);
+			cfw.add(ByteCode.GOTO, retry);
+		} else {
+			// take the minimum, then one more each time the rest fails
+			int tryRest = cfw.acquireLabel();
+			if (node.min != 0) {
+				cfw.markLabel(loop);
+				cfw.addILoad(count);
+				cfw.addPush(node.min);
+				cfw.add(ByteCode.IF_ICMPGE, tryRest);
+				generateKidTest(node, count);
+				cfw.add(ByteCode.GOTO, loop);
+			}
+			cfw.markLabel(tryRest);
+			addMatchRest(seq, next);
+			cfw.add(ByteCode.DUP);
+			cfw.addIStore(result);
+			cfw.add(ByteCode.IFGE, matched);
+			if (node.max != -1) {
+				cfw.addILoad(count);
+				cfw.addPush(node.max);
+				addJumpToFail(ByteCode.IF_ICMPGE);
+			}
+			generateKidTest(node, count);
+			cfw.add(ByteCode.GOTO, tryRest);
+		}
+		cfw.markLabel(matched);
+		cfw.addILoad(result);
+		cfw.add(ByteCode.IRETURN);
+	}
+
+	/**
+	 * Match the quantified terms once at CP and advance CP and the count, or
+	 * jump to the fail label.
+	 */
+	private void generateKidTest(Node node, int count) {
+		generateLengthCheck(node.length);
+		int offset = 0;
+		for (Node kid : node.kid.nodes) {
+			generateCharTest(kid, offset);
+			offset += kid.op == NativeRegExp.REOP_FLAT
+					|| kid.op == NativeRegExp.REOP_FLATi ? kid.length : 1;
+		}
+		addIncrement(CP, node.length);
+		addIncrement(count, 1);
+	}
+}
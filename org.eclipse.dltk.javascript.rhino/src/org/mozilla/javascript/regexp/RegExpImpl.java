@@ -37,6 +37,11 @@
 
 package org.mozilla.javascript.regexp;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.mozilla.javascript.*;
 
 /**
@@ -44,12 +49,134 @@ import org.mozilla.javascript.*;
  */
 public class RegExpImpl implements RegExpProxy {
 
+	private static final int DEFAULT_CACHE_SIZE = 512;
+
+	// the compiled expressions shared by all Contexts, keyed by source and
+	// flags, changes are made holding its monitor
+	private static final LinkedHashMap<String, RECompiled> compiledCache = new LinkedHashMap<String, RECompiled>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = -2383390744520416286L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, RECompiled> eldest) {
+			return size() > maximumCacheSize;
+		}
+	};
+	private static int maximumCacheSize = DEFAULT_CACHE_SIZE;
+
+	private static final AtomicInteger cacheHits = new AtomicInteger();
+	private static final AtomicInteger cacheMisses = new AtomicInteger();
+
+	/**
+	 * Compile a regular expression, or return the compiled expression of an
+	 * earlier call with the same source and flags. Compiled expressions are
+	 * immutable, so they are shared by all scripts and Contexts. The warnings
+	 * of compiling the expression are reported to each Context that gets it
+	 * from the cache, as they depend on whether the Context is in strict
+	 * mode.
+	 */
+	static Object compile(Context cx, String source, String flags,
+			boolean flat) {
+		String key = (flat ? "F" : "R") + (flags == null ? "" : flags) + '/'
+				+ source;
+		RECompiled compiled;
+		synchronized (compiledCache) {
+			compiled = compiledCache.get(key);
+		}
+		if (compiled != null) {
+			cacheHits.incrementAndGet();
+			NativeRegExp.reportWarnings(cx, compiled);
+			return compiled;
+		}
+		cacheMisses.incrementAndGet();
+		compiled = (RECompiled) NativeRegExp.compileRE(cx, source, flags, flat);
+		if (compiled != null) {
+			synchronized (compiledCache) {
+				if (maximumCacheSize > 0) {
+					compiledCache.put(key, compiled);
+				}
+			}
+		}
+		return compiled;
+	}
+
+	/**
+	 * Return the maximum number of compiled regular expressions that are
+	 * kept, 0 if they are not cached.
+	 */
+	public static int getMaximumCacheSize() {
+		synchronized (compiledCache) {
+			return maximumCacheSize;
+		}
+	}
+
+	/**
+	 * Limit the number of compiled regular expressions that are kept. When
+	 * the limit is reached the least recently used expression is dropped.
+	 * 
+	 * @param maximumSize
+	 *            the maximum number of expressions or 0 to not cache them,
+	 *            the default is 512
+	 */
+	public static void setMaximumCacheSize(int maximumSize) {
+		if (maximumSize < 0)
+			throw new IllegalArgumentException();
+		synchronized (compiledCache) {
+			maximumCacheSize = maximumSize;
+			if (maximumSize == 0) {
+				compiledCache.clear();
+			} else {
+				Iterator<String> iter = compiledCache.keySet().iterator();
+				while (compiledCache.size() > maximumSize) {
+					iter.next();
+					iter.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Return the number of compiled regular expressions that are cached.
+	 */
+	public static int getCacheSize() {
+		synchronized (compiledCache) {
+			return compiledCache.size();
+		}
+	}
+
+	/**
+	 * Return the number of regular expressions that were found in the cache
+	 * since it was last emptied.
+	 */
+	public static int getCacheHitCount() {
+		return cacheHits.get();
+	}
+
+	/**
+	 * Return the number of regular expressions that were compiled since the
+	 * cache was last emptied.
+	 */
+	public static int getCacheMissCount() {
+		return cacheMisses.get();
+	}
+
+	/**
+	 * Drop all cached regular expressions and reset the counts.
+	 */
+	public static void clearCache() {
+		synchronized (compiledCache) {
+			compiledCache.clear();
+			cacheHits.set(0);
+			cacheMisses.set(0);
+		}
+	}
+
 	public boolean isRegExp(Scriptable obj) {
 		return obj instanceof NativeRegExp;
 	}
 
 	public Object compileRegExp(Context cx, String source, String flags) {
-		return NativeRegExp.compileRE(cx, source, flags, false);
+		return compile(cx, source, flags, false);
 	}
 
 	public Scriptable wrapRegExp(Context cx, Scriptable scope, Object compiled) {
@@ -123,7 +250,7 @@ public class RegExpImpl implements RegExpProxy {
 		Scriptable topScope = ScriptableObject.getTopLevelScope(scope);
 
 		if (args.length == 0) {
-			Object compiled = NativeRegExp.compileRE(cx, "", "", false);
+			Object compiled = compile(cx, "", "", false);
 			re = new NativeRegExp(topScope, compiled);
 		} else if (args[0] instanceof NativeRegExp) {
 			re = (NativeRegExp) args[0];
@@ -136,7 +263,7 @@ public class RegExpImpl implements RegExpProxy {
 			} else {
 				opt = null;
 			}
-			Object compiled = NativeRegExp.compileRE(cx, src, opt, forceFlat);
+			Object compiled = compile(cx, src, opt, forceFlat);
 			re = new NativeRegExp(topScope, compiled);
 		}
 
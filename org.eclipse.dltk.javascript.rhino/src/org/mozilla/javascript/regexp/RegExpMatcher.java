@@ -0,0 +1,197 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1998.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.mozilla.javascript.regexp;
+
+/**
+ * Base class of the classes {@link RegExpCodegen} generates from regular
+ * expression programs. The generated {@link #match(int)} tries to match the
+ * expression at one position of the input, it returns the index after the
+ * match or -1 if there is none.
+ * <p>
+ * An instance is created for every match from the instance kept by the
+ * RECompiled with {@link #create()}, the fields hold the state of that match.
+ * The generated classes are defined by their own class loader, so everything
+ * they use of this class is public or protected.
+ */
+public abstract class RegExpMatcher {
+
+	RECompiled regexp;
+
+	/** The string that is matched. */
+	protected String input;
+	/** The index after the last character that may be matched. */
+	protected int end;
+	/** The captures, see {@link REGlobalData#set_parens(int, int, int)}. */
+	protected long[] parens;
+	/** Whether ^ and $ also match at line terminators. */
+	protected boolean multiline;
+
+	protected RegExpMatcher() {
+	}
+
+	/**
+	 * Return a new instance of the generated class.
+	 */
+	protected abstract RegExpMatcher create();
+
+	/**
+	 * Match the expression starting at the given index of the input.
+	 *
+	 * @return the index after the match or -1 if the expression doesn't match
+	 *         at the index
+	 */
+	protected abstract int match(int cp);
+
+	final RegExpMatcher newMatcher(RECompiled regexp, String input, int end,
+			long[] parens, boolean multiline) {
+		RegExpMatcher matcher = create();
+		matcher.regexp = regexp;
+		matcher.input = input;
+		matcher.end = end;
+		matcher.parens = parens;
+		matcher.multiline = multiline
+				|| (regexp.flags & NativeRegExp.JSREG_MULTILINE) != 0;
+		return matcher;
+	}
+
+	protected static boolean isDigit(char c) {
+		return NativeRegExp.isDigit(c);
+	}
+
+	protected static boolean isWord(char c) {
+		return NativeRegExp.isWord(c);
+	}
+
+	protected static boolean isLineTerm(char c) {
+		return NativeRegExp.isLineTerm(c);
+	}
+
+	protected static boolean isSpace(char c) {
+		return NativeRegExp.isREWhiteSpace(c);
+	}
+
+	protected static char upcase(char c) {
+		return NativeRegExp.upcase(c);
+	}
+
+	/**
+	 * Return whether the character is in the class with the given index.
+	 */
+	protected final boolean inClass(int index, char c) {
+		return NativeRegExp.classMatcher(regexp, regexp.classList[index], c);
+	}
+
+	protected final boolean atLineStart(int cp) {
+		return cp == 0 || multiline && isLineTerm(input.charAt(cp - 1));
+	}
+
+	protected final boolean atLineEnd(int cp) {
+		return cp == end || multiline && isLineTerm(input.charAt(cp));
+	}
+
+	protected final boolean atWordBoundary(int cp) {
+		return (cp == 0 || !isWord(input.charAt(cp - 1)))
+				^ !(cp < end && isWord(input.charAt(cp)));
+	}
+
+	/**
+	 * Match the characters of the expression source with the given offset and
+	 * length, return the index after them or -1.
+	 */
+	protected final int matchFlat(int offset, int length, int cp) {
+		if (end - cp < length)
+			return -1;
+		char[] source = regexp.source;
+		if ((regexp.flags & NativeRegExp.JSREG_FOLD) != 0) {
+			for (int i = 0; i < length; i++) {
+				if (upcase(source[offset + i]) != upcase(input.charAt(cp + i)))
+					return -1;
+			}
+		} else {
+			for (int i = 0; i < length; i++) {
+				if (source[offset + i] != input.charAt(cp + i))
+					return -1;
+			}
+		}
+		return cp + length;
+	}
+
+	/**
+	 * Match the text of the capture with the given index, return the index
+	 * after it or -1.
+	 */
+	protected final int matchBackref(int index, int cp) {
+		int start = (int) parens[index];
+		if (start == -1)
+			return cp;
+		int length = (int) (parens[index] >>> 32);
+		if (end - cp < length)
+			return -1;
+		if ((regexp.flags & NativeRegExp.JSREG_FOLD) != 0) {
+			for (int i = 0; i < length; i++) {
+				if (upcase(input.charAt(start + i)) != upcase(input
+						.charAt(cp + i)))
+					return -1;
+			}
+		} else {
+			for (int i = 0; i < length; i++) {
+				if (input.charAt(start + i) != input.charAt(cp + i))
+					return -1;
+			}
+		}
+		return cp + length;
+	}
+
+	/**
+	 * Set the capture with the given index and return its previous value for
+	 * {@link #restoreParen(int, long)}.
+	 */
+	protected final long setParen(int index, int start, int length) {
+		long old = parens[index];
+		parens[index] = (start & 0xffffffffL) | ((long) length << 32);
+		return old;
+	}
+
+	protected final int parenStart(int index) {
+		return (int) parens[index];
+	}
+
+	protected final void restoreParen(int index, long value) {
+		parens[index] = value;
+	}
+}
@@ -0,0 +1,301 @@
+package org.mozilla.javascript.typedarrays;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.IdFunctionObject;
+import org.mozilla.javascript.IdScriptableObject;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
+import org.mozilla.javascript.Wrapper;
+
+/**
+ * The ArrayBuffer object: a fixed number of bytes that typed arrays and
+ * DataViews give access to.
+ * <p>
+ * The bytes are kept in a {@link ByteBuffer}, so an ArrayBuffer can be
+ * created from Java over any buffer, including direct and memory-mapped
+ * buffers, with {@link #NativeArrayBuffer(ByteBuffer)} without copying. In
+ * scripts a Java <code>byte[]</code> or <code>ByteBuffer</code> can be used
+ * wherever an ArrayBuffer is expected, the views then share the bytes with
+ * the Java object. Multi-byte values of typed arrays are stored in
+ * little-endian order.
+ */
+public class NativeArrayBuffer extends IdScriptableObject {
+	private static final long serialVersionUID = 3110411773054879549L;
+
+	public static final String CLASS_NAME = "ArrayBuffer";
+
+	private static final Object ARRAY_BUFFER_TAG = CLASS_NAME;
+
+	// the bytes in little-endian order and the same bytes in big-endian order
+	private transient ByteBuffer buffer;
+	private transient ByteBuffer bigEndian;
+
+	public static void init(Context cx, Scriptable scope, boolean sealed) {
+		NativeArrayBuffer obj = new NativeArrayBuffer();
+		obj.exportAsJSClass(MAX_PROTOTYPE_ID, scope, sealed);
+	}
+
+	/**
+	 * Create an empty buffer.
+	 */
+	public NativeArrayBuffer() {
+		this(ByteBuffer.allocate(0));
+	}
+
+	/**
+	 * Create a buffer with the given number of bytes, all zero.
+	 */
+	public NativeArrayBuffer(int length) {
+		this(ByteBuffer.allocate(length));
+	}
+
+	/**
+	 * Create a buffer over the bytes between the position and the limit of
+	 * the given buffer. The bytes are not copied, changes made through either
+	 * buffer are seen by the other.
+	 */
+	public NativeArrayBuffer(ByteBuffer bytes) {
+		setBuffer(bytes.slice());
+	}
+
+	private void setBuffer(ByteBuffer bytes) {
+		buffer = bytes.order(ByteOrder.LITTLE_ENDIAN);
+		bigEndian = bytes.duplicate().order(ByteOrder.BIG_ENDIAN);
+	}
+
+	/**
+	 * Create a buffer for the given bytes with the ArrayBuffer prototype of
+	 * the scope.
+	 */
+	public static NativeArrayBuffer wrap(Scriptable scope, ByteBuffer bytes) {
+		NativeArrayBuffer result = new NativeArrayBuffer(bytes);
+		ScriptRuntime.setObjectProtoAndParent(result, scope);
+		return result;
+	}
+
+	/**
+	 * Return the given value as ArrayBuffer if it is one or if it wraps a
+	 * Java <code>byte[]</code> or <code>ByteBuffer</code>, null otherwise.
+	 */
+	static NativeArrayBuffer toArrayBuffer(Scriptable scope, Object value) {
+		if (value instanceof NativeArrayBuffer) {
+			return (NativeArrayBuffer) value;
+		}
+		if (value instanceof Wrapper) {
+			Object javaObject = ((Wrapper) value).unwrap();
+			if (javaObject instanceof byte[]) {
+				return wrap(scope, ByteBuffer.wrap((byte[]) javaObject));
+			}
+			if (javaObject instanceof ByteBuffer) {
+				return wrap(scope, (ByteBuffer) javaObject);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String getClassName() {
+		return CLASS_NAME;
+	}
+
+	/**
+	 * Return the number of bytes of this buffer.
+	 */
+	public int getLength() {
+		return buffer.capacity();
+	}
+
+	/**
+	 * Return a buffer that shares the bytes of this ArrayBuffer, with its own
+	 * position and limit. The byte order is little-endian.
+	 */
+	public ByteBuffer getBuffer() {
+		return buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	ByteBuffer buffer(boolean littleEndian) {
+		return littleEndian ? buffer : bigEndian;
+	}
+
+	/**
+	 * Convert the value to a length or index as the constructors and methods
+	 * of ArrayBuffer and its views expect, throwing a RangeError if it is
+	 * negative or too large.
+	 */
+	static int toIndex(Object value) {
+		double d = ScriptRuntime.toInteger(value);
+		if (d < 0 || d > Integer.MAX_VALUE) {
+			throw ScriptRuntime.constructError("RangeError", ScriptRuntime
+					.getMessage1("msg.typed.array.bad.length",
+							ScriptRuntime.toString(value)));
+		}
+		return (int) d;
+	}
+
+	/**
+	 * Return the index relative to the length for the start and end
+	 * arguments of slice and subarray, negative values count from the end.
+	 */
+	static int toRelativeIndex(Object[] args, int index, int length,
+			int defaultValue) {
+		if (args.length <= index || args[index] == Undefined.instance) {
+			return defaultValue;
+		}
+		double d = ScriptRuntime.toInteger(args[index]);
+		if (d < 0) {
+			d = Math.max(length + d, 0);
+		}
+		return (int) Math.min(d, length);
+	}
+
+	private NativeArrayBuffer slice(int begin, int end) {
+		int length = Math.max(end - begin, 0);
+		ByteBuffer bytes = ByteBuffer.allocate(length);
+		ByteBuffer source = buffer.duplicate();
+		source.position(begin);
+		source.limit(begin + length);
+		bytes.put(source);
+		bytes.clear();
+		return new NativeArrayBuffer(bytes);
+	}
+
+	// #string_id_map#
+
+	@Override
+	protected int getMaxInstanceId() {
+		return MAX_INSTANCE_ID;
+	}
+
+	@Override
+	protected int findInstanceIdInfo(String s) {
+		if (s.equals("byteLength")) {
+			return instanceIdInfo(READONLY | DONTENUM | PERMANENT,
+					Id_byteLength);
+		}
+		return super.findInstanceIdInfo(s);
+	}
+
+	@Override
+	protected String getInstanceIdName(int id) {
+		if (id == Id_byteLength) {
+			return "byteLength";
+		}
+		return super.getInstanceIdName(id);
+	}
+
+	@Override
+	protected Object getInstanceIdValue(int id) {
+		if (id == Id_byteLength) {
+			return ScriptRuntime.wrapInt(getLength());
+		}
+		return super.getInstanceIdValue(id);
+	}
+
+	@Override
+	protected void fillConstructorProperties(IdFunctionObject ctor) {
+		addIdFunctionProperty(ctor, ARRAY_BUFFER_TAG, ConstructorId_isView,
+				"isView", 1);
+	}
+
+	@Override
+	protected void initPrototypeId(int id) {
+		String s;
+		int arity;
+		switch (id) {
+		case Id_constructor:
+			arity = 1;
+			s = "constructor";
+			break;
+		case Id_slice:
+			arity = 2;
+			s = "slice";
+			break;
+		default:
+			throw new IllegalArgumentException(String.valueOf(id));
+		}
+		initPrototypeMethod(ARRAY_BUFFER_TAG, id, s, arity);
+	}
+
+	@Override
+	public Object execIdCall(IdFunctionObject f, Context cx, Scriptable scope,
+			Scriptable thisObj, Object[] args) {
+		if (!f.hasTag(ARRAY_BUFFER_TAG)) {
+			return super.execIdCall(f, cx, scope, thisObj, args);
+		}
+		int id = f.methodId();
+		switch (id) {
+		case ConstructorId_isView:
+			return ScriptRuntime.wrapBoolean(args.length > 0
+					&& args[0] instanceof NativeArrayBufferView);
+
+		case Id_constructor: {
+			Object arg = args.length > 0 ? args[0] : Undefined.instance;
+			if (!(arg instanceof NativeArrayBuffer)) {
+				// shares the bytes of a Java byte[] or ByteBuffer
+				NativeArrayBuffer bytes = toArrayBuffer(scope, arg);
+				if (bytes != null) {
+					return bytes;
+				}
+			}
+			return new NativeArrayBuffer(toIndex(arg));
+		}
+
+		case Id_slice: {
+			if (!(thisObj instanceof NativeArrayBuffer))
+				throw incompatibleCallError(f);
+			NativeArrayBuffer self = (NativeArrayBuffer) thisObj;
+			int length = self.getLength();
+			int begin = toRelativeIndex(args, 0, length, 0);
+			int end = toRelativeIndex(args, 1, length, length);
+			NativeArrayBuffer result = self.slice(begin, end);
+			ScriptRuntime.setObjectProtoAndParent(result, scope);
+			return result;
+		}
+		}
+		throw new IllegalArgumentException(String.valueOf(id));
+	}
+
+	@Override
+	protected int findPrototypeId(String s) {
+		if (s.equals("constructor")) {
+			return Id_constructor;
+		}
+		if (s.equals("slice")) {
+			return Id_slice;
+		}
+		return 0;
+	}
+
+	private static final int Id_constructor = 1, Id_slice = 2,
+			MAX_PROTOTYPE_ID = 2;
+
+	private static final int ConstructorId_isView = -1;
+
+	private static final int Id_byteLength = 1, MAX_INSTANCE_ID = 1;
+
+	// #/string_id_map#
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		byte[] bytes = new byte[getLength()];
+		buffer.duplicate().get(bytes);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		setBuffer(ByteBuffer.wrap(bytes));
+	}
+}
@@ -0,0 +1,132 @@
+package org.mozilla.javascript.typedarrays;
+
+import java.nio.ByteBuffer;
+
+import org.mozilla.javascript.IdScriptableObject;
+import org.mozilla.javascript.ScriptRuntime;
+
+/**
+ * Base class of the objects that give access to a range of the bytes of an
+ * {@link NativeArrayBuffer}: the typed arrays and DataView.
+ */
+public abstract class NativeArrayBufferView extends IdScriptableObject {
+	private static final long serialVersionUID = 6884475582973958419L;
+
+	protected final NativeArrayBuffer arrayBuffer;
+	protected final int offset;
+	protected final int byteLength;
+
+	/**
+	 * Create a view with no bytes, used for the prototype objects.
+	 */
+	protected NativeArrayBufferView() {
+		this(new NativeArrayBuffer(), 0, 0);
+	}
+
+	protected NativeArrayBufferView(NativeArrayBuffer arrayBuffer, int offset,
+			int byteLength) {
+		this.arrayBuffer = arrayBuffer;
+		this.offset = offset;
+		this.byteLength = byteLength;
+	}
+
+	/**
+	 * Return the buffer whose bytes this object is a view of.
+	 */
+	public NativeArrayBuffer getArrayBuffer() {
+		return arrayBuffer;
+	}
+
+	/**
+	 * Return the offset of the first byte of the view in the buffer.
+	 */
+	public int getByteOffset() {
+		return offset;
+	}
+
+	/**
+	 * Return the number of bytes of the view.
+	 */
+	public int getByteLength() {
+		return byteLength;
+	}
+
+	/**
+	 * Return the bytes of the buffer in the given byte order, the view starts
+	 * at {@link #getByteOffset()}.
+	 */
+	protected final ByteBuffer bytes(boolean littleEndian) {
+		return arrayBuffer.buffer(littleEndian);
+	}
+
+	/**
+	 * Throw a RangeError unless the view fits into the buffer.
+	 */
+	static void checkRange(NativeArrayBuffer arrayBuffer, int offset,
+			long byteLength) {
+		if (offset + byteLength > arrayBuffer.getLength()) {
+			throw ScriptRuntime.constructError("RangeError", ScriptRuntime
+					.getMessage1("msg.typed.array.bad.length",
+							String.valueOf(byteLength)));
+		}
+	}
+
+	// #string_id_map#
+
+	@Override
+	protected int getMaxInstanceId() {
+		return MAX_INSTANCE_ID;
+	}
+
+	@Override
+	protected int findInstanceIdInfo(String s) {
+		int id;
+		if (s.equals("buffer")) {
+			id = Id_buffer;
+		} else if (s.equals("byteOffset")) {
+			id = Id_byteOffset;
+		} else if (s.equals("byteLength")) {
+			id = Id_byteLength;
+		} else {
+			return super.findInstanceIdInfo(s);
+		}
+		return instanceIdInfo(READONLY | DONTENUM | PERMANENT, id);
+	}
+
+	@Override
+	protected String getInstanceIdName(int id) {
+		switch (id) {
+		case Id_buffer:
+			return "buffer";
+		case Id_byteOffset:
+			return "byteOffset";
+		case Id_byteLength:
+			return "byteLength";
+		}
+		return super.getInstanceIdName(id);
+	}
+
+	@Override
+	protected Object getInstanceIdValue(int id) {
+		switch (id) {
+		case Id_buffer:
+			if (arrayBuffer.getParentScope() == null
+					&& getParentScope() != null) {
+				// created from Java or for a Java byte array
+				ScriptRuntime.setObjectProtoAndParent(arrayBuffer,
+						getParentScope());
+			}
+			return arrayBuffer;
+		case Id_byteOffset:
+			return ScriptRuntime.wrapInt(offset);
+		case Id_byteLength:
+			return ScriptRuntime.wrapInt(byteLength);
+		}
+		return super.getInstanceIdValue(id);
+	}
+
+	protected static final int Id_buffer = 1, Id_byteOffset = 2,
+			Id_byteLength = 3, MAX_INSTANCE_ID = 3;
+
+	// #/string_id_map#
+}
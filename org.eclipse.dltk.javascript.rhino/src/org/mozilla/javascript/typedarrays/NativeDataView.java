@@ -0,0 +1,210 @@
+package org.mozilla.javascript.typedarrays;
+
+import java.nio.ByteBuffer;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.IdFunctionObject;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.Undefined;
+
+/**
+ * The DataView object: reads and writes numbers of any type at any offset
+ * of an ArrayBuffer, in big-endian order unless little-endian order is asked
+ * for.
+ */
+public class NativeDataView extends NativeArrayBufferView {
+	private static final long serialVersionUID = 1427967607557438968L;
+
+	public static final String CLASS_NAME = "DataView";
+
+	private static final Object DATA_VIEW_TAG = CLASS_NAME;
+
+	public static void init(Context cx, Scriptable scope, boolean sealed) {
+		NativeDataView obj = new NativeDataView();
+		obj.exportAsJSClass(MAX_PROTOTYPE_ID, scope, sealed);
+	}
+
+	public NativeDataView() {
+	}
+
+	public NativeDataView(NativeArrayBuffer arrayBuffer, int offset,
+			int byteLength) {
+		super(arrayBuffer, offset, byteLength);
+	}
+
+	@Override
+	public String getClassName() {
+		return CLASS_NAME;
+	}
+
+	private static NativeDataView js_constructor(Scriptable scope,
+			Object[] args) {
+		NativeArrayBuffer arrayBuffer = NativeArrayBuffer.toArrayBuffer(scope,
+				args.length > 0 ? args[0] : Undefined.instance);
+		if (arrayBuffer == null) {
+			throw ScriptRuntime.typeError1("msg.typed.array.no.buffer",
+					CLASS_NAME);
+		}
+		int offset = 0;
+		if (args.length > 1 && args[1] != Undefined.instance) {
+			offset = NativeArrayBuffer.toIndex(args[1]);
+		}
+		int bufferLength = arrayBuffer.getLength();
+		if (offset > bufferLength) {
+			throw ScriptRuntime.constructError("RangeError", ScriptRuntime
+					.getMessage1("msg.typed.array.bad.offset",
+							String.valueOf(offset)));
+		}
+		int byteLength;
+		if (args.length > 2 && args[2] != Undefined.instance) {
+			byteLength = NativeArrayBuffer.toIndex(args[2]);
+		} else {
+			byteLength = bufferLength - offset;
+		}
+		checkRange(arrayBuffer, offset, byteLength);
+		return new NativeDataView(arrayBuffer, offset, byteLength);
+	}
+
+	/**
+	 * Return the position in the buffer of a value of the given size at the
+	 * offset given by the first argument, throwing a RangeError if the value
+	 * is not inside the view.
+	 */
+	private int position(Object[] args, int size) {
+		int index = NativeArrayBuffer.toIndex(args.length > 0 ? args[0]
+				: Undefined.instance);
+		if ((long) index + size > byteLength) {
+			throw ScriptRuntime.constructError("RangeError", ScriptRuntime
+					.getMessage1("msg.typed.array.bad.offset",
+							String.valueOf(index)));
+		}
+		return offset + index;
+	}
+
+	private ByteBuffer bytes(Object[] args, int littleEndianIndex) {
+		return bytes(args.length > littleEndianIndex
+				&& ScriptRuntime.toBoolean(args[littleEndianIndex]));
+	}
+
+	private Object js_get(int id, Object[] args) {
+		switch (id) {
+		case Id_getInt8:
+			return ScriptRuntime.wrapInt(bytes(true).get(position(args, 1)));
+		case Id_getUint8:
+			return ScriptRuntime.wrapInt(bytes(true).get(position(args, 1))
+					& 0xFF);
+		case Id_getInt16:
+			return ScriptRuntime.wrapInt(bytes(args, 1).getShort(
+					position(args, 2)));
+		case Id_getUint16:
+			return ScriptRuntime.wrapInt(bytes(args, 1).getChar(
+					position(args, 2)));
+		case Id_getInt32:
+			return ScriptRuntime.wrapInt(bytes(args, 1).getInt(
+					position(args, 4)));
+		case Id_getUint32:
+			return ScriptRuntime.wrapNumber(bytes(args, 1).getInt(
+					position(args, 4)) & 0xFFFFFFFFL);
+		case Id_getFloat32:
+			return ScriptRuntime.wrapNumber(bytes(args, 1).getFloat(
+					position(args, 4)));
+		case Id_getFloat64:
+			return ScriptRuntime.wrapNumber(bytes(args, 1).getDouble(
+					position(args, 8)));
+		}
+		throw new IllegalArgumentException(String.valueOf(id));
+	}
+
+	private void js_set(int id, Object[] args) {
+		Object value = args.length > 1 ? args[1] : Undefined.instance;
+		switch (id) {
+		case Id_setInt8:
+		case Id_setUint8:
+			bytes(true).put(position(args, 1),
+					(byte) ScriptRuntime.toInt32(value));
+			return;
+		case Id_setInt16:
+		case Id_setUint16:
+			bytes(args, 2).putShort(position(args, 2),
+					(short) ScriptRuntime.toInt32(value));
+			return;
+		case Id_setInt32:
+		case Id_setUint32:
+			bytes(args, 2).putInt(position(args, 4),
+					ScriptRuntime.toInt32(value));
+			return;
+		case Id_setFloat32:
+			bytes(args, 2).putFloat(position(args, 4),
+					(float) ScriptRuntime.toNumber(value));
+			return;
+		case Id_setFloat64:
+			bytes(args, 2).putDouble(position(args, 8),
+					ScriptRuntime.toNumber(value));
+			return;
+		}
+		throw new IllegalArgumentException(String.valueOf(id));
+	}
+
+	// #string_id_map#
+
+	@Override
+	protected void initPrototypeId(int id) {
+		if (id == Id_constructor) {
+			initPrototypeMethod(DATA_VIEW_TAG, id, "constructor", 3);
+			return;
+		}
+		String s = NAMES[id - Id_getInt8];
+		// getXxx(byteOffset, littleEndian), setXxx(byteOffset, value,
+		// littleEndian)
+		initPrototypeMethod(DATA_VIEW_TAG, id, s, id < Id_setInt8 ? 1 : 2);
+	}
+
+	@Override
+	public Object execIdCall(IdFunctionObject f, Context cx, Scriptable scope,
+			Scriptable thisObj, Object[] args) {
+		if (!f.hasTag(DATA_VIEW_TAG)) {
+			return super.execIdCall(f, cx, scope, thisObj, args);
+		}
+		int id = f.methodId();
+		if (id == Id_constructor) {
+			return js_constructor(scope, args);
+		}
+		if (!(thisObj instanceof NativeDataView))
+			throw incompatibleCallError(f);
+		NativeDataView self = (NativeDataView) thisObj;
+		if (id < Id_setInt8) {
+			return self.js_get(id, args);
+		}
+		self.js_set(id, args);
+		return Undefined.instance;
+	}
+
+	@Override
+	protected int findPrototypeId(String s) {
+		if (s.equals("constructor")) {
+			return Id_constructor;
+		}
+		for (int i = 0; i != NAMES.length; ++i) {
+			if (NAMES[i].equals(s)) {
+				return Id_getInt8 + i;
+			}
+		}
+		return 0;
+	}
+
+	private static final String[] NAMES = { "getInt8", "getUint8",
+			"getInt16", "getUint16", "getInt32", "getUint32", "getFloat32",
+			"getFloat64", "setInt8", "setUint8", "setInt16", "setUint16",
+			"setInt32", "setUint32", "setFloat32", "setFloat64" };
+
+	private static final int Id_constructor = 1, Id_getInt8 = 2,
+			Id_getUint8 = 3, Id_getInt16 = 4, Id_getUint16 = 5,
+			Id_getInt32 = 6, Id_getUint32 = 7, Id_getFloat32 = 8,
+			Id_getFloat64 = 9, Id_setInt8 = 10, Id_setUint8 = 11,
+			Id_setInt16 = 12, Id_setUint16 = 13, Id_setInt32 = 14,
+			Id_setUint32 = 15, Id_setFloat32 = 16, Id_setFloat64 = 17,
+			MAX_PROTOTYPE_ID = 17;
+
+	// #/string_id_map#
+}
@@ -0,0 +1,53 @@
+package org.mozilla.javascript.typedarrays;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * The Float32Array typed array: a view of an ArrayBuffer as 32-bit floating point numbers.
+ */
+public class NativeFloat32Array extends NativeTypedArrayView {
+	private static final long serialVersionUID = 1211177585888086247L;
+
+	private static final String CLASS_NAME = "Float32Array";
+	private static final int BYTES_PER_ELEMENT = 4;
+
+	public static void init(Context cx, Scriptable scope, boolean sealed) {
+		NativeFloat32Array obj = new NativeFloat32Array();
+		obj.exportAsJSClass(MAX_PROTOTYPE_ID, scope, sealed);
+	}
+
+	public NativeFloat32Array() {
+	}
+
+	public NativeFloat32Array(NativeArrayBuffer arrayBuffer, int offset, int length) {
+		super(arrayBuffer, offset, length, BYTES_PER_ELEMENT);
+	}
+
+	@Override
+	public String getClassName() {
+		return CLASS_NAME;
+	}
+
+	@Override
+	public int getBytesPerElement() {
+		return BYTES_PER_ELEMENT;
+	}
+
+	@Override
+	protected NativeTypedArrayView construct(NativeArrayBuffer arrayBuffer,
+			int offset, int length) {
+		return new NativeFloat32Array(arrayBuffer, offset, length);
+	}
+
+	@Override
+	protected Object js_get(int index) {
+		return ScriptRuntime.wrapNumber(bytes(true).getFloat(position(index)));
+	}
+
+	@Override
+	protected void js_set(int index, Object value) {
+		bytes(true).putFloat(position(index), (float) ScriptRuntime.toNumber(value));
+	}
+}
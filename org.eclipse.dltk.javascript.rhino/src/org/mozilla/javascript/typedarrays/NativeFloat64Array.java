@@ -0,0 +1,53 @@
+package org.mozilla.javascript.typedarrays;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * The Float64Array typed array: a view of an ArrayBuffer as 64-bit floating point numbers.
+ */
+public class NativeFloat64Array extends NativeTypedArrayView {
+	private static final long serialVersionUID = 2041503213670742561L;
+
+	private static final String CLASS_NAME = "Float64Array";
+	private static final int BYTES_PER_ELEMENT = 8;
+
+	public static void init(Context cx, Scriptable scope, boolean sealed) {
+		NativeFloat64Array obj = new NativeFloat64Array();
+		obj.exportAsJSClass(MAX_PROTOTYPE_ID, scope, sealed);
+	}
+
+	public NativeFloat64Array() {
+	}
+
+	public NativeFloat64Array(NativeArrayBuffer arrayBuffer, int offset, int length) {
+		super(arrayBuffer, offset, length, BYTES_PER_ELEMENT);
+	}
+
+	@Override
+	public String getClassName() {
+		return CLASS_NAME;
+	}
+
+	@Override
+	public int getBytesPerElement() {
+		return BYTES_PER_ELEMENT;
+	}
+
+	@Override
+	protected NativeTypedArrayView construct(NativeArrayBuffer arrayBuffer,
+			int offset, int length) {
+		return new NativeFloat64Array(arrayBuffer, offset, length);
+	}
+
+	@Override
+	protected Object js_get(int index) {
+		return ScriptRuntime.wrapNumber(bytes(true).getDouble(position(index)));
+	}
+
+	@Override
+	protected void js_set(int index, Object value) {
+		bytes(true).putDouble(position(index), ScriptRuntime.toNumber(value));
+	}
+}
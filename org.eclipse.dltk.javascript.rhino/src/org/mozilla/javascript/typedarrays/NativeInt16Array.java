@@ -0,0 +1,53 @@
+package org.mozilla.javascript.typedarrays;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * The Int16Array typed array: a view of an ArrayBuffer as 16-bit signed integers.
+ */
+public class NativeInt16Array extends NativeTypedArrayView {
+	private static final long serialVersionUID = 3684581102364667442L;
+
+	private static final String CLASS_NAME = "Int16Array";
+	private static final int BYTES_PER_ELEMENT = 2;
+
+	public static void init(Context cx, Scriptable scope, boolean sealed) {
+		NativeInt16Array obj = new NativeInt16Array();
+		obj.exportAsJSClass(MAX_PROTOTYPE_ID, scope, sealed);
+	}
+
+	public NativeInt16Array() {
+	}
+
+	public NativeInt16Array(NativeArrayBuffer arrayBuffer, int offset, int length) {
+		super(arrayBuffer, offset, length, BYTES_PER_ELEMENT);
+	}
+
+	@Override
+	public String getClassName() {
+		return CLASS_NAME;
+	}
+
+	@Override
+	public int getBytesPerElement() {
+		return BYTES_PER_ELEMENT;
+	}
+
+	@Override
+	protected NativeTypedArrayView construct(NativeArrayBuffer arrayBuffer,
+			int offset, int length) {
+		return new NativeInt16Array(arrayBuffer, offset, length);
+	}
+
+	@Override
+	protected Object js_get(int index) {
+		return ScriptRuntime.wrapInt(bytes(true).getShort(position(index)));
+	}
+
+	@Override
+	protected void js_set(int index, Object value) {
+		bytes(true).putShort(position(index), (short) ScriptRuntime.toInt32(value));
+	}
+}
@@ -0,0 +1,53 @@
+package org.mozilla.javascript.typedarrays;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * The Int32Array typed array: a view of an ArrayBuffer as 32-bit signed integers.
+ */
+public class NativeInt32Array extends NativeTypedArrayView {
+	private static final long serialVersionUID = 2652819258254059362L;
+
+	private static final String CLASS_NAME = "Int32Array";
+	private static final int BYTES_PER_ELEMENT = 4;
+
+	public static void init(Context cx, Scriptable scope, boolean sealed) {
+		NativeInt32Array obj = new NativeInt32Array();
+		obj.exportAsJSClass(MAX_PROTOTYPE_ID, scope, sealed);
+	}
+
+	public NativeInt32Array() {
+	}
+
+	public NativeInt32Array(NativeArrayBuffer arrayBuffer, int offset, int length) {
+		super(arrayBuffer, offset, length, BYTES_PER_ELEMENT);
+	}
+
+	@Override
+	public String getClassName() {
+		return CLASS_NAME;
+	}
+
+	@Override
+	public int getBytesPerElement() {
+		return BYTES_PER_ELEMENT;
+	}
+
+	@Override
+	protected NativeTypedArrayView construct(NativeArrayBuffer arrayBuffer,
+			int offset, int length) {
+		return new NativeInt32Array(arrayBuffer, offset, length);
+	}
+
+	@Override
+	protected Object js_get(int index) {
+		return ScriptRuntime.wrapInt(bytes(true).getInt(position(index)));
+	}
+
+	@Override
+	protected void js_set(int index, Object value) {
+		bytes(true).putInt(position(index), ScriptRuntime.toInt32(value));
+	}
+}
@@ -0,0 +1,53 @@
+package org.mozilla.javascript.typedarrays;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * The Int8Array typed array: a view of an ArrayBuffer as 8-bit signed integers.
+ */
+public class NativeInt8Array extends NativeTypedArrayView {
+	private static final long serialVersionUID = -56534586053955782L;
+
+	private static final String CLASS_NAME = "Int8Array";
+	private static final int BYTES_PER_ELEMENT = 1;
+
+	public static void init(Context cx, Scriptable scope, boolean sealed) {
+		NativeInt8Array obj = new NativeInt8Array();
+		obj.exportAsJSClass(MAX_PROTOTYPE_ID, scope, sealed);
+	}
+
+	public NativeInt8Array() {
+	}
+
+	public NativeInt8Array(NativeArrayBuffer arrayBuffer, int offset, int length) {
+		super(arrayBuffer, offset, length, BYTES_PER_ELEMENT);
+	}
+
+	@Override
+	public String getClassName() {
+		return CLASS_NAME;
+	}
+
+	@Override
+	public int getBytesPerElement() {
+		return BYTES_PER_ELEMENT;
+	}
+
+	@Override
+	protected NativeTypedArrayView construct(NativeArrayBuffer arrayBuffer,
+			int offset, int length) {
+		return new NativeInt8Array(arrayBuffer, offset, length);
+	}
+
+	@Override
+	protected Object js_get(int index) {
+		return ScriptRuntime.wrapInt(bytes(true).get(position(index)));
+	}
+
+	@Override
+	protected void js_set(int index, Object value) {
+		bytes(true).put(position(index), (byte) ScriptRuntime.toInt32(value));
+	}
+}
@@ -0,0 +1,384 @@
+package org.mozilla.javascript.typedarrays;
+
+import java.nio.ByteBuffer;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.IdFunctionObject;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
+
+/**
+ * Base class of the typed arrays, which show the bytes of an
+ * {@link NativeArrayBuffer} as an array of numbers of one type. The elements
+ * are read from and written to the buffer directly, nothing is boxed until a
+ * script reads an element.
+ * <p>
+ * Subclasses define the element type. The prototype methods use the class
+ * name of the subclass as tag.
+ */
+public abstract class NativeTypedArrayView extends NativeArrayBufferView {
+	private static final long serialVersionUID = -2997209584418045916L;
+
+	/** The number of elements. */
+	protected final int length;
+
+	/**
+	 * Create an array with no elements, used for the prototype objects.
+	 */
+	protected NativeTypedArrayView() {
+		length = 0;
+	}
+
+	protected NativeTypedArrayView(NativeArrayBuffer arrayBuffer, int offset,
+			int length, int bytesPerElement) {
+		super(arrayBuffer, offset, length * bytesPerElement);
+		this.length = length;
+	}
+
+	/**
+	 * Return the number of elements of the array.
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Return the number of bytes of one element.
+	 */
+	public abstract int getBytesPerElement();
+
+	/**
+	 * Return the element at the given index, which is in range.
+	 */
+	protected abstract Object js_get(int index);
+
+	/**
+	 * Convert the value to the element type and store it at the given index,
+	 * which is in range.
+	 */
+	protected abstract void js_set(int index, Object value);
+
+	/**
+	 * Create an array of the same type over the given range of the buffer.
+	 */
+	protected abstract NativeTypedArrayView construct(
+			NativeArrayBuffer arrayBuffer, int offset, int length);
+
+	/**
+	 * Return the position of the element with the given index in the
+	 * buffer.
+	 */
+	protected final int position(int index) {
+		return offset + index * getBytesPerElement();
+	}
+
+	@Override
+	public Object get(int index, Scriptable start) {
+		if (0 <= index && index < length) {
+			return js_get(index);
+		}
+		return NOT_FOUND;
+	}
+
+	@Override
+	public boolean has(int index, Scriptable start) {
+		return 0 <= index && index < length;
+	}
+
+	@Override
+	public void put(int index, Scriptable start, Object value) {
+		// writes outside the array are ignored
+		if (0 <= index && index < length) {
+			js_set(index, value);
+		}
+	}
+
+	@Override
+	public void delete(int index) {
+	}
+
+	@Override
+	public Object[] getIds() {
+		Object[] superIds = super.getIds();
+		Object[] ids = new Object[length + superIds.length];
+		for (int i = 0; i != length; ++i) {
+			ids[i] = Integer.valueOf(i);
+		}
+		System.arraycopy(superIds, 0, ids, length, superIds.length);
+		return ids;
+	}
+
+	private NativeTypedArrayView realThis(Scriptable thisObj,
+			IdFunctionObject f) {
+		if (thisObj == null || thisObj.getClass() != getClass())
+			throw incompatibleCallError(f);
+		return (NativeTypedArrayView) thisObj;
+	}
+
+	private NativeTypedArrayView newArray(Scriptable scope, int length) {
+		int bytesPerElement = getBytesPerElement();
+		if ((long) length * bytesPerElement > Integer.MAX_VALUE) {
+			throw ScriptRuntime.constructError("RangeError", ScriptRuntime
+					.getMessage1("msg.typed.array.bad.length",
+							String.valueOf(length)));
+		}
+		NativeArrayBuffer arrayBuffer = new NativeArrayBuffer(length
+				* bytesPerElement);
+		ScriptRuntime.setObjectProtoAndParent(arrayBuffer, scope);
+		return construct(arrayBuffer, 0, length);
+	}
+
+	private NativeTypedArrayView js_constructor(Scriptable scope,
+			Object[] args) {
+		Object arg0 = args.length > 0 ? args[0] : Undefined.instance;
+		if (!(arg0 instanceof Scriptable)) {
+			return newArray(scope, NativeArrayBuffer.toIndex(arg0));
+		}
+		NativeArrayBuffer arrayBuffer = NativeArrayBuffer.toArrayBuffer(
+				scope, arg0);
+		if (arrayBuffer != null) {
+			// a view of the buffer
+			int bytesPerElement = getBytesPerElement();
+			int offset = 0;
+			if (args.length > 1 && args[1] != Undefined.instance) {
+				offset = NativeArrayBuffer.toIndex(args[1]);
+			}
+			int bufferLength = arrayBuffer.getLength();
+			if (offset % bytesPerElement != 0 || offset > bufferLength) {
+				throw ScriptRuntime.constructError("RangeError", ScriptRuntime
+						.getMessage1("msg.typed.array.bad.offset",
+								String.valueOf(offset)));
+			}
+			int length;
+			if (args.length > 2 && args[2] != Undefined.instance) {
+				length = NativeArrayBuffer.toIndex(args[2]);
+			} else {
+				if ((bufferLength - offset) % bytesPerElement != 0) {
+					throw ScriptRuntime.constructError("RangeError",
+							ScriptRuntime.getMessage1(
+									"msg.typed.array.bad.length",
+									String.valueOf(bufferLength - offset)));
+				}
+				length = (bufferLength - offset) / bytesPerElement;
+			}
+			checkRange(arrayBuffer, offset, (long) length * bytesPerElement);
+			return construct(arrayBuffer, offset, length);
+		}
+		// a copy of a typed array or an array-like object
+		Scriptable source = (Scriptable) arg0;
+		NativeTypedArrayView result = newArray(scope, sourceLength(source));
+		result.setElements(source, 0);
+		return result;
+	}
+
+	private static int sourceLength(Scriptable source) {
+		if (source instanceof NativeTypedArrayView) {
+			return ((NativeTypedArrayView) source).length;
+		}
+		Object length = ScriptableObject.getProperty(source, "length");
+		return length == NOT_FOUND ? 0 : NativeArrayBuffer.toIndex(length);
+	}
+
+	/**
+	 * Copy the elements of the source into this array starting at the given
+	 * index.
+	 */
+	private void setElements(Scriptable source, int start) {
+		int sourceLength = sourceLength(source);
+		if ((long) start + sourceLength > length) {
+			throw ScriptRuntime.constructError("RangeError", ScriptRuntime
+					.getMessage1("msg.typed.array.bad.offset",
+							String.valueOf(start)));
+		}
+		if (source instanceof NativeTypedArrayView) {
+			NativeTypedArrayView array = (NativeTypedArrayView) source;
+			if (array.getClass() == getClass()) {
+				// same element type, copy the bytes
+				ByteBuffer from = array.bytes(true).duplicate();
+				from.limit(array.offset + array.byteLength);
+				from.position(array.offset);
+				byte[] bytes = new byte[array.byteLength];
+				from.get(bytes);
+				ByteBuffer to = bytes(true).duplicate();
+				to.position(position(start));
+				to.put(bytes);
+				return;
+			}
+			if (array.arrayBuffer == arrayBuffer) {
+				// the ranges may overlap, read all elements first
+				Object[] values = new Object[sourceLength];
+				for (int i = 0; i != sourceLength; ++i) {
+					values[i] = array.js_get(i);
+				}
+				for (int i = 0; i != sourceLength; ++i) {
+					js_set(start + i, values[i]);
+				}
+				return;
+			}
+			for (int i = 0; i != sourceLength; ++i) {
+				js_set(start + i, array.js_get(i));
+			}
+			return;
+		}
+		for (int i = 0; i != sourceLength; ++i) {
+			Object value = ScriptableObject.getProperty(source, i);
+			if (value == NOT_FOUND) {
+				value = Undefined.instance;
+			}
+			js_set(start + i, value);
+		}
+	}
+
+	// #string_id_map#
+
+	@Override
+	protected int getMaxInstanceId() {
+		return MAX_INSTANCE_ID;
+	}
+
+	@Override
+	protected int findInstanceIdInfo(String s) {
+		if (s.equals("length")) {
+			return instanceIdInfo(READONLY | DONTENUM | PERMANENT, Id_length);
+		}
+		return super.findInstanceIdInfo(s);
+	}
+
+	@Override
+	protected String getInstanceIdName(int id) {
+		if (id == Id_length) {
+			return "length";
+		}
+		return super.getInstanceIdName(id);
+	}
+
+	@Override
+	protected Object getInstanceIdValue(int id) {
+		if (id == Id_length) {
+			return ScriptRuntime.wrapInt(length);
+		}
+		return super.getInstanceIdValue(id);
+	}
+
+	@Override
+	protected void fillConstructorProperties(IdFunctionObject ctor) {
+		ctor.defineProperty("BYTES_PER_ELEMENT", ScriptRuntime
+				.wrapInt(getBytesPerElement()), READONLY | DONTENUM
+				| PERMANENT);
+	}
+
+	@Override
+	protected void initPrototypeId(int id) {
+		String s;
+		int arity;
+		switch (id) {
+		case Id_constructor:
+			arity = 3;
+			s = "constructor";
+			break;
+		case Id_get:
+			arity = 1;
+			s = "get";
+			break;
+		case Id_set:
+			arity = 2;
+			s = "set";
+			break;
+		case Id_subarray:
+			arity = 2;
+			s = "subarray";
+			break;
+		case Id_BYTES_PER_ELEMENT:
+			initPrototypeValue(id, "BYTES_PER_ELEMENT", ScriptRuntime
+					.wrapInt(getBytesPerElement()), READONLY | DONTENUM
+					| PERMANENT);
+			return;
+		default:
+			throw new IllegalArgumentException(String.valueOf(id));
+		}
+		initPrototypeMethod(getClassName(), id, s, arity);
+	}
+
+	@Override
+	public Object execIdCall(IdFunctionObject f, Context cx, Scriptable scope,
+			Scriptable thisObj, Object[] args) {
+		if (!f.hasTag(getClassName())) {
+			return super.execIdCall(f, cx, scope, thisObj, args);
+		}
+		int id = f.methodId();
+		switch (id) {
+		case Id_constructor:
+			return js_constructor(scope, args);
+
+		case Id_get: {
+			NativeTypedArrayView self = realThis(thisObj, f);
+			int index = args.length > 0 ? ScriptRuntime.toInt32(args[0]) : 0;
+			if (0 <= index && index < self.length) {
+				return self.js_get(index);
+			}
+			return Undefined.instance;
+		}
+
+		case Id_set: {
+			NativeTypedArrayView self = realThis(thisObj, f);
+			Object source = args.length > 0 ? args[0] : Undefined.instance;
+			if (!(source instanceof Scriptable))
+				throw ScriptRuntime.typeError1("msg.arg.not.object",
+						ScriptRuntime.typeof(source));
+			int start = 0;
+			if (args.length > 1 && args[1] != Undefined.instance) {
+				start = NativeArrayBuffer.toIndex(args[1]);
+			}
+			self.setElements((Scriptable) source, start);
+			return Undefined.instance;
+		}
+
+		case Id_subarray: {
+			NativeTypedArrayView self = realThis(thisObj, f);
+			int begin = NativeArrayBuffer.toRelativeIndex(args, 0,
+					self.length, 0);
+			int end = NativeArrayBuffer.toRelativeIndex(args, 1, self.length,
+					self.length);
+			NativeTypedArrayView result = self.construct(self.arrayBuffer,
+					self.position(begin), Math.max(end - begin, 0));
+			ScriptRuntime.setObjectProtoAndParent(result, scope);
+			return result;
+		}
+		}
+		throw new IllegalArgumentException(String.valueOf(id));
+	}
+
+	@Override
+	protected int findPrototypeId(String s) {
+		if (s.equals("constructor")) {
+			return Id_constructor;
+		}
+		if (s.equals("get")) {
+			return Id_get;
+		}
+		if (s.equals("set")) {
+			return Id_set;
+		}
+		if (s.equals("subarray")) {
+			return Id_subarray;
+		}
+		if (s.equals("BYTES_PER_ELEMENT")) {
+			return Id_BYTES_PER_ELEMENT;
+		}
+		return 0;
+	}
+
+	private static final int Id_constructor = 1, Id_get = 2, Id_set = 3,
+			Id_subarray = 4, Id_BYTES_PER_ELEMENT = 5;
+
+	/** The maximum prototype id the subclasses export their class with. */
+	protected static final int MAX_PROTOTYPE_ID = 5;
+
+	private static final int Id_length = NativeArrayBufferView.MAX_INSTANCE_ID + 1;
+
+	protected static final int MAX_INSTANCE_ID = Id_length;
+
+	// #/string_id_map#
+}
@@ -0,0 +1,53 @@
+package org.mozilla.javascript.typedarrays;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * The Uint16Array typed array: a view of an ArrayBuffer as 16-bit unsigned integers.
+ */
+public class NativeUint16Array extends NativeTypedArrayView {
+	private static final long serialVersionUID = 3995903201152900786L;
+
+	private static final String CLASS_NAME = "Uint16Array";
+	private static final int BYTES_PER_ELEMENT = 2;
+
+	public static void init(Context cx, Scriptable scope, boolean sealed) {
+		NativeUint16Array obj = new NativeUint16Array();
+		obj.exportAsJSClass(MAX_PROTOTYPE_ID, scope, sealed);
+	}
+
+	public NativeUint16Array() {
+	}
+
+	public NativeUint16Array(NativeArrayBuffer arrayBuffer, int offset, int length) {
+		super(arrayBuffer, offset, length, BYTES_PER_ELEMENT);
+	}
+
+	@Override
+	public String getClassName() {
+		return CLASS_NAME;
+	}
+
+	@Override
+	public int getBytesPerElement() {
+		return BYTES_PER_ELEMENT;
+	}
+
+	@Override
+	protected NativeTypedArrayView construct(NativeArrayBuffer arrayBuffer,
+			int offset, int length) {
+		return new NativeUint16Array(arrayBuffer, offset, length);
+	}
+
+	@Override
+	protected Object js_get(int index) {
+		return ScriptRuntime.wrapInt(bytes(true).getChar(position(index)));
+	}
+
+	@Override
+	protected void js_set(int index, Object value) {
+		bytes(true).putChar(position(index), (char) ScriptRuntime.toInt32(value));
+	}
+}
@@ -0,0 +1,54 @@
+package org.mozilla.javascript.typedarrays;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * The Uint32Array typed array: a view of an ArrayBuffer as 32-bit unsigned integers.
+ */
+public class NativeUint32Array extends NativeTypedArrayView {
+	private static final long serialVersionUID = 249334276654329642L;
+
+	private static final String CLASS_NAME = "Uint32Array";
+	private static final int BYTES_PER_ELEMENT = 4;
+
+	public static void init(Context cx, Scriptable scope, boolean sealed) {
+		NativeUint32Array obj = new NativeUint32Array();
+		obj.exportAsJSClass(MAX_PROTOTYPE_ID, scope, sealed);
+	}
+
+	public NativeUint32Array() {
+	}
+
+	public NativeUint32Array(NativeArrayBuffer arrayBuffer, int offset, int length) {
+		super(arrayBuffer, offset, length, BYTES_PER_ELEMENT);
+	}
+
+	@Override
+	public String getClassName() {
+		return CLASS_NAME;
+	}
+
+	@Override
+	public int getBytesPerElement() {
+		return BYTES_PER_ELEMENT;
+	}
+
+	@Override
+	protected NativeTypedArrayView construct(NativeArrayBuffer arrayBuffer,
+			int offset, int length) {
+		return new NativeUint32Array(arrayBuffer, offset, length);
+	}
+
+	@Override
+	protected Object js_get(int index) {
+		return ScriptRuntime.wrapNumber(
+				bytes(true).getInt(position(index)) & 0xFFFFFFFFL);
+	}
+
+	@Override
+	protected void js_set(int index, Object value) {
+		bytes(true).putInt(position(index), (int) ScriptRuntime.toUint32(value));
+	}
+}
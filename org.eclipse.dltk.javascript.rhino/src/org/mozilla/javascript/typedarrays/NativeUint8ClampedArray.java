@@ -0,0 +1,64 @@
+package org.mozilla.javascript.typedarrays;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * The Uint8ClampedArray typed array: a view of an ArrayBuffer as 8-bit unsigned integers, values that are written
+ * are rounded and clamped to 0..255.
+ */
+public class NativeUint8ClampedArray extends NativeTypedArrayView {
+	private static final long serialVersionUID = -3271975094474551153L;
+
+	private static final String CLASS_NAME = "Uint8ClampedArray";
+	private static final int BYTES_PER_ELEMENT = 1;
+
+	public static void init(Context cx, Scriptable scope, boolean sealed) {
+		NativeUint8ClampedArray obj = new NativeUint8ClampedArray();
+		obj.exportAsJSClass(MAX_PROTOTYPE_ID, scope, sealed);
+	}
+
+	public NativeUint8ClampedArray() {
+	}
+
+	public NativeUint8ClampedArray(NativeArrayBuffer arrayBuffer, int offset, int length) {
+		super(arrayBuffer, offset, length, BYTES_PER_ELEMENT);
+	}
+
+	@Override
+	public String getClassName() {
+		return CLASS_NAME;
+	}
+
+	@Override
+	public int getBytesPerElement() {
+		return BYTES_PER_ELEMENT;
+	}
+
+	@Override
+	protected NativeTypedArrayView construct(NativeArrayBuffer arrayBuffer,
+			int offset, int length) {
+		return new NativeUint8ClampedArray(arrayBuffer, offset, length);
+	}
+
+	@Override
+	protected Object js_get(int index) {
+		return ScriptRuntime.wrapInt(bytes(true).get(position(index)) & 0xFF);
+	}
+
+	@Override
+	protected void js_set(int index, Object value) {
+		double d = ScriptRuntime.toNumber(value);
+		int b;
+		if (!(d > 0)) {
+			// also NaN
+			b = 0;
+		} else if (d > 255) {
+			b = 255;
+		} else {
+			b = (int) Math.rint(d);
+		}
+		bytes(true).put(position(index), (byte) b);
+	}
+}